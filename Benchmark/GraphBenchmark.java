@@ -0,0 +1,581 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures the throughput and the allocation rate of the core operations of Graph on synthetic graphs.
+ *
+ * Usage: java GraphBenchmark [maximum edge count] [operation names...]
+ *
+ * Every operation runs on uniform random, R-MAT and grid graphs of 1K to 10M edges, up to the maximum
+ * edge count (1M by default). Each one is warmed up and then measured over several iterations that last
+ * at least a tenth of a second. The report shows the mean throughput, its relative standard deviation and
+ * the number of bytes allocated per operation. Seeds are fixed, so runs are comparable across versions.
+ *
+ * @author Andrei Muntean
+ */
+public class GraphBenchmark
+{
+    // The edge counts of the generated graphs.
+    private static final int[] SIZES = { 1000, 10000, 100000, 1000000, 10000000 };
+
+    // The default largest edge count.
+    private static final int DEFAULT_MAXIMUM_SIZE = 1000000;
+
+    // The average degree of the random graphs.
+    private static final int AVERAGE_DEGREE = 16;
+
+    // The number of iterations that are run before measuring and that are measured.
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+
+    // The shortest duration of an iteration of a repeatable operation.
+    private static final long MINIMUM_ITERATION_NANOS = 100000000L;
+
+    // The number of vertices that lookups are spread over.
+    private static final int SAMPLE_SIZE = 1 << 16;
+
+    // The seed of every random choice.
+    private static final long SEED = 42;
+
+    // Whether the runtime counts the bytes allocated by every thread.
+    private static final boolean IS_ALLOCATION_COUNTED = isAllocationCounted();
+
+    // Receives the results of the operations so that they are not optimized away.
+    private static volatile long sink;
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args The largest edge count, followed by the names of the operations to run. Runs all by default.
+     */
+    public static void main(String[] args) throws GraphFormatException, IOException
+    {
+        int maximumSize = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MAXIMUM_SIZE;
+        ArrayList<String> names = new ArrayList<String>(Arrays.asList(args).subList(Math.min(args.length, 1), args.length));
+        File file = File.createTempFile("graph", ".txt");
+
+        file.deleteOnExit();
+        System.out.printf("%-16s %-8s %10s %16s %8s %14s%n", "Operation", "Graph", "Edges", "Throughput", "Error", "Allocation");
+
+        for (int size : SIZES)
+        {
+            if (size > maximumSize)
+            {
+                break;
+            }
+
+            String[] generatorNames = { "uniform", "rmat", "grid" };
+
+            for (String generatorName : generatorNames)
+            {
+                Edge[] edges = generate(generatorName, size);
+
+                for (Operation operation : createOperations(file.getPath()))
+                {
+                    if (names.isEmpty() || names.contains(operation.name))
+                    {
+                        measure(operation, generatorName, edges);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates a graph with about the specified number of edges.
+     *
+     * @param generatorName uniform, rmat or grid.
+     * @param size The number of edges.
+     *
+     * @return The edges of the graph.
+     */
+    private static Edge[] generate(String generatorName, int size)
+    {
+        if (generatorName.equals("uniform"))
+        {
+            return GraphGenerator.generateUniform(Math.max(size / AVERAGE_DEGREE, 2), size, true, SEED);
+        }
+        else if (generatorName.equals("rmat"))
+        {
+            int scale = Math.max(31 - Integer.numberOfLeadingZeros(size / AVERAGE_DEGREE), 1);
+
+            return GraphGenerator.generateRmat(scale, size, true, SEED);
+        }
+        else
+        {
+            // A square grid with n columns and rows has about 2n^2 edges.
+            int side = (int)Math.sqrt(size / 2) + 1;
+
+            return GraphGenerator.generateGrid(side, side, false);
+        }
+    }
+
+    /**
+     * Warms up and measures an operation, then prints its results.
+     */
+    private static void measure(Operation operation, String generatorName, Edge[] edges) throws GraphFormatException, IOException
+    {
+        double[] throughputs = new double[MEASURED_ITERATIONS];
+        long allocatedBytes = 0;
+        long operationCount = 0;
+
+        operation.setUp(edges);
+
+        for (int iteration = -WARMUP_ITERATIONS; iteration < MEASURED_ITERATIONS; ++iteration)
+        {
+            long iterationOperationCount = 0;
+            long elapsedNanos = 0;
+            long iterationAllocatedBytes = 0;
+
+            do
+            {
+                operation.setUpIteration();
+
+                long startAllocatedBytes = getAllocatedBytes();
+                long startNanos = System.nanoTime();
+
+                iterationOperationCount += operation.run();
+                elapsedNanos += System.nanoTime() - startNanos;
+                iterationAllocatedBytes += getAllocatedBytes() - startAllocatedBytes;
+            }
+            while (operation.isRepeatable && elapsedNanos < MINIMUM_ITERATION_NANOS);
+
+            if (iteration >= 0)
+            {
+                throughputs[iteration] = iterationOperationCount * 1e9 / elapsedNanos;
+                operationCount += iterationOperationCount;
+                allocatedBytes += iterationAllocatedBytes;
+            }
+        }
+
+        operation.tearDown();
+
+        double mean = 0;
+        double variance = 0;
+
+        for (double throughput : throughputs)
+        {
+            mean += throughput / MEASURED_ITERATIONS;
+        }
+
+        for (double throughput : throughputs)
+        {
+            variance += (throughput - mean) * (throughput - mean) / MEASURED_ITERATIONS;
+        }
+
+        String allocation = IS_ALLOCATION_COUNTED ? String.format("%.1f B/op", (double)allocatedBytes / operationCount) : "n/a";
+
+        System.out.printf("%-16s %-8s %10d %10.0f %s/s %7.1f%% %14s%n", operation.name, generatorName, edges.length,
+            mean, operation.unit, Math.sqrt(variance) * 100 / mean, allocation);
+    }
+
+    /**
+     * Determines whether the runtime counts the bytes allocated by every thread.
+     *
+     * @return True if getAllocatedBytes returns real counts.
+     */
+    private static boolean isAllocationCounted()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean)bean;
+
+            return allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled();
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the number of bytes allocated by the current thread so far.
+     *
+     * @return The number of bytes, or 0 if the runtime does not count them.
+     */
+    private static long getAllocatedBytes()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (IS_ALLOCATION_COUNTED)
+        {
+            return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return 0;
+    }
+
+    /**
+     * Picks random elements of a graph to run lookups on.
+     *
+     * @param graph A graph with at least one vertex.
+     *
+     * @return Up to SAMPLE_SIZE vertices, in random order.
+     */
+    private static Vertex[] sampleVertices(Graph graph)
+    {
+        Random random = new Random(SEED);
+        Vertex[] sample = new Vertex[Math.min(SAMPLE_SIZE, graph.countVertices())];
+
+        for (int index = 0; index < sample.length; ++index)
+        {
+            sample[index] = graph.getVertex(random.nextInt(graph.countVertices()));
+        }
+
+        return sample;
+    }
+
+    /**
+     * Creates the operations that are measured.
+     *
+     * @param path The path of a temporary file for the file operations.
+     *
+     * @return The operations.
+     */
+    private static Operation[] createOperations(final String path)
+    {
+        return new Operation[]
+        {
+            new Operation("add", "edge", true)
+            {
+                long run()
+                {
+                    Graph graph = new Graph();
+
+                    for (Edge edge : edges)
+                    {
+                        graph.add(edge);
+                    }
+
+                    sink += graph.countEdges();
+
+                    return edges.length;
+                }
+            },
+            new Operation("getVertexWithId", "call", true)
+            {
+                long run()
+                {
+                    for (Vertex vertex : sample)
+                    {
+                        sink += graph.getVertexWithId(vertex.getId()).getValue();
+                    }
+
+                    return sample.length;
+                }
+            },
+            new Operation("getPathsFrom", "call", true)
+            {
+                long run()
+                {
+                    for (Vertex vertex : sample)
+                    {
+                        sink += graph.getPathsFrom(vertex).length;
+                    }
+
+                    return sample.length;
+                }
+            },
+            new Operation("removeVertex", "call", false)
+            {
+                void setUpIteration()
+                {
+                    // Removes a hundredth of the vertices from a fresh copy of the graph.
+                    graph = new Graph(edges);
+                    sample = Arrays.copyOf(sampleVertices(graph), Math.max(graph.countVertices() / 100, 1));
+                }
+
+                long run()
+                {
+                    for (Vertex vertex : sample)
+                    {
+                        graph.removeVertex(vertex);
+                    }
+
+                    sink += graph.countEdges();
+
+                    return sample.length;
+                }
+            },
+            new Operation("readFromFile", "edge", true)
+            {
+                void setUp(Edge[] edges) throws GraphFormatException, IOException
+                {
+                    super.setUp(edges);
+                    graph.writeToFile(path);
+                }
+
+                long run() throws GraphFormatException, IOException
+                {
+                    Graph graph = new Graph(path);
+
+                    sink += graph.countEdges();
+
+                    return graph.countEdges();
+                }
+            },
+            new Operation("readInParallel", "edge", true)
+            {
+                void setUp(Edge[] edges) throws GraphFormatException, IOException
+                {
+                    super.setUp(edges);
+                    graph.writeToFile(path);
+                }
+
+                long run() throws GraphFormatException, IOException
+                {
+                    Graph graph = new ParallelGraphLoader().read(path);
+
+                    sink += graph.countEdges();
+
+                    return graph.countEdges();
+                }
+            },
+            new Operation("writeToFile", "edge", true)
+            {
+                long run() throws GraphFormatException, IOException
+                {
+                    graph.writeToFile(path);
+
+                    return graph.countEdges();
+                }
+            },
+            new Operation("toString", "edge", true)
+            {
+                long run()
+                {
+                    sink += graph.toString().length();
+
+                    return graph.countEdges();
+                }
+            },
+            new Operation("getType", "call", true)
+            {
+                long run()
+                {
+                    for (int call = 0; call < SAMPLE_SIZE; ++call)
+                    {
+                        sink += graph.getType().ordinal();
+                    }
+
+                    return SAMPLE_SIZE;
+                }
+            },
+            new Operation("offHeapAdd", "edge", true)
+            {
+                long run()
+                {
+                    OffHeapGraph graph = new OffHeapGraph();
+
+                    try
+                    {
+                        for (Edge edge : edges)
+                        {
+                            graph.add(edge);
+                        }
+
+                        sink += graph.countEdges();
+                    }
+                    finally
+                    {
+                        graph.close();
+                    }
+
+                    return edges.length;
+                }
+            },
+            new OffHeapOperation("offHeapPaths", "call")
+            {
+                long run()
+                {
+                    for (Vertex vertex : sample)
+                    {
+                        sink += offHeapGraph.getPathsFrom(vertex).length;
+                    }
+
+                    return sample.length;
+                }
+            },
+            new OffHeapOperation("offHeapFreeze", "edge")
+            {
+                long run()
+                {
+                    sink += offHeapGraph.freeze().countArcs();
+
+                    return offHeapGraph.countEdges();
+                }
+            },
+            new TraversalOperation("bfs", null, false),
+            new TraversalOperation("bfsDegree", VertexOrdering.Method.DEGREE, false),
+            new TraversalOperation("bfsRcm", VertexOrdering.Method.REVERSE_CUTHILL_MCKEE, false),
+            new TraversalOperation("bfsCommunity", VertexOrdering.Method.COMMUNITY, false),
+            new TraversalOperation("pageRank", null, true),
+            new TraversalOperation("pageRankDegree", VertexOrdering.Method.DEGREE, true),
+            new TraversalOperation("pageRankRcm", VertexOrdering.Method.REVERSE_CUTHILL_MCKEE, true),
+            new TraversalOperation("pageRankCommunity", VertexOrdering.Method.COMMUNITY, true)
+        };
+    }
+
+    /**
+     * Searches or ranks a snapshot of the graph, in the order the vertices were added or after reordering them,
+     * to measure how the order of the vertices affects traversals.
+     */
+    private static class TraversalOperation extends Operation
+    {
+        // The number of PageRank iterations per run.
+        static final int ITERATIONS = 10;
+
+        // The ordering of the vertices, or null to keep the order of the graph.
+        final VertexOrdering.Method method;
+
+        // Whether the operation ranks the vertices rather than searching from one of them.
+        final boolean isRanking;
+
+        // The snapshot, the search or ranking over it and the position of the source of the search.
+        FrozenGraph snapshot;
+        BreadthFirstSearch search;
+        PageRank ranking;
+        int source;
+
+        TraversalOperation(String name, VertexOrdering.Method method, boolean isRanking)
+        {
+            super(name, "arc", true);
+            this.method = method;
+            this.isRanking = isRanking;
+        }
+
+        void setUp(Edge[] edges) throws GraphFormatException, IOException
+        {
+            super.setUp(edges);
+            snapshot = method == null ? graph.freeze() : new VertexOrdering(graph, method).getGraph();
+
+            // Searches from the same vertex whatever the order.
+            source = snapshot.getPosition(sample[0].getId());
+            search = new BreadthFirstSearch(snapshot);
+            ranking = new PageRank(snapshot);
+            ranking.setTolerance(0);
+            ranking.setMaximumIterations(ITERATIONS);
+        }
+
+        long run()
+        {
+            if (isRanking)
+            {
+                ranking.run();
+                sink += (long)ranking.getRank(source);
+
+                return (long)ITERATIONS * snapshot.countArcs();
+            }
+
+            search.run(source);
+            sink += search.getDistance(source);
+
+            return snapshot.countArcs();
+        }
+
+        void tearDown()
+        {
+            super.tearDown();
+            snapshot = null;
+            search = null;
+            ranking = null;
+        }
+    }
+
+    /**
+     * Measures an operation on a copy of the graph that is stored outside the heap.
+     */
+    private abstract static class OffHeapOperation extends Operation
+    {
+        // The copy of the graph.
+        OffHeapGraph offHeapGraph;
+
+        OffHeapOperation(String name, String unit)
+        {
+            super(name, unit, true);
+        }
+
+        void setUp(Edge[] edges) throws GraphFormatException, IOException
+        {
+            super.setUp(edges);
+            offHeapGraph = new OffHeapGraph(graph.countVertices(), graph.countEdges());
+
+            for (Edge edge : edges)
+            {
+                offHeapGraph.add(edge);
+            }
+        }
+
+        void tearDown()
+        {
+            super.tearDown();
+            offHeapGraph.close();
+            offHeapGraph = null;
+        }
+    }
+
+    /**
+     * Represents an operation that is measured on a graph.
+     */
+    private abstract static class Operation
+    {
+        // The name of the operation.
+        final String name;
+
+        // What the throughput counts.
+        final String unit;
+
+        // Whether the operation can run again without setting up its iteration again.
+        final boolean isRepeatable;
+
+        // The edges of the generated graph, the graph itself and a sample of its vertices.
+        Edge[] edges;
+        Graph graph;
+        Vertex[] sample;
+
+        Operation(String name, String unit, boolean isRepeatable)
+        {
+            this.name = name;
+            this.unit = unit;
+            this.isRepeatable = isRepeatable;
+        }
+
+        /**
+         * Prepares the operation before it is measured on a graph. Builds the graph by default.
+         */
+        void setUp(Edge[] edges) throws GraphFormatException, IOException
+        {
+            this.edges = edges;
+            graph = new Graph(edges);
+            sample = sampleVertices(graph);
+        }
+
+        /**
+         * Prepares an iteration. Its time and allocations are not measured.
+         */
+        void setUpIteration() throws GraphFormatException, IOException
+        {
+        }
+
+        /**
+         * Runs the operation.
+         *
+         * @return The number of units of work that were done.
+         */
+        abstract long run() throws GraphFormatException, IOException;
+
+        /**
+         * Releases the graph.
+         */
+        void tearDown()
+        {
+            edges = null;
+            graph = null;
+            sample = null;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.Random;
+
+/**
+ * Generates synthetic graphs as arrays of edges. Every generator is seeded, so the same arguments always
+ * give the same edges. Generated edges may repeat; graphs do not store duplicates.
+ *
+ * @author Andrei Muntean
+ */
+public class GraphGenerator
+{
+    // The probabilities of the top left, top right and bottom left quadrants of an R-MAT step,
+    // as used by the Graph500 benchmark. The bottom right quadrant gets the rest.
+    private static final double RMAT_A = 0.57;
+    private static final double RMAT_B = 0.19;
+    private static final double RMAT_C = 0.19;
+
+    /**
+     * Generates edges between vertices that are picked uniformly at random.
+     *
+     * @param vertexCount The number of vertices to pick from. Their ids are 0 to vertexCount - 1.
+     * @param edgeCount The number of edges.
+     * @param isDirected Whether the edges are directed.
+     * @param seed The seed of the random numbers.
+     *
+     * @return The edges.
+     */
+    public static Edge[] generateUniform(int vertexCount, int edgeCount, boolean isDirected, long seed)
+    {
+        Random random = new Random(seed);
+        Vertex[] vertices = createVertices(vertexCount);
+        Edge[] edges = new Edge[edgeCount];
+
+        for (int index = 0; index < edgeCount; ++index)
+        {
+            edges[index] = createEdge(vertices[random.nextInt(vertexCount)], vertices[random.nextInt(vertexCount)], isDirected);
+        }
+
+        return edges;
+    }
+
+    /**
+     * Generates edges with the recursive matrix (R-MAT) model, whose degrees follow a power law.
+     * Every edge picks one quadrant of the adjacency matrix per bit of the vertex ids.
+     *
+     * @param scale The number of bits of the vertex ids. There are 2^scale vertices.
+     * @param edgeCount The number of edges.
+     * @param isDirected Whether the edges are directed.
+     * @param seed The seed of the random numbers.
+     *
+     * @return The edges.
+     */
+    public static Edge[] generateRmat(int scale, int edgeCount, boolean isDirected, long seed)
+    {
+        Random random = new Random(seed);
+        Vertex[] vertices = createVertices(1 << scale);
+        Edge[] edges = new Edge[edgeCount];
+
+        for (int index = 0; index < edgeCount; ++index)
+        {
+            int origin = 0;
+            int destination = 0;
+
+            for (int bit = 0; bit < scale; ++bit)
+            {
+                double quadrant = random.nextDouble();
+
+                if (quadrant >= RMAT_A + RMAT_B + RMAT_C)
+                {
+                    origin |= 1 << bit;
+                    destination |= 1 << bit;
+                }
+                else if (quadrant >= RMAT_A + RMAT_B)
+                {
+                    origin |= 1 << bit;
+                }
+                else if (quadrant >= RMAT_A)
+                {
+                    destination |= 1 << bit;
+                }
+            }
+
+            edges[index] = createEdge(vertices[origin], vertices[destination], isDirected);
+        }
+
+        return edges;
+    }
+
+    /**
+     * Generates a grid in which every vertex is joined to the vertex to its right and to the vertex below it.
+     * The id of the vertex in a row and a column is row * width + column.
+     *
+     * @param width The number of columns.
+     * @param height The number of rows.
+     * @param isDirected Whether the edges are directed.
+     *
+     * @return The edges.
+     */
+    public static Edge[] generateGrid(int width, int height, boolean isDirected)
+    {
+        Vertex[] vertices = createVertices(width * height);
+        Edge[] edges = new Edge[(width - 1) * height + width * (height - 1)];
+        int edgeCount = 0;
+
+        for (int row = 0; row < height; ++row)
+        {
+            for (int column = 0; column < width; ++column)
+            {
+                Vertex vertex = vertices[row * width + column];
+
+                if (column + 1 < width)
+                {
+                    edges[edgeCount++] = createEdge(vertex, vertices[row * width + column + 1], isDirected);
+                }
+
+                if (row + 1 < height)
+                {
+                    edges[edgeCount++] = createEdge(vertex, vertices[(row + 1) * width + column], isDirected);
+                }
+            }
+        }
+
+        return edges;
+    }
+
+    /**
+     * Creates the vertices with the ids 0 to count - 1, so that generated edges share them.
+     */
+    private static Vertex[] createVertices(int count)
+    {
+        Vertex[] vertices = new Vertex[count];
+
+        for (int id = 0; id < count; ++id)
+        {
+            vertices[id] = new Vertex(id);
+        }
+
+        return vertices;
+    }
+
+    private static Edge createEdge(Vertex first, Vertex second, boolean isDirected)
+    {
+        return isDirected ? new DirectedEdge(first, second) : new UndirectedEdge(first, second);
+    }
+}
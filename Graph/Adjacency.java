@@ -0,0 +1,176 @@
+import java.util.ArrayList;
+
+/**
+ * Holds a stored vertex and the edges that are attached to it.
+ *
+ * @author Andrei Muntean
+ */
+class Adjacency
+{
+    // The stored vertex.
+    private Vertex vertex;
+
+    // The edges that originate from the vertex.
+    private ArrayList<Edge> paths;
+
+    // The edges that contain the vertex.
+    private ArrayList<Edge> incidentEdges;
+
+    // The slot of the vertex in the list of vertices of the graph.
+    private int slot;
+
+    // The number of directed edges that end at the vertex.
+    private int inDegree;
+
+    // The number of directed edges that originate from the vertex.
+    private int outDegree;
+
+    // The number of undirected edges that contain the vertex.
+    private int undirectedDegree;
+
+    // Changes whenever the paths of the vertex change or the vertex is removed.
+    private int version;
+
+    /**
+     * Constructs an empty adjacency.
+     *
+     * @param vertex The stored vertex.
+     * @param slot The slot of the vertex in the list of vertices of the graph.
+     */
+    public Adjacency(Vertex vertex, int slot)
+    {
+        this.vertex = vertex;
+        paths = new ArrayList<Edge>();
+        incidentEdges = new ArrayList<Edge>();
+        this.slot = slot;
+    }
+
+    /**
+     * Gets the stored vertex.
+     *
+     * @return The stored vertex.
+     */
+    public Vertex getVertex()
+    {
+        return vertex;
+    }
+
+    /**
+     * Gets the slot of the vertex in the list of vertices of the graph.
+     *
+     * @return The slot of the vertex.
+     */
+    public int getSlot()
+    {
+        return slot;
+    }
+
+    /**
+     * Sets the slot of the vertex in the list of vertices of the graph.
+     *
+     * @param slot The new slot of the vertex.
+     */
+    public void setSlot(int slot)
+    {
+        this.slot = slot;
+    }
+
+    /**
+     * Gets the number of directed edges that end at the vertex.
+     *
+     * @return The in-degree of the vertex.
+     */
+    public int getInDegree()
+    {
+        return inDegree;
+    }
+
+    /**
+     * Gets the number of directed edges that originate from the vertex.
+     *
+     * @return The out-degree of the vertex.
+     */
+    public int getOutDegree()
+    {
+        return outDegree;
+    }
+
+    /**
+     * Gets the number of undirected edges that contain the vertex.
+     *
+     * @return The undirected degree of the vertex.
+     */
+    public int getUndirectedDegree()
+    {
+        return undirectedDegree;
+    }
+
+    /**
+     * Adds to the in-degree of the vertex.
+     *
+     * @param delta 1 when an edge is attached, -1 when it is detached.
+     */
+    public void addInDegree(int delta)
+    {
+        inDegree += delta;
+    }
+
+    /**
+     * Adds to the out-degree of the vertex.
+     *
+     * @param delta 1 when an edge is attached, -1 when it is detached.
+     */
+    public void addOutDegree(int delta)
+    {
+        outDegree += delta;
+    }
+
+    /**
+     * Adds to the undirected degree of the vertex.
+     *
+     * @param delta 1 when an edge is attached, -1 when it is detached.
+     */
+    public void addUndirectedDegree(int delta)
+    {
+        undirectedDegree += delta;
+    }
+
+    /**
+     * Gets the version of the paths of the vertex, which changes whenever they change or the vertex is removed.
+     *
+     * @return The version.
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Marks the paths of the vertex as changed.
+     */
+    public void incrementVersion()
+    {
+        ++version;
+    }
+
+    /**
+     * Gets the edges that originate from the vertex. These are the directed edges
+     * whose origin is the vertex and the undirected edges that contain it.
+     *
+     * @return The edges that originate from the vertex.
+     */
+    public ArrayList<Edge> getPaths()
+    {
+        return paths;
+    }
+
+    /**
+     * Gets the edges that contain the vertex, regardless of their direction.
+     *
+     * @return The edges that contain the vertex.
+     */
+    public ArrayList<Edge> getIncidentEdges()
+    {
+        return incidentEdges;
+    }
+}
@@ -0,0 +1,410 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Computes hop distances from a source vertex with a parallel, direction-optimizing breadth-first search.
+ * Each level is expanded on a fork/join pool. While the frontier is small, the search goes top-down:
+ * frontier vertices claim their unvisited neighbours. Once the frontier's arcs outnumber a fraction of
+ * the unexplored arcs, it goes bottom-up: unvisited vertices look for a parent in the frontier, and stop
+ * at the first one they find. Arcs follow Graph.getPathsFrom, so directed edges are followed from their
+ * origin and undirected edges from either vertex.
+ *
+ * @author Andrei Muntean
+ */
+public class BreadthFirstSearch
+{
+    // Switches to bottom-up once the frontier has more than 1 / ALPHA of the unexplored arcs.
+    private static final int ALPHA = 14;
+
+    // Switches back to top-down once the frontier has fewer than 1 / BETA of the vertices.
+    private static final int BETA = 24;
+
+    // The number of vertices a task handles without splitting further.
+    private static final int GRAIN = 1024;
+
+    // The snapshot being searched and its transpose.
+    private FrozenGraph graph;
+    private FrozenGraph transpose;
+
+    // The pool that expands the levels.
+    private ForkJoinPool pool;
+
+    // The hop distance and the parent of every vertex, indexed by position.
+    private int[] distances;
+    private int[] parents;
+
+    // One bit per vertex, set once the vertex has been reached.
+    private AtomicLongArray visited;
+
+    // The frontier as a queue of positions, used top-down.
+    private int[] frontier;
+    private int frontierSize;
+    private int[] nextFrontier;
+    private AtomicInteger nextFrontierSize;
+
+    // The frontier as one bit per vertex, used bottom-up.
+    private long[] frontierBits;
+    private long[] nextFrontierBits;
+
+    // The number of arcs that originate from the next frontier.
+    private AtomicLong nextFrontierArcs;
+
+    // The level being expanded.
+    private int level;
+
+    /**
+     * Constructs a search over the specified snapshot that runs on the common pool.
+     *
+     * @param graph A snapshot.
+     */
+    public BreadthFirstSearch(FrozenGraph graph)
+    {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a search over the specified snapshot.
+     *
+     * @param graph A snapshot.
+     * @param pool The pool that expands the levels.
+     */
+    public BreadthFirstSearch(FrozenGraph graph, ForkJoinPool pool)
+    {
+        this.graph = graph;
+        this.pool = pool;
+        transpose = graph.transpose();
+
+        int vertexCount = graph.countVertices();
+        int wordCount = (vertexCount + 63) >>> 6;
+
+        distances = new int[vertexCount];
+        parents = new int[vertexCount];
+        frontier = new int[vertexCount];
+        nextFrontier = new int[vertexCount];
+        frontierBits = new long[wordCount];
+        nextFrontierBits = new long[wordCount];
+        nextFrontierSize = new AtomicInteger();
+        nextFrontierArcs = new AtomicLong();
+    }
+
+    /**
+     * Searches from the vertex at the specified position. Replaces the results of the previous search.
+     *
+     * @param source The position of the source vertex.
+     */
+    public void run(int source)
+    {
+        TraversalEvent event = new TraversalEvent();
+        int vertexCount = graph.countVertices();
+
+        event.begin();
+
+        Arrays.fill(distances, -1);
+        Arrays.fill(parents, -1);
+        visited = new AtomicLongArray(frontierBits.length);
+
+        // Starts from the source.
+        distances[source] = 0;
+        visited.set(source >>> 6, 1L << source);
+        frontier[0] = source;
+        frontierSize = 1;
+        level = 0;
+
+        long frontierArcs = graph.getDegree(source);
+        long unexploredArcs = graph.countArcs() - frontierArcs;
+        boolean isBottomUp = false;
+
+        while (frontierSize > 0)
+        {
+            // Chooses the direction of this level.
+            if (!isBottomUp && frontierArcs > unexploredArcs / ALPHA)
+            {
+                queueToBits();
+                isBottomUp = true;
+            }
+            else if (isBottomUp && frontierSize < vertexCount / BETA)
+            {
+                bitsToQueue();
+                isBottomUp = false;
+            }
+
+            nextFrontierSize.set(0);
+            nextFrontierArcs.set(0);
+
+            // Expands the level.
+            if (isBottomUp)
+            {
+                Arrays.fill(nextFrontierBits, 0);
+                pool.invoke(new BottomUpStep(0, frontierBits.length));
+
+                long[] bits = frontierBits;
+                frontierBits = nextFrontierBits;
+                nextFrontierBits = bits;
+            }
+            else
+            {
+                pool.invoke(new TopDownStep(0, frontierSize));
+
+                int[] queue = frontier;
+                frontier = nextFrontier;
+                nextFrontier = queue;
+            }
+
+            frontierSize = nextFrontierSize.get();
+            frontierArcs = nextFrontierArcs.get();
+            unexploredArcs -= frontierArcs;
+            ++level;
+        }
+
+        event.finish("BreadthFirstSearch", graph, source, level);
+    }
+
+    /**
+     * Gets the hop distance of the vertex at the specified position from the source.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The hop distance, or -1 if the vertex cannot be reached.
+     */
+    public int getDistance(int position)
+    {
+        return distances[position];
+    }
+
+    /**
+     * Gets the vertex from which the vertex at the specified position was reached.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The position of the parent, or -1 for the source and for vertices that cannot be reached.
+     */
+    public int getParent(int position)
+    {
+        return parents[position];
+    }
+
+    /**
+     * Gets the hop distances of all vertices, indexed by position. The array is reused by the next search.
+     *
+     * @return The hop distances. Vertices that cannot be reached have a distance of -1.
+     */
+    public int[] getDistances()
+    {
+        return distances;
+    }
+
+    /**
+     * Gets the parents of all vertices, indexed by position. The array is reused by the next search.
+     *
+     * @return The positions of the parents. The source and vertices that cannot be reached have a parent of -1.
+     */
+    public int[] getParents()
+    {
+        return parents;
+    }
+
+    /**
+     * Marks the specified vertex as visited, unless another thread got to it first.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return True if this call marked the vertex.
+     */
+    private boolean markVisited(int position)
+    {
+        int word = position >>> 6;
+        long bit = 1L << position;
+        long bits = visited.get(word);
+
+        while ((bits & bit) == 0)
+        {
+            if (visited.compareAndSet(word, bits, bits | bit))
+            {
+                return true;
+            }
+
+            bits = visited.get(word);
+        }
+
+        return false;
+    }
+
+    /**
+     * Converts the frontier from a queue to bits.
+     */
+    private void queueToBits()
+    {
+        Arrays.fill(frontierBits, 0);
+
+        for (int index = 0; index < frontierSize; ++index)
+        {
+            frontierBits[frontier[index] >>> 6] |= 1L << frontier[index];
+        }
+    }
+
+    /**
+     * Converts the frontier from bits to a queue.
+     */
+    private void bitsToQueue()
+    {
+        frontierSize = 0;
+
+        for (int word = 0; word < frontierBits.length; ++word)
+        {
+            long bits = frontierBits[word];
+
+            while (bits != 0)
+            {
+                frontier[frontierSize++] = word << 6 | Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * Expands a range of the frontier queue: every frontier vertex claims its unvisited neighbours.
+     */
+    private class TopDownStep extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        // The range of the frontier queue.
+        private int start;
+        private int end;
+
+        TopDownStep(int start, int end)
+        {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start > GRAIN)
+            {
+                int middle = (start + end) >>> 1;
+
+                invokeAll(new TopDownStep(start, middle), new TopDownStep(middle, end));
+
+                return;
+            }
+
+            int[] found = new int[64];
+            int foundCount = 0;
+            long foundArcs = 0;
+
+            for (int index = start; index < end; ++index)
+            {
+                int vertex = frontier[index];
+
+                for (int arc = graph.getFirstArc(vertex); arc < graph.getEndArc(vertex); ++arc)
+                {
+                    int neighbour = graph.getTarget(arc);
+
+                    if (markVisited(neighbour))
+                    {
+                        parents[neighbour] = vertex;
+                        distances[neighbour] = level + 1;
+                        foundArcs += graph.getDegree(neighbour);
+
+                        if (foundCount == found.length)
+                        {
+                            found = Arrays.copyOf(found, foundCount * 2);
+                        }
+
+                        found[foundCount++] = neighbour;
+                    }
+                }
+            }
+
+            // Appends the vertices found by this task to the next frontier.
+            int offset = nextFrontierSize.getAndAdd(foundCount);
+
+            System.arraycopy(found, 0, nextFrontier, offset, foundCount);
+            nextFrontierArcs.addAndGet(foundArcs);
+        }
+    }
+
+    /**
+     * Expands a range of words of the visited bits: every unvisited vertex looks for a parent in the frontier.
+     * Tasks own whole words, so the bits they write are never shared with another task.
+     */
+    private class BottomUpStep extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        // The range of words.
+        private int start;
+        private int end;
+
+        BottomUpStep(int start, int end)
+        {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((end - start) * 64L > GRAIN)
+            {
+                int middle = (start + end) >>> 1;
+
+                invokeAll(new BottomUpStep(start, middle), new BottomUpStep(middle, end));
+
+                return;
+            }
+
+            int vertexCount = graph.countVertices();
+            int foundCount = 0;
+            long foundArcs = 0;
+
+            for (int word = start; word < end; ++word)
+            {
+                long visitedBits = visited.get(word);
+                long unvisited = ~visitedBits;
+
+                // Ignores the bits past the last vertex.
+                if (word == frontierBits.length - 1 && (vertexCount & 63) != 0)
+                {
+                    unvisited &= (1L << vertexCount) - 1;
+                }
+
+                while (unvisited != 0)
+                {
+                    int vertex = word << 6 | Long.numberOfTrailingZeros(unvisited);
+
+                    unvisited &= unvisited - 1;
+
+                    // The arcs of the transpose lead to the vertices that have an arc to this one.
+                    for (int arc = transpose.getFirstArc(vertex); arc < transpose.getEndArc(vertex); ++arc)
+                    {
+                        int candidate = transpose.getTarget(arc);
+
+                        if ((frontierBits[candidate >>> 6] & 1L << candidate) != 0)
+                        {
+                            parents[vertex] = candidate;
+                            distances[vertex] = level + 1;
+                            visitedBits |= 1L << vertex;
+                            nextFrontierBits[word] |= 1L << vertex;
+                            foundArcs += graph.getDegree(vertex);
+                            ++foundCount;
+
+                            break;
+                        }
+                    }
+                }
+
+                visited.set(word, visitedBits);
+            }
+
+            nextFrontierSize.addAndGet(foundCount);
+            nextFrontierArcs.addAndGet(foundArcs);
+        }
+    }
+}
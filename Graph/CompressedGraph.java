@@ -0,0 +1,820 @@
+import java.util.Arrays;
+
+/**
+ * Represents a read-only graph whose arcs are compressed in memory, in the manner of WebGraph.
+ * Vertices are identified by the positions they have in the snapshot the graph was built from, and every vertex
+ * has the sorted list of the positions its arcs point to. Neighbours of neighbouring vertices tend to have close
+ * positions, which the encoding exploits:
+ *
+ * - A list may refer to the list of one of the REFERENCE_WINDOW vertices before it and copy part of it.
+ *   The copied elements are described by alternating runs of copied and skipped elements.
+ * - The elements that are not copied are stored as the differences between consecutive elements,
+ *   and the first one as its difference from the vertex, each as a variable-length integer of 7 bits per byte.
+ * - Long lists of such elements carry a skip pointer every SKIP_INTERVAL elements, so that hasArc
+ *   does not decode the whole list.
+ *
+ * The record of a vertex holds its degree, the distance to its reference (0 for none), the number and the lengths of
+ * the copied and skipped runs, the length of the skip pointers in bytes, the skip pointers and then the differences.
+ * Chains of references are at most MAXIMUM_REFERENCE_DEPTH long, which bounds the cost of decoding a list.
+ *
+ * Only the arcs are kept: their direction flags and weights are not. Arcs are decoded without copying the graph:
+ *
+ * CompressedGraph.NeighbourIterator neighbours = compressed.getNeighbourIterator(position);
+ *
+ * while (neighbours.hasNext())
+ * {
+ *     int neighbour = neighbours.next();
+ * }
+ *
+ * @author Andrei Muntean
+ */
+public class CompressedGraph
+{
+    // The number of preceding vertices whose lists a list may refer to.
+    private static final int REFERENCE_WINDOW = 7;
+
+    // The longest chain of lists that refer to each other.
+    private static final int MAXIMUM_REFERENCE_DEPTH = 3;
+
+    // The number of differences between two skip pointers.
+    private static final int SKIP_INTERVAL = 64;
+
+    // The number of bytes in a page of the encoded lists is 2^PAGE_BITS.
+    private static final int PAGE_BITS = 20;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+    // The ids of the vertices, indexed by position.
+    private int[] vertexIds;
+
+    // The values of the vertices, indexed by position.
+    private int[] vertexValues;
+
+    // The ids of the vertices in ascending order, and the positions of the vertices in that order.
+    private int[] sortedIds;
+    private int[] sortedPositions;
+
+    // The record of the vertex at position p starts at byte offsets[p] of the pages.
+    private long[] offsets;
+
+    // The encoded lists.
+    private byte[][] pages;
+
+    // The number of bytes in the pages.
+    private long size;
+
+    // The number of arcs.
+    private long arcCount;
+
+    /**
+     * Compresses a snapshot of the specified graph.
+     *
+     * @param graph A graph.
+     */
+    public CompressedGraph(Graph graph)
+    {
+        this(graph.freeze());
+    }
+
+    /**
+     * Compresses the specified snapshot.
+     *
+     * @param graph A snapshot.
+     */
+    public CompressedGraph(FrozenGraph graph)
+    {
+        int vertexCount = graph.countVertices();
+        long[] idsAndPositions = new long[vertexCount];
+
+        vertexIds = new int[vertexCount];
+        vertexValues = new int[vertexCount];
+        sortedIds = new int[vertexCount];
+        sortedPositions = new int[vertexCount];
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            vertexIds[position] = graph.getVertexId(position);
+            vertexValues[position] = graph.getVertexValue(position);
+            idsAndPositions[position] = (long)vertexIds[position] << 32 | position;
+        }
+
+        Arrays.sort(idsAndPositions);
+
+        for (int index = 0; index < vertexCount; ++index)
+        {
+            sortedIds[index] = (int)(idsAndPositions[index] >> 32);
+            sortedPositions[index] = (int)idsAndPositions[index];
+        }
+
+        offsets = new long[vertexCount + 1];
+        pages = new byte[1][];
+        pages[0] = new byte[1 << PAGE_BITS];
+        arcCount = graph.countArcs();
+
+        // The lists of the latest vertices and their reference depths, indexed by position modulo the window.
+        int[][] window = new int[REFERENCE_WINDOW + 1][];
+        int[] depths = new int[REFERENCE_WINDOW + 1];
+        ListEncoder encoder = new ListEncoder();
+        ListEncoder bestEncoder = new ListEncoder();
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            int[] list = new int[graph.getDegree(position)];
+
+            for (int arc = graph.getFirstArc(position); arc < graph.getEndArc(position); ++arc)
+            {
+                list[arc - graph.getFirstArc(position)] = graph.getTarget(arc);
+            }
+
+            Arrays.sort(list);
+
+            // Keeps the reference that gives the shortest record.
+            bestEncoder.encode(position, list, null, 0);
+
+            int bestDistance = 0;
+
+            for (int distance = 1; distance <= REFERENCE_WINDOW && distance <= position && list.length > 0; ++distance)
+            {
+                int slot = (position - distance) % window.length;
+
+                if (depths[slot] < MAXIMUM_REFERENCE_DEPTH && window[slot].length > 0)
+                {
+                    encoder.encode(position, list, window[slot], distance);
+
+                    if (encoder.length < bestEncoder.length)
+                    {
+                        ListEncoder swap = bestEncoder;
+
+                        bestEncoder = encoder;
+                        encoder = swap;
+                        bestDistance = distance;
+                    }
+                }
+            }
+
+            offsets[position] = size;
+            append(bestEncoder.bytes, bestEncoder.length);
+            window[position % window.length] = list;
+            depths[position % window.length] = bestDistance == 0 ? 0 : depths[(position - bestDistance) % window.length] + 1;
+        }
+
+        offsets[vertexCount] = size;
+
+        // Releases the unused part of the last page.
+        int pageCount = (int)((size + PAGE_MASK) >>> PAGE_BITS);
+
+        pages = Arrays.copyOf(pages, Math.max(pageCount, 1));
+        pages[pages.length - 1] = Arrays.copyOf(pages[pages.length - 1], (int)(size - ((long)(pages.length - 1) << PAGE_BITS)));
+    }
+
+    /**
+     * Gets the number of vertices.
+     *
+     * @return The number of vertices.
+     */
+    public int countVertices()
+    {
+        return vertexIds.length;
+    }
+
+    /**
+     * Gets the number of arcs.
+     *
+     * @return The number of arcs.
+     */
+    public long countArcs()
+    {
+        return arcCount;
+    }
+
+    /**
+     * Gets the id of the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The id of the vertex.
+     */
+    public int getVertexId(int position)
+    {
+        return vertexIds[position];
+    }
+
+    /**
+     * Gets the value of the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The value of the vertex.
+     */
+    public int getVertexValue(int position)
+    {
+        return vertexValues[position];
+    }
+
+    /**
+     * Gets the position of the vertex with the specified id.
+     *
+     * @param id The id of a vertex.
+     *
+     * @return The position of the vertex, or -1 if there is no vertex with the specified id.
+     */
+    public int getPosition(int id)
+    {
+        int index = Arrays.binarySearch(sortedIds, id);
+
+        return index < 0 ? -1 : sortedPositions[index];
+    }
+
+    /**
+     * Gets the number of arcs that originate from the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The number of arcs that originate from the vertex.
+     */
+    public int getDegree(int position)
+    {
+        return new Cursor(offsets[position]).readInteger();
+    }
+
+    /**
+     * Gets an iterator over the positions the arcs of the vertex at the specified position point to, in ascending order.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The iterator.
+     */
+    public NeighbourIterator getNeighbourIterator(int position)
+    {
+        return new NeighbourIterator(position);
+    }
+
+    /**
+     * Decodes the positions the arcs of the vertex at the specified position point to, in ascending order.
+     *
+     * @param position The position of a vertex.
+     * @param neighbours Receives the positions. Must hold at least getDegree(position) elements.
+     *
+     * @return The number of positions that were decoded.
+     */
+    public int getNeighbours(int position, int[] neighbours)
+    {
+        NeighbourIterator iterator = new NeighbourIterator(position);
+        int count = 0;
+
+        while (iterator.hasNext())
+        {
+            neighbours[count++] = iterator.next();
+        }
+
+        return count;
+    }
+
+    /**
+     * Determines whether there is an arc between the vertices at the specified positions.
+     * Follows the skip pointers of the list instead of decoding all of it.
+     *
+     * @param position The position of the vertex the arc originates from.
+     * @param target The position of the vertex the arc points to.
+     *
+     * @return True if the arc exists.
+     */
+    public boolean hasArc(int position, int target)
+    {
+        Cursor cursor = new Cursor(offsets[position]);
+        int degree = cursor.readInteger();
+
+        if (degree == 0)
+        {
+            return false;
+        }
+
+        int referenceDistance = cursor.readInteger();
+        int copiedCount = cursor.skipBlocks();
+        int residualCount = degree - copiedCount;
+        int skipLength = residualCount > 0 ? cursor.readInteger() : 0;
+        long residualStart = cursor.position + skipLength;
+
+        if (residualCount > 0)
+        {
+            // Finds the last skip pointer that does not pass the target.
+            int value = position + decodeSigned(new Cursor(residualStart).readInteger());
+            long resumePosition = -1;
+            int skippedCount = 0;
+
+            while (cursor.position < residualStart)
+            {
+                int nextValue = value + cursor.readInteger();
+                long nextPosition = residualStart + cursor.readInteger();
+
+                if (nextValue > target)
+                {
+                    break;
+                }
+
+                value = nextValue;
+                resumePosition = nextPosition;
+                skippedCount += SKIP_INTERVAL;
+            }
+
+            Cursor residuals = new Cursor(resumePosition < 0 ? residualStart : resumePosition);
+
+            if (resumePosition < 0)
+            {
+                residuals.readInteger();
+            }
+
+            for (int index = skippedCount + 1; value < target && index < residualCount; ++index)
+            {
+                value += residuals.readInteger();
+            }
+
+            if (value == target)
+            {
+                return true;
+            }
+        }
+
+        if (referenceDistance == 0)
+        {
+            return false;
+        }
+
+        // The copied elements come from the reference, so they are decoded in order.
+        NeighbourIterator neighbours = new NeighbourIterator(position);
+
+        while (neighbours.hasNext())
+        {
+            int neighbour = neighbours.next();
+
+            if (neighbour >= target)
+            {
+                return neighbour == target;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the number of bytes the graph holds, counting its arrays.
+     *
+     * @return The number of bytes.
+     */
+    public long getMemoryUsage()
+    {
+        long usage = 8L * offsets.length + 16L * vertexIds.length;
+
+        for (byte[] page : pages)
+        {
+            usage += page.length;
+        }
+
+        return usage;
+    }
+
+    /**
+     * Gets the number of bytes of the encoded lists.
+     *
+     * @return The number of bytes.
+     */
+    public long getEncodedSize()
+    {
+        return size;
+    }
+
+    /**
+     * Appends bytes to the pages.
+     */
+    private void append(byte[] bytes, int length)
+    {
+        for (int index = 0; index < length; ++index)
+        {
+            int page = (int)(size >>> PAGE_BITS);
+
+            if (page == pages.length)
+            {
+                pages = Arrays.copyOf(pages, pages.length * 2);
+            }
+
+            if (pages[page] == null)
+            {
+                pages[page] = new byte[1 << PAGE_BITS];
+            }
+
+            pages[page][(int)size & PAGE_MASK] = bytes[index];
+            ++size;
+        }
+    }
+
+    /**
+     * Maps a signed integer to an unsigned one, so that numbers close to 0 are short.
+     */
+    private static int encodeSigned(int value)
+    {
+        return value << 1 ^ value >> 31;
+    }
+
+    /**
+     * Reverses encodeSigned.
+     */
+    private static int decodeSigned(int value)
+    {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /**
+     * Encodes the record of a vertex into a reusable array.
+     */
+    private static class ListEncoder
+    {
+        // The encoded record.
+        byte[] bytes = new byte[64];
+        int length;
+
+        // The encoded differences and the skip pointers, before they are copied into the record.
+        private byte[] residualBytes = new byte[64];
+        private int residualLength;
+        private byte[] skipBytes = new byte[16];
+        private int skipLength;
+
+        // The elements of the list that are not copied from the reference.
+        private int[] residuals = new int[16];
+
+        // Whether every element of the reference is copied, and the lengths of the runs.
+        private boolean[] copied = new boolean[16];
+        private int[] runs = new int[16];
+
+        /**
+         * Encodes a list.
+         *
+         * @param position The position of the vertex.
+         * @param list The sorted list.
+         * @param reference The sorted list of the reference, or null for none.
+         * @param distance The distance from the vertex to its reference.
+         */
+        void encode(int position, int[] list, int[] reference, int distance)
+        {
+            length = 0;
+            writeInteger(list.length);
+
+            if (list.length == 0)
+            {
+                return;
+            }
+
+            writeInteger(distance);
+
+            if (residuals.length < list.length)
+            {
+                residuals = new int[list.length];
+            }
+
+            int residualCount = 0;
+
+            if (reference == null)
+            {
+                writeInteger(0);
+                System.arraycopy(list, 0, residuals, 0, list.length);
+                residualCount = list.length;
+            }
+            else
+            {
+                residualCount = encodeBlocks(list, reference);
+            }
+
+            if (residualCount == 0)
+            {
+                return;
+            }
+
+            // Encodes the differences, noting a skip pointer every SKIP_INTERVAL of them.
+            residualLength = 0;
+            skipLength = 0;
+            residualLength = writeInteger(residualBytes, residualLength, encodeSigned(residuals[0] - position));
+
+            for (int index = 1; index < residualCount; ++index)
+            {
+                residualBytes = ensureCapacity(residualBytes, residualLength + 5);
+                residualLength = writeInteger(residualBytes, residualLength, residuals[index] - residuals[index - 1]);
+
+                if (index % SKIP_INTERVAL == 0)
+                {
+                    skipBytes = ensureCapacity(skipBytes, skipLength + 10);
+                    skipLength = writeInteger(skipBytes, skipLength, residuals[index] - residuals[index - SKIP_INTERVAL]);
+                    skipLength = writeInteger(skipBytes, skipLength, residualLength);
+                }
+            }
+
+            writeInteger(skipLength);
+            bytes = ensureCapacity(bytes, length + skipLength + residualLength);
+            System.arraycopy(skipBytes, 0, bytes, length, skipLength);
+            length += skipLength;
+            System.arraycopy(residualBytes, 0, bytes, length, residualLength);
+            length += residualLength;
+        }
+
+        /**
+         * Writes the runs of copied and skipped elements of the reference, and collects the elements that are not copied.
+         *
+         * @return The number of elements that are not copied.
+         */
+        private int encodeBlocks(int[] list, int[] reference)
+        {
+            // Matches the elements of both lists, including repeated ones, by merging them.
+            if (copied.length < reference.length)
+            {
+                copied = new boolean[reference.length];
+            }
+
+            Arrays.fill(copied, 0, reference.length, false);
+
+            int residualCount = 0;
+            int lastCopied = -1;
+            int index = 0;
+
+            for (int referenceIndex = 0; referenceIndex < reference.length && index < list.length; )
+            {
+                if (reference[referenceIndex] < list[index])
+                {
+                    ++referenceIndex;
+                }
+                else if (reference[referenceIndex] > list[index])
+                {
+                    residuals[residualCount++] = list[index++];
+                }
+                else
+                {
+                    copied[referenceIndex] = true;
+                    lastCopied = referenceIndex++;
+                    ++index;
+                }
+            }
+
+            while (index < list.length)
+            {
+                residuals[residualCount++] = list[index++];
+            }
+
+            // Measures the runs up to the last copied element. They alternate between copied and skipped
+            // elements, starting with a copied run that may be empty, so every other run is at least one element long.
+            if (runs.length < reference.length + 1)
+            {
+                runs = new int[reference.length + 1];
+            }
+
+            int runCount = 0;
+            boolean isCopying = true;
+
+            for (int runStart = 0; runStart <= lastCopied; isCopying = !isCopying)
+            {
+                int runEnd = runStart;
+
+                while (runEnd <= lastCopied && copied[runEnd] == isCopying)
+                {
+                    ++runEnd;
+                }
+
+                runs[runCount++] = runEnd - runStart;
+                runStart = runEnd;
+            }
+
+            writeInteger(runCount);
+
+            for (int run = 0; run < runCount; ++run)
+            {
+                writeInteger(run == 0 ? runs[run] : runs[run] - 1);
+            }
+
+            return residualCount;
+        }
+
+        /**
+         * Writes an unsigned variable-length integer to the record.
+         */
+        private void writeInteger(int value)
+        {
+            bytes = ensureCapacity(bytes, length + 5);
+            length = writeInteger(bytes, length, value);
+        }
+
+        /**
+         * Writes an unsigned variable-length integer: 7 bits per byte, lowest first, with the high bit set on all but the last.
+         *
+         * @return The index that follows the integer.
+         */
+        private static int writeInteger(byte[] bytes, int index, int value)
+        {
+            while ((value & ~0x7F) != 0)
+            {
+                bytes[index++] = (byte)(value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+
+            bytes[index++] = (byte)value;
+
+            return index;
+        }
+
+        /**
+         * Grows an array so that it holds at least the specified number of bytes.
+         */
+        private static byte[] ensureCapacity(byte[] bytes, int capacity)
+        {
+            return capacity <= bytes.length ? bytes : Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+        }
+    }
+
+    /**
+     * Reads variable-length integers from the pages.
+     */
+    private class Cursor
+    {
+        // The offset of the next byte.
+        long position;
+
+        Cursor(long position)
+        {
+            this.position = position;
+        }
+
+        /**
+         * Reads an unsigned variable-length integer.
+         *
+         * @return The integer.
+         */
+        int readInteger()
+        {
+            int value = 0;
+            int shift = 0;
+            byte current;
+
+            do
+            {
+                current = pages[(int)(position >>> PAGE_BITS)][(int)position & PAGE_MASK];
+                value |= (current & 0x7F) << shift;
+                shift += 7;
+                ++position;
+            }
+            while (current < 0);
+
+            return value;
+        }
+
+        /**
+         * Reads past the runs of copied and skipped elements.
+         *
+         * @return The number of copied elements.
+         */
+        int skipBlocks()
+        {
+            int blockCount = readInteger();
+            int copiedCount = 0;
+
+            for (int block = 0; block < blockCount; ++block)
+            {
+                int run = block == 0 ? readInteger() : readInteger() + 1;
+
+                if (block % 2 == 0)
+                {
+                    copiedCount += run;
+                }
+            }
+
+            return copiedCount;
+        }
+    }
+
+    /**
+     * Iterates over the sorted neighbours of a vertex by merging the elements it copies from its reference
+     * with the elements it stores itself.
+     */
+    public class NeighbourIterator
+    {
+        // The iterator over the reference, or null if there is none.
+        private NeighbourIterator reference;
+
+        // Reads the runs of copied and skipped elements.
+        private Cursor blocks;
+        private int blocksLeft;
+        private int runLeft;
+        private boolean isCopying;
+        private boolean isFirstRun;
+
+        // The next copied element, if there is one.
+        private int nextCopied;
+        private boolean hasCopied;
+
+        // Reads the elements that are not copied.
+        private Cursor residuals;
+        private int residualsLeft;
+        private int nextResidual;
+
+        NeighbourIterator(int position)
+        {
+            Cursor cursor = new Cursor(offsets[position]);
+            int degree = cursor.readInteger();
+
+            if (degree == 0)
+            {
+                return;
+            }
+
+            int referenceDistance = cursor.readInteger();
+
+            blocks = new Cursor(cursor.position);
+
+            int copiedCount = cursor.skipBlocks();
+
+            residualsLeft = degree - copiedCount;
+
+            if (residualsLeft > 0)
+            {
+                int skipLength = cursor.readInteger();
+
+                residuals = new Cursor(cursor.position + skipLength);
+                nextResidual = position + decodeSigned(residuals.readInteger());
+            }
+
+            if (referenceDistance > 0)
+            {
+                reference = new NeighbourIterator(position - referenceDistance);
+                blocksLeft = blocks.readInteger();
+                isFirstRun = true;
+                advanceCopied();
+            }
+        }
+
+        /**
+         * Determines whether there are more neighbours.
+         *
+         * @return True if there are more neighbours.
+         */
+        public boolean hasNext()
+        {
+            return hasCopied || residualsLeft > 0;
+        }
+
+        /**
+         * Gets the next neighbour. Must only be called if hasNext returns true.
+         *
+         * @return The position of the next neighbour.
+         */
+        public int next()
+        {
+            if (hasCopied && (residualsLeft == 0 || nextCopied <= nextResidual))
+            {
+                int neighbour = nextCopied;
+
+                advanceCopied();
+
+                return neighbour;
+            }
+
+            int neighbour = nextResidual;
+
+            if (--residualsLeft > 0)
+            {
+                nextResidual += residuals.readInteger();
+            }
+
+            return neighbour;
+        }
+
+        /**
+         * Finds the next element of the reference that is copied.
+         */
+        private void advanceCopied()
+        {
+            hasCopied = false;
+
+            while (reference.hasNext())
+            {
+                int element = reference.next();
+
+                // Moves to the next run, skipping empty ones.
+                while (runLeft == 0)
+                {
+                    if (blocksLeft == 0)
+                    {
+                        return;
+                    }
+
+                    runLeft = isFirstRun ? blocks.readInteger() : blocks.readInteger() + 1;
+                    isFirstRun = false;
+                    isCopying = !isCopying;
+                    --blocksLeft;
+                }
+
+                --runLeft;
+
+                if (isCopying)
+                {
+                    nextCopied = element;
+                    hasCopied = true;
+
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,604 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Represents a graph that many threads can read and modify at once.
+ *
+ * Every vertex id belongs to one of a fixed number of lock stripes. Writers lock the stripes of the vertices
+ * they touch, always in ascending order, so writers working on unrelated vertices rarely wait for each other.
+ * Finding a vertex by id never locks, and getPathsFrom reads optimistically, taking a read lock only if a writer
+ * changed the stripe while it was copying. Edges are deduplicated by key while the stripes of both of their
+ * vertices are locked, so concurrent additions of the same edge store it once.
+ *
+ * Unlike Graph, the vertices and edges are not kept in order, so there is no access by index. Call snapshot
+ * to get a point-in-time copy that can be iterated, written to a file or frozen. Writers pause while snapshot
+ * collects the vertices and edges, but not while the copy is built or used.
+ *
+ * @author Andrei Muntean
+ */
+public class ConcurrentGraph
+{
+    // The number of stripes for every thread that is expected to write at once.
+    private static final int STRIPES_PER_THREAD = 4;
+
+    // The locks that guard the vertices. Their number is a power of two.
+    private StampedLock[] stripes;
+
+    // The stored vertices and their edges, indexed by vertex id.
+    private ConcurrentHashMap<Integer, Node> nodes;
+
+    // The stored directed edges, indexed by edge key.
+    private ConcurrentHashMap<Long, Edge> directedEdges;
+
+    // The stored undirected edges, indexed by edge key.
+    private ConcurrentHashMap<Long, Edge> undirectedEdges;
+
+    /**
+     * Constructs a graph with enough stripes for every available processor to write at once.
+     */
+    public ConcurrentGraph()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a graph.
+     *
+     * @param concurrencyLevel The number of threads that are expected to write at once.
+     */
+    public ConcurrentGraph(int concurrencyLevel)
+    {
+        int stripeCount = Integer.highestOneBit(Math.max(concurrencyLevel * STRIPES_PER_THREAD - 1, 1)) << 1;
+
+        stripes = new StampedLock[stripeCount];
+
+        for (int index = 0; index < stripeCount; ++index)
+        {
+            stripes[index] = new StampedLock();
+        }
+
+        nodes = new ConcurrentHashMap<Integer, Node>();
+        directedEdges = new ConcurrentHashMap<Long, Edge>();
+        undirectedEdges = new ConcurrentHashMap<Long, Edge>();
+    }
+
+    /**
+     * Gets the number of vertices in the graph.
+     *
+     * @return The number of vertices in the graph.
+     */
+    public int countVertices()
+    {
+        return nodes.size();
+    }
+
+    /**
+     * Gets the number of edges in the graph.
+     *
+     * @return The number of edges in the graph.
+     */
+    public int countEdges()
+    {
+        return directedEdges.size() + undirectedEdges.size();
+    }
+
+    /**
+     * Gets the vertex with the specified id. Never blocks.
+     *
+     * @return The vertex with the specified id, or null if it is not stored.
+     */
+    public Vertex getVertexWithId(int id)
+    {
+        Node node = nodes.get(id);
+
+        return node == null ? null : node.vertex;
+    }
+
+    /**
+     * Determines whether the graph stores the specified edge.
+     *
+     * @param edge An edge.
+     *
+     * @return True if an equal edge is stored.
+     */
+    public boolean contains(Edge edge)
+    {
+        return getEdges(edge).containsKey(edge.getKey());
+    }
+
+    /**
+     * Adds the specified edge along with its vertices. Does not store duplicates.
+     * The edge is made to point at the stored vertices with the ids of its vertices.
+     *
+     * @param edge An edge.
+     *
+     * @return True if the edge was added, false if an equal edge was already stored.
+     */
+    public boolean add(Edge edge)
+    {
+        ConcurrentHashMap<Long, Edge> edges = getEdges(edge);
+        Long key = edge.getKey();
+
+        if (edges.containsKey(key))
+        {
+            // This edge is already stored. Abort without locking.
+            return false;
+        }
+
+        int firstStripe = getStripe(edge.getFirstId());
+        int secondStripe = getStripe(edge.getSecondId());
+        int lowStripe = Math.min(firstStripe, secondStripe);
+        int highStripe = Math.max(firstStripe, secondStripe);
+        long lowStamp = stripes[lowStripe].writeLock();
+        long highStamp = highStripe == lowStripe ? 0 : stripes[highStripe].writeLock();
+
+        try
+        {
+            if (edges.putIfAbsent(key, edge) != null)
+            {
+                // Another thread stored this edge first.
+                return false;
+            }
+
+            // Vertices that are already stored will not be stored again.
+            Node first = getOrAddNode(edge.getFirst());
+            Node second = getOrAddNode(edge.getSecond());
+
+            // Makes the edge point at the stored vertices rather than at copies of them.
+            if (edge.getFirst() != first.vertex || edge.getSecond() != second.vertex)
+            {
+                edge.setVertices(first.vertex, second.vertex);
+            }
+
+            first.addPath(edge);
+            first.addIncidentEdge(edge);
+
+            // A loop is attached only once.
+            if (second != first)
+            {
+                if (!edge.isDirected())
+                {
+                    second.addPath(edge);
+                }
+
+                second.addIncidentEdge(edge);
+            }
+
+            return true;
+        }
+        finally
+        {
+            unlock(lowStripe, lowStamp, highStripe, highStamp);
+        }
+    }
+
+    /**
+     * Adds the specified vertex. Does not store duplicates.
+     *
+     * @param vertex A vertex.
+     *
+     * @return True if the vertex was added, false if a vertex with the same id was already stored.
+     */
+    public boolean add(Vertex vertex)
+    {
+        if (nodes.containsKey(vertex.getId()))
+        {
+            // This vertex is already stored. Abort without locking.
+            return false;
+        }
+
+        StampedLock lock = stripes[getStripe(vertex.getId())];
+        long stamp = lock.writeLock();
+
+        try
+        {
+            return nodes.putIfAbsent(vertex.getId(), new Node(vertex)) == null;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds the specified edges. Does not store duplicates.
+     *
+     * @param edges The edges.
+     */
+    public void add(Edge[] edges)
+    {
+        for (Edge edge : edges)
+        {
+            add(edge);
+        }
+    }
+
+    /**
+     * Adds the specified vertices. Does not store duplicates.
+     *
+     * @param vertices The vertices.
+     */
+    public void add(Vertex[] vertices)
+    {
+        for (Vertex vertex : vertices)
+        {
+            add(vertex);
+        }
+    }
+
+    /**
+     * Removes the specified edge.
+     *
+     * @param edge An edge.
+     *
+     * @return True if the edge was removed, false if it was not stored.
+     */
+    public boolean removeEdge(Edge edge)
+    {
+        ConcurrentHashMap<Long, Edge> edges = getEdges(edge);
+        Long key = edge.getKey();
+        int firstStripe = getStripe(edge.getFirstId());
+        int secondStripe = getStripe(edge.getSecondId());
+        int lowStripe = Math.min(firstStripe, secondStripe);
+        int highStripe = Math.max(firstStripe, secondStripe);
+        long lowStamp = stripes[lowStripe].writeLock();
+        long highStamp = highStripe == lowStripe ? 0 : stripes[highStripe].writeLock();
+
+        try
+        {
+            // Gets the stored edge, which may be a different object that is equal to the specified edge.
+            Edge storedEdge = edges.remove(key);
+
+            if (storedEdge == null)
+            {
+                return false;
+            }
+
+            // Detaches the edge from its vertices.
+            Node first = nodes.get(edge.getFirstId());
+            Node second = nodes.get(edge.getSecondId());
+
+            first.removeEdge(storedEdge);
+
+            if (second != first)
+            {
+                second.removeEdge(storedEdge);
+            }
+
+            return true;
+        }
+        finally
+        {
+            unlock(lowStripe, lowStamp, highStripe, highStamp);
+        }
+    }
+
+    /**
+     * Removes the vertex with the same id as the specified vertex, along with the edges that contain it.
+     * If other threads keep attaching edges to the vertex, it is removed once it has none.
+     *
+     * @param vertex A vertex.
+     *
+     * @return True if the vertex was removed, false if it was not stored.
+     */
+    public boolean removeVertex(Vertex vertex)
+    {
+        StampedLock lock = stripes[getStripe(vertex.getId())];
+
+        while (true)
+        {
+            Edge[] incidentEdges;
+            long stamp = lock.writeLock();
+
+            try
+            {
+                Node node = nodes.get(vertex.getId());
+
+                if (node == null)
+                {
+                    return false;
+                }
+
+                if (node.incidentEdgeCount == 0)
+                {
+                    nodes.remove(vertex.getId());
+
+                    return true;
+                }
+
+                incidentEdges = node.copyIncidentEdges();
+            }
+            finally
+            {
+                lock.unlockWrite(stamp);
+            }
+
+            // Removing an edge locks the stripes of both its vertices, which must be taken in order.
+            for (Edge edge : incidentEdges)
+            {
+                removeEdge(edge);
+            }
+        }
+    }
+
+    /**
+     * Gets all the edges that originate from a specified vertex. Reads optimistically, so it
+     * only blocks if a writer is changing the stripe of the vertex.
+     *
+     * @param vertex A vertex.
+     *
+     * @return An array of edges that originate from the specified vertex.
+     */
+    public Edge[] getPathsFrom(Vertex vertex)
+    {
+        Node node = nodes.get(vertex.getId());
+
+        if (node == null)
+        {
+            // This vertex is not stored.
+            return new Edge[0];
+        }
+
+        StampedLock lock = stripes[getStripe(vertex.getId())];
+        long stamp = lock.tryOptimisticRead();
+        Edge[] paths = node.copyPaths();
+
+        if (!lock.validate(stamp))
+        {
+            // A writer changed the stripe while the paths were being copied. Copies them again under a read lock.
+            stamp = lock.readLock();
+
+            try
+            {
+                paths = node.copyPaths();
+            }
+            finally
+            {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return paths;
+    }
+
+    /**
+     * Copies the graph as it was at one point in time. The copy has its own vertices and edges, so changes to
+     * either graph do not affect the other.
+     *
+     * Read locks are held on every stripe while the ids and values of the vertices and the stored edges are
+     * collected, which takes time proportional to the size of the graph. Writers wait during that pause.
+     * The copy is built after the locks are released. Values are not guarded by the stripes, so a value set
+     * while the vertices are collected may or may not be in the copy.
+     * The vertices and edges of the copy are in no particular order.
+     *
+     * @return A copy of the graph.
+     */
+    public Graph snapshot()
+    {
+        int[] vertexIds;
+        int[] vertexValues;
+        Edge[] edges;
+        long[] stamps = new long[stripes.length];
+
+        // Every change to the maps happens under the write lock of a stripe, so locking all of them
+        // in order gives a consistent cut.
+        for (int index = 0; index < stripes.length; ++index)
+        {
+            stamps[index] = stripes[index].readLock();
+        }
+
+        try
+        {
+            vertexIds = new int[nodes.size()];
+            vertexValues = new int[vertexIds.length];
+            edges = new Edge[countEdges()];
+
+            int vertexCount = 0;
+            int edgeCount = 0;
+
+            for (Node node : nodes.values())
+            {
+                vertexIds[vertexCount] = node.vertex.getId();
+                vertexValues[vertexCount++] = node.vertex.getValue();
+            }
+
+            for (Edge edge : directedEdges.values())
+            {
+                edges[edgeCount++] = edge;
+            }
+
+            for (Edge edge : undirectedEdges.values())
+            {
+                edges[edgeCount++] = edge;
+            }
+        }
+        finally
+        {
+            for (int index = stripes.length - 1; index >= 0; --index)
+            {
+                stripes[index].unlockRead(stamps[index]);
+            }
+        }
+
+        // The ids and weights of an edge never change, so the edges can be copied without locks.
+        Graph graph = new Graph(vertexIds.length, edges.length);
+
+        for (int index = 0; index < vertexIds.length; ++index)
+        {
+            graph.add(new Vertex(vertexIds[index], vertexValues[index]));
+        }
+
+        for (Edge edge : edges)
+        {
+            graph.add(copy(edge, graph.getVertexWithId(edge.getFirstId()), graph.getVertexWithId(edge.getSecondId())));
+        }
+
+        return graph;
+    }
+
+    /**
+     * Gets the stripe of the vertex with the specified id.
+     *
+     * @param id The id of a vertex.
+     *
+     * @return The index of the stripe.
+     */
+    private int getStripe(int id)
+    {
+        // Spreads consecutive ids over the stripes.
+        int hash = id * 0x9E3779B9;
+
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    /**
+     * Releases the write locks of two stripes in the reverse order of taking them.
+     */
+    private void unlock(int lowStripe, long lowStamp, int highStripe, long highStamp)
+    {
+        if (highStripe != lowStripe)
+        {
+            stripes[highStripe].unlockWrite(highStamp);
+        }
+
+        stripes[lowStripe].unlockWrite(lowStamp);
+    }
+
+    /**
+     * Gets the node of the specified vertex, storing the vertex if it is not stored.
+     * The stripe of the vertex must be write locked.
+     */
+    private Node getOrAddNode(Vertex vertex)
+    {
+        Node node = nodes.get(vertex.getId());
+
+        if (node == null)
+        {
+            node = new Node(vertex);
+            nodes.put(vertex.getId(), node);
+        }
+
+        return node;
+    }
+
+    /**
+     * Creates an edge of the same kind as the specified edge, between the specified vertices.
+     */
+    private static Edge copy(Edge edge, Vertex first, Vertex second)
+    {
+        if (edge instanceof WeightedDirectedEdge)
+        {
+            return new WeightedDirectedEdge(first, second, edge.getWeight());
+        }
+        else if (edge instanceof WeightedUndirectedEdge)
+        {
+            return new WeightedUndirectedEdge(first, second, edge.getWeight());
+        }
+        else if (edge.isDirected())
+        {
+            return new DirectedEdge(first, second);
+        }
+        else
+        {
+            return new UndirectedEdge(first, second);
+        }
+    }
+
+    private ConcurrentHashMap<Long, Edge> getEdges(Edge edge)
+    {
+        return edge.isDirected() ? directedEdges : undirectedEdges;
+    }
+
+    @Override
+    public String toString()
+    {
+        return snapshot().toString();
+    }
+
+    /**
+     * Holds a stored vertex and the edges that are attached to it. Guarded by the stripe of the vertex.
+     * The fields are read without locks by optimistic readers, which validate their stamp afterwards.
+     */
+    private static class Node
+    {
+        // The stored vertex.
+        final Vertex vertex;
+
+        // The edges that originate from the vertex, in the order they were added.
+        Edge[] paths;
+        int pathCount;
+
+        // The edges that contain the vertex, in the order they were added.
+        Edge[] incidentEdges;
+        int incidentEdgeCount;
+
+        Node(Vertex vertex)
+        {
+            this.vertex = vertex;
+            paths = new Edge[4];
+            incidentEdges = new Edge[4];
+        }
+
+        void addPath(Edge edge)
+        {
+            if (pathCount == paths.length)
+            {
+                paths = Arrays.copyOf(paths, pathCount * 2);
+            }
+
+            paths[pathCount++] = edge;
+        }
+
+        void addIncidentEdge(Edge edge)
+        {
+            if (incidentEdgeCount == incidentEdges.length)
+            {
+                incidentEdges = Arrays.copyOf(incidentEdges, incidentEdgeCount * 2);
+            }
+
+            incidentEdges[incidentEdgeCount++] = edge;
+        }
+
+        void removeEdge(Edge edge)
+        {
+            pathCount = remove(paths, pathCount, edge);
+            incidentEdgeCount = remove(incidentEdges, incidentEdgeCount, edge);
+        }
+
+        Edge[] copyPaths()
+        {
+            // An optimistic reader may see a count that belongs to a newer, larger array.
+            Edge[] paths = this.paths;
+
+            return Arrays.copyOf(paths, Math.min(pathCount, paths.length));
+        }
+
+        Edge[] copyIncidentEdges()
+        {
+            return Arrays.copyOf(incidentEdges, incidentEdgeCount);
+        }
+
+        /**
+         * Removes an edge from the first elements of an array, keeping the order of the others.
+         *
+         * @return The new number of elements.
+         */
+        private static int remove(Edge[] array, int count, Edge edge)
+        {
+            for (int index = 0; index < count; ++index)
+            {
+                if (array[index] == edge)
+                {
+                    System.arraycopy(array, index + 1, array, index, count - index - 1);
+                    array[count - 1] = null;
+
+                    return count - 1;
+                }
+            }
+
+            return count;
+        }
+    }
+}
@@ -0,0 +1,555 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Labels the components of a snapshot in parallel, following the type of the snapshot.
+ * Undirected snapshots are split into connected components with a lock-free union-find.
+ * Directed and mixed snapshots are split into strongly connected components: vertices that cannot be
+ * on a cycle are trimmed first, then the rest is split with the forward-backward algorithm, whose
+ * subproblems run in parallel. Undirected edges of mixed snapshots count as two opposite arcs.
+ * Components are numbered from 0, in the order of the first position they contain.
+ *
+ * @author Andrei Muntean
+ */
+public class ConnectedComponents
+{
+    // The number of vertices a task handles without splitting further.
+    private static final int GRAIN = 1024;
+
+    // The largest number of trimming rounds. Long chains are left to the forward-backward algorithm.
+    private static final int MAXIMUM_TRIM_ROUNDS = 8;
+
+    // Marks a vertex that has no component yet.
+    private static final int NONE = -1;
+
+    // The snapshot being labelled and its transpose.
+    private FrozenGraph graph;
+    private FrozenGraph transpose;
+
+    // The pool that runs the tasks.
+    private ForkJoinPool pool;
+
+    // The component of every vertex, indexed by position.
+    private int[] components;
+
+    // The number of components.
+    private int componentCount;
+
+    // The parent of every vertex in the union-find forest.
+    private AtomicIntegerArray parents;
+
+    // The provisional component of every vertex while strongly connected components are found.
+    private int[] labels;
+
+    // The subproblem every unlabelled vertex belongs to.
+    private int[] colors;
+
+    // Hands out provisional components and colors.
+    private AtomicInteger nextLabel;
+    private AtomicInteger nextColor;
+
+    /**
+     * Constructs a labelling of the specified snapshot that runs on the common pool.
+     *
+     * @param graph A snapshot.
+     */
+    public ConnectedComponents(FrozenGraph graph)
+    {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a labelling of the specified snapshot.
+     *
+     * @param graph A snapshot.
+     * @param pool The pool that runs the tasks.
+     */
+    public ConnectedComponents(FrozenGraph graph, ForkJoinPool pool)
+    {
+        this.graph = graph;
+        this.pool = pool;
+        components = new int[graph.countVertices()];
+    }
+
+    /**
+     * Labels the components. Undirected snapshots get connected components, and directed or mixed
+     * snapshots get strongly connected components.
+     */
+    public void run()
+    {
+        TraversalEvent event = new TraversalEvent();
+        GraphType type = graph.getType();
+
+        event.begin();
+
+        if (type == GraphType.UNDIRECTED || type == GraphType.UNKNOWN)
+        {
+            findConnectedComponents();
+            event.finish("ConnectedComponents", graph, -1, 0);
+        }
+        else
+        {
+            findStronglyConnectedComponents();
+            event.finish("StronglyConnectedComponents", graph, -1, 0);
+        }
+    }
+
+    /**
+     * Gets the component of the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The component of the vertex.
+     */
+    public int getComponent(int position)
+    {
+        return components[position];
+    }
+
+    /**
+     * Gets the components of all vertices, indexed by position.
+     *
+     * @return The components of all vertices.
+     */
+    public int[] getComponents()
+    {
+        return components;
+    }
+
+    /**
+     * Gets the number of components.
+     *
+     * @return The number of components.
+     */
+    public int countComponents()
+    {
+        return componentCount;
+    }
+
+    /**
+     * Labels the connected components with a concurrent union-find.
+     */
+    private void findConnectedComponents()
+    {
+        int vertexCount = graph.countVertices();
+
+        parents = new AtomicIntegerArray(vertexCount);
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            parents.set(position, position);
+        }
+
+        pool.invoke(new UnionStep(0, vertexCount));
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            components[position] = find(position);
+        }
+
+        parents = null;
+        renumber();
+    }
+
+    /**
+     * Finds the root of the tree that holds the specified vertex, halving the path along the way.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The position of the root.
+     */
+    private int find(int position)
+    {
+        int parent = parents.get(position);
+
+        while (parent != position)
+        {
+            int grandparent = parents.get(parent);
+
+            // Another thread may have changed the parent already. Either way the path gets shorter.
+            parents.compareAndSet(position, parent, grandparent);
+            position = grandparent;
+            parent = parents.get(position);
+        }
+
+        return position;
+    }
+
+    /**
+     * Joins the trees that hold the specified vertices. The root with the larger position is linked
+     * under the other, so the forest never has a cycle.
+     *
+     * @param first The position of a vertex.
+     * @param second The position of another vertex.
+     */
+    private void union(int first, int second)
+    {
+        while (true)
+        {
+            first = find(first);
+            second = find(second);
+
+            if (first == second)
+            {
+                return;
+            }
+
+            if (first < second)
+            {
+                int root = first;
+                first = second;
+                second = root;
+            }
+
+            if (parents.compareAndSet(first, first, second))
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Labels the strongly connected components by trimming and then by forward-backward splitting.
+     */
+    private void findStronglyConnectedComponents()
+    {
+        int vertexCount = graph.countVertices();
+
+        transpose = graph.transpose();
+        labels = new int[vertexCount];
+        colors = new int[vertexCount];
+        nextLabel = new AtomicInteger();
+        nextColor = new AtomicInteger(1);
+        Arrays.fill(labels, NONE);
+
+        // Trims vertices without incoming or outgoing arcs. Each one is a component of its own.
+        for (int round = 0; round < MAXIMUM_TRIM_ROUNDS; ++round)
+        {
+            AtomicInteger trimmedCount = new AtomicInteger();
+
+            pool.invoke(new TrimStep(0, vertexCount, trimmedCount));
+
+            if (trimmedCount.get() == 0)
+            {
+                break;
+            }
+        }
+
+        // Splits the remaining vertices, which all have color 0.
+        IntList remaining = new IntList();
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            if (labels[position] == NONE)
+            {
+                remaining.add(position);
+            }
+        }
+
+        if (remaining.size() > 0)
+        {
+            pool.invoke(new ForwardBackwardStep(remaining.toArray()));
+        }
+
+        System.arraycopy(labels, 0, components, 0, vertexCount);
+        labels = null;
+        colors = null;
+        renumber();
+    }
+
+    /**
+     * Determines whether the specified vertex has an arc, other than a loop, to a vertex that is not labelled yet.
+     *
+     * @param snapshot The snapshot or its transpose.
+     * @param position The position of a vertex.
+     *
+     * @return True if such an arc exists.
+     */
+    private boolean hasActiveArc(FrozenGraph snapshot, int position)
+    {
+        for (int arc = snapshot.getFirstArc(position); arc < snapshot.getEndArc(position); ++arc)
+        {
+            int target = snapshot.getTarget(arc);
+
+            if (target != position && labels[target] == NONE)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Numbers the components from 0, in the order of the first position they contain.
+     */
+    private void renumber()
+    {
+        int[] numbers = new int[components.length];
+
+        Arrays.fill(numbers, NONE);
+        componentCount = 0;
+
+        for (int position = 0; position < components.length; ++position)
+        {
+            int component = components[position];
+
+            if (numbers[component] == NONE)
+            {
+                numbers[component] = componentCount++;
+            }
+
+            components[position] = numbers[component];
+        }
+    }
+
+    /**
+     * Joins the vertices of every arc in a range of positions.
+     */
+    private class UnionStep extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        // The range of positions.
+        private int start;
+        private int end;
+
+        UnionStep(int start, int end)
+        {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start > GRAIN)
+            {
+                int middle = (start + end) >>> 1;
+
+                invokeAll(new UnionStep(start, middle), new UnionStep(middle, end));
+
+                return;
+            }
+
+            for (int position = start; position < end; ++position)
+            {
+                for (int arc = graph.getFirstArc(position); arc < graph.getEndArc(position); ++arc)
+                {
+                    int target = graph.getTarget(arc);
+
+                    // Undirected edges are stored from both vertices, so each is joined once.
+                    if (target > position)
+                    {
+                        union(position, target);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Labels the vertices of a range of positions that have no incoming or no outgoing arc left.
+     * A vertex may see a neighbour that is being trimmed by another task as still present; that only
+     * delays its own trimming to the next round.
+     */
+    private class TrimStep extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        // The range of positions.
+        private int start;
+        private int end;
+
+        // Counts the vertices trimmed in this round.
+        private AtomicInteger trimmedCount;
+
+        TrimStep(int start, int end, AtomicInteger trimmedCount)
+        {
+            this.start = start;
+            this.end = end;
+            this.trimmedCount = trimmedCount;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start > GRAIN)
+            {
+                int middle = (start + end) >>> 1;
+
+                invokeAll(new TrimStep(start, middle, trimmedCount), new TrimStep(middle, end, trimmedCount));
+
+                return;
+            }
+
+            int count = 0;
+
+            for (int position = start; position < end; ++position)
+            {
+                if (labels[position] == NONE && (!hasActiveArc(graph, position) || !hasActiveArc(transpose, position)))
+                {
+                    labels[position] = nextLabel.getAndIncrement();
+                    ++count;
+                }
+            }
+
+            trimmedCount.addAndGet(count);
+        }
+    }
+
+    /**
+     * Splits a subproblem of vertices that share a color. The vertices reachable both from a pivot and
+     * to the pivot form its component. The vertices reachable only from it, only to it, or neither, form three
+     * smaller subproblems, because no component can span two of them. Large subproblems are forked and small
+     * ones are handled in a loop by the same task.
+     */
+    private class ForwardBackwardStep extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        // The vertices of the subproblem. They share a color.
+        private int[] vertices;
+
+        ForwardBackwardStep(int[] vertices)
+        {
+            this.vertices = vertices;
+        }
+
+        @Override
+        protected void compute()
+        {
+            ArrayList<ForwardBackwardStep> forked = new ArrayList<ForwardBackwardStep>();
+            ArrayList<int[]> pending = new ArrayList<int[]>();
+
+            pending.add(vertices);
+
+            while (!pending.isEmpty())
+            {
+                int[] subproblem = pending.remove(pending.size() - 1);
+
+                // The vertices of a subproblem still share the color they were given when it was made.
+                for (int[] part : split(subproblem, colors[subproblem[0]]))
+                {
+                    if (part.length > GRAIN)
+                    {
+                        ForwardBackwardStep step = new ForwardBackwardStep(part);
+
+                        step.fork();
+                        forked.add(step);
+                    }
+                    else if (part.length > 0)
+                    {
+                        pending.add(part);
+                    }
+                }
+            }
+
+            for (ForwardBackwardStep step : forked)
+            {
+                step.join();
+            }
+        }
+
+        /**
+         * Labels the component of a pivot and splits the rest of a subproblem in three.
+         *
+         * @param subproblem The vertices of the subproblem.
+         * @param subproblemColor The color of its vertices.
+         *
+         * @return The vertices reachable only from the pivot, only to the pivot, and neither.
+         */
+        private int[][] split(int[] subproblem, int subproblemColor)
+        {
+            int pivot = subproblem[0];
+            int forwardColor = nextColor.getAndIncrement();
+            int backwardColor = nextColor.getAndIncrement();
+            int label = nextLabel.getAndIncrement();
+
+            // Colors the vertices reachable from the pivot.
+            IntList queue = new IntList();
+
+            colors[pivot] = forwardColor;
+            queue.add(pivot);
+
+            for (int index = 0; index < queue.size(); ++index)
+            {
+                int vertex = queue.get(index);
+
+                for (int arc = graph.getFirstArc(vertex); arc < graph.getEndArc(vertex); ++arc)
+                {
+                    int target = graph.getTarget(arc);
+
+                    if (labels[target] == NONE && colors[target] == subproblemColor)
+                    {
+                        colors[target] = forwardColor;
+                        queue.add(target);
+                    }
+                }
+            }
+
+            // Walks back from the pivot. Vertices reached both ways form the component.
+            queue.clear();
+            labels[pivot] = label;
+            queue.add(pivot);
+
+            for (int index = 0; index < queue.size(); ++index)
+            {
+                int vertex = queue.get(index);
+
+                for (int arc = transpose.getFirstArc(vertex); arc < transpose.getEndArc(vertex); ++arc)
+                {
+                    int target = transpose.getTarget(arc);
+
+                    if (labels[target] != NONE)
+                    {
+                        continue;
+                    }
+
+                    if (colors[target] == forwardColor)
+                    {
+                        labels[target] = label;
+                        queue.add(target);
+                    }
+                    else if (colors[target] == subproblemColor)
+                    {
+                        colors[target] = backwardColor;
+                        queue.add(target);
+                    }
+                }
+            }
+
+            // Sorts the unlabelled vertices into the three subproblems.
+            IntList forward = new IntList();
+            IntList backward = new IntList();
+            IntList neither = new IntList();
+
+            for (int vertex : subproblem)
+            {
+                if (labels[vertex] != NONE)
+                {
+                    continue;
+                }
+
+                if (colors[vertex] == forwardColor)
+                {
+                    forward.add(vertex);
+                }
+                else if (colors[vertex] == backwardColor)
+                {
+                    backward.add(vertex);
+                }
+                else
+                {
+                    neither.add(vertex);
+                }
+            }
+
+            return new int[][] { forward.toArray(), backward.toArray(), neither.toArray() };
+        }
+    }
+}
@@ -53,6 +53,65 @@ public class DirectedEdge implements Edge
         return new Vertex[] { origin, destination };
     }
 
+    /**
+     * Gets the first vertex of the edge, which is the origin vertex.
+     *
+     * @return The first vertex.
+     */
+    public Vertex getFirst()
+    {
+        return origin;
+    }
+
+    /**
+     * Gets the second vertex of the edge, which is the destination vertex.
+     *
+     * @return The second vertex.
+     */
+    public Vertex getSecond()
+    {
+        return destination;
+    }
+
+    /**
+     * Gets the id of the first vertex of the edge.
+     *
+     * @return The id of the first vertex.
+     */
+    public int getFirstId()
+    {
+        return origin.getId();
+    }
+
+    /**
+     * Gets the id of the second vertex of the edge.
+     *
+     * @return The id of the second vertex.
+     */
+    public int getSecondId()
+    {
+        return destination.getId();
+    }
+
+    /**
+     * Replaces the vertices of the edge with vertices that have the same ids.
+     *
+     * @param first A vertex with the id of the first vertex.
+     * @param second A vertex with the id of the second vertex.
+     *
+     * @exception IllegalArgumentException The ids of the specified vertices differ from those of the edge.
+     */
+    public void setVertices(Vertex first, Vertex second) throws IllegalArgumentException
+    {
+        if (!first.equals(origin) || !second.equals(destination))
+        {
+            throw new IllegalArgumentException("The vertices must have the same ids as those of the edge.");
+        }
+
+        origin = first;
+        destination = second;
+    }
+
     /**
      * Determines whether the edge is directed.
      */
@@ -61,6 +120,16 @@ public class DirectedEdge implements Edge
         return true;
     }
 
+    /**
+     * Gets the weight of the edge. Unweighted edges have a weight of 1.
+     *
+     * @return The weight of the edge.
+     */
+    public double getWeight()
+    {
+        return 1;
+    }
+
     /**
      * Determines whether the specified vertex is contained by the edge. 
      *
@@ -73,6 +142,16 @@ public class DirectedEdge implements Edge
         return vertex.equals(origin) || vertex.equals(destination);
     }
 
+    /**
+     * Gets a key built from the ids of the origin and the destination.
+     *
+     * @return The key of the edge.
+     */
+    public long getKey()
+    {
+        return (long)origin.getId() << 32 | destination.getId() & 0xFFFFFFFFL;
+    }
+
     /**
      * Determines whether this edge has the same vertices as a specified edge.
      *
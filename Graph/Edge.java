@@ -6,17 +6,64 @@
 interface Edge
 {
     /**
-     * Gets the vertices that constitute the edge.
+     * Gets the vertices that constitute the edge. Allocates an array on every call, so code that runs
+     * often should use getFirst and getSecond instead.
      *
      * @return The vertices that constitute the edge.
      */
     Vertex[] getVertices();
 
+    /**
+     * Gets the first vertex of the edge. This is the origin of a directed edge.
+     *
+     * @return The first vertex.
+     */
+    Vertex getFirst();
+
+    /**
+     * Gets the second vertex of the edge. This is the destination of a directed edge.
+     *
+     * @return The second vertex.
+     */
+    Vertex getSecond();
+
+    /**
+     * Gets the id of the first vertex of the edge.
+     *
+     * @return The id of the first vertex.
+     */
+    int getFirstId();
+
+    /**
+     * Gets the id of the second vertex of the edge.
+     *
+     * @return The id of the second vertex.
+     */
+    int getSecondId();
+
+    /**
+     * Replaces the vertices of the edge with vertices that have the same ids. Graphs use this
+     * to make the edges they store point at the vertices they store.
+     *
+     * @param first A vertex with the id of the first vertex.
+     * @param second A vertex with the id of the second vertex.
+     *
+     * @exception IllegalArgumentException The ids of the specified vertices differ from those of the edge.
+     */
+    void setVertices(Vertex first, Vertex second) throws IllegalArgumentException;
+
     /**
      * Determines whether the edge is directed.
      */
     boolean isDirected();
 
+    /**
+     * Gets the weight of the edge. Unweighted edges have a weight of 1.
+     *
+     * @return The weight of the edge.
+     */
+    double getWeight();
+
     /**
      * Determines whether the specified vertex is contained by the edge. 
      *
@@ -26,6 +73,13 @@ interface Edge
      */
     boolean contains(Vertex vertex);
 
+    /**
+     * Gets a key built from the ids of the vertices. Equal edges have equal keys.
+     *
+     * @return The key of the edge.
+     */
+    long getKey();
+
     /**
      * Determines whether this edge is equal to another edge.
      *
@@ -0,0 +1,440 @@
+import java.util.Arrays;
+
+/**
+ * Represents an immutable snapshot of a graph, stored in compressed sparse row form.
+ * Vertices are identified by their position, which is their index in the graph the snapshot was taken from.
+ * The arcs of a vertex are the edges returned by Graph.getPathsFrom, so an undirected edge is stored
+ * once from each of its vertices. Arcs are iterated without allocating:
+ *
+ * for (int arc = snapshot.getFirstArc(position); arc < snapshot.getEndArc(position); ++arc)
+ * {
+ *     int neighbour = snapshot.getTarget(arc);
+ * }
+ *
+ * @author Andrei Muntean
+ */
+public class FrozenGraph
+{
+    // The ids of the vertices, indexed by position.
+    private int[] vertexIds;
+
+    // The values of the vertices, indexed by position.
+    private int[] vertexValues;
+
+    // The ids of the vertices in ascending order.
+    private int[] sortedIds;
+
+    // The positions of the vertices in the order of sortedIds.
+    private int[] sortedPositions;
+
+    // The arcs of the vertex at position p are stored between offsets[p] and offsets[p + 1].
+    private int[] offsets;
+
+    // The position of the vertex each arc points to.
+    private int[] targets;
+
+    // One bit per arc. A set bit means the arc comes from a directed edge.
+    private long[] directedArcs;
+
+    // The weight of every arc, or null if every edge has a weight of 1.
+    private double[] weights;
+
+    // The number of edges the snapshot was taken from.
+    private int edgeCount;
+
+    // The snapshot with every arc reversed. Built the first time it is needed.
+    private FrozenGraph transpose;
+
+    /**
+     * Constructs a snapshot from its arrays.
+     *
+     * @param vertexIds The ids of the vertices, indexed by position.
+     * @param vertexValues The values of the vertices, indexed by position.
+     * @param offsets The offsets of the arcs of every vertex, followed by the number of arcs.
+     * @param targets The position of the vertex each arc points to.
+     * @param directedArcs One bit per arc, set when the arc comes from a directed edge.
+     * @param weights The weight of every arc, or null if every edge has a weight of 1.
+     * @param edgeCount The number of edges the snapshot was taken from.
+     */
+    FrozenGraph(int[] vertexIds, int[] vertexValues, int[] offsets, int[] targets, long[] directedArcs, double[] weights,
+        int edgeCount)
+    {
+        this.vertexIds = vertexIds;
+        this.vertexValues = vertexValues;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.directedArcs = directedArcs;
+        this.weights = weights;
+        this.edgeCount = edgeCount;
+
+        // Sorts the ids so that positions can be looked up by binary search.
+        long[] pairs = new long[vertexIds.length];
+
+        for (int position = 0; position < vertexIds.length; ++position)
+        {
+            pairs[position] = (long)vertexIds[position] << 32 | position;
+        }
+
+        Arrays.sort(pairs);
+        sortedIds = new int[pairs.length];
+        sortedPositions = new int[pairs.length];
+
+        for (int index = 0; index < pairs.length; ++index)
+        {
+            sortedIds[index] = (int)(pairs[index] >> 32);
+            sortedPositions[index] = (int)pairs[index];
+        }
+    }
+
+    /**
+     * Constructs a snapshot that shares the vertices of another snapshot but has different arcs.
+     *
+     * @param graph The snapshot whose vertices are shared.
+     * @param offsets The offsets of the arcs of every vertex, followed by the number of arcs.
+     * @param targets The position of the vertex each arc points to.
+     * @param directedArcs One bit per arc, set when the arc comes from a directed edge.
+     * @param weights The weight of every arc, or null if every edge has a weight of 1.
+     */
+    private FrozenGraph(FrozenGraph graph, int[] offsets, int[] targets, long[] directedArcs, double[] weights)
+    {
+        vertexIds = graph.vertexIds;
+        vertexValues = graph.vertexValues;
+        sortedIds = graph.sortedIds;
+        sortedPositions = graph.sortedPositions;
+        edgeCount = graph.edgeCount;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.directedArcs = directedArcs;
+        this.weights = weights;
+    }
+
+    /**
+     * Gets the snapshot with every arc reversed. The arcs of a vertex in the transpose are the arcs
+     * that point to it in this snapshot. Undirected edges are stored in both directions, so they are unaffected.
+     * The transpose is built the first time it is requested.
+     *
+     * @return The transpose of this snapshot.
+     */
+    public synchronized FrozenGraph transpose()
+    {
+        if (transpose == null)
+        {
+            int vertexCount = vertexIds.length;
+            int[] reversedOffsets = new int[vertexCount + 1];
+            int[] reversedTargets = new int[targets.length];
+            long[] reversedDirectedArcs = new long[directedArcs.length];
+            double[] reversedWeights = weights == null ? null : new double[weights.length];
+
+            // Counts the arcs that point to every vertex.
+            for (int target : targets)
+            {
+                ++reversedOffsets[target + 1];
+            }
+
+            for (int position = 0; position < vertexCount; ++position)
+            {
+                reversedOffsets[position + 1] += reversedOffsets[position];
+            }
+
+            // Places every arc in the list of the vertex it points to.
+            int[] cursors = Arrays.copyOf(reversedOffsets, vertexCount);
+
+            for (int position = 0; position < vertexCount; ++position)
+            {
+                for (int arc = offsets[position]; arc < offsets[position + 1]; ++arc)
+                {
+                    int reversedArc = cursors[targets[arc]]++;
+
+                    reversedTargets[reversedArc] = position;
+
+                    if (isDirected(arc))
+                    {
+                        reversedDirectedArcs[reversedArc >>> 6] |= 1L << reversedArc;
+                    }
+
+                    if (weights != null)
+                    {
+                        reversedWeights[reversedArc] = weights[arc];
+                    }
+                }
+            }
+
+            transpose = new FrozenGraph(this, reversedOffsets, reversedTargets, reversedDirectedArcs, reversedWeights);
+            transpose.transpose = this;
+        }
+
+        return transpose;
+    }
+
+    /**
+     * Gets a snapshot with the same vertices and arcs, with the vertices at other positions. Every vertex keeps its id
+     * and its value, and the arcs of every vertex keep their order.
+     *
+     * @param newPositions The position in the new snapshot of the vertex at every position of this snapshot.
+     *
+     * @return The new snapshot.
+     *
+     * @exception IllegalArgumentException The new positions are not a permutation of the positions.
+     */
+    public FrozenGraph relabel(int[] newPositions) throws IllegalArgumentException
+    {
+        int vertexCount = vertexIds.length;
+
+        if (newPositions.length != vertexCount)
+        {
+            throw new IllegalArgumentException("There must be one new position per vertex.");
+        }
+
+        int[] oldPositions = new int[vertexCount];
+
+        Arrays.fill(oldPositions, -1);
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            int newPosition = newPositions[position];
+
+            if (newPosition < 0 || newPosition >= vertexCount || oldPositions[newPosition] != -1)
+            {
+                throw new IllegalArgumentException("The new positions must be a permutation of the positions.");
+            }
+
+            oldPositions[newPosition] = position;
+        }
+
+        int[] newVertexIds = new int[vertexCount];
+        int[] newVertexValues = new int[vertexCount];
+        int[] newOffsets = new int[vertexCount + 1];
+        int[] newTargets = new int[targets.length];
+        long[] newDirectedArcs = new long[directedArcs.length];
+        double[] newWeights = weights == null ? null : new double[weights.length];
+
+        // Lays out the vertices in their new order.
+        for (int newPosition = 0; newPosition < vertexCount; ++newPosition)
+        {
+            int position = oldPositions[newPosition];
+
+            newVertexIds[newPosition] = vertexIds[position];
+            newVertexValues[newPosition] = vertexValues[position];
+            newOffsets[newPosition + 1] = newOffsets[newPosition] + getDegree(position);
+        }
+
+        // Copies the arcs of every vertex to its new place and points them to the new positions.
+        for (int newPosition = 0; newPosition < vertexCount; ++newPosition)
+        {
+            int position = oldPositions[newPosition];
+            int newArc = newOffsets[newPosition];
+
+            for (int arc = offsets[position]; arc < offsets[position + 1]; ++arc, ++newArc)
+            {
+                newTargets[newArc] = newPositions[targets[arc]];
+
+                if (isDirected(arc))
+                {
+                    newDirectedArcs[newArc >>> 6] |= 1L << newArc;
+                }
+
+                if (weights != null)
+                {
+                    newWeights[newArc] = weights[arc];
+                }
+            }
+        }
+
+        return new FrozenGraph(newVertexIds, newVertexValues, newOffsets, newTargets, newDirectedArcs, newWeights, edgeCount);
+    }
+
+    /**
+     * Determines if the snapshot is undirected, mixed or directed, by counting the arcs of directed edges.
+     *
+     * @return The type of the snapshot.
+     */
+    public GraphType getType()
+    {
+        long directedArcCount = 0;
+
+        for (long bits : directedArcs)
+        {
+            directedArcCount += Long.bitCount(bits);
+        }
+
+        if (targets.length == 0)
+        {
+            return GraphType.UNKNOWN;
+        }
+        else if (directedArcCount == 0)
+        {
+            return GraphType.UNDIRECTED;
+        }
+        else if (directedArcCount == targets.length)
+        {
+            return GraphType.DIRECTED;
+        }
+        else
+        {
+            return GraphType.MIXED;
+        }
+    }
+
+    /**
+     * Gets the number of vertices in the snapshot.
+     *
+     * @return The number of vertices in the snapshot.
+     */
+    public int countVertices()
+    {
+        return vertexIds.length;
+    }
+
+    /**
+     * Gets the number of edges the snapshot was taken from.
+     *
+     * @return The number of edges the snapshot was taken from.
+     */
+    public int countEdges()
+    {
+        return edgeCount;
+    }
+
+    /**
+     * Gets the number of arcs in the snapshot. Undirected edges count twice, except for loops.
+     *
+     * @return The number of arcs in the snapshot.
+     */
+    public int countArcs()
+    {
+        return targets.length;
+    }
+
+    /**
+     * Gets the id of the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The id of the vertex.
+     */
+    public int getVertexId(int position)
+    {
+        return vertexIds[position];
+    }
+
+    /**
+     * Gets the value the vertex at the specified position had when the snapshot was taken.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The value of the vertex.
+     */
+    public int getVertexValue(int position)
+    {
+        return vertexValues[position];
+    }
+
+    /**
+     * Gets the position of the vertex with the specified id.
+     *
+     * @param id The id of a vertex.
+     *
+     * @return The position of the vertex, or -1 if there is no vertex with the specified id.
+     */
+    public int getPosition(int id)
+    {
+        int index = Arrays.binarySearch(sortedIds, id);
+
+        return index < 0 ? -1 : sortedPositions[index];
+    }
+
+    /**
+     * Gets the number of arcs that originate from the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The number of arcs that originate from the vertex.
+     */
+    public int getDegree(int position)
+    {
+        return offsets[position + 1] - offsets[position];
+    }
+
+    /**
+     * Gets the first arc that originates from the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The index of the first arc.
+     */
+    public int getFirstArc(int position)
+    {
+        return offsets[position];
+    }
+
+    /**
+     * Gets the index that follows the last arc that originates from the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The index that follows the last arc.
+     */
+    public int getEndArc(int position)
+    {
+        return offsets[position + 1];
+    }
+
+    /**
+     * Gets the position of the vertex the specified arc points to.
+     *
+     * @param arc The index of an arc.
+     *
+     * @return The position of the target vertex.
+     */
+    public int getTarget(int arc)
+    {
+        return targets[arc];
+    }
+
+    /**
+     * Determines whether the specified arc comes from a directed edge.
+     *
+     * @param arc The index of an arc.
+     *
+     * @return True if the arc comes from a directed edge.
+     */
+    public boolean isDirected(int arc)
+    {
+        return (directedArcs[arc >>> 6] & 1L << arc) != 0;
+    }
+
+    /**
+     * Gets the weight of the edge the specified arc comes from.
+     *
+     * @param arc The index of an arc.
+     *
+     * @return The weight of the edge. Unweighted edges have a weight of 1.
+     */
+    public double getWeight(int arc)
+    {
+        return weights == null ? 1 : weights[arc];
+    }
+
+    /**
+     * Determines whether any edge has a weight other than 1.
+     *
+     * @return True if any edge has a weight other than 1.
+     */
+    public boolean isWeighted()
+    {
+        return weights != null;
+    }
+
+    /**
+     * Gets the position of the specified neighbour of the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     * @param index The index of the neighbour, between 0 and the degree of the vertex.
+     *
+     * @return The position of the neighbour.
+     */
+    public int getNeighbour(int position, int index)
+    {
+        return targets[offsets[position] + index];
+    }
+}
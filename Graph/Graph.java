@@ -1,31 +1,98 @@
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.UnsupportedEncodingException;
-import java.io.PrintWriter;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.Arrays;
+import java.util.HashMap;
 
 /**
  * Represents a graph.
  *
+ * Removing a vertex or an edge leaves a tombstone (a null slot) in its list instead of shifting the elements
+ * that follow, so removals only touch the removed element and the edges attached to it. Tombstones are swept
+ * out once they make up a quarter of a list. Indexes always refer to the vertices and edges that are still
+ * stored, in the order they were added, just as if every removal had shifted the list. While a list holds
+ * tombstones, an index is turned into a slot in logarithmic time.
+ *
+ * The graph also keeps running counts of its edges and of the degrees of its vertices, updated by every
+ * addition and removal, so the type of the graph and the degree queries take constant time.
+ *
  * @author Andrei Muntean
  */
 public class Graph
 {
-    // A set of vertices.
+    // The fraction of a list that may be tombstones before the list is swept.
+    private static final double TOMBSTONE_RATIO = 0.25;
+
+    // A set of vertices. Removed vertices leave null slots.
     private ArrayList<Vertex> vertices;
 
-    // A set of edges.
+    // A set of edges. Removed edges leave null slots.
     private ArrayList<Edge> edges;
 
+    // The number of null slots in the list of vertices.
+    private int vertexTombstoneCount;
+
+    // The number of null slots in the list of edges.
+    private int edgeTombstoneCount;
+
+    // Turn indexes into slots while the lists hold tombstones. Built the first time they are needed.
+    private SlotIndex vertexSlotIndex;
+    private SlotIndex edgeSlotIndex;
+
+    // The stored vertices, indexed by id.
+    private HashMap<Integer, Vertex> verticesById;
+
+    // The edges attached to each stored vertex, indexed by vertex id.
+    private HashMap<Integer, Adjacency> adjacencies;
+
+    // The slots of the stored directed edges, indexed by edge key.
+    private LongIntHashMap directedEdgeSlots;
+
+    // The slots of the stored undirected edges, indexed by edge key.
+    private LongIntHashMap undirectedEdgeSlots;
+
+    // The number of edges the graph was sized for. Sizes an edge index when its first edge is stored.
+    private int expectedEdgeCount;
+
+    // The number of edges whose vertices are the same.
+    private int loopCount;
+
+    // The number of vertices with every degree, indexed by degree.
+    private int[] degreeHistogram;
+
+    // The largest degree of a vertex.
+    private int maxDegree;
+
+    // Receives the operations of the graph, or null if they are not measured.
+    private GraphListener listener;
+
+    // Changes whenever the vertices and the edges are cleared, which replaces every adjacency.
+    private int generation;
+
     /**
      * Constructs a graph.
      */
     public Graph()
     {
-        // Initializes the list of vertices and the list of edges.
-        vertices = new ArrayList<Vertex>();
-        edges = new ArrayList<Edge>();
+        initialize(0, 0);
+    }
+
+    /**
+     * Constructs an empty graph with room for the specified number of vertices and edges.
+     *
+     * @param expectedVertexCount The number of vertices the graph should hold without growing.
+     * @param expectedEdgeCount The number of edges the graph should hold without growing.
+     */
+    public Graph(int expectedVertexCount, int expectedEdgeCount)
+    {
+        initialize(expectedVertexCount, expectedEdgeCount);
     }
 
     /**
@@ -35,11 +102,7 @@ public class Graph
      */
     public Graph(Vertex[] vertices)
     {
-        // Initializes the list of edges.
-        edges = new ArrayList<Edge>();
-
-        // Initializes the list of vertices.
-        this.vertices = new ArrayList<Vertex>();
+        initialize(vertices.length, 0);
 
         // Stores the vertices.
         for (Vertex vertex : vertices)
@@ -55,11 +118,7 @@ public class Graph
      */
     public Graph(Edge[] edges)
     {
-        // Initializes the list of vertices.
-        vertices = new ArrayList<Vertex>();
-
-        // Initializes the list of edges.
-        this.edges = new ArrayList<Edge>();
+        initialize(0, edges.length);
 
         // Stores the edges.
         for (Edge edge : edges)
@@ -73,7 +132,7 @@ public class Graph
      *
      * @param path A file path.
      */
-    public Graph(String path) throws Exception, FileNotFoundException
+    public Graph(String path) throws GraphFormatException, IOException
     {
         readFromFile(path);
     }
@@ -85,35 +144,25 @@ public class Graph
      */
     public GraphType getType()
     {
-        GraphType graphType = GraphType.UNKNOWN;
+        boolean hasDirectedEdges = directedEdgeSlots.size() > 0;
+        boolean hasUndirectedEdges = undirectedEdgeSlots.size() > 0;
 
-        for (Edge edge : edges)
+        if (hasDirectedEdges && hasUndirectedEdges)
         {
-            if (edge.isDirected())
-            {
-                if (graphType == GraphType.UNDIRECTED)
-                {
-                    return GraphType.MIXED;
-                }
-                else
-                {
-                    graphType = GraphType.DIRECTED;
-                }
-            }
-            else
-            {
-                if (graphType == GraphType.DIRECTED)
-                {
-                    return GraphType.MIXED;
-                }
-                else
-                {
-                    graphType = GraphType.UNDIRECTED;
-                }
-            }
+            return GraphType.MIXED;
+        }
+        else if (hasDirectedEdges)
+        {
+            return GraphType.DIRECTED;
+        }
+        else if (hasUndirectedEdges)
+        {
+            return GraphType.UNDIRECTED;
+        }
+        else
+        {
+            return GraphType.UNKNOWN;
         }
-
-        return graphType;
     }
 
     /**
@@ -123,7 +172,7 @@ public class Graph
      */
     public int countVertices()
     {
-        return vertices.size();
+        return vertices.size() - vertexTombstoneCount;
     }
 
     /**
@@ -133,7 +182,115 @@ public class Graph
      */
     public int countEdges()
     {
-        return edges.size();
+        return edges.size() - edgeTombstoneCount;
+    }
+
+    /**
+     * Gets the number of directed edges in the graph.
+     *
+     * @return The number of directed edges in the graph.
+     */
+    public int countDirectedEdges()
+    {
+        return directedEdgeSlots.size();
+    }
+
+    /**
+     * Gets the number of undirected edges in the graph.
+     *
+     * @return The number of undirected edges in the graph.
+     */
+    public int countUndirectedEdges()
+    {
+        return undirectedEdgeSlots.size();
+    }
+
+    /**
+     * Gets the number of edges whose vertices are the same.
+     *
+     * @return The number of loops in the graph.
+     */
+    public int countLoops()
+    {
+        return loopCount;
+    }
+
+    /**
+     * Gets the number of edges that contain the vertex with the same id as the specified vertex.
+     * A loop counts once.
+     *
+     * @param vertex A vertex.
+     *
+     * @return The degree of the vertex, or 0 if it is not stored.
+     */
+    public int getDegree(Vertex vertex)
+    {
+        Adjacency adjacency = adjacencies.get(vertex.getId());
+
+        return adjacency == null ? 0 : adjacency.getIncidentEdges().size();
+    }
+
+    /**
+     * Gets the number of directed edges that end at the vertex with the same id as the specified vertex.
+     *
+     * @param vertex A vertex.
+     *
+     * @return The in-degree of the vertex, or 0 if it is not stored.
+     */
+    public int getInDegree(Vertex vertex)
+    {
+        Adjacency adjacency = adjacencies.get(vertex.getId());
+
+        return adjacency == null ? 0 : adjacency.getInDegree();
+    }
+
+    /**
+     * Gets the number of directed edges that originate from the vertex with the same id as the specified vertex.
+     *
+     * @param vertex A vertex.
+     *
+     * @return The out-degree of the vertex, or 0 if it is not stored.
+     */
+    public int getOutDegree(Vertex vertex)
+    {
+        Adjacency adjacency = adjacencies.get(vertex.getId());
+
+        return adjacency == null ? 0 : adjacency.getOutDegree();
+    }
+
+    /**
+     * Gets the number of undirected edges that contain the vertex with the same id as the specified vertex.
+     *
+     * @param vertex A vertex.
+     *
+     * @return The undirected degree of the vertex, or 0 if it is not stored.
+     */
+    public int getUndirectedDegree(Vertex vertex)
+    {
+        Adjacency adjacency = adjacencies.get(vertex.getId());
+
+        return adjacency == null ? 0 : adjacency.getUndirectedDegree();
+    }
+
+    /**
+     * Gets the largest degree of a vertex.
+     *
+     * @return The largest degree of a vertex, or 0 if the graph has no edges.
+     */
+    public int getMaxDegree()
+    {
+        return maxDegree;
+    }
+
+    /**
+     * Counts the vertices with every degree.
+     *
+     * @return An array whose element at every index is the number of vertices with that degree.
+     * Its length is one more than the largest degree.
+     */
+    public int[] getDegreeHistogram()
+    {
+        return Arrays.copyOf(degreeHistogram, maxDegree + 1);
     }
 
     /**
@@ -145,7 +302,7 @@ public class Graph
      */
     public Vertex getVertex(int index) throws ArrayIndexOutOfBoundsException
     {
-        return vertices.get(index);
+        return vertices.get(getVertexSlot(index));
     }
 
     /**
@@ -157,7 +314,7 @@ public class Graph
      */
     public Edge getEdge(int index) throws ArrayIndexOutOfBoundsException
     {
-        return edges.get(index);
+        return edges.get(getEdgeSlot(index));
     }
 
     /**
@@ -167,39 +324,59 @@ public class Graph
      */
     public Vertex getVertexWithId(int id)
     {
-        for (Vertex vertex : vertices)
+        if (listener == null)
         {
-            if (vertex.getId() == id)
-            {
-                return vertex;
-            }
+            return verticesById.get(id);
         }
 
-        return null;
+        long startNanos = System.nanoTime();
+        Vertex vertex = verticesById.get(id);
+
+        listener.vertexFound(id, vertex != null, System.nanoTime() - startNanos);
+
+        return vertex;
+    }
+
+    /**
+     * Gets the listener that receives the operations of the graph.
+     *
+     * @return The listener, or null if the operations are not measured.
+     */
+    public GraphListener getListener()
+    {
+        return listener;
+    }
+
+    /**
+     * Sets the listener that receives the operations of the graph, such as a GraphMetrics.
+     * Without a listener, the operations are not measured at all.
+     *
+     * @param listener A listener, or null to stop measuring.
+     */
+    public void setListener(GraphListener listener)
+    {
+        this.listener = listener;
     }
 
     /**
      * Adds the specified edge. Does not store duplicates.
+     * The edge is made to point at the stored vertices with the ids of its vertices.
      *
      * @param edge An edge.
      */
     public void add(Edge edge)
     {
-        for (Edge storedEdge : edges)
+        if (listener == null)
         {
-            if (edge.equals(storedEdge))
-            {
-                // This edge is already stored. Abort.
-                return;
-            }
+            store(edge);
+
+            return;
         }
 
-        // Adds the edge.
-        edges.add(edge);
+        long startNanos = System.nanoTime();
+        boolean isStored = store(edge);
 
-        // Updates the vertices.
-        // Vertices that are already stored will not be stored again.
-        add(edge.getVertices());
+        listener.edgeAdded(edge, isStored, System.nanoTime() - startNanos);
     }
 
     /**
@@ -209,17 +386,17 @@ public class Graph
      */
     public void add(Vertex vertex)
     {
-        for (Vertex storedVertex : vertices)
+        if (listener == null)
         {
-            if (vertex.equals(storedVertex))
-            {
-                // This vertex is already stored. Abort.
-                return;
-            }
+            store(vertex);
+
+            return;
         }
 
-        // Adds the vertex.
-        vertices.add(vertex);
+        long startNanos = System.nanoTime();
+        boolean isStored = store(vertex);
+
+        listener.vertexAdded(vertex, isStored, System.nanoTime() - startNanos);
     }
 
     /**
@@ -229,6 +406,8 @@ public class Graph
      */
     public void add(Edge[] edges)
     {
+        this.edges.ensureCapacity(this.edges.size() + edges.length);
+
         for (Edge edge : edges)
         {
             add(edge);
@@ -242,6 +421,8 @@ public class Graph
      */
     public void add(Vertex[] vertices)
     {
+        this.vertices.ensureCapacity(this.vertices.size() + vertices.length);
+
         for (Vertex vertex : vertices)
         {
             add(vertex);
@@ -252,40 +433,69 @@ public class Graph
      * Removes the edge with the specified index.
      *
      * @param index The index of the edge.
+     *
+     * @exception IndexOutOfBoundsException Specified index is out of bounds.
+     */
+    public void removeEdge(int index) throws IndexOutOfBoundsException
+    {
+        removeEdge(getEdge(index));
+    }
+
+    /**
+     * Removes the specified edge. Takes time proportional to the degrees of its vertices.
+     *
+     * @param edge An edge.
+     *
+     * @return True if the edge was removed, false if it was not stored.
      */
-    public void removeEdge(int index)
+    public boolean removeEdge(Edge edge)
     {
-        edges.remove(index);
+        if (listener == null)
+        {
+            return detach(edge);
+        }
+
+        long startNanos = System.nanoTime();
+        boolean wasStored = detach(edge);
+
+        listener.edgeRemoved(edge, wasStored, System.nanoTime() - startNanos);
+
+        return wasStored;
     }
 
     /**
      * Removes the vertex with the specified index.
      *
      * @param index The index of the vertex.
+     *
+     * @exception IndexOutOfBoundsException Specified index is out of bounds.
      */
-    public void removeVertex(int index)
+    public void removeVertex(int index) throws IndexOutOfBoundsException
     {
-        // Gets the vertex with the specified index.
-        Vertex vertex = vertices.get(index);
+        removeVertex(getVertex(index));
+    }
 
-        // Removes all edges associated with this vertex.
-        for (int edgeIndex = 0; edgeIndex < edges.size(); ++edgeIndex)
+    /**
+     * Removes the vertex with the same id as the specified vertex, along with the edges that contain it.
+     * Takes time proportional to the degrees of the vertex and of its neighbours.
+     *
+     * @param vertex A vertex.
+     *
+     * @return True if the vertex was removed, false if it was not stored.
+     */
+    public boolean removeVertex(Vertex vertex)
+    {
+        if (listener == null)
         {
-            // Gets the edge with the specified index.
-            Edge edge = edges.get(edgeIndex);
+            return detach(vertex);
+        }
 
-            if (edge.contains(vertex))
-            {
-                edges.remove(edgeIndex);
+        long startNanos = System.nanoTime();
+        boolean wasStored = detach(vertex);
 
-                // Next index is now the current index.
-                // This stops the index from incrementing.
-                --edgeIndex;
-            }
-        }
+        listener.vertexRemoved(vertex, wasStored, System.nanoTime() - startNanos);
 
-        // Removes the vertex.
-        vertices.remove(index);
+        return wasStored;
     }
 
     /**
@@ -297,161 +507,725 @@ public class Graph
      */
     public Edge[] getPathsFrom(Vertex vertex)
     {
-        ArrayList<Edge> paths = new ArrayList<Edge>();
+        if (listener == null)
+        {
+            return readPaths(vertex);
+        }
 
-        for (Edge edge : edges)
+        long startNanos = System.nanoTime();
+        Edge[] paths = readPaths(vertex);
+
+        listener.pathsRead(vertex, paths.length, System.nanoTime() - startNanos);
+
+        return paths;
+    }
+
+    /**
+     * Takes an immutable snapshot of the graph in compressed sparse row form.
+     * The position of a vertex in the snapshot is its index in the graph.
+     *
+     * @return A snapshot of the graph.
+     */
+    public FrozenGraph freeze()
+    {
+        sweep();
+
+        int vertexCount = vertices.size();
+        int[] vertexIds = new int[vertexCount];
+        int[] vertexValues = new int[vertexCount];
+        int[] offsets = new int[vertexCount + 1];
+        HashMap<Integer, Integer> positions = new HashMap<Integer, Integer>(vertexCount * 2);
+
+        // Lays out the vertices and counts the arcs of each one.
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            Vertex vertex = vertices.get(position);
+
+            vertexIds[position] = vertex.getId();
+            vertexValues[position] = vertex.getValue();
+            positions.put(vertex.getId(), position);
+            offsets[position + 1] = offsets[position] + adjacencies.get(vertex.getId()).getPaths().size();
+        }
+
+        int[] targets = new int[offsets[vertexCount]];
+        long[] directedArcs = new long[(targets.length + 63) >>> 6];
+        double[] weights = null;
+
+        // Stores the arcs. An arc points to the vertex at the other end of the edge.
+        for (int position = 0; position < vertexCount; ++position)
         {
-            Vertex[] vertices = edge.getVertices();
+            int arc = offsets[position];
+            int id = vertexIds[position];
 
-            if (edge.isDirected())
+            for (Edge edge : adjacencies.get(id).getPaths())
             {
-                if (vertices[0].equals(vertex))
+                int targetId = edge.getFirstId() == id ? edge.getSecondId() : edge.getFirstId();
+
+                targets[arc] = positions.get(targetId);
+
+                if (edge.isDirected())
                 {
-                    paths.add(edge);
+                    directedArcs[arc >>> 6] |= 1L << arc;
                 }
-            }
-            else if (vertices[0].equals(vertex) || vertices[1].equals(vertex))
-            {
-                paths.add(edge);
+
+                // The weights are only stored once an edge has a weight other than 1.
+                if (edge.getWeight() != 1 && weights == null)
+                {
+                    weights = new double[targets.length];
+                    Arrays.fill(weights, 1);
+                }
+
+                if (weights != null)
+                {
+                    weights[arc] = edge.getWeight();
+                }
+
+                ++arc;
             }
         }
 
-        return paths.toArray(new Edge[paths.size()]);
+        return new FrozenGraph(vertexIds, vertexValues, offsets, targets, directedArcs, weights, edges.size());
     }
 
     /**
      * Constructs the graph from a specified file.
      *
      * @param path A file path.
+     *
+     * @exception GraphFormatException The file is not a graph file.
+     * @exception IOException The file cannot be read.
      */
-    public void readFromFile(String path) throws Exception, FileNotFoundException
+    public void readFromFile(String path) throws GraphFormatException, IOException
     {
-        // Initializes the file scanner.
-        Scanner scanner = new Scanner(new File(path));
+        GraphFileEvent event = new GraphFileEvent();
+        long startNanos = System.nanoTime();
+
+        event.begin();
+
+        if (listener != null)
+        {
+            listener.graphReading(path);
+        }
+
+        // Clears the vertices and the edges.
+        initialize(0, 0);
 
-        // Initializes the list of vertices and the list of edges.
-        vertices = new ArrayList<Vertex>();
-        edges = new ArrayList<Edge>();
+        Reader reader = new InputStreamReader(new FileInputStream(path), "UTF-8");
 
         try
         {
-            // Reads the vertices and the edges.
-            String vertexString = scanner.nextLine();
-            String edgeString = scanner.nextLine();
+            new GraphReader(reader, path).read(this);
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        finishFileOperation(event, path, true, "text", startNanos);
+    }
+
+    /**
+     * Writes the graph to a specified file.
+     *
+     * @param path A file path.
+     *
+     * @exception IOException The file cannot be written.
+     */
+    public void writeToFile(String path) throws IOException
+    {
+        GraphFileEvent event = new GraphFileEvent();
+        long startNanos = System.nanoTime();
+
+        event.begin();
 
-            // Gets the elements of the vertex set.
-            vertexString = vertexString.substring(5, vertexString.length() - 1);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), "UTF-8"), 1 << 16);
 
-            // If this is not an empty set.
-            if (vertexString.length() > 0)
+        try
+        {
+            new GraphWriter(writer).write(this);
+        }
+        finally
+        {
+            writer.close();
+        }
+
+        finishFileOperation(event, path, false, "text", startNanos);
+    }
+
+    /**
+     * Constructs the graph from a specified binary graph file. See MappedGraph for the format.
+     * The edges are restored in the order they had when the file was written.
+     *
+     * @param path A file path.
+     *
+     * @exception GraphFormatException The file is not a binary graph file.
+     * @exception IOException The file cannot be read.
+     */
+    public void readFromBinaryFile(String path) throws GraphFormatException, IOException
+    {
+        GraphFileEvent event = new GraphFileEvent();
+        long startNanos = System.nanoTime();
+
+        event.begin();
+
+        if (listener != null)
+        {
+            listener.graphReading(path);
+        }
+
+        // Clears the vertices and the edges.
+        initialize(0, 0);
+
+        new MappedGraph(path).addTo(this);
+        finishFileOperation(event, path, true, "binary", startNanos);
+    }
+
+    /**
+     * Writes the graph to a specified binary graph file. See MappedGraph for the format.
+     * The order of the edges is kept, so reading the file gives the same getEdge indexes and toString.
+     *
+     * @param path A file path.
+     *
+     * @exception IOException The file cannot be written.
+     */
+    public void writeToBinaryFile(String path) throws IOException
+    {
+        GraphFileEvent event = new GraphFileEvent();
+        long startNanos = System.nanoTime();
+
+        event.begin();
+        MappedGraph.write(this, path);
+        finishFileOperation(event, path, false, "binary", startNanos);
+    }
+
+    /**
+     * Tells the listener that the value of a vertex was set. Called by Vertex.setValue.
+     * Vertices that were removed or cleared since they were stored are ignored.
+     *
+     * @param vertex A vertex that was stored in the graph.
+     */
+    void valueSet(Vertex vertex)
+    {
+        if (listener != null && verticesById.get(vertex.getId()) == vertex)
+        {
+            listener.valueSet(vertex);
+        }
+    }
+
+    /**
+     * Grows the storage so that the specified number of additional vertices and edges can be stored without growing again.
+     *
+     * @param vertexCount The number of additional vertices.
+     * @param directedEdgeCount The number of additional directed edges.
+     * @param undirectedEdgeCount The number of additional undirected edges.
+     */
+    void reserve(int vertexCount, int directedEdgeCount, int undirectedEdgeCount)
+    {
+        vertices.ensureCapacity(vertices.size() + vertexCount);
+        edges.ensureCapacity(edges.size() + directedEdgeCount + undirectedEdgeCount);
+        directedEdgeSlots.ensureCapacity(directedEdgeSlots.size() + directedEdgeCount);
+        undirectedEdgeSlots.ensureCapacity(undirectedEdgeSlots.size() + undirectedEdgeCount);
+    }
+
+    /**
+     * Gets the paths and the version of the stored vertex with the specified id.
+     *
+     * @param id The id of a vertex.
+     *
+     * @return The adjacency of the vertex, or null if it is not stored.
+     */
+    Adjacency getAdjacency(int id)
+    {
+        return adjacencies.get(id);
+    }
+
+    /**
+     * Gets the generation of the graph, which changes whenever its vertices and edges are cleared.
+     *
+     * @return The generation.
+     */
+    int getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * Initializes the lists of vertices and edges and their indexes.
+     *
+     * @param expectedVertexCount The number of vertices the graph should hold without growing.
+     * @param expectedEdgeCount The number of edges the graph should hold without growing.
+     */
+    private void initialize(int expectedVertexCount, int expectedEdgeCount)
+    {
+        // Hash maps grow once they are three quarters full.
+        int mapCapacity = (int)Math.min(expectedVertexCount * 4L / 3 + 1, Integer.MAX_VALUE);
+
+        vertices = new ArrayList<Vertex>(expectedVertexCount);
+        edges = new ArrayList<Edge>(expectedEdgeCount);
+        verticesById = new HashMap<Integer, Vertex>(mapCapacity);
+        adjacencies = new HashMap<Integer, Adjacency>(mapCapacity);
+        directedEdgeSlots = new LongIntHashMap(0);
+        undirectedEdgeSlots = new LongIntHashMap(0);
+        this.expectedEdgeCount = expectedEdgeCount;
+        vertexTombstoneCount = 0;
+        edgeTombstoneCount = 0;
+        vertexSlotIndex = null;
+        edgeSlotIndex = null;
+        loopCount = 0;
+        degreeHistogram = new int[16];
+        maxDegree = 0;
+        ++generation;
+    }
+
+    /**
+     * Stores the specified edge and its vertices unless an equal edge is stored.
+     *
+     * @param edge An edge.
+     *
+     * @return True if the edge was stored.
+     */
+    private boolean store(Edge edge)
+    {
+        LongIntHashMap edgeSlots = getEdgeSlots(edge);
+
+        // The expected edges may be directed or undirected, so the index that receives an edge first
+        // is sized for all of them but those already stored.
+        if (edgeSlots.size() == 0 && expectedEdgeCount > edges.size())
+        {
+            edgeSlots.ensureCapacity(expectedEdgeCount - edges.size());
+        }
+
+        if (!edgeSlots.putIfAbsent(edge.getKey(), edges.size()))
+        {
+            // This edge is already stored. Abort.
+            return false;
+        }
+
+        // Adds the edge.
+        edges.add(edge);
+
+        if (edgeSlotIndex != null)
+        {
+            edgeSlotIndex.append();
+        }
+
+        // Updates the vertices.
+        // Vertices that are already stored will not be stored again.
+        add(edge.getFirst());
+        add(edge.getSecond());
+
+        Adjacency first = adjacencies.get(edge.getFirstId());
+        Adjacency second = adjacencies.get(edge.getSecondId());
+
+        // Makes the edge point at the stored vertices rather than at copies of them.
+        if (edge.getFirst() != first.getVertex() || edge.getSecond() != second.getVertex())
+        {
+            edge.setVertices(first.getVertex(), second.getVertex());
+        }
+
+        // Attaches the edge to its vertices.
+        first.getPaths().add(edge);
+        first.getIncidentEdges().add(edge);
+
+        // A loop is attached only once.
+        if (second != first)
+        {
+            if (!edge.isDirected())
             {
-                // Goes through every element.
-                for (String element : vertexString.split(", "))
-                {
-                    int id = Integer.parseInt(element);
+                second.getPaths().add(edge);
+            }
 
-                    // Creates a vertex.
-                    add(new Vertex(id));
-                }
+            second.getIncidentEdges().add(edge);
+        }
+
+        updateDegrees(edge, first, second, 1);
+        first.incrementVersion();
+        second.incrementVersion();
+
+        return true;
+    }
+
+    /**
+     * Stores the specified vertex unless a vertex with the same id is stored.
+     *
+     * @param vertex A vertex.
+     *
+     * @return True if the vertex was stored.
+     */
+    private boolean store(Vertex vertex)
+    {
+        if (verticesById.containsKey(vertex.getId()))
+        {
+            // This vertex is already stored. Abort.
+            return false;
+        }
+
+        // Adds the vertex.
+        adjacencies.put(vertex.getId(), new Adjacency(vertex, vertices.size()));
+        vertices.add(vertex);
+        verticesById.put(vertex.getId(), vertex);
+        vertex.setGraph(this);
+        ++degreeHistogram[0];
+
+        if (vertexSlotIndex != null)
+        {
+            vertexSlotIndex.append();
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes the specified edge if an equal edge is stored.
+     *
+     * @param edge An edge.
+     *
+     * @return True if the edge was removed.
+     */
+    private boolean detach(Edge edge)
+    {
+        int slot = getEdgeSlots(edge).remove(edge.getKey());
+
+        if (slot == LongIntHashMap.MISSING)
+        {
+            return false;
+        }
+
+        // Gets the stored edge, which may be a different object that is equal to the specified edge.
+        Edge storedEdge = edges.get(slot);
+
+        edges.set(slot, null);
+        ++edgeTombstoneCount;
+
+        if (edgeSlotIndex != null)
+        {
+            edgeSlotIndex.remove(slot);
+        }
+
+        // Detaches the edge from its vertices.
+        Adjacency first = adjacencies.get(storedEdge.getFirstId());
+        Adjacency second = adjacencies.get(storedEdge.getSecondId());
+
+        first.getPaths().remove(storedEdge);
+        first.getIncidentEdges().remove(storedEdge);
+
+        if (second != first)
+        {
+            second.getPaths().remove(storedEdge);
+            second.getIncidentEdges().remove(storedEdge);
+        }
+
+        updateDegrees(storedEdge, first, second, -1);
+        first.incrementVersion();
+        second.incrementVersion();
+
+        sweepIfNeeded();
+
+        return true;
+    }
+
+    /**
+     * Removes the vertex with the same id as the specified vertex and its edges, if it is stored.
+     *
+     * @param vertex A vertex.
+     *
+     * @return True if the vertex was removed.
+     */
+    private boolean detach(Vertex vertex)
+    {
+        Adjacency adjacency = adjacencies.get(vertex.getId());
+
+        if (adjacency == null)
+        {
+            return false;
+        }
+
+        // Removes all edges associated with this vertex.
+        for (Edge edge : adjacency.getIncidentEdges().toArray(new Edge[0]))
+        {
+            removeEdge(edge);
+        }
+
+        // Removes the vertex.
+        vertices.set(adjacency.getSlot(), null);
+        ++vertexTombstoneCount;
+
+        if (vertexSlotIndex != null)
+        {
+            vertexSlotIndex.remove(adjacency.getSlot());
+        }
+
+        verticesById.remove(vertex.getId());
+        adjacencies.remove(vertex.getId());
+        adjacency.incrementVersion();
+        --degreeHistogram[0];
+        sweepIfNeeded();
+
+        return true;
+    }
+
+    /**
+     * Copies the edges that originate from the specified vertex.
+     *
+     * @param vertex A vertex.
+     *
+     * @return An array of edges that originate from the specified vertex.
+     */
+    private Edge[] readPaths(Vertex vertex)
+    {
+        Adjacency adjacency = adjacencies.get(vertex.getId());
+
+        if (adjacency == null)
+        {
+            // This vertex is not stored.
+            return new Edge[0];
+        }
+
+        ArrayList<Edge> paths = adjacency.getPaths();
+
+        return paths.toArray(new Edge[paths.size()]);
+    }
+
+    /**
+     * Reports a completed read or write of a graph file to Flight Recorder and to the listener.
+     *
+     * @param event The event, which began with the operation.
+     * @param path The path of the file.
+     * @param isRead True if the graph was read, false if it was written.
+     * @param format text or binary.
+     * @param startNanos The time the operation started at.
+     */
+    private void finishFileOperation(GraphFileEvent event, String path, boolean isRead, String format, long startNanos)
+    {
+        event.end();
+
+        if (event.shouldCommit())
+        {
+            event.path = path;
+            event.operation = isRead ? "read" : "write";
+            event.format = format;
+            event.vertexCount = countVertices();
+            event.edgeCount = countEdges();
+            event.commit();
+        }
+
+        if (listener != null)
+        {
+            if (isRead)
+            {
+                listener.graphRead(path, System.nanoTime() - startNanos);
+            }
+            else
+            {
+                listener.graphWritten(path, System.nanoTime() - startNanos);
             }
+        }
+    }
 
-            // Gets the elements of the edge set.
-            edgeString = edgeString.substring(5, edgeString.length() - 1);
+    /**
+     * Updates the degree counts after an edge is attached to its vertices or detached from them.
+     *
+     * @param edge The edge.
+     * @param first The adjacency of the first vertex of the edge.
+     * @param second The adjacency of the second vertex of the edge.
+     * @param delta 1 if the edge was attached, -1 if it was detached.
+     */
+    private void updateDegrees(Edge edge, Adjacency first, Adjacency second, int delta)
+    {
+        if (edge.isDirected())
+        {
+            first.addOutDegree(delta);
+            second.addInDegree(delta);
+        }
+        else
+        {
+            first.addUndirectedDegree(delta);
 
-            // If this is not an empty set.
-            if (edgeString.length() > 0)
+            if (second != first)
             {
-                // Converts the pairs between square brackets into undirected edges.
-                for (String pair : StringManipulation.getSubstringsBetween(edgeString, "[", "]"))
-                {
-                    String[] ids = pair.split(", ");
+                second.addUndirectedDegree(delta);
+            }
+        }
 
-                    // The id of the first vertex.
-                    int firstId = Integer.parseInt(ids[0]);
+        if (second == first)
+        {
+            loopCount += delta;
+        }
+        else
+        {
+            moveInDegreeHistogram(second.getIncidentEdges().size(), delta);
+        }
 
-                    // The id of the second vertex.
-                    int secondId = Integer.parseInt(ids[1]);
+        moveInDegreeHistogram(first.getIncidentEdges().size(), delta);
+    }
 
-                    // Creates the two vertices, forms the edge and adds it to the list of edges.
-                    add(new UndirectedEdge(new Vertex(firstId), new Vertex(secondId)));
-                }
+    /**
+     * Moves a vertex to its new degree in the degree histogram.
+     *
+     * @param degree The new degree of the vertex.
+     * @param delta The change of its degree, 1 or -1.
+     */
+    private void moveInDegreeHistogram(int degree, int delta)
+    {
+        if (degree == degreeHistogram.length)
+        {
+            degreeHistogram = Arrays.copyOf(degreeHistogram, degree * 2);
+        }
 
-                // Converts the pairs between round brackets into directed edges.
-                for (String pair : StringManipulation.getSubstringsBetween(edgeString, "(", ")"))
-                {
-                    String[] ids = pair.split(", ");
+        --degreeHistogram[degree - delta];
+        ++degreeHistogram[degree];
 
-                    // The id of the origin vertex.
-                    int originId = Integer.parseInt(ids[0]);
+        // The largest degree changes by at most one at a time.
+        if (degree > maxDegree)
+        {
+            maxDegree = degree;
+        }
+        else if (degreeHistogram[maxDegree] == 0 && maxDegree > 0)
+        {
+            --maxDegree;
+        }
+    }
 
-                    // The id of the target vertex.
-                    int targetId = Integer.parseInt(ids[1]);
+    /**
+     * Gets the slot of the vertex with the specified index.
+     *
+     * @param index The index of a vertex.
+     *
+     * @return The slot of the vertex.
+     *
+     * @exception IndexOutOfBoundsException Specified index is out of bounds.
+     */
+    private int getVertexSlot(int index) throws IndexOutOfBoundsException
+    {
+        if (vertexTombstoneCount == 0)
+        {
+            return index;
+        }
 
-                    // Creates the two vertices, forms the edge and adds it to the list of edges.
-                    add(new DirectedEdge(new Vertex(originId), new Vertex(targetId)));
-                }
-            }
+        if (index < 0 || index >= countVertices())
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + countVertices());
         }
-        catch (Exception exception)
+
+        if (vertexSlotIndex == null)
         {
-            throw new Exception("\"" + path + "\" is not a graph file.");
+            vertexSlotIndex = new SlotIndex(vertices);
         }
+
+        return vertexSlotIndex.getSlot(index);
     }
 
     /**
-     * Writes the graph to a specified file.
+     * Gets the slot of the edge with the specified index.
      *
-     * @param path A file path.
+     * @param index The index of an edge.
+     *
+     * @return The slot of the edge.
+     *
+     * @exception IndexOutOfBoundsException Specified index is out of bounds.
      */
-    public void writeToFile(String path) throws FileNotFoundException
+    private int getEdgeSlot(int index) throws IndexOutOfBoundsException
     {
-        try
+        if (edgeTombstoneCount == 0)
         {
-            PrintWriter writer = new PrintWriter(path, "UTF-8");
+            return index;
+        }
 
-            writer.print(toString());
-            writer.close();
+        if (index < 0 || index >= countEdges())
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + countEdges());
         }
-        catch (UnsupportedEncodingException exception)
+
+        if (edgeSlotIndex == null)
         {
-            // This should never happen.
-            System.out.println(exception);
+            edgeSlotIndex = new SlotIndex(edges);
         }
+
+        return edgeSlotIndex.getSlot(index);
     }
 
-    @Override
-    public String toString()
+    /**
+     * Sweeps the tombstones out of a list once they make up too much of it.
+     */
+    private void sweepIfNeeded()
     {
-        // Transforms the vertices into a string.
-        String graphString = "V = {";
+        if (vertexTombstoneCount > vertices.size() * TOMBSTONE_RATIO || edgeTombstoneCount > edges.size() * TOMBSTONE_RATIO)
+        {
+            sweep();
+        }
+    }
 
-        for (int index = 0; index < vertices.size(); ++index)
+    /**
+     * Removes the tombstones from the lists of vertices and edges, keeping the order of the stored elements,
+     * and updates the slots that point into the lists.
+     */
+    private void sweep()
+    {
+        if (vertexTombstoneCount > 0)
         {
-            graphString += vertices.get(index);
+            int slot = 0;
 
-            // Adds a comma if this vertex is not the last one in the list.
-            if (index < vertices.size() - 1)
+            for (Vertex vertex : vertices)
             {
-                graphString += ", ";
+                if (vertex != null)
+                {
+                    adjacencies.get(vertex.getId()).setSlot(slot);
+                    vertices.set(slot++, vertex);
+                }
             }
-        }
 
-        // Transforms the edges into a string.
-        graphString += "}\nE = {";
+            vertices.subList(slot, vertices.size()).clear();
+            vertexTombstoneCount = 0;
+            vertexSlotIndex = null;
+        }
 
-        for (int index = 0; index < edges.size(); ++index)
+        if (edgeTombstoneCount > 0)
         {
-            graphString += edges.get(index);
+            int slot = 0;
 
-            // Adds a comma if this edge is not the last one in the list.
-            if (index < edges.size() - 1)
+            for (Edge edge : edges)
             {
-                graphString += ", ";
+                if (edge != null)
+                {
+                    getEdgeSlots(edge).replace(edge.getKey(), slot);
+                    edges.set(slot++, edge);
+                }
             }
+
+            edges.subList(slot, edges.size()).clear();
+            edgeTombstoneCount = 0;
+            edgeSlotIndex = null;
+        }
+    }
+
+    /**
+     * Gets the map of slots that holds edges of the same kind as the specified edge.
+     * Directed and undirected edges are kept apart because (a, b) and [a, b] are different edges.
+     *
+     * @param edge An edge.
+     *
+     * @return The slots of edges of the same kind, indexed by edge key.
+     */
+    private LongIntHashMap getEdgeSlots(Edge edge)
+    {
+        return edge.isDirected() ? directedEdgeSlots : undirectedEdgeSlots;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringWriter writer = new StringWriter();
+
+        try
+        {
+            new GraphWriter(writer).write(this);
+        }
+        catch (IOException exception)
+        {
+            // A StringWriter never throws.
+            throw new AssertionError(exception);
         }
 
-        // Replaces the new lines with platform-independent line separators
-        // and returns the result.
-        return graphString.replace("\n", System.getProperty("line.separator")) + "}";
+        return writer.toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,307 @@
+import java.util.Arrays;
+
+/**
+ * Collects vertices and edges as primitive ids and installs them into a graph in one step.
+ * Duplicates are removed from the batch before any Vertex or Edge object is created, and the graph
+ * is grown once to its final size. The result is the same as adding the vertices and the edges
+ * one by one in the order they were given to the builder.
+ *
+ * @author Andrei Muntean
+ */
+public class GraphBuilder
+{
+    // The ids and values of the vertices, in the order they were given.
+    // Edges also contribute their vertices, just like Graph.add(Edge) does.
+    private int[] vertexIds;
+    private int[] vertexValues;
+    private int vertexCount;
+
+    // The ids of the vertices of the edges and their direction, in the order they were given.
+    private int[] firstIds;
+    private int[] secondIds;
+    private boolean[] directed;
+    private int edgeCount;
+
+    // The weights of the edges and whether each edge has one. Both are null until a weighted edge is added.
+    private double[] weights;
+    private boolean[] weighted;
+
+    /**
+     * Constructs a builder.
+     */
+    public GraphBuilder()
+    {
+        this(16, 16);
+    }
+
+    /**
+     * Constructs a builder with room for the specified number of vertices and edges.
+     *
+     * @param expectedVertexCount The number of vertices the builder should hold without growing.
+     * @param expectedEdgeCount The number of edges the builder should hold without growing.
+     */
+    public GraphBuilder(int expectedVertexCount, int expectedEdgeCount)
+    {
+        // Every edge also records its two vertices.
+        int vertexCapacity = (int)Math.min(expectedVertexCount + 2L * expectedEdgeCount, Integer.MAX_VALUE - 8);
+
+        vertexIds = new int[Math.max(vertexCapacity, 1)];
+        vertexValues = new int[vertexIds.length];
+        firstIds = new int[Math.max(expectedEdgeCount, 1)];
+        secondIds = new int[firstIds.length];
+        directed = new boolean[firstIds.length];
+    }
+
+    /**
+     * Adds a vertex with the specified id.
+     *
+     * @param id The id of the vertex.
+     */
+    public void addVertex(int id)
+    {
+        addVertex(id, 0);
+    }
+
+    /**
+     * Adds a vertex with the specified id and value.
+     *
+     * @param id The id of the vertex.
+     * @param value The value of the vertex.
+     */
+    public void addVertex(int id, int value)
+    {
+        if (vertexCount == vertexIds.length)
+        {
+            vertexIds = Arrays.copyOf(vertexIds, grow(vertexCount));
+            vertexValues = Arrays.copyOf(vertexValues, vertexIds.length);
+        }
+
+        vertexIds[vertexCount] = id;
+        vertexValues[vertexCount] = value;
+        ++vertexCount;
+    }
+
+    /**
+     * Adds an edge between the vertices with the specified ids.
+     *
+     * @param firstId The id of the origin, or of vertex A if the edge is undirected.
+     * @param secondId The id of the destination, or of vertex B if the edge is undirected.
+     * @param isDirected Whether the edge is directed.
+     */
+    public void addEdge(int firstId, int secondId, boolean isDirected)
+    {
+        if (edgeCount == firstIds.length)
+        {
+            firstIds = Arrays.copyOf(firstIds, grow(edgeCount));
+            secondIds = Arrays.copyOf(secondIds, firstIds.length);
+            directed = Arrays.copyOf(directed, firstIds.length);
+
+            if (weights != null)
+            {
+                weights = Arrays.copyOf(weights, firstIds.length);
+                weighted = Arrays.copyOf(weighted, firstIds.length);
+            }
+        }
+
+        firstIds[edgeCount] = firstId;
+        secondIds[edgeCount] = secondId;
+        directed[edgeCount] = isDirected;
+        ++edgeCount;
+
+        addVertex(firstId);
+        addVertex(secondId);
+    }
+
+    /**
+     * Adds a weighted edge between the vertices with the specified ids.
+     *
+     * @param firstId The id of the origin, or of vertex A if the edge is undirected.
+     * @param secondId The id of the destination, or of vertex B if the edge is undirected.
+     * @param isDirected Whether the edge is directed.
+     * @param weight The weight of the edge.
+     *
+     * @exception IllegalArgumentException The weight is infinite or NaN.
+     */
+    public void addEdge(int firstId, int secondId, boolean isDirected, double weight) throws IllegalArgumentException
+    {
+        if (Double.isNaN(weight) || Double.isInfinite(weight))
+        {
+            throw new IllegalArgumentException("The weight must be finite.");
+        }
+
+        addEdge(firstId, secondId, isDirected);
+
+        if (weights == null)
+        {
+            weights = new double[firstIds.length];
+            weighted = new boolean[firstIds.length];
+        }
+
+        weights[edgeCount - 1] = weight;
+        weighted[edgeCount - 1] = true;
+    }
+
+    /**
+     * Adds the edges described by the specified arrays. The edge at index i goes from firstIds[i]
+     * to secondIds[i] and is directed if directed[i] is true.
+     *
+     * @param firstIds The ids of the origins, or of vertex A for undirected edges.
+     * @param secondIds The ids of the destinations, or of vertex B for undirected edges.
+     * @param directed The direction of every edge.
+     *
+     * @exception IllegalArgumentException The arrays have different lengths.
+     */
+    public void addEdges(int[] firstIds, int[] secondIds, boolean[] directed) throws IllegalArgumentException
+    {
+        if (firstIds.length != secondIds.length || firstIds.length != directed.length)
+        {
+            throw new IllegalArgumentException("The arrays must have the same length.");
+        }
+
+        for (int index = 0; index < firstIds.length; ++index)
+        {
+            addEdge(firstIds[index], secondIds[index], directed[index]);
+        }
+    }
+
+    /**
+     * Creates a graph from the vertices and the edges that were added.
+     *
+     * @return A graph.
+     */
+    public Graph build()
+    {
+        Graph graph = new Graph(0, 0);
+
+        addTo(graph);
+
+        return graph;
+    }
+
+    /**
+     * Adds the vertices and the edges to the specified graph. Does not store duplicates.
+     *
+     * @param graph A graph.
+     */
+    public void addTo(Graph graph)
+    {
+        // Removes duplicate vertices, keeping the first occurrence of each id.
+        LongHashSet ids = new LongHashSet(vertexCount);
+        int uniqueVertexCount = 0;
+
+        for (int index = 0; index < vertexCount; ++index)
+        {
+            if (ids.add(vertexIds[index]))
+            {
+                vertexIds[uniqueVertexCount] = vertexIds[index];
+                vertexValues[uniqueVertexCount] = vertexValues[index];
+                ++uniqueVertexCount;
+            }
+        }
+
+        // Removes duplicate edges, keeping the first occurrence of each edge.
+        int directedEdgeCount = 0;
+
+        for (int index = 0; index < edgeCount; ++index)
+        {
+            if (directed[index])
+            {
+                ++directedEdgeCount;
+            }
+        }
+
+        LongHashSet directedKeys = new LongHashSet(directedEdgeCount);
+        LongHashSet undirectedKeys = new LongHashSet(edgeCount - directedEdgeCount);
+        int uniqueEdgeCount = 0;
+
+        for (int index = 0; index < edgeCount; ++index)
+        {
+            boolean isUnique;
+
+            if (directed[index])
+            {
+                isUnique = directedKeys.add(getKey(firstIds[index], secondIds[index]));
+            }
+            else
+            {
+                int firstId = Math.min(firstIds[index], secondIds[index]);
+                int secondId = Math.max(firstIds[index], secondIds[index]);
+
+                isUnique = undirectedKeys.add(getKey(firstId, secondId));
+            }
+
+            if (isUnique)
+            {
+                firstIds[uniqueEdgeCount] = firstIds[index];
+                secondIds[uniqueEdgeCount] = secondIds[index];
+                directed[uniqueEdgeCount] = directed[index];
+
+                if (weights != null)
+                {
+                    weights[uniqueEdgeCount] = weights[index];
+                    weighted[uniqueEdgeCount] = weighted[index];
+                }
+
+                ++uniqueEdgeCount;
+            }
+        }
+
+        // Grows the graph once.
+        graph.reserve(uniqueVertexCount, directedKeys.size(), undirectedKeys.size());
+
+        // Installs the vertices. Vertices that are already stored will not be stored again.
+        for (int index = 0; index < uniqueVertexCount; ++index)
+        {
+            graph.add(new Vertex(vertexIds[index], vertexValues[index]));
+        }
+
+        // Installs the edges. Their vertices are the ones stored in the graph.
+        for (int index = 0; index < uniqueEdgeCount; ++index)
+        {
+            Vertex first = graph.getVertexWithId(firstIds[index]);
+            Vertex second = graph.getVertexWithId(secondIds[index]);
+
+            if (weights != null && weighted[index])
+            {
+                graph.add(directed[index] ? new WeightedDirectedEdge(first, second, weights[index])
+                    : new WeightedUndirectedEdge(first, second, weights[index]));
+            }
+            else if (directed[index])
+            {
+                graph.add(new DirectedEdge(first, second));
+            }
+            else
+            {
+                graph.add(new UndirectedEdge(first, second));
+            }
+        }
+
+        vertexCount = uniqueVertexCount;
+        edgeCount = uniqueEdgeCount;
+    }
+
+    /**
+     * Packs two ids into a key.
+     *
+     * @param firstId The first id.
+     * @param secondId The second id.
+     *
+     * @return The key.
+     */
+    private static long getKey(int firstId, int secondId)
+    {
+        return (long)firstId << 32 | secondId & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Gets the new length of an array that is full.
+     *
+     * @param length The current length.
+     *
+     * @return The new length.
+     */
+    private static int grow(int length)
+    {
+        return (int)Math.min(length * 2L, Integer.MAX_VALUE - 8);
+    }
+}
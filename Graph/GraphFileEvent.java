@@ -0,0 +1,33 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for reading or writing a graph file. Costs nothing unless a recording enables it.
+ *
+ * @author Andrei Muntean
+ */
+@Name("graph.GraphFile")
+@Label("Graph File")
+@Category("Graph")
+@Description("A graph was read from or written to a file")
+class GraphFileEvent extends jdk.jfr.Event
+{
+    @Label("Path")
+    String path;
+
+    @Label("Operation")
+    @Description("read or write")
+    String operation;
+
+    @Label("Format")
+    @Description("text or binary")
+    String format;
+
+    @Label("Vertices")
+    int vertexCount;
+
+    @Label("Edges")
+    int edgeCount;
+}
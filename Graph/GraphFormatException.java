@@ -0,0 +1,60 @@
+/**
+ * Signals that a graph file is malformed.
+ *
+ * @author Andrei Muntean
+ */
+public class GraphFormatException extends Exception
+{
+    private static final long serialVersionUID = 1L;
+
+    // The line at which the error was found, starting from 1.
+    private int line;
+
+    // The column at which the error was found, starting from 1.
+    private int column;
+
+    /**
+     * Constructs the exception for an error that has no position, such as in a binary file.
+     *
+     * @param message A description of the error.
+     */
+    public GraphFormatException(String message)
+    {
+        super(message);
+    }
+
+    /**
+     * Constructs the exception.
+     *
+     * @param message A description of the error.
+     * @param line The line at which the error was found, starting from 1.
+     * @param column The column at which the error was found, starting from 1.
+     */
+    public GraphFormatException(String message, int line, int column)
+    {
+        super(message + " (line " + line + ", column " + column + ")");
+
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Gets the line at which the error was found.
+     *
+     * @return The line at which the error was found, starting from 1, or 0 if it has no position.
+     */
+    public int getLine()
+    {
+        return line;
+    }
+
+    /**
+     * Gets the column at which the error was found.
+     *
+     * @return The column at which the error was found, starting from 1, or 0 if it has no position.
+     */
+    public int getColumn()
+    {
+        return column;
+    }
+}
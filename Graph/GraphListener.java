@@ -0,0 +1,95 @@
+/**
+ * Receives the operations of a graph, for instance to collect metrics. A graph without a listener
+ * does not measure anything. Calls are made on the thread that performs the operation, after it completes,
+ * so implementations should return quickly.
+ *
+ * @author Andrei Muntean
+ */
+public interface GraphListener
+{
+    /**
+     * Called after an edge was added.
+     *
+     * @param edge The edge.
+     * @param isStored True if the edge was stored, false if it was a duplicate.
+     * @param nanos The duration of the operation in nanoseconds.
+     */
+    void edgeAdded(Edge edge, boolean isStored, long nanos);
+
+    /**
+     * Called after a vertex was added, including the vertices added along with an edge.
+     *
+     * @param vertex The vertex.
+     * @param isStored True if the vertex was stored, false if it was a duplicate.
+     * @param nanos The duration of the operation in nanoseconds.
+     */
+    void vertexAdded(Vertex vertex, boolean isStored, long nanos);
+
+    /**
+     * Called after an edge was removed, including the edges removed along with a vertex.
+     *
+     * @param edge The edge.
+     * @param wasStored True if the edge was removed, false if it was not stored.
+     * @param nanos The duration of the operation in nanoseconds.
+     */
+    void edgeRemoved(Edge edge, boolean wasStored, long nanos);
+
+    /**
+     * Called after a vertex was removed.
+     *
+     * @param vertex The vertex.
+     * @param wasStored True if the vertex was removed, false if it was not stored.
+     * @param nanos The duration of the operation in nanoseconds.
+     */
+    void vertexRemoved(Vertex vertex, boolean wasStored, long nanos);
+
+    /**
+     * Called after the value of a stored vertex was set with Vertex.setValue. Not timed, since setting a value
+     * takes no measurable time. May be called from several threads at once, for instance by PregelEngine.
+     *
+     * @param vertex The vertex, which holds the new value.
+     */
+    void valueSet(Vertex vertex);
+
+    /**
+     * Called after a vertex was looked up by id.
+     *
+     * @param id The id.
+     * @param isFound True if a vertex with the id is stored.
+     * @param nanos The duration of the operation in nanoseconds.
+     */
+    void vertexFound(int id, boolean isFound, long nanos);
+
+    /**
+     * Called after the paths from a vertex were read.
+     *
+     * @param vertex The vertex.
+     * @param pathCount The number of paths that were returned.
+     * @param nanos The duration of the operation in nanoseconds.
+     */
+    void pathsRead(Vertex vertex, int pathCount, long nanos);
+
+    /**
+     * Called before the graph is cleared to be read from a file. The vertices and edges of the file are then
+     * reported as they are added, and graphRead is called once the whole file was read.
+     *
+     * @param path The path of the file.
+     */
+    void graphReading(String path);
+
+    /**
+     * Called after the graph was read from a file.
+     *
+     * @param path The path of the file.
+     * @param nanos The duration of the operation in nanoseconds.
+     */
+    void graphRead(String path, long nanos);
+
+    /**
+     * Called after the graph was written to a file.
+     *
+     * @param path The path of the file.
+     * @param nanos The duration of the operation in nanoseconds.
+     */
+    void graphWritten(String path, long nanos);
+}
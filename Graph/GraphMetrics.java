@@ -0,0 +1,358 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects counters and latency histograms of the operations of one or more graphs.
+ * Register it with Graph.setListener. Every counter is striped, so graphs used from many threads
+ * can share one instance. Besides latencies, it records the sizes of the results of getPathsFrom and
+ * remembers the vertex with the most paths, which points at the vertices that make queries slow.
+ *
+ * @author Andrei Muntean
+ */
+public class GraphMetrics implements GraphListener
+{
+    // The number of edges that were stored and rejected as duplicates.
+    private LongAdder storedEdgeCount;
+    private LongAdder duplicateEdgeCount;
+
+    // The number of vertices that were stored and rejected as duplicates.
+    private LongAdder storedVertexCount;
+    private LongAdder duplicateVertexCount;
+
+    // The number of edges and vertices that were removed.
+    private LongAdder removedEdgeCount;
+    private LongAdder removedVertexCount;
+
+    // The number of lookups by id that found no vertex.
+    private LongAdder missedLookupCount;
+
+    // The number of values that were set.
+    private LongAdder setValueCount;
+
+    // The latencies of the operations in nanoseconds.
+    private Histogram addEdgeLatency;
+    private Histogram addVertexLatency;
+    private Histogram removeEdgeLatency;
+    private Histogram removeVertexLatency;
+    private Histogram getVertexWithIdLatency;
+    private Histogram getPathsFromLatency;
+    private Histogram readLatency;
+    private Histogram writeLatency;
+
+    // The numbers of paths returned by getPathsFrom.
+    private Histogram pathCounts;
+
+    // The vertex with the most paths seen by getPathsFrom, and their number.
+    private Vertex busiestVertex;
+    private volatile int busiestVertexPathCount;
+
+    /**
+     * Constructs empty metrics.
+     */
+    public GraphMetrics()
+    {
+        storedEdgeCount = new LongAdder();
+        duplicateEdgeCount = new LongAdder();
+        storedVertexCount = new LongAdder();
+        duplicateVertexCount = new LongAdder();
+        removedEdgeCount = new LongAdder();
+        removedVertexCount = new LongAdder();
+        missedLookupCount = new LongAdder();
+        setValueCount = new LongAdder();
+        addEdgeLatency = new Histogram();
+        addVertexLatency = new Histogram();
+        removeEdgeLatency = new Histogram();
+        removeVertexLatency = new Histogram();
+        getVertexWithIdLatency = new Histogram();
+        getPathsFromLatency = new Histogram();
+        readLatency = new Histogram();
+        writeLatency = new Histogram();
+        pathCounts = new Histogram();
+    }
+
+    @Override
+    public void edgeAdded(Edge edge, boolean isStored, long nanos)
+    {
+        (isStored ? storedEdgeCount : duplicateEdgeCount).increment();
+        addEdgeLatency.record(nanos);
+    }
+
+    @Override
+    public void vertexAdded(Vertex vertex, boolean isStored, long nanos)
+    {
+        (isStored ? storedVertexCount : duplicateVertexCount).increment();
+        addVertexLatency.record(nanos);
+    }
+
+    @Override
+    public void edgeRemoved(Edge edge, boolean wasStored, long nanos)
+    {
+        if (wasStored)
+        {
+            removedEdgeCount.increment();
+        }
+
+        removeEdgeLatency.record(nanos);
+    }
+
+    @Override
+    public void vertexRemoved(Vertex vertex, boolean wasStored, long nanos)
+    {
+        if (wasStored)
+        {
+            removedVertexCount.increment();
+        }
+
+        removeVertexLatency.record(nanos);
+    }
+
+    @Override
+    public void valueSet(Vertex vertex)
+    {
+        setValueCount.increment();
+    }
+
+    @Override
+    public void vertexFound(int id, boolean isFound, long nanos)
+    {
+        if (!isFound)
+        {
+            missedLookupCount.increment();
+        }
+
+        getVertexWithIdLatency.record(nanos);
+    }
+
+    @Override
+    public void pathsRead(Vertex vertex, int pathCount, long nanos)
+    {
+        getPathsFromLatency.record(nanos);
+        pathCounts.record(pathCount);
+
+        // Locks only when a new largest count is seen, which is rare.
+        if (pathCount > busiestVertexPathCount)
+        {
+            synchronized (this)
+            {
+                if (pathCount > busiestVertexPathCount)
+                {
+                    busiestVertex = vertex;
+                    busiestVertexPathCount = pathCount;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void graphReading(String path)
+    {
+    }
+
+    @Override
+    public void graphRead(String path, long nanos)
+    {
+        readLatency.record(nanos);
+    }
+
+    @Override
+    public void graphWritten(String path, long nanos)
+    {
+        writeLatency.record(nanos);
+    }
+
+    /**
+     * Gets the number of edges that were stored.
+     *
+     * @return The number of edges.
+     */
+    public long getStoredEdgeCount()
+    {
+        return storedEdgeCount.sum();
+    }
+
+    /**
+     * Gets the number of edges that were not stored because an equal edge was stored.
+     *
+     * @return The number of edges.
+     */
+    public long getDuplicateEdgeCount()
+    {
+        return duplicateEdgeCount.sum();
+    }
+
+    /**
+     * Gets the number of vertices that were stored.
+     *
+     * @return The number of vertices.
+     */
+    public long getStoredVertexCount()
+    {
+        return storedVertexCount.sum();
+    }
+
+    /**
+     * Gets the number of vertices that were not stored because a vertex with the same id was stored.
+     *
+     * @return The number of vertices.
+     */
+    public long getDuplicateVertexCount()
+    {
+        return duplicateVertexCount.sum();
+    }
+
+    /**
+     * Gets the number of edges that were removed.
+     *
+     * @return The number of edges.
+     */
+    public long getRemovedEdgeCount()
+    {
+        return removedEdgeCount.sum();
+    }
+
+    /**
+     * Gets the number of vertices that were removed.
+     *
+     * @return The number of vertices.
+     */
+    public long getRemovedVertexCount()
+    {
+        return removedVertexCount.sum();
+    }
+
+    /**
+     * Gets the number of lookups by id that found no vertex.
+     *
+     * @return The number of lookups.
+     */
+    public long getMissedLookupCount()
+    {
+        return missedLookupCount.sum();
+    }
+
+    /**
+     * Gets the number of values that were set.
+     *
+     * @return The number of values.
+     */
+    public long getSetValueCount()
+    {
+        return setValueCount.sum();
+    }
+
+    /**
+     * Gets the latencies of add(Edge) in nanoseconds.
+     *
+     * @return The histogram of the latencies.
+     */
+    public Histogram getAddEdgeLatency()
+    {
+        return addEdgeLatency;
+    }
+
+    /**
+     * Gets the latencies of add(Vertex) in nanoseconds.
+     *
+     * @return The histogram of the latencies.
+     */
+    public Histogram getAddVertexLatency()
+    {
+        return addVertexLatency;
+    }
+
+    /**
+     * Gets the latencies of edge removals in nanoseconds.
+     *
+     * @return The histogram of the latencies.
+     */
+    public Histogram getRemoveEdgeLatency()
+    {
+        return removeEdgeLatency;
+    }
+
+    /**
+     * Gets the latencies of vertex removals in nanoseconds.
+     *
+     * @return The histogram of the latencies.
+     */
+    public Histogram getRemoveVertexLatency()
+    {
+        return removeVertexLatency;
+    }
+
+    /**
+     * Gets the latencies of getVertexWithId in nanoseconds.
+     *
+     * @return The histogram of the latencies.
+     */
+    public Histogram getGetVertexWithIdLatency()
+    {
+        return getVertexWithIdLatency;
+    }
+
+    /**
+     * Gets the latencies of getPathsFrom in nanoseconds.
+     *
+     * @return The histogram of the latencies.
+     */
+    public Histogram getGetPathsFromLatency()
+    {
+        return getPathsFromLatency;
+    }
+
+    /**
+     * Gets the latencies of reading graph files in nanoseconds.
+     *
+     * @return The histogram of the latencies.
+     */
+    public Histogram getReadLatency()
+    {
+        return readLatency;
+    }
+
+    /**
+     * Gets the latencies of writing graph files in nanoseconds.
+     *
+     * @return The histogram of the latencies.
+     */
+    public Histogram getWriteLatency()
+    {
+        return writeLatency;
+    }
+
+    /**
+     * Gets the numbers of paths returned by getPathsFrom.
+     *
+     * @return The histogram of the numbers of paths.
+     */
+    public Histogram getPathCounts()
+    {
+        return pathCounts;
+    }
+
+    /**
+     * Gets the vertex with the most paths that getPathsFrom returned.
+     *
+     * @return The vertex, or null if getPathsFrom was not called.
+     */
+    public synchronized Vertex getBusiestVertex()
+    {
+        return busiestVertex;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "edges: stored=" + getStoredEdgeCount() + ", duplicates=" + getDuplicateEdgeCount() + ", removed=" + getRemovedEdgeCount()
+            + "\nvertices: stored=" + getStoredVertexCount() + ", duplicates=" + getDuplicateVertexCount() + ", removed=" + getRemovedVertexCount()
+            + ", values set=" + getSetValueCount()
+            + "\nadd(Edge) ns: " + addEdgeLatency
+            + "\nadd(Vertex) ns: " + addVertexLatency
+            + "\nremoveEdge ns: " + removeEdgeLatency
+            + "\nremoveVertex ns: " + removeVertexLatency
+            + "\ngetVertexWithId ns: " + getVertexWithIdLatency + ", misses=" + getMissedLookupCount()
+            + "\ngetPathsFrom ns: " + getPathsFromLatency
+            + "\ngetPathsFrom paths: " + pathCounts + ", busiest vertex=" + getBusiestVertex()
+            + "\nread ns: " + readLatency
+            + "\nwrite ns: " + writeLatency;
+    }
+}
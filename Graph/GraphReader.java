@@ -0,0 +1,465 @@
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a graph written in the format produced by Graph.toString:
+ *
+ * V = {1, 2, 3}
+ * E = {(1, 2), [2, 3], (3, 1, 0.5)}
+ *
+ * An optional third number in an edge is its weight.
+ * The source is read through a fixed buffer, one character at a time, and is parsed in a single pass.
+ * Vertices and both kinds of edges are added to the graph as soon as they are read.
+ *
+ * @author Andrei Muntean
+ */
+public class GraphReader
+{
+    // The size of the character buffer.
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Marks the end of the source.
+    private static final int END = -1;
+
+    // The longest number of characters a weight can have.
+    private static final int MAXIMUM_WEIGHT_LENGTH = 64;
+
+    // The powers of ten that are exactly representable as doubles.
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // The source of characters.
+    private Reader reader;
+
+    // The name of the source, used in error messages.
+    private String sourceName;
+
+    // The buffered characters.
+    private char[] buffer;
+
+    // The number of characters in the buffer.
+    private int length;
+
+    // The index of the current character in the buffer.
+    private int index;
+
+    // The line of the current character, starting from 1.
+    private int line;
+
+    // The column of the current character, starting from 1.
+    private int column;
+
+    // Holds the characters of the weight being read.
+    private char[] weightCharacters;
+
+    /**
+     * Constructs a reader.
+     *
+     * @param reader The source of characters.
+     * @param sourceName The name of the source, used in error messages.
+     */
+    public GraphReader(Reader reader, String sourceName)
+    {
+        this.reader = reader;
+        this.sourceName = sourceName;
+        buffer = new char[BUFFER_SIZE];
+        weightCharacters = new char[MAXIMUM_WEIGHT_LENGTH];
+        line = 1;
+        column = 1;
+    }
+
+    /**
+     * Reads the vertices and the edges and adds them to the specified graph.
+     *
+     * @param graph A graph.
+     *
+     * @exception GraphFormatException The source is not a graph.
+     * @exception IOException The source cannot be read.
+     */
+    public void read(Graph graph) throws GraphFormatException, IOException
+    {
+        // Reads the vertex set.
+        readSetStart('V');
+
+        if (!skipIf('}'))
+        {
+            do
+            {
+                graph.add(new Vertex(readInteger()));
+            }
+            while (readSeparator('}'));
+        }
+
+        // Reads the edge set.
+        readSetStart('E');
+
+        if (!skipIf('}'))
+        {
+            do
+            {
+                readEdge(graph);
+            }
+            while (readSeparator('}'));
+        }
+
+        skipWhitespace();
+
+        if (peek() != END)
+        {
+            throw error("Expected the end of the graph");
+        }
+    }
+
+    /**
+     * Reads the start of a set, such as "V = {".
+     *
+     * @param name The name of the set.
+     */
+    private void readSetStart(char name) throws GraphFormatException, IOException
+    {
+        expect(name);
+        expect('=');
+        expect('{');
+    }
+
+    /**
+     * Reads an edge and adds it to the specified graph. Pairs between round brackets are directed edges
+     * and pairs between square brackets are undirected edges. A third number makes the edge weighted.
+     *
+     * @param graph A graph.
+     */
+    private void readEdge(Graph graph) throws GraphFormatException, IOException
+    {
+        skipWhitespace();
+
+        boolean isDirected;
+
+        if (skipIf('('))
+        {
+            isDirected = true;
+        }
+        else if (skipIf('['))
+        {
+            isDirected = false;
+        }
+        else
+        {
+            throw error("Expected '(' or '['");
+        }
+
+        int firstId = readInteger();
+
+        expect(',');
+
+        int secondId = readInteger();
+
+        skipWhitespace();
+
+        boolean isWeighted = skipIf(',');
+        double weight = isWeighted ? readWeight() : 1;
+
+        expect(isDirected ? ')' : ']');
+
+        Vertex first = getVertex(graph, firstId);
+        Vertex second = getVertex(graph, secondId);
+
+        if (isWeighted)
+        {
+            graph.add(isDirected ? new WeightedDirectedEdge(first, second, weight) : new WeightedUndirectedEdge(first, second, weight));
+        }
+        else
+        {
+            graph.add(isDirected ? new DirectedEdge(first, second) : new UndirectedEdge(first, second));
+        }
+    }
+
+    /**
+     * Gets the stored vertex with the specified id, or a new vertex if there is none, so that
+     * edges do not hold copies of the vertices the graph stores.
+     *
+     * @param graph The graph being read into.
+     * @param id The id of a vertex.
+     *
+     * @return A vertex with the specified id.
+     */
+    private Vertex getVertex(Graph graph, int id)
+    {
+        Vertex vertex = graph.getVertexWithId(id);
+
+        return vertex == null ? new Vertex(id) : vertex;
+    }
+
+    /**
+     * Reads a decimal number, such as 3, -0.25 or 1.0E-5.
+     * Short numbers without an exponent are computed directly. Others are handed to Double.parseDouble.
+     *
+     * @return The number.
+     */
+    private double readWeight() throws GraphFormatException, IOException
+    {
+        skipWhitespace();
+
+        int length = 0;
+        int digitCount = 0;
+        int fractionDigitCount = 0;
+        long mantissa = 0;
+        boolean isFraction = false;
+        boolean hasExponent = false;
+        boolean isSimple = true;
+        int character = peek();
+
+        while (character >= '0' && character <= '9' || character == '.' || character == '-' || character == '+'
+            || character == 'e' || character == 'E')
+        {
+            if (length == MAXIMUM_WEIGHT_LENGTH)
+            {
+                throw error("Weight is too long");
+            }
+
+            if (character >= '0' && character <= '9')
+            {
+                if (!hasExponent)
+                {
+                    mantissa = mantissa * 10 + (character - '0');
+                    ++digitCount;
+
+                    if (isFraction)
+                    {
+                        ++fractionDigitCount;
+                    }
+                }
+            }
+            else if (character == '.')
+            {
+                // A second point is left to Double.parseDouble to reject.
+                isSimple &= !isFraction;
+                isFraction = true;
+            }
+            else if (character == 'e' || character == 'E')
+            {
+                hasExponent = true;
+            }
+            else
+            {
+                // A sign that is not the first character is left to Double.parseDouble.
+                isSimple &= length == 0;
+            }
+
+            weightCharacters[length++] = (char)character;
+            next();
+            character = peek();
+        }
+
+        if (digitCount == 0)
+        {
+            throw error("Expected a weight");
+        }
+
+        // The mantissa and the power of ten are both exact, so a single division rounds correctly.
+        if (isSimple && !hasExponent && digitCount <= 15 && fractionDigitCount < POWERS_OF_TEN.length)
+        {
+            double weight = mantissa / POWERS_OF_TEN[fractionDigitCount];
+
+            return weightCharacters[0] == '-' ? -weight : weight;
+        }
+
+        double weight;
+
+        try
+        {
+            weight = Double.parseDouble(new String(weightCharacters, 0, length));
+        }
+        catch (NumberFormatException exception)
+        {
+            throw error("Malformed weight");
+        }
+
+        if (Double.isInfinite(weight))
+        {
+            throw error("Weight is too large");
+        }
+
+        return weight;
+    }
+
+    /**
+     * Reads the comma between two elements of a set, or the end of the set.
+     *
+     * @param end The character that ends the set.
+     *
+     * @return True if a comma was read, false if the set ended.
+     */
+    private boolean readSeparator(char end) throws GraphFormatException, IOException
+    {
+        skipWhitespace();
+
+        if (skipIf(','))
+        {
+            return true;
+        }
+
+        if (skipIf(end))
+        {
+            return false;
+        }
+
+        throw error("Expected ',' or '" + end + "'");
+    }
+
+    /**
+     * Reads a signed integer.
+     *
+     * @return The integer.
+     */
+    private int readInteger() throws GraphFormatException, IOException
+    {
+        skipWhitespace();
+
+        boolean isNegative = skipIf('-');
+        int character = peek();
+
+        if (character < '0' || character > '9')
+        {
+            throw error("Expected a number");
+        }
+
+        // Accumulates the negated value, which can hold Integer.MIN_VALUE.
+        long value = 0;
+
+        while (character >= '0' && character <= '9')
+        {
+            value = value * 10 - (character - '0');
+
+            if (value < Integer.MIN_VALUE)
+            {
+                throw error("Number is too large");
+            }
+
+            next();
+            character = peek();
+        }
+
+        if (!isNegative)
+        {
+            value = -value;
+
+            if (value > Integer.MAX_VALUE)
+            {
+                throw error("Number is too large");
+            }
+        }
+
+        return (int)value;
+    }
+
+    /**
+     * Skips whitespace and reads the specified character.
+     *
+     * @param expected The expected character.
+     */
+    private void expect(char expected) throws GraphFormatException, IOException
+    {
+        skipWhitespace();
+
+        if (!skipIf(expected))
+        {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    /**
+     * Reads the current character if it is the specified character.
+     *
+     * @param expected A character.
+     *
+     * @return True if the character was read.
+     */
+    private boolean skipIf(char expected) throws IOException
+    {
+        if (peek() == expected)
+        {
+            next();
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Skips spaces, tabs and line separators.
+     */
+    private void skipWhitespace() throws IOException
+    {
+        int character = peek();
+
+        while (character == ' ' || character == '\t' || character == '\n' || character == '\r')
+        {
+            next();
+            character = peek();
+        }
+    }
+
+    /**
+     * Gets the current character without reading it.
+     *
+     * @return The current character, or END if the source has ended.
+     */
+    private int peek() throws IOException
+    {
+        if (index == length)
+        {
+            // Refills the buffer.
+            length = reader.read(buffer, 0, buffer.length);
+            index = 0;
+
+            if (length <= 0)
+            {
+                length = 0;
+
+                return END;
+            }
+        }
+
+        return buffer[index];
+    }
+
+    /**
+     * Moves past the current character. Must only be called after peek.
+     */
+    private void next()
+    {
+        if (buffer[index++] == '\n')
+        {
+            ++line;
+            column = 1;
+        }
+        else
+        {
+            ++column;
+        }
+    }
+
+    /**
+     * Creates an exception that describes an error at the current position.
+     * Messages that start with "Expected" also name the character that was found instead.
+     *
+     * @param message A description of the error.
+     *
+     * @return The exception.
+     */
+    private GraphFormatException error(String message) throws IOException
+    {
+        if (message.startsWith("Expected"))
+        {
+            int character = peek();
+            String found = character == END ? "the end of the file" : "'" + (char)character + "'";
+
+            message += " but found " + found;
+        }
+
+        return new GraphFormatException("\"" + sourceName + "\" is not a graph file. " + message, line, column);
+    }
+}
@@ -0,0 +1,71 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a graph in the format read by GraphReader:
+ *
+ * V = {1, 2, 3}
+ * E = {(1, 2), [2, 3]}
+ *
+ * Vertices and edges are streamed to the destination one at a time, so the whole graph
+ * is never held in memory as a string.
+ *
+ * @author Andrei Muntean
+ */
+public class GraphWriter
+{
+    // The destination of the characters.
+    private Writer writer;
+
+    /**
+     * Constructs a writer. The destination should be buffered.
+     *
+     * @param writer The destination of the characters.
+     */
+    public GraphWriter(Writer writer)
+    {
+        this.writer = writer;
+    }
+
+    /**
+     * Writes the vertices and the edges of the specified graph.
+     *
+     * @param graph A graph.
+     *
+     * @exception IOException The destination cannot be written.
+     */
+    public void write(Graph graph) throws IOException
+    {
+        // Writes the vertices.
+        writer.write("V = {");
+
+        for (int index = 0; index < graph.countVertices(); ++index)
+        {
+            // Adds a comma if this vertex is not the first one in the list.
+            if (index > 0)
+            {
+                writer.write(", ");
+            }
+
+            writer.write(graph.getVertex(index).toString());
+        }
+
+        // Writes the edges on a new line.
+        writer.write("}");
+        writer.write(System.getProperty("line.separator"));
+        writer.write("E = {");
+
+        for (int index = 0; index < graph.countEdges(); ++index)
+        {
+            // Adds a comma if this edge is not the first one in the list.
+            if (index > 0)
+            {
+                writer.write(", ");
+            }
+
+            writer.write(graph.getEdge(index).toString());
+        }
+
+        writer.write("}");
+    }
+}
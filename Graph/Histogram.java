@@ -0,0 +1,148 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Counts non-negative values, such as latencies in nanoseconds or result sizes, in buckets whose bounds
+ * are powers of two. Recording is lock-free and spread over striped counters, so many threads can record
+ * at once without contending. Percentiles are therefore accurate to within a factor of two.
+ *
+ * @author Andrei Muntean
+ */
+public class Histogram
+{
+    // The number of buckets. Bucket 0 holds 0, and bucket b holds the values from 2^(b-1) to 2^b - 1.
+    private static final int BUCKET_COUNT = 64;
+
+    // The number of values in every bucket.
+    private LongAdder[] buckets;
+
+    // The sum of the values.
+    private LongAdder sum;
+
+    // The largest value.
+    private LongAccumulator maximum;
+
+    /**
+     * Constructs an empty histogram.
+     */
+    public Histogram()
+    {
+        buckets = new LongAdder[BUCKET_COUNT];
+
+        for (int bucket = 0; bucket < BUCKET_COUNT; ++bucket)
+        {
+            buckets[bucket] = new LongAdder();
+        }
+
+        sum = new LongAdder();
+        maximum = new LongAccumulator(new LongBinaryOperator()
+        {
+            public long applyAsLong(long left, long right)
+            {
+                return Math.max(left, right);
+            }
+        }, 0);
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value A non-negative value. Negative values are recorded as 0.
+     */
+    public void record(long value)
+    {
+        value = Math.max(value, 0);
+        buckets[Math.min(64 - Long.numberOfLeadingZeros(value), BUCKET_COUNT - 1)].increment();
+        sum.add(value);
+        maximum.accumulate(value);
+    }
+
+    /**
+     * Gets the number of recorded values.
+     *
+     * @return The number of values.
+     */
+    public long getCount()
+    {
+        long count = 0;
+
+        for (LongAdder bucket : buckets)
+        {
+            count += bucket.sum();
+        }
+
+        return count;
+    }
+
+    /**
+     * Gets the mean of the recorded values.
+     *
+     * @return The mean, or 0 if no value was recorded.
+     */
+    public double getMean()
+    {
+        long count = getCount();
+
+        return count == 0 ? 0 : (double)sum.sum() / count;
+    }
+
+    /**
+     * Gets the largest recorded value.
+     *
+     * @return The largest value, or 0 if no value was recorded.
+     */
+    public long getMaximum()
+    {
+        return maximum.get();
+    }
+
+    /**
+     * Gets an upper bound of the value below which the specified fraction of the values fall.
+     *
+     * @param fraction A number between 0 and 1, such as 0.99 for the 99th percentile.
+     *
+     * @return The upper bound of the bucket that holds the percentile, at most the largest value.
+     */
+    public long getPercentile(double fraction)
+    {
+        long count = getCount();
+        long rank = (long)Math.ceil(fraction * count);
+        long seen = 0;
+
+        for (int bucket = 0; bucket < BUCKET_COUNT; ++bucket)
+        {
+            seen += buckets[bucket].sum();
+
+            if (seen >= rank && seen > 0)
+            {
+                long upperBound = bucket == 0 ? 0 : bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+
+                return Math.min(upperBound, getMaximum());
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Forgets every recorded value.
+     */
+    public void reset()
+    {
+        for (LongAdder bucket : buckets)
+        {
+            bucket.reset();
+        }
+
+        sum.reset();
+        maximum.reset();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "count=" + getCount() + ", mean=" + Math.round(getMean()) + ", p50=" + getPercentile(0.5)
+            + ", p99=" + getPercentile(0.99) + ", max=" + getMaximum();
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.Arrays;
+
+/**
+ * Represents a binary min-heap of vertex positions ordered by a key.
+ * Every position is in the heap at most once, and its key can be decreased in place.
+ *
+ * @author Andrei Muntean
+ */
+class IndexedHeap
+{
+    // The positions in the heap, in heap order.
+    private int[] heap;
+
+    // The index of every position in the heap, or -1 if the position is not in the heap.
+    private int[] indexes;
+
+    // The key of every position.
+    private double[] keys;
+
+    // The number of positions in the heap.
+    private int size;
+
+    /**
+     * Constructs an empty heap for the specified number of positions.
+     *
+     * @param capacity The number of positions.
+     */
+    public IndexedHeap(int capacity)
+    {
+        heap = new int[capacity];
+        indexes = new int[capacity];
+        keys = new double[capacity];
+        Arrays.fill(indexes, -1);
+    }
+
+    /**
+     * Determines whether the heap is empty.
+     *
+     * @return True if the heap is empty.
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Adds the specified position, or lowers its key if it is already in the heap with a higher key.
+     *
+     * @param position A position.
+     * @param key The key of the position.
+     */
+    public void push(int position, double key)
+    {
+        int index = indexes[position];
+
+        if (index == -1)
+        {
+            index = size++;
+            heap[index] = position;
+            indexes[position] = index;
+        }
+        else if (key >= keys[position])
+        {
+            return;
+        }
+
+        keys[position] = key;
+        siftUp(index);
+    }
+
+    /**
+     * Removes the position with the smallest key.
+     *
+     * @return The position with the smallest key.
+     */
+    public int pop()
+    {
+        int top = heap[0];
+
+        --size;
+        indexes[top] = -1;
+
+        if (size > 0)
+        {
+            heap[0] = heap[size];
+            indexes[heap[0]] = 0;
+            siftDown(0);
+        }
+
+        return top;
+    }
+
+    /**
+     * Moves the position at the specified index up until its parent has a smaller key.
+     *
+     * @param index An index in the heap.
+     */
+    private void siftUp(int index)
+    {
+        int position = heap[index];
+        double key = keys[position];
+
+        while (index > 0)
+        {
+            int parent = (index - 1) >>> 1;
+
+            if (keys[heap[parent]] <= key)
+            {
+                break;
+            }
+
+            heap[index] = heap[parent];
+            indexes[heap[index]] = index;
+            index = parent;
+        }
+
+        heap[index] = position;
+        indexes[position] = index;
+    }
+
+    /**
+     * Moves the position at the specified index down until its children have larger keys.
+     *
+     * @param index An index in the heap.
+     */
+    private void siftDown(int index)
+    {
+        int position = heap[index];
+        double key = keys[position];
+
+        while (true)
+        {
+            int child = 2 * index + 1;
+
+            if (child >= size)
+            {
+                break;
+            }
+
+            // Picks the smaller child.
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]])
+            {
+                ++child;
+            }
+
+            if (keys[heap[child]] >= key)
+            {
+                break;
+            }
+
+            heap[index] = heap[child];
+            indexes[heap[index]] = index;
+            index = child;
+        }
+
+        heap[index] = position;
+        indexes[position] = index;
+    }
+}
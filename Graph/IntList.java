@@ -0,0 +1,78 @@
+import java.util.Arrays;
+
+/**
+ * Represents a growable list of integers, without boxing.
+ *
+ * @author Andrei Muntean
+ */
+class IntList
+{
+    // The elements of the list, followed by unused room.
+    private int[] elements;
+
+    // The number of elements in the list.
+    private int size;
+
+    /**
+     * Constructs an empty list.
+     */
+    public IntList()
+    {
+        elements = new int[16];
+    }
+
+    /**
+     * Gets the number of elements in the list.
+     *
+     * @return The number of elements in the list.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the element at the specified index.
+     *
+     * @param index The index of an element.
+     *
+     * @return The element.
+     */
+    public int get(int index)
+    {
+        return elements[index];
+    }
+
+    /**
+     * Appends the specified element.
+     *
+     * @param element An element.
+     */
+    public void add(int element)
+    {
+        if (size == elements.length)
+        {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+
+        elements[size++] = element;
+    }
+
+    /**
+     * Removes all elements.
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * Copies the elements into a new array.
+     *
+     * @return The elements.
+     */
+    public int[] toArray()
+    {
+        return Arrays.copyOf(elements, size);
+    }
+}
@@ -0,0 +1,113 @@
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Carries messages between partitions that run as threads of the same process. Batches are handed over
+ * through lock-free queues without copying, and supersteps are separated by a barrier.
+ * Closing the transport breaks the barrier for good: partitions that are waiting and partitions that
+ * arrive later fail instead of waiting for a partition that has stopped.
+ *
+ * Batches sent in even and odd supersteps go to different queues, so a partition that is ahead can send
+ * batches for the next superstep while the others still receive the batches of the current one.
+ *
+ * @author Andrei Muntean
+ */
+public class LocalTransport implements MessageTransport
+{
+    // The batches sent to every partition in even and odd supersteps.
+    private ConcurrentLinkedQueue<int[]>[][] queues;
+
+    // The number of partitions.
+    private int partitionCount;
+
+    // The number of partitions that reached the barrier in the current superstep.
+    private int arrivedCount;
+
+    // The sum of the counts of the partitions that reached the barrier.
+    private long pendingTotal;
+
+    // The sum of the counts of the last superstep.
+    private long total;
+
+    // Incremented every time the barrier releases the partitions.
+    private long generation;
+
+    // Whether the transport was closed.
+    private boolean isClosed;
+
+    @Override
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public synchronized void start(int partitionCount)
+    {
+        queues = new ConcurrentLinkedQueue[2][partitionCount];
+
+        for (int parity = 0; parity < 2; ++parity)
+        {
+            for (int partition = 0; partition < partitionCount; ++partition)
+            {
+                queues[parity][partition] = new ConcurrentLinkedQueue<int[]>();
+            }
+        }
+
+        this.partitionCount = partitionCount;
+        arrivedCount = 0;
+        pendingTotal = 0;
+        isClosed = false;
+    }
+
+    @Override
+    public void send(int superstep, int sourcePartition, int targetPartition, int[] batch)
+    {
+        queues[superstep & 1][targetPartition].add(batch);
+    }
+
+    @Override
+    public int[] receive(int superstep, int partition)
+    {
+        return queues[superstep & 1][partition].poll();
+    }
+
+    @Override
+    public synchronized long synchronize(int superstep, int partition, long count) throws IOException, InterruptedException
+    {
+        if (isClosed)
+        {
+            throw new IOException("The transport was closed.");
+        }
+
+        pendingTotal += count;
+
+        if (++arrivedCount == partitionCount)
+        {
+            // The last partition releases the others.
+            total = pendingTotal;
+            pendingTotal = 0;
+            arrivedCount = 0;
+            ++generation;
+            notifyAll();
+
+            return total;
+        }
+
+        long arrivedGeneration = generation;
+
+        while (generation == arrivedGeneration)
+        {
+            if (isClosed)
+            {
+                throw new IOException("The transport was closed.");
+            }
+
+            wait();
+        }
+
+        return total;
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        isClosed = true;
+        notifyAll();
+    }
+}
@@ -0,0 +1,251 @@
+import java.util.Arrays;
+
+/**
+ * Represents a set of long integers stored in an open-addressing hash table, without boxing.
+ *
+ * @author Andrei Muntean
+ */
+class LongHashSet
+{
+    // Marks a free slot. The key itself is tracked separately.
+    private static final long FREE = Long.MIN_VALUE;
+
+    // The smallest number of slots.
+    private static final int MINIMUM_CAPACITY = 16;
+
+    // The slots of the table. Its length is a power of two.
+    private long[] slots;
+
+    // The number of keys in the table, not counting the FREE key.
+    private int size;
+
+    // Whether the set contains the key that is used to mark free slots.
+    private boolean containsFreeKey;
+
+    /**
+     * Constructs a set.
+     *
+     * @param expectedSize The number of keys the set should hold without growing.
+     */
+    public LongHashSet(int expectedSize)
+    {
+        slots = newSlots(getCapacity(expectedSize));
+    }
+
+    /**
+     * Gets the number of keys in the set.
+     *
+     * @return The number of keys in the set.
+     */
+    public int size()
+    {
+        return containsFreeKey ? size + 1 : size;
+    }
+
+    /**
+     * Determines whether the set contains the specified key.
+     *
+     * @param key A key.
+     *
+     * @return True if the set contains the key.
+     */
+    public boolean contains(long key)
+    {
+        if (key == FREE)
+        {
+            return containsFreeKey;
+        }
+
+        return slots[find(key)] == key;
+    }
+
+    /**
+     * Adds the specified key.
+     *
+     * @param key A key.
+     *
+     * @return True if the key was added, false if the set already contained it.
+     */
+    public boolean add(long key)
+    {
+        if (key == FREE)
+        {
+            boolean isAdded = !containsFreeKey;
+
+            containsFreeKey = true;
+
+            return isAdded;
+        }
+
+        int slot = find(key);
+
+        if (slots[slot] == key)
+        {
+            return false;
+        }
+
+        slots[slot] = key;
+        ++size;
+
+        // Keeps the table at most half full.
+        if (size * 2 > slots.length)
+        {
+            resize(slots.length * 2);
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes the specified key.
+     *
+     * @param key A key.
+     *
+     * @return True if the key was removed, false if the set did not contain it.
+     */
+    public boolean remove(long key)
+    {
+        if (key == FREE)
+        {
+            boolean isRemoved = containsFreeKey;
+
+            containsFreeKey = false;
+
+            return isRemoved;
+        }
+
+        int slot = find(key);
+
+        if (slots[slot] != key)
+        {
+            return false;
+        }
+
+        slots[slot] = FREE;
+        --size;
+
+        // Shifts back the keys that follow, so that no key is separated from its home slot by a free slot.
+        int mask = slots.length - 1;
+        int next = slot + 1 & mask;
+
+        while (slots[next] != FREE)
+        {
+            int home = hash(slots[next]) & mask;
+
+            if ((next - home & mask) >= (next - slot & mask))
+            {
+                slots[slot] = slots[next];
+                slots[next] = FREE;
+                slot = next;
+            }
+
+            next = next + 1 & mask;
+        }
+
+        return true;
+    }
+
+    /**
+     * Grows the table so that it can hold the specified number of keys without growing again.
+     *
+     * @param expectedSize The number of keys the set should hold.
+     */
+    public void ensureCapacity(int expectedSize)
+    {
+        int capacity = getCapacity(expectedSize);
+
+        if (capacity > slots.length)
+        {
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Finds the slot that holds the specified key, or the free slot where it would be stored.
+     *
+     * @param key A key other than FREE.
+     *
+     * @return The index of the slot.
+     */
+    private int find(long key)
+    {
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+
+        while (slots[slot] != FREE && slots[slot] != key)
+        {
+            slot = slot + 1 & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Moves the keys into a table with the specified number of slots.
+     *
+     * @param capacity A power of two.
+     */
+    private void resize(int capacity)
+    {
+        long[] oldSlots = slots;
+
+        slots = newSlots(capacity);
+
+        for (long key : oldSlots)
+        {
+            if (key != FREE)
+            {
+                slots[find(key)] = key;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of slots needed to hold the specified number of keys.
+     *
+     * @param expectedSize A number of keys.
+     *
+     * @return A power of two.
+     */
+    private static int getCapacity(int expectedSize)
+    {
+        int capacity = MINIMUM_CAPACITY;
+
+        while (capacity < expectedSize * 2L)
+        {
+            capacity *= 2;
+        }
+
+        return capacity;
+    }
+
+    /**
+     * Creates a table of free slots.
+     *
+     * @param capacity The number of slots.
+     *
+     * @return The table.
+     */
+    private static long[] newSlots(int capacity)
+    {
+        long[] slots = new long[capacity];
+
+        Arrays.fill(slots, FREE);
+
+        return slots;
+    }
+
+    /**
+     * Scrambles the bits of a key so that keys with similar bits end up in different slots.
+     *
+     * @param key A key.
+     *
+     * @return The hash of the key.
+     */
+    private static int hash(long key)
+    {
+        long hash = key * 0x9E3779B97F4A7C15L;
+
+        return (int)(hash ^ hash >>> 32);
+    }
+}
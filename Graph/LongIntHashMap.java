@@ -0,0 +1,287 @@
+import java.util.Arrays;
+
+/**
+ * Represents a map from long integers to integers stored in an open-addressing hash table, without boxing.
+ *
+ * @author Andrei Muntean
+ */
+class LongIntHashMap
+{
+    // Marks a free slot. The key itself is tracked separately.
+    private static final long FREE = Long.MIN_VALUE;
+
+    // The smallest number of slots.
+    private static final int MINIMUM_CAPACITY = 16;
+
+    // Returned by get when the key is not in the map.
+    public static final int MISSING = -1;
+
+    // The keys of the table. Its length is a power of two.
+    private long[] keys;
+
+    // The values of the table, in the same slots as their keys.
+    private int[] values;
+
+    // The number of keys in the table, not counting the FREE key.
+    private int size;
+
+    // Whether the map contains the key that is used to mark free slots, and its value.
+    private boolean containsFreeKey;
+    private int freeKeyValue;
+
+    /**
+     * Constructs a map.
+     *
+     * @param expectedSize The number of keys the map should hold without growing.
+     */
+    public LongIntHashMap(int expectedSize)
+    {
+        allocate(getCapacity(expectedSize));
+    }
+
+    /**
+     * Gets the number of keys in the map.
+     *
+     * @return The number of keys in the map.
+     */
+    public int size()
+    {
+        return containsFreeKey ? size + 1 : size;
+    }
+
+    /**
+     * Gets the value of the specified key.
+     *
+     * @param key A key.
+     *
+     * @return The value, or MISSING if the map does not contain the key.
+     */
+    public int get(long key)
+    {
+        if (key == FREE)
+        {
+            return containsFreeKey ? freeKeyValue : MISSING;
+        }
+
+        int slot = find(key);
+
+        return keys[slot] == key ? values[slot] : MISSING;
+    }
+
+    /**
+     * Associates the specified value with the specified key, unless the key is already in the map.
+     *
+     * @param key A key.
+     * @param value A value other than MISSING.
+     *
+     * @return True if the key was added, false if the map already contained it.
+     */
+    public boolean putIfAbsent(long key, int value)
+    {
+        if (key == FREE)
+        {
+            if (containsFreeKey)
+            {
+                return false;
+            }
+
+            containsFreeKey = true;
+            freeKeyValue = value;
+
+            return true;
+        }
+
+        int slot = find(key);
+
+        if (keys[slot] == key)
+        {
+            return false;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        ++size;
+
+        // Keeps the table at most half full.
+        if (size * 2 > keys.length)
+        {
+            resize(keys.length * 2);
+        }
+
+        return true;
+    }
+
+    /**
+     * Replaces the value of the specified key, which must be in the map.
+     *
+     * @param key A key.
+     * @param value The new value.
+     */
+    public void replace(long key, int value)
+    {
+        if (key == FREE)
+        {
+            freeKeyValue = value;
+        }
+        else
+        {
+            values[find(key)] = value;
+        }
+    }
+
+    /**
+     * Removes the specified key.
+     *
+     * @param key A key.
+     *
+     * @return The value of the key, or MISSING if the map did not contain it.
+     */
+    public int remove(long key)
+    {
+        if (key == FREE)
+        {
+            int value = containsFreeKey ? freeKeyValue : MISSING;
+
+            containsFreeKey = false;
+
+            return value;
+        }
+
+        int slot = find(key);
+
+        if (keys[slot] != key)
+        {
+            return MISSING;
+        }
+
+        int value = values[slot];
+
+        keys[slot] = FREE;
+        --size;
+
+        // Shifts back the keys that follow, so that no key is separated from its home slot by a free slot.
+        int mask = keys.length - 1;
+        int next = slot + 1 & mask;
+
+        while (keys[next] != FREE)
+        {
+            int home = hash(keys[next]) & mask;
+
+            if ((next - home & mask) >= (next - slot & mask))
+            {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                keys[next] = FREE;
+                slot = next;
+            }
+
+            next = next + 1 & mask;
+        }
+
+        return value;
+    }
+
+    /**
+     * Grows the table so that it can hold the specified number of keys without growing again.
+     *
+     * @param expectedSize The number of keys the map should hold.
+     */
+    public void ensureCapacity(int expectedSize)
+    {
+        int capacity = getCapacity(expectedSize);
+
+        if (capacity > keys.length)
+        {
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Finds the slot that holds the specified key, or the free slot where it would be stored.
+     *
+     * @param key A key other than FREE.
+     *
+     * @return The index of the slot.
+     */
+    private int find(long key)
+    {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (keys[slot] != FREE && keys[slot] != key)
+        {
+            slot = slot + 1 & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Moves the entries into a table with the specified number of slots.
+     *
+     * @param capacity A power of two.
+     */
+    private void resize(int capacity)
+    {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+
+        allocate(capacity);
+
+        for (int slot = 0; slot < oldKeys.length; ++slot)
+        {
+            if (oldKeys[slot] != FREE)
+            {
+                int newSlot = find(oldKeys[slot]);
+
+                keys[newSlot] = oldKeys[slot];
+                values[newSlot] = oldValues[slot];
+            }
+        }
+    }
+
+    /**
+     * Creates a table of free slots.
+     *
+     * @param capacity The number of slots.
+     */
+    private void allocate(int capacity)
+    {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+    }
+
+    /**
+     * Gets the number of slots needed to hold the specified number of keys.
+     *
+     * @param expectedSize A number of keys.
+     *
+     * @return A power of two.
+     */
+    private static int getCapacity(int expectedSize)
+    {
+        int capacity = MINIMUM_CAPACITY;
+
+        while (capacity < expectedSize * 2L)
+        {
+            capacity *= 2;
+        }
+
+        return capacity;
+    }
+
+    /**
+     * Scrambles the bits of a key so that keys with similar bits end up in different slots.
+     *
+     * @param key A key.
+     *
+     * @return The hash of the key.
+     */
+    private static int hash(long key)
+    {
+        long hash = key * 0x9E3779B97F4A7C15L;
+
+        return (int)(hash ^ hash >>> 32);
+    }
+}
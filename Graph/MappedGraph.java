@@ -0,0 +1,906 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Represents a read-only graph backed by a memory-mapped binary graph file.
+ * The file is paged in by the operating system when it is accessed, and processes that map the same file
+ * share its pages. Opening the file reads it once to check that every position in it is in range.
+ *
+ * The file consists of a header followed by blocks of big-endian integers:
+ *
+ * header           magic, version, vertex count, directed edge count, undirected edge count, flags, arc count, reserved
+ * vertex ids       one id per vertex, indexed by position
+ * vertex values    one value per vertex, indexed by position
+ * id index         (id, position) pairs sorted by id
+ * directed edges   (origin position, destination position) pairs
+ * undirected edges (position A, position B) pairs
+ * arc offsets      the index of the first arc of every vertex, followed by the arc count
+ * arc targets      the position every arc points to
+ * edge kinds       two bits per edge in the order of Graph.getEdge, packed 16 to an integer from the lowest bit:
+ *                  whether the edge is directed and whether it is a weighted edge
+ *
+ * The arcs are those of Graph.freeze, so the adjacency of a vertex can be read from the file without loading it.
+ * The edge kinds tell which block holds every edge, so that Graph.readFromBinaryFile restores the edges in their
+ * original order and with their original classes, even weighted edges with a weight of 1.
+ * If the WEIGHTED flag is set, three blocks of big-endian doubles follow: the weights of the directed edges,
+ * of the undirected edges and of the arcs. Files of version 1 have no arc blocks and no adjacency.
+ * Files of versions 1 and 2 have no edge kinds: their directed edges are read before their undirected edges,
+ * and only edges with a weight other than 1 are read as weighted edges.
+ *
+ * @author Andrei Muntean
+ */
+public class MappedGraph
+{
+    // Identifies a binary graph file. Spells "GRPH".
+    private static final int MAGIC = 0x47525048;
+
+    // The version of the file format. Version 2 added the arc blocks and version 3 the edge kinds.
+    private static final int VERSION = 3;
+
+    // Set in the flags of the header when the file holds edge weights.
+    private static final int WEIGHTED = 1;
+
+    // The bits of an edge kind.
+    private static final int DIRECTED_KIND = 1;
+    private static final int WEIGHTED_KIND = 2;
+
+    // The number of edge kinds packed in an integer.
+    private static final int KINDS_PER_INTEGER = 16;
+
+    // The number of integers in the header.
+    private static final int HEADER_SIZE = 8;
+
+    // The number of integers in a mapped chunk. Keeps every mapping below the 2 GB limit.
+    private static final int CHUNK_SIZE = 1 << 28;
+
+    // The number of vertices.
+    private int vertexCount;
+
+    // The number of directed edges.
+    private int directedEdgeCount;
+
+    // The number of undirected edges.
+    private int undirectedEdgeCount;
+
+    // The number of arcs, or -1 if the file has no adjacency.
+    private int arcCount;
+
+    // The blocks of the file.
+    private IntBuffer[] vertexIds;
+    private IntBuffer[] vertexValues;
+    private IntBuffer[] idIndex;
+    private IntBuffer[] directedEdges;
+    private IntBuffer[] undirectedEdges;
+    private DoubleBuffer[] directedEdgeWeights;
+    private DoubleBuffer[] undirectedEdgeWeights;
+    private IntBuffer[] arcOffsets;
+    private IntBuffer[] arcTargets;
+    private IntBuffer[] edgeKinds;
+    private DoubleBuffer[] arcWeights;
+
+    /**
+     * Maps the binary graph file at the specified path.
+     *
+     * @param path A file path.
+     *
+     * @exception GraphFormatException The file is not a binary graph file.
+     * @exception IOException The file cannot be read.
+     */
+    public MappedGraph(String path) throws GraphFormatException, IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+
+        try
+        {
+            FileChannel channel = file.getChannel();
+
+            if (channel.size() < HEADER_SIZE * 4)
+            {
+                throw new GraphFormatException("\"" + path + "\" is not a binary graph file. The header is incomplete");
+            }
+
+            IntBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE * 4).asIntBuffer();
+
+            int version = header.get(1);
+
+            if (header.get(0) != MAGIC || version < 1 || version > VERSION)
+            {
+                throw new GraphFormatException("\"" + path + "\" is not a binary graph file. Unknown magic number or version");
+            }
+
+            vertexCount = header.get(2);
+            directedEdgeCount = header.get(3);
+            undirectedEdgeCount = header.get(4);
+            arcCount = version == 1 ? -1 : header.get(6);
+
+            boolean isWeighted = (header.get(5) & WEIGHTED) != 0;
+
+            if (vertexCount < 0 || directedEdgeCount < 0 || undirectedEdgeCount < 0 || version > 1 && arcCount < 0)
+            {
+                throw new GraphFormatException("\"" + path + "\" is not a binary graph file. The counts are negative");
+            }
+
+            // Maps the blocks one after the other.
+            long offset = HEADER_SIZE;
+            long arcIntegerCount = arcCount < 0 ? 0 : vertexCount + 1L + arcCount;
+            long edgeKindIntegerCount = version < 3 ? 0 : getEdgeKindIntegerCount(directedEdgeCount + (long)undirectedEdgeCount);
+            long expectedSize = (offset + 4L * vertexCount + 2L * directedEdgeCount + 2L * undirectedEdgeCount + arcIntegerCount
+                + edgeKindIntegerCount) * 4;
+
+            if (isWeighted)
+            {
+                expectedSize += (directedEdgeCount + (long)undirectedEdgeCount + Math.max(arcCount, 0)) * 8;
+            }
+
+            if (channel.size() != expectedSize)
+            {
+                throw new GraphFormatException("\"" + path + "\" is not a binary graph file. Expected " + expectedSize + " bytes");
+            }
+
+            vertexIds = map(channel, offset, vertexCount);
+            offset += vertexCount;
+            vertexValues = map(channel, offset, vertexCount);
+            offset += vertexCount;
+            idIndex = map(channel, offset, 2L * vertexCount);
+            offset += 2L * vertexCount;
+            directedEdges = map(channel, offset, 2L * directedEdgeCount);
+            offset += 2L * directedEdgeCount;
+            undirectedEdges = map(channel, offset, 2L * undirectedEdgeCount);
+            offset += 2L * undirectedEdgeCount;
+
+            if (arcCount >= 0)
+            {
+                arcOffsets = map(channel, offset, vertexCount + 1L);
+                offset += vertexCount + 1L;
+                arcTargets = map(channel, offset, arcCount);
+                offset += arcCount;
+            }
+
+            if (version >= 3)
+            {
+                edgeKinds = map(channel, offset, edgeKindIntegerCount);
+                offset += edgeKindIntegerCount;
+            }
+
+            if (isWeighted)
+            {
+                directedEdgeWeights = mapDoubles(channel, offset, directedEdgeCount);
+                offset += 2L * directedEdgeCount;
+                undirectedEdgeWeights = mapDoubles(channel, offset, undirectedEdgeCount);
+                offset += 2L * undirectedEdgeCount;
+
+                if (arcCount >= 0)
+                {
+                    arcWeights = mapDoubles(channel, offset, arcCount);
+                }
+            }
+
+            validate(path);
+        }
+        finally
+        {
+            // The mappings stay valid after the file is closed.
+            file.close();
+        }
+    }
+
+    /**
+     * Writes the specified graph to a binary graph file.
+     *
+     * @param graph A graph.
+     * @param path A file path.
+     *
+     * @exception IOException The file cannot be written.
+     */
+    public static void write(Graph graph, String path) throws IOException
+    {
+        FrozenGraph snapshot = graph.freeze();
+        int vertexCount = snapshot.countVertices();
+        int directedEdgeCount = 0;
+        int undirectedEdgeCount = 0;
+        boolean isWeighted = false;
+
+        for (int index = 0; index < graph.countEdges(); ++index)
+        {
+            Edge edge = graph.getEdge(index);
+
+            if (edge.isDirected())
+            {
+                ++directedEdgeCount;
+            }
+            else
+            {
+                ++undirectedEdgeCount;
+            }
+
+            isWeighted |= edge.getWeight() != 1;
+        }
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+
+        try
+        {
+            // Writes the header.
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(vertexCount);
+            output.writeInt(directedEdgeCount);
+            output.writeInt(undirectedEdgeCount);
+            output.writeInt(isWeighted ? WEIGHTED : 0);
+            output.writeInt(snapshot.countArcs());
+            output.writeInt(0);
+
+            // Writes the vertex ids and values.
+            for (int position = 0; position < vertexCount; ++position)
+            {
+                output.writeInt(snapshot.getVertexId(position));
+            }
+
+            for (int position = 0; position < vertexCount; ++position)
+            {
+                output.writeInt(snapshot.getVertexValue(position));
+            }
+
+            // Writes the id index.
+            long[] pairs = new long[vertexCount];
+
+            for (int position = 0; position < vertexCount; ++position)
+            {
+                pairs[position] = (long)snapshot.getVertexId(position) << 32 | position;
+            }
+
+            Arrays.sort(pairs);
+
+            for (long pair : pairs)
+            {
+                output.writeInt((int)(pair >> 32));
+                output.writeInt((int)pair);
+            }
+
+            // Writes the directed edges, then the undirected edges.
+            for (int pass = 0; pass < 2; ++pass)
+            {
+                boolean isDirected = pass == 0;
+
+                for (int index = 0; index < graph.countEdges(); ++index)
+                {
+                    Edge edge = graph.getEdge(index);
+
+                    if (edge.isDirected() == isDirected)
+                    {
+                        output.writeInt(snapshot.getPosition(edge.getFirstId()));
+                        output.writeInt(snapshot.getPosition(edge.getSecondId()));
+                    }
+                }
+            }
+
+            // Writes the arcs of every vertex.
+            for (int position = 0; position < vertexCount; ++position)
+            {
+                output.writeInt(snapshot.getFirstArc(position));
+            }
+
+            output.writeInt(snapshot.countArcs());
+
+            for (int arc = 0; arc < snapshot.countArcs(); ++arc)
+            {
+                output.writeInt(snapshot.getTarget(arc));
+            }
+
+            // Writes the kind of every edge, in order.
+            int kinds = 0;
+
+            for (int index = 0; index < graph.countEdges(); ++index)
+            {
+                Edge edge = graph.getEdge(index);
+                boolean isWeightedEdge = edge instanceof WeightedDirectedEdge || edge instanceof WeightedUndirectedEdge;
+                int kind = (edge.isDirected() ? DIRECTED_KIND : 0) | (isWeightedEdge ? WEIGHTED_KIND : 0);
+
+                kinds |= kind << 2 * (index % KINDS_PER_INTEGER);
+
+                if (index % KINDS_PER_INTEGER == KINDS_PER_INTEGER - 1 || index == graph.countEdges() - 1)
+                {
+                    output.writeInt(kinds);
+                    kinds = 0;
+                }
+            }
+
+            // Writes the weights in the same order as the edges, then the weights of the arcs.
+            for (int pass = 0; isWeighted && pass < 2; ++pass)
+            {
+                boolean isDirected = pass == 0;
+
+                for (int index = 0; index < graph.countEdges(); ++index)
+                {
+                    Edge edge = graph.getEdge(index);
+
+                    if (edge.isDirected() == isDirected)
+                    {
+                        output.writeDouble(edge.getWeight());
+                    }
+                }
+            }
+
+            for (int arc = 0; isWeighted && arc < snapshot.countArcs(); ++arc)
+            {
+                output.writeDouble(snapshot.getWeight(arc));
+            }
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+
+    /**
+     * Gets the number of vertices in the graph.
+     *
+     * @return The number of vertices in the graph.
+     */
+    public int countVertices()
+    {
+        return vertexCount;
+    }
+
+    /**
+     * Gets the number of directed edges in the graph.
+     *
+     * @return The number of directed edges in the graph.
+     */
+    public int countDirectedEdges()
+    {
+        return directedEdgeCount;
+    }
+
+    /**
+     * Gets the number of undirected edges in the graph.
+     *
+     * @return The number of undirected edges in the graph.
+     */
+    public int countUndirectedEdges()
+    {
+        return undirectedEdgeCount;
+    }
+
+    /**
+     * Gets the id of the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The id of the vertex.
+     */
+    public int getVertexId(int position)
+    {
+        return get(vertexIds, position);
+    }
+
+    /**
+     * Gets the value of the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The value of the vertex.
+     */
+    public int getVertexValue(int position)
+    {
+        return get(vertexValues, position);
+    }
+
+    /**
+     * Gets the position of the vertex with the specified id.
+     *
+     * @param id The id of a vertex.
+     *
+     * @return The position of the vertex, or -1 if there is no vertex with the specified id.
+     */
+    public int getPosition(int id)
+    {
+        // Binary search over the id index.
+        int low = 0;
+        int high = vertexCount - 1;
+
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int middleId = get(idIndex, 2L * middle);
+
+            if (middleId < id)
+            {
+                low = middle + 1;
+            }
+            else if (middleId > id)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return get(idIndex, 2L * middle + 1);
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Gets the position of the origin of the specified directed edge.
+     *
+     * @param index The index of a directed edge.
+     *
+     * @return The position of the origin vertex.
+     */
+    public int getDirectedEdgeOrigin(int index)
+    {
+        return get(directedEdges, 2L * index);
+    }
+
+    /**
+     * Gets the position of the destination of the specified directed edge.
+     *
+     * @param index The index of a directed edge.
+     *
+     * @return The position of the destination vertex.
+     */
+    public int getDirectedEdgeDestination(int index)
+    {
+        return get(directedEdges, 2L * index + 1);
+    }
+
+    /**
+     * Gets the position of vertex A of the specified undirected edge.
+     *
+     * @param index The index of an undirected edge.
+     *
+     * @return The position of vertex A.
+     */
+    public int getUndirectedEdgeVertexA(int index)
+    {
+        return get(undirectedEdges, 2L * index);
+    }
+
+    /**
+     * Gets the position of vertex B of the specified undirected edge.
+     *
+     * @param index The index of an undirected edge.
+     *
+     * @return The position of vertex B.
+     */
+    public int getUndirectedEdgeVertexB(int index)
+    {
+        return get(undirectedEdges, 2L * index + 1);
+    }
+
+    /**
+     * Determines whether the file holds edge weights.
+     *
+     * @return True if the file holds edge weights.
+     */
+    public boolean isWeighted()
+    {
+        return directedEdgeWeights != null;
+    }
+
+    /**
+     * Gets the weight of the specified directed edge.
+     *
+     * @param index The index of a directed edge.
+     *
+     * @return The weight of the edge. Edges of files without weights have a weight of 1.
+     */
+    public double getDirectedEdgeWeight(int index)
+    {
+        return directedEdgeWeights == null ? 1 : get(directedEdgeWeights, index);
+    }
+
+    /**
+     * Gets the weight of the specified undirected edge.
+     *
+     * @param index The index of an undirected edge.
+     *
+     * @return The weight of the edge. Edges of files without weights have a weight of 1.
+     */
+    public double getUndirectedEdgeWeight(int index)
+    {
+        return undirectedEdgeWeights == null ? 1 : get(undirectedEdgeWeights, index);
+    }
+
+    /**
+     * Determines whether the file holds the arcs of every vertex. Files of version 1 do not.
+     *
+     * @return True if the adjacency can be read.
+     */
+    public boolean hasAdjacency()
+    {
+        return arcOffsets != null;
+    }
+
+    /**
+     * Gets the number of arcs. Undirected edges have an arc from each of their vertices.
+     *
+     * @return The number of arcs.
+     *
+     * @exception IllegalStateException The file has no adjacency.
+     */
+    public int countArcs() throws IllegalStateException
+    {
+        checkAdjacency();
+
+        return arcCount;
+    }
+
+    /**
+     * Gets the number of arcs that originate from the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The number of arcs.
+     *
+     * @exception IllegalStateException The file has no adjacency.
+     */
+    public int getDegree(int position) throws IllegalStateException
+    {
+        return getEndArc(position) - getFirstArc(position);
+    }
+
+    /**
+     * Gets the first arc that originates from the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The index of the first arc.
+     *
+     * @exception IllegalStateException The file has no adjacency.
+     */
+    public int getFirstArc(int position) throws IllegalStateException
+    {
+        checkAdjacency();
+
+        return get(arcOffsets, position);
+    }
+
+    /**
+     * Gets the index that follows the last arc that originates from the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The index that follows the last arc.
+     *
+     * @exception IllegalStateException The file has no adjacency.
+     */
+    public int getEndArc(int position) throws IllegalStateException
+    {
+        checkAdjacency();
+
+        return get(arcOffsets, position + 1L);
+    }
+
+    /**
+     * Gets the position of the vertex the specified arc points to.
+     *
+     * @param arc The index of an arc.
+     *
+     * @return The position of the target.
+     *
+     * @exception IllegalStateException The file has no adjacency.
+     */
+    public int getTarget(int arc) throws IllegalStateException
+    {
+        checkAdjacency();
+
+        return get(arcTargets, arc);
+    }
+
+    /**
+     * Gets the weight of the specified arc.
+     *
+     * @param arc The index of an arc.
+     *
+     * @return The weight of the arc. Arcs of files without weights have a weight of 1.
+     *
+     * @exception IllegalStateException The file has no adjacency.
+     */
+    public double getWeight(int arc) throws IllegalStateException
+    {
+        checkAdjacency();
+
+        return arcWeights == null ? 1 : get(arcWeights, arc);
+    }
+
+    /**
+     * Adds the vertices and the edges of this graph to the specified graph, in the order they were written.
+     *
+     * @param graph A graph.
+     */
+    public void addTo(Graph graph)
+    {
+        Vertex[] vertices = new Vertex[vertexCount];
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            vertices[position] = new Vertex(getVertexId(position), getVertexValue(position));
+            graph.add(vertices[position]);
+        }
+
+        if (edgeKinds == null)
+        {
+            // Older files keep the directed edges apart, and only know an edge is weighted by its weight.
+            for (int index = 0; index < directedEdgeCount; ++index)
+            {
+                addDirectedEdge(graph, vertices, index, getDirectedEdgeWeight(index) != 1);
+            }
+
+            for (int index = 0; index < undirectedEdgeCount; ++index)
+            {
+                addUndirectedEdge(graph, vertices, index, getUndirectedEdgeWeight(index) != 1);
+            }
+
+            return;
+        }
+
+        // Takes every edge from the block of its kind.
+        int directedIndex = 0;
+        int undirectedIndex = 0;
+
+        for (long index = 0; index < directedEdgeCount + (long)undirectedEdgeCount; ++index)
+        {
+            int kind = getEdgeKind(index);
+
+            if ((kind & DIRECTED_KIND) != 0)
+            {
+                addDirectedEdge(graph, vertices, directedIndex++, (kind & WEIGHTED_KIND) != 0);
+            }
+            else
+            {
+                addUndirectedEdge(graph, vertices, undirectedIndex++, (kind & WEIGHTED_KIND) != 0);
+            }
+        }
+    }
+
+    /**
+     * Adds a directed edge of this graph to the specified graph.
+     */
+    private void addDirectedEdge(Graph graph, Vertex[] vertices, int index, boolean isWeightedEdge)
+    {
+        Vertex origin = vertices[getDirectedEdgeOrigin(index)];
+        Vertex destination = vertices[getDirectedEdgeDestination(index)];
+
+        if (isWeightedEdge)
+        {
+            graph.add(new WeightedDirectedEdge(origin, destination, getDirectedEdgeWeight(index)));
+        }
+        else
+        {
+            graph.add(new DirectedEdge(origin, destination));
+        }
+    }
+
+    /**
+     * Adds an undirected edge of this graph to the specified graph.
+     */
+    private void addUndirectedEdge(Graph graph, Vertex[] vertices, int index, boolean isWeightedEdge)
+    {
+        Vertex vertexA = vertices[getUndirectedEdgeVertexA(index)];
+        Vertex vertexB = vertices[getUndirectedEdgeVertexB(index)];
+
+        if (isWeightedEdge)
+        {
+            graph.add(new WeightedUndirectedEdge(vertexA, vertexB, getUndirectedEdgeWeight(index)));
+        }
+        else
+        {
+            graph.add(new UndirectedEdge(vertexA, vertexB));
+        }
+    }
+
+    /**
+     * Gets the kind of the edge with the specified index in the order of the file.
+     *
+     * @param index The index of an edge among all edges.
+     *
+     * @return The DIRECTED_KIND and WEIGHTED_KIND bits of the edge.
+     */
+    private int getEdgeKind(long index)
+    {
+        return get(edgeKinds, index / KINDS_PER_INTEGER) >>> 2 * (index % KINDS_PER_INTEGER) & 3;
+    }
+
+    /**
+     * Gets the number of integers that hold the kinds of the specified number of edges.
+     */
+    private static long getEdgeKindIntegerCount(long edgeCount)
+    {
+        return (edgeCount + KINDS_PER_INTEGER - 1) / KINDS_PER_INTEGER;
+    }
+
+    /**
+     * Checks that the file has arc blocks.
+     *
+     * @exception IllegalStateException The file has no adjacency.
+     */
+    private void checkAdjacency() throws IllegalStateException
+    {
+        if (arcOffsets == null)
+        {
+            throw new IllegalStateException("The file has no adjacency. Write it again to add one.");
+        }
+    }
+
+    /**
+     * Checks that every position and every arc offset in the file is in range, that every edge weight is finite
+     * and that the edge kinds match the edge counts, so that a corrupt file is rejected when it is opened rather than
+     * when it is read.
+     *
+     * @param path The path of the file, used in error messages.
+     *
+     * @exception GraphFormatException A position or an offset is out of range.
+     */
+    private void validate(String path) throws GraphFormatException
+    {
+        for (long index = 0; index < 2L * vertexCount; index += 2)
+        {
+            checkPosition(path, get(idIndex, index + 1), vertexCount, "id index");
+        }
+
+        for (long index = 0; index < 2L * directedEdgeCount; ++index)
+        {
+            checkPosition(path, get(directedEdges, index), vertexCount, "directed edges");
+        }
+
+        for (long index = 0; index < 2L * undirectedEdgeCount; ++index)
+        {
+            checkPosition(path, get(undirectedEdges, index), vertexCount, "undirected edges");
+        }
+
+        for (int index = 0; directedEdgeWeights != null && index < directedEdgeCount + undirectedEdgeCount; ++index)
+        {
+            double weight = index < directedEdgeCount ? get(directedEdgeWeights, index) : get(undirectedEdgeWeights, index - directedEdgeCount);
+
+            if (Double.isNaN(weight) || Double.isInfinite(weight))
+            {
+                throw new GraphFormatException("\"" + path + "\" is not a binary graph file. Weight " + weight + " is not finite");
+            }
+        }
+
+        if (edgeKinds != null)
+        {
+            // Every directed edge and every undirected edge must have a kind, so that addTo stays in its block.
+            long kindDirectedEdgeCount = 0;
+
+            for (long index = 0; index < directedEdgeCount + (long)undirectedEdgeCount; ++index)
+            {
+                kindDirectedEdgeCount += getEdgeKind(index) & DIRECTED_KIND;
+            }
+
+            if (kindDirectedEdgeCount != directedEdgeCount)
+            {
+                throw new GraphFormatException("\"" + path + "\" is not a binary graph file. The edge kinds name "
+                    + kindDirectedEdgeCount + " directed edges instead of " + directedEdgeCount);
+            }
+        }
+
+        if (arcOffsets == null)
+        {
+            return;
+        }
+
+        // The offsets start at 0, never decrease and end at the arc count.
+        int previousOffset = 0;
+
+        for (long position = 0; position <= vertexCount; ++position)
+        {
+            int offset = get(arcOffsets, position);
+
+            if (offset < previousOffset || offset > arcCount || position == 0 && offset != 0 || position == vertexCount && offset != arcCount)
+            {
+                throw new GraphFormatException("\"" + path + "\" is not a binary graph file. Arc offset " + offset
+                    + " of position " + position + " is out of order");
+            }
+
+            previousOffset = offset;
+        }
+
+        for (long arc = 0; arc < arcCount; ++arc)
+        {
+            checkPosition(path, get(arcTargets, arc), vertexCount, "arc targets");
+        }
+    }
+
+    /**
+     * Checks that a position read from the file is in range.
+     *
+     * @exception GraphFormatException The position is out of range.
+     */
+    private static void checkPosition(String path, int position, int vertexCount, String block) throws GraphFormatException
+    {
+        if (position < 0 || position >= vertexCount)
+        {
+            throw new GraphFormatException("\"" + path + "\" is not a binary graph file. Position " + position
+                + " in the " + block + " is out of range");
+        }
+    }
+
+    /**
+     * Maps a block of integers in chunks that each stay below the 2 GB mapping limit.
+     *
+     * @param channel The file channel.
+     * @param offset The offset of the block, in integers.
+     * @param count The number of integers in the block.
+     *
+     * @return The mapped chunks.
+     */
+    private static IntBuffer[] map(FileChannel channel, long offset, long count) throws IOException
+    {
+        IntBuffer[] chunks = new IntBuffer[(int)((count + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+
+        for (int chunk = 0; chunk < chunks.length; ++chunk)
+        {
+            long start = (long)chunk * CHUNK_SIZE;
+            long size = Math.min(CHUNK_SIZE, count - start);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, (offset + start) * 4, size * 4);
+
+            chunks[chunk] = buffer.asIntBuffer();
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Maps a block of doubles in chunks that each stay below the 2 GB mapping limit.
+     *
+     * @param channel The file channel.
+     * @param offset The offset of the block, in integers.
+     * @param count The number of doubles in the block.
+     *
+     * @return The mapped chunks.
+     */
+    private static DoubleBuffer[] mapDoubles(FileChannel channel, long offset, long count) throws IOException
+    {
+        int chunkSize = CHUNK_SIZE / 2;
+        DoubleBuffer[] chunks = new DoubleBuffer[(int)((count + chunkSize - 1) / chunkSize)];
+
+        for (int chunk = 0; chunk < chunks.length; ++chunk)
+        {
+            long start = (long)chunk * chunkSize;
+            long size = Math.min(chunkSize, count - start);
+
+            chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, offset * 4 + start * 8, size * 8).asDoubleBuffer();
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Gets a double from a chunked block.
+     *
+     * @param chunks The mapped chunks.
+     * @param index The index of the double within the block.
+     *
+     * @return The double.
+     */
+    private static double get(DoubleBuffer[] chunks, long index)
+    {
+        int chunkSize = CHUNK_SIZE / 2;
+
+        return chunks[(int)(index / chunkSize)].get((int)(index % chunkSize));
+    }
+
+    /**
+     * Gets an integer from a chunked block.
+     *
+     * @param chunks The mapped chunks.
+     * @param index The index of the integer within the block.
+     *
+     * @return The integer.
+     */
+    private static int get(IntBuffer[] chunks, long index)
+    {
+        return chunks[(int)(index / CHUNK_SIZE)].get((int)(index % CHUNK_SIZE));
+    }
+}
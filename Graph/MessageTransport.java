@@ -0,0 +1,67 @@
+import java.io.IOException;
+
+/**
+ * Carries the messages of PregelEngine between the partitions of a graph and separates its supersteps.
+ * Messages travel in batches: arrays of pairs of the position of the target vertex and the message.
+ * A batch sent during a superstep is received in the next one. LocalTransport connects partitions that run
+ * as threads of one process. Other transports may connect partitions that run in other processes.
+ *
+ * Every partition calls the methods from one thread at a time, but different partitions call them concurrently.
+ *
+ * @author Andrei Muntean
+ */
+public interface MessageTransport
+{
+    /**
+     * Prepares the transport for a run. Discards the batches of previous runs.
+     *
+     * @param partitionCount The number of partitions.
+     *
+     * @exception IOException The transport cannot be prepared.
+     */
+    void start(int partitionCount) throws IOException;
+
+    /**
+     * Sends a batch of messages from a partition to another.
+     *
+     * @param superstep The current superstep.
+     * @param sourcePartition The partition that sends the batch.
+     * @param targetPartition The partition that owns the targets of the messages.
+     * @param batch Pairs of the position of a target and a message. The transport takes ownership of the array.
+     *
+     * @exception IOException The batch cannot be sent.
+     */
+    void send(int superstep, int sourcePartition, int targetPartition, int[] batch) throws IOException;
+
+    /**
+     * Takes a batch that was sent to a partition during the specified superstep.
+     * Called only after the superstep ended.
+     *
+     * @param superstep The superstep in which the batch was sent.
+     * @param partition The partition.
+     *
+     * @return A batch, or null if every batch was taken.
+     *
+     * @exception IOException A batch cannot be received.
+     */
+    int[] receive(int superstep, int partition) throws IOException;
+
+    /**
+     * Waits until every partition has finished the specified superstep and has sent its batches.
+     *
+     * @param superstep The superstep.
+     * @param partition The partition that finished.
+     * @param count The number of vertices of the partition that are still active plus the number of messages it sent.
+     *
+     * @return The sum of the counts of all partitions. The run ends when it is 0.
+     *
+     * @exception IOException The transport was closed or failed while waiting.
+     * @exception InterruptedException The thread was interrupted while waiting.
+     */
+    long synchronize(int superstep, int partition, long count) throws IOException, InterruptedException;
+
+    /**
+     * Ends a run. Partitions that are waiting in synchronize fail, and so do partitions that call it afterwards.
+     */
+    void close();
+}
@@ -0,0 +1,861 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Persists a graph incrementally: as a checkpoint, which is a binary graph file (see MappedGraph),
+ * followed by a write-ahead log of the changes made since. The log receives the changes as the listener of the graph,
+ * so the graph is modified as usual. Values are logged when they are set with Vertex.setValue, including by
+ * PageRank.writeTo and by the programs of PregelEngine.
+ *
+ * Changes are buffered and written to the log as one frame per group commit, either when recordsPerCommit changes
+ * are buffered or when commit is called. The log is synced to the disk every commitsPerSync commits, or when sync
+ * is called. A change is safe from a crash of the process once it is committed, and from a crash of the machine once
+ * it is synced. Every frame carries its length and a CRC-32 of its records, so a frame that was torn by a crash is
+ * detected and discarded.
+ *
+ * The directory holds checkpoint-N.bin and log-N.wal, the log of the changes made after checkpoint N.
+ * Checkpoint 0 is the empty graph and has no file. Opening the directory loads the latest checkpoint and replays
+ * its log. Calling checkpoint compacts the log: it writes checkpoint N + 1, starts an empty log and deletes
+ * the files of checkpoint N.
+ *
+ * Reading the graph from a file replaces it. The changes made while the file is read are not logged: once the file
+ * was read, the new graph is written as a checkpoint at once. A crash before that recovers the graph from before
+ * the read. If the read fails, the graph is recorded by a checkpoint at the next commit instead.
+ *
+ * The log is the listener of its graph. Set a listener on the log to also receive the operations of the graph.
+ *
+ * @author Andrei Muntean
+ */
+public class MutationLog implements GraphListener
+{
+    // Identifies a log file. Spells "GWAL".
+    private static final int MAGIC = 0x4757414C;
+
+    // The version of the log format.
+    private static final int VERSION = 1;
+
+    // The number of bytes before the first frame: magic, version and checkpoint number.
+    private static final int HEADER_SIZE = 12;
+
+    // The number of bytes before the records of a frame: their length and their checksum.
+    private static final int FRAME_HEADER_SIZE = 8;
+
+    // The default number of changes in a group commit and of commits between syncs.
+    private static final int DEFAULT_RECORDS_PER_COMMIT = 256;
+    private static final int DEFAULT_COMMITS_PER_SYNC = 1;
+
+    // The types of the records.
+    private static final int ADD_VERTEX = 1;
+    private static final int ADD_EDGE = 2;
+    private static final int REMOVE_EDGE = 3;
+    private static final int REMOVE_VERTEX = 4;
+    private static final int SET_VALUE = 5;
+
+    // Flags of the edge records.
+    private static final int DIRECTED = 0x10;
+    private static final int WEIGHTED = 0x20;
+    private static final int TYPE_MASK = 0x0F;
+
+    // The directory of the checkpoints and logs.
+    private File directory;
+
+    // The graph whose changes are logged.
+    private Graph graph;
+
+    // Receives the operations of the graph after the log, or null.
+    private GraphListener listener;
+
+    // The number of the checkpoint the log applies to.
+    private int checkpointNumber;
+
+    // The open log file.
+    private FileChannel channel;
+
+    // The number of changes in a group commit and of commits between syncs. 0 disables automatic syncs.
+    private int recordsPerCommit;
+    private int commitsPerSync;
+
+    // The records that have not been committed.
+    private ByteArrayOutputStream pendingBytes;
+    private DataOutputStream pendingRecords;
+    private int pendingRecordCount;
+
+    // The number of commits since the last sync.
+    private int unsyncedCommitCount;
+
+    // Whether the graph is being or was replaced by reading a file, which only a checkpoint can record.
+    // Changes are not logged meanwhile, since the checkpoint records them.
+    private boolean isCheckpointNeeded;
+
+    // The numbers of records, commits and syncs since the log was opened.
+    private long recordCount;
+    private long commitCount;
+    private long syncCount;
+
+    /**
+     * Opens the log in the specified directory with the default batching, and recovers its graph.
+     *
+     * @param directory The directory of the checkpoints and logs. Created if it does not exist.
+     *
+     * @exception GraphFormatException A checkpoint or a log is malformed.
+     * @exception IOException The files cannot be read or written.
+     */
+    public MutationLog(String directory) throws GraphFormatException, IOException
+    {
+        this(directory, DEFAULT_RECORDS_PER_COMMIT, DEFAULT_COMMITS_PER_SYNC);
+    }
+
+    /**
+     * Opens the log in the specified directory and recovers its graph: loads the latest checkpoint,
+     * replays its log and discards a torn frame at the end of the log.
+     *
+     * @param directory The directory of the checkpoints and logs. Created if it does not exist.
+     * @param recordsPerCommit The number of changes that are buffered before they are committed.
+     * @param commitsPerSync The number of commits between syncs, or 0 to leave syncing to sync and to the system.
+     *
+     * @exception IllegalArgumentException The number of changes per commit is not positive or the number of commits per sync is negative.
+     * @exception GraphFormatException A checkpoint or a log is malformed.
+     * @exception IOException The files cannot be read or written.
+     */
+    public MutationLog(String directory, int recordsPerCommit, int commitsPerSync) throws IllegalArgumentException, GraphFormatException, IOException
+    {
+        if (recordsPerCommit < 1 || commitsPerSync < 0)
+        {
+            throw new IllegalArgumentException("The batch sizes must be positive.");
+        }
+
+        this.directory = new File(directory);
+        this.recordsPerCommit = recordsPerCommit;
+        this.commitsPerSync = commitsPerSync;
+        pendingBytes = new ByteArrayOutputStream();
+        pendingRecords = new DataOutputStream(pendingBytes);
+
+        if (!this.directory.isDirectory() && !this.directory.mkdirs())
+        {
+            throw new IOException("Cannot create \"" + directory + "\".");
+        }
+
+        recover();
+        graph.setListener(this);
+    }
+
+    /**
+     * Gets the graph whose changes are logged.
+     *
+     * @return The graph.
+     */
+    public Graph getGraph()
+    {
+        return graph;
+    }
+
+    /**
+     * Gets the listener that receives the operations of the graph after the log.
+     *
+     * @return The listener, or null if there is none.
+     */
+    public synchronized GraphListener getListener()
+    {
+        return listener;
+    }
+
+    /**
+     * Sets the listener that receives the operations of the graph after the log.
+     *
+     * @param listener A listener, or null to remove the listener.
+     */
+    public synchronized void setListener(GraphListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Writes the buffered changes to the log as one frame, and syncs the log if commitsPerSync commits were made.
+     * Writes a checkpoint instead if the graph was replaced by a read that has not been recorded.
+     *
+     * @exception IOException The log cannot be written.
+     */
+    public synchronized void commit() throws IOException
+    {
+        if (isCheckpointNeeded)
+        {
+            checkpoint();
+        }
+        else
+        {
+            writeFrame();
+        }
+    }
+
+    /**
+     * Commits the buffered changes and syncs the log to the disk.
+     *
+     * @exception IOException The log cannot be written.
+     */
+    public synchronized void sync() throws IOException
+    {
+        commit();
+        syncLog();
+    }
+
+    /**
+     * Compacts the log: writes the graph as a new checkpoint, starts an empty log and deletes the previous files.
+     * A crash at any point leaves either the previous checkpoint and its log or the new checkpoint.
+     *
+     * @exception IOException The files cannot be written.
+     */
+    public synchronized void checkpoint() throws IOException
+    {
+        int nextNumber = checkpointNumber + 1;
+        File temporaryFile = new File(directory, "checkpoint-" + nextNumber + ".tmp");
+
+        // Keeps the previous log complete until the new checkpoint is in place, unless the graph was replaced
+        // and the previous log no longer applies to it.
+        if (!isCheckpointNeeded)
+        {
+            writeFrame();
+        }
+
+        graph.writeToBinaryFile(temporaryFile.getPath());
+        syncFile(temporaryFile);
+        Files.move(temporaryFile.toPath(), getCheckpointFile(nextNumber).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+
+        FileChannel previousChannel = channel;
+        File previousCheckpoint = getCheckpointFile(checkpointNumber);
+        File previousLog = getLogFile(checkpointNumber);
+
+        checkpointNumber = nextNumber;
+        channel = createLog(checkpointNumber);
+        previousChannel.close();
+        previousLog.delete();
+        previousCheckpoint.delete();
+        unsyncedCommitCount = 0;
+        isCheckpointNeeded = false;
+    }
+
+    /**
+     * Commits and syncs the buffered changes, closes the log and stops logging the changes of the graph.
+     *
+     * @exception IOException The log cannot be written.
+     */
+    public synchronized void close() throws IOException
+    {
+        try
+        {
+            sync();
+        }
+        finally
+        {
+            channel.close();
+            graph.setListener(listener);
+        }
+    }
+
+    /**
+     * Gets the number of the checkpoint the log applies to.
+     *
+     * @return The checkpoint number.
+     */
+    public synchronized int getCheckpointNumber()
+    {
+        return checkpointNumber;
+    }
+
+    /**
+     * Gets the size of the log file, without the changes that are not committed.
+     *
+     * @return The number of bytes.
+     *
+     * @exception IOException The size cannot be read.
+     */
+    public synchronized long getLogSize() throws IOException
+    {
+        return channel.size();
+    }
+
+    /**
+     * Gets the number of changes that were logged since the log was opened.
+     *
+     * @return The number of records.
+     */
+    public synchronized long getRecordCount()
+    {
+        return recordCount;
+    }
+
+    /**
+     * Gets the number of group commits since the log was opened.
+     *
+     * @return The number of commits.
+     */
+    public synchronized long getCommitCount()
+    {
+        return commitCount;
+    }
+
+    /**
+     * Gets the number of syncs since the log was opened.
+     *
+     * @return The number of syncs.
+     */
+    public synchronized long getSyncCount()
+    {
+        return syncCount;
+    }
+
+    @Override
+    public synchronized void edgeAdded(Edge edge, boolean isStored, long nanos)
+    {
+        if (isStored && !isCheckpointNeeded)
+        {
+            writeEdge(ADD_EDGE, edge);
+        }
+
+        if (listener != null)
+        {
+            listener.edgeAdded(edge, isStored, nanos);
+        }
+    }
+
+    @Override
+    public synchronized void vertexAdded(Vertex vertex, boolean isStored, long nanos)
+    {
+        if (isStored && !isCheckpointNeeded)
+        {
+            try
+            {
+                pendingRecords.writeByte(ADD_VERTEX);
+                pendingRecords.writeInt(vertex.getId());
+                pendingRecords.writeInt(vertex.getValue());
+            }
+            catch (IOException exception)
+            {
+                throw new UncheckedIOException(exception);
+            }
+
+            finishRecord();
+        }
+
+        if (listener != null)
+        {
+            listener.vertexAdded(vertex, isStored, nanos);
+        }
+    }
+
+    @Override
+    public synchronized void edgeRemoved(Edge edge, boolean wasStored, long nanos)
+    {
+        if (wasStored && !isCheckpointNeeded)
+        {
+            writeEdge(REMOVE_EDGE, edge);
+        }
+
+        if (listener != null)
+        {
+            listener.edgeRemoved(edge, wasStored, nanos);
+        }
+    }
+
+    @Override
+    public synchronized void vertexRemoved(Vertex vertex, boolean wasStored, long nanos)
+    {
+        if (wasStored && !isCheckpointNeeded)
+        {
+            try
+            {
+                pendingRecords.writeByte(REMOVE_VERTEX);
+                pendingRecords.writeInt(vertex.getId());
+            }
+            catch (IOException exception)
+            {
+                throw new UncheckedIOException(exception);
+            }
+
+            finishRecord();
+        }
+
+        if (listener != null)
+        {
+            listener.vertexRemoved(vertex, wasStored, nanos);
+        }
+    }
+
+    @Override
+    public synchronized void valueSet(Vertex vertex)
+    {
+        if (!isCheckpointNeeded)
+        {
+            // Logs the value the vertex holds now, so that the last record of a vertex holds its latest value.
+            try
+            {
+                pendingRecords.writeByte(SET_VALUE);
+                pendingRecords.writeInt(vertex.getId());
+                pendingRecords.writeInt(vertex.getValue());
+            }
+            catch (IOException exception)
+            {
+                throw new UncheckedIOException(exception);
+            }
+
+            finishRecord();
+        }
+
+        if (listener != null)
+        {
+            listener.valueSet(vertex);
+        }
+    }
+
+    @Override
+    public synchronized void vertexFound(int id, boolean isFound, long nanos)
+    {
+        if (listener != null)
+        {
+            listener.vertexFound(id, isFound, nanos);
+        }
+    }
+
+    @Override
+    public synchronized void pathsRead(Vertex vertex, int pathCount, long nanos)
+    {
+        if (listener != null)
+        {
+            listener.pathsRead(vertex, pathCount, nanos);
+        }
+    }
+
+    @Override
+    public synchronized void graphReading(String path)
+    {
+        // The graph is about to be replaced. The changes that were not committed no longer apply to it.
+        pendingBytes.reset();
+        pendingRecordCount = 0;
+        isCheckpointNeeded = true;
+
+        if (listener != null)
+        {
+            listener.graphReading(path);
+        }
+    }
+
+    @Override
+    public synchronized void graphRead(String path, long nanos)
+    {
+        // Records the new graph at once. Until then, a crash recovers the graph from before the read.
+        try
+        {
+            checkpoint();
+        }
+        catch (IOException exception)
+        {
+            throw new UncheckedIOException(exception);
+        }
+
+        if (listener != null)
+        {
+            listener.graphRead(path, nanos);
+        }
+    }
+
+    @Override
+    public synchronized void graphWritten(String path, long nanos)
+    {
+        if (listener != null)
+        {
+            listener.graphWritten(path, nanos);
+        }
+    }
+
+    /**
+     * Buffers an edge record: its type and flags, the ids of its vertices and its weight if it is not 1.
+     */
+    private void writeEdge(int type, Edge edge)
+    {
+        boolean isWeighted = type == ADD_EDGE && edge.getWeight() != 1;
+
+        try
+        {
+            pendingRecords.writeByte(type | (edge.isDirected() ? DIRECTED : 0) | (isWeighted ? WEIGHTED : 0));
+            pendingRecords.writeInt(edge.getFirstId());
+            pendingRecords.writeInt(edge.getSecondId());
+
+            if (isWeighted)
+            {
+                pendingRecords.writeDouble(edge.getWeight());
+            }
+        }
+        catch (IOException exception)
+        {
+            throw new UncheckedIOException(exception);
+        }
+
+        finishRecord();
+    }
+
+    /**
+     * Counts a buffered record and commits the group once it is full.
+     */
+    private void finishRecord()
+    {
+        ++recordCount;
+
+        if (++pendingRecordCount >= recordsPerCommit)
+        {
+            try
+            {
+                commit();
+            }
+            catch (IOException exception)
+            {
+                throw new UncheckedIOException(exception);
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered changes to the log as one frame, and syncs the log if commitsPerSync commits were made.
+     */
+    private void writeFrame() throws IOException
+    {
+        if (pendingRecordCount == 0)
+        {
+            return;
+        }
+
+        byte[] records = pendingBytes.toByteArray();
+        CRC32 checksum = new CRC32();
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + records.length);
+
+        checksum.update(records);
+        frame.putInt(records.length);
+        frame.putInt((int)checksum.getValue());
+        frame.put(records);
+        frame.flip();
+
+        while (frame.hasRemaining())
+        {
+            channel.write(frame);
+        }
+
+        pendingBytes.reset();
+        pendingRecordCount = 0;
+        ++commitCount;
+
+        if (commitsPerSync > 0 && ++unsyncedCommitCount >= commitsPerSync)
+        {
+            syncLog();
+        }
+    }
+
+    /**
+     * Syncs the log file to the disk.
+     */
+    private void syncLog() throws IOException
+    {
+        channel.force(false);
+        unsyncedCommitCount = 0;
+        ++syncCount;
+    }
+
+    /**
+     * Loads the latest checkpoint, replays its log and opens the log for appending.
+     * Deletes the files of other checkpoints, which a crash during a checkpoint may leave behind.
+     */
+    private void recover() throws GraphFormatException, IOException
+    {
+        checkpointNumber = 0;
+
+        for (String name : directory.list())
+        {
+            if (name.startsWith("checkpoint-") && name.endsWith(".bin"))
+            {
+                checkpointNumber = Math.max(checkpointNumber, parseNumber(name, ".bin"));
+            }
+        }
+
+        graph = new Graph();
+
+        if (checkpointNumber > 0)
+        {
+            graph.readFromBinaryFile(getCheckpointFile(checkpointNumber).getPath());
+        }
+
+        for (String name : directory.list())
+        {
+            boolean isCurrent = name.equals(getCheckpointFile(checkpointNumber).getName()) || name.equals(getLogFile(checkpointNumber).getName());
+
+            if (!isCurrent && (name.startsWith("checkpoint-") || name.startsWith("log-")))
+            {
+                new File(directory, name).delete();
+            }
+        }
+
+        File logFile = getLogFile(checkpointNumber);
+
+        channel = logFile.exists() ? replay(logFile) : createLog(checkpointNumber);
+    }
+
+    /**
+     * Applies the complete frames of a log to the graph and truncates the log after the last of them.
+     *
+     * @param logFile The log of the current checkpoint.
+     *
+     * @return The log, open for appending.
+     */
+    private FileChannel replay(File logFile) throws GraphFormatException, IOException
+    {
+        FileChannel logChannel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        readFully(logChannel, header, 0);
+
+        if (header.hasRemaining())
+        {
+            // The log was created but its header was not written. It holds no changes.
+            logChannel.close();
+
+            return createLog(checkpointNumber);
+        }
+
+        header.flip();
+
+        if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != checkpointNumber)
+        {
+            logChannel.close();
+
+            throw new GraphFormatException("\"" + logFile + "\" is not the log of checkpoint " + checkpointNumber + ".");
+        }
+
+        long position = HEADER_SIZE;
+        long size = logChannel.size();
+        ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+
+        while (position + FRAME_HEADER_SIZE <= size)
+        {
+            frameHeader.clear();
+            readFully(logChannel, frameHeader, position);
+            frameHeader.flip();
+
+            int length = frameHeader.getInt();
+            int expectedChecksum = frameHeader.getInt();
+
+            if (length < 0 || position + FRAME_HEADER_SIZE + length > size)
+            {
+                break;
+            }
+
+            ByteBuffer records = ByteBuffer.allocate(length);
+            CRC32 checksum = new CRC32();
+
+            readFully(logChannel, records, position + FRAME_HEADER_SIZE);
+            checksum.update(records.array());
+
+            if ((int)checksum.getValue() != expectedChecksum)
+            {
+                break;
+            }
+
+            apply(records.array());
+            position += FRAME_HEADER_SIZE + length;
+        }
+
+        // Discards a torn frame.
+        logChannel.truncate(position);
+        logChannel.position(position);
+
+        return logChannel;
+    }
+
+    /**
+     * Applies the records of a frame to the graph, which has no listener yet.
+     */
+    private void apply(byte[] records) throws IOException
+    {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(records));
+
+        while (input.available() > 0)
+        {
+            int type = input.readUnsignedByte();
+
+            switch (type & TYPE_MASK)
+            {
+                case ADD_VERTEX:
+                    graph.add(new Vertex(input.readInt(), input.readInt()));
+                    break;
+
+                case ADD_EDGE:
+                case REMOVE_EDGE:
+                    Vertex first = new Vertex(input.readInt());
+                    Vertex second = new Vertex(input.readInt());
+                    boolean isDirected = (type & DIRECTED) != 0;
+                    Edge edge;
+
+                    if ((type & WEIGHTED) != 0)
+                    {
+                        double weight = input.readDouble();
+
+                        edge = isDirected ? new WeightedDirectedEdge(first, second, weight) : new WeightedUndirectedEdge(first, second, weight);
+                    }
+                    else
+                    {
+                        edge = isDirected ? new DirectedEdge(first, second) : new UndirectedEdge(first, second);
+                    }
+
+                    if ((type & TYPE_MASK) == ADD_EDGE)
+                    {
+                        graph.add(edge);
+                    }
+                    else
+                    {
+                        graph.removeEdge(edge);
+                    }
+
+                    break;
+
+                case REMOVE_VERTEX:
+                    graph.removeVertex(new Vertex(input.readInt()));
+                    break;
+
+                case SET_VALUE:
+                    Vertex vertex = graph.getVertexWithId(input.readInt());
+                    int value = input.readInt();
+
+                    if (vertex != null)
+                    {
+                        vertex.setValue(value);
+                    }
+
+                    break;
+
+                default:
+                    throw new IOException("Unknown record type " + type + ".");
+            }
+        }
+    }
+
+    /**
+     * Creates an empty log for a checkpoint and syncs its header.
+     *
+     * @return The log, open for appending.
+     */
+    private FileChannel createLog(int number) throws IOException
+    {
+        FileChannel logChannel = FileChannel.open(getLogFile(number).toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(number);
+        header.flip();
+
+        while (header.hasRemaining())
+        {
+            logChannel.write(header);
+        }
+
+        logChannel.force(true);
+        syncDirectory();
+
+        return logChannel;
+    }
+
+    private File getCheckpointFile(int number)
+    {
+        return new File(directory, "checkpoint-" + number + ".bin");
+    }
+
+    private File getLogFile(int number)
+    {
+        return new File(directory, "log-" + number + ".wal");
+    }
+
+    /**
+     * Reads the number in the name of a checkpoint file.
+     *
+     * @return The number, or 0 if the name is malformed.
+     */
+    private static int parseNumber(String name, String extension)
+    {
+        try
+        {
+            return Integer.parseInt(name.substring(name.indexOf('-') + 1, name.length() - extension.length()));
+        }
+        catch (NumberFormatException exception)
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads bytes from a position of a file until the buffer is full or the file ends.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            int length = channel.read(buffer, position);
+
+            if (length < 0)
+            {
+                return;
+            }
+
+            position += length;
+        }
+    }
+
+    /**
+     * Syncs a file to the disk.
+     */
+    private static void syncFile(File file) throws IOException
+    {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+
+        try
+        {
+            randomAccessFile.getChannel().force(true);
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Syncs the directory so that created and renamed files survive a crash. Not every system supports this.
+     */
+    private void syncDirectory()
+    {
+        try
+        {
+            FileChannel directoryChannel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+
+            try
+            {
+                directoryChannel.force(true);
+            }
+            finally
+            {
+                directoryChannel.close();
+            }
+        }
+        catch (IOException exception)
+        {
+            // The rename is still atomic. Only its durability depends on the system.
+        }
+    }
+}
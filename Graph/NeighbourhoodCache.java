@@ -0,0 +1,417 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the paths and the neighbourhoods of the vertices of a graph that are looked up most often.
+ * Entries are keyed by vertex id and hop count and are evicted with a segmented LRU policy: new entries go to
+ * a probation segment and move to a protected segment when they are hit again, so vertices that are looked up
+ * once do not push out the hot ones.
+ *
+ * Entries are not invalidated eagerly. Every entry remembers the versions of the vertices it was built from,
+ * which change when an edge is added to or removed from a vertex, when a vertex is removed and when a value is set,
+ * and an entry whose versions changed is rebuilt the next time it is read. Mutations of the graph therefore cost
+ * nothing extra and only invalidate the entries they affect.
+ *
+ * The cache is thread-safe, but the graph is not: it must not be modified while the cache reads it.
+ *
+ * @author Andrei Muntean
+ */
+public class NeighbourhoodCache
+{
+    // The share of the capacity that is kept for entries that were hit at least twice.
+    private static final double PROTECTED_SHARE = 0.8;
+
+    // The graph whose lookups are cached.
+    private Graph graph;
+
+    // The largest number of entries.
+    private int capacity;
+
+    // The largest number of entries in the protected segment.
+    private int protectedCapacity;
+
+    // The entries that were read once and those that were read again, from the least recently used.
+    private LinkedHashMap<Long, Entry> probationEntries;
+    private LinkedHashMap<Long, Entry> protectedEntries;
+
+    // The number of lookups that were answered from the cache and of those that were not.
+    private long hitCount;
+    private long missCount;
+
+    // The number of entries that were evicted to make room and that were found to be out of date.
+    private long evictionCount;
+    private long invalidationCount;
+
+    /**
+     * Constructs a cache of lookups in the specified graph.
+     *
+     * @param graph A graph.
+     * @param capacity The largest number of entries.
+     *
+     * @exception IllegalArgumentException The capacity is not positive.
+     */
+    public NeighbourhoodCache(Graph graph, int capacity) throws IllegalArgumentException
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+
+        this.graph = graph;
+        this.capacity = capacity;
+        protectedCapacity = (int)(capacity * PROTECTED_SHARE);
+        probationEntries = new LinkedHashMap<Long, Entry>(16, 0.75f, true);
+        protectedEntries = new LinkedHashMap<Long, Entry>(16, 0.75f, true);
+    }
+
+    /**
+     * Gets the edges that originate from the specified vertex, like Graph.getPathsFrom.
+     *
+     * @param vertex A vertex.
+     *
+     * @return A new array of edges that originate from the specified vertex.
+     */
+    public synchronized Edge[] getPathsFrom(Vertex vertex)
+    {
+        long key = getKey(vertex.getId(), 0);
+        Entry entry = find(key);
+
+        if (entry == null)
+        {
+            Adjacency adjacency = graph.getAdjacency(vertex.getId());
+            Edge[] paths = graph.getPathsFrom(vertex);
+
+            if (adjacency == null)
+            {
+                // Vertices that are not stored are not cached, since nothing would tell when they are added.
+                return paths;
+            }
+
+            entry = new Entry(paths, graph.getGeneration(), new Adjacency[] { adjacency }, new Vertex[] { adjacency.getVertex() });
+            insert(key, entry);
+        }
+
+        return ((Edge[])entry.result).clone();
+    }
+
+    /**
+     * Gets the vertices that can be reached from the specified vertex by following at most the specified
+     * number of paths, in breadth-first order. The vertex itself is not included.
+     *
+     * @param vertex A vertex.
+     * @param hops The largest number of paths to follow.
+     *
+     * @return A new array of vertices.
+     *
+     * @exception IllegalArgumentException The number of hops is not positive.
+     */
+    public synchronized Vertex[] getNeighbourhood(Vertex vertex, int hops) throws IllegalArgumentException
+    {
+        if (hops < 1)
+        {
+            throw new IllegalArgumentException("The number of hops must be positive.");
+        }
+
+        long key = getKey(vertex.getId(), hops);
+        Entry entry = find(key);
+
+        if (entry == null)
+        {
+            Adjacency source = graph.getAdjacency(vertex.getId());
+
+            if (source == null)
+            {
+                return new Vertex[0];
+            }
+
+            entry = createNeighbourhood(source, hops);
+            insert(key, entry);
+        }
+
+        return ((Vertex[])entry.result).clone();
+    }
+
+    /**
+     * Removes every entry. Keeps the statistics.
+     */
+    public synchronized void clear()
+    {
+        probationEntries.clear();
+        protectedEntries.clear();
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return The number of entries.
+     */
+    public synchronized int size()
+    {
+        return probationEntries.size() + protectedEntries.size();
+    }
+
+    /**
+     * Gets the number of lookups that were answered from the cache.
+     *
+     * @return The number of hits.
+     */
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of lookups that had to read the graph, including those of out-of-date entries.
+     *
+     * @return The number of misses.
+     */
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * Gets the share of the lookups that were answered from the cache.
+     *
+     * @return The hit rate, or 0 if there were no lookups.
+     */
+    public synchronized double getHitRate()
+    {
+        long lookupCount = hitCount + missCount;
+
+        return lookupCount == 0 ? 0 : (double)hitCount / lookupCount;
+    }
+
+    /**
+     * Gets the number of entries that were evicted to make room for others.
+     *
+     * @return The number of evictions.
+     */
+    public synchronized long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    /**
+     * Gets the number of entries that were found to be out of date because the graph changed.
+     *
+     * @return The number of invalidations.
+     */
+    public synchronized long getInvalidationCount()
+    {
+        return invalidationCount;
+    }
+
+    /**
+     * Finds an entry that is up to date, promoting it to the protected segment, and counts the lookup.
+     *
+     * @param key The key of the entry.
+     *
+     * @return The entry, or null if there is none.
+     */
+    private Entry find(long key)
+    {
+        Entry entry = protectedEntries.get(key);
+
+        if (entry == null)
+        {
+            entry = probationEntries.remove(key);
+
+            if (entry != null && entry.isValid(graph.getGeneration()))
+            {
+                // A second hit shows the entry is hot.
+                protectedEntries.put(key, entry);
+
+                if (protectedEntries.size() > protectedCapacity)
+                {
+                    // Gives the least recently used protected entry another chance in probation.
+                    Iterator<Map.Entry<Long, Entry>> eldest = protectedEntries.entrySet().iterator();
+                    Map.Entry<Long, Entry> eldestEntry = eldest.next();
+
+                    eldest.remove();
+                    probationEntries.put(eldestEntry.getKey(), eldestEntry.getValue());
+                }
+            }
+        }
+
+        if (entry != null && !entry.isValid(graph.getGeneration()))
+        {
+            protectedEntries.remove(key);
+            ++invalidationCount;
+            entry = null;
+        }
+
+        if (entry == null)
+        {
+            ++missCount;
+        }
+        else
+        {
+            ++hitCount;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Adds a new entry to the probation segment, evicting the least recently used entry if the cache is full.
+     *
+     * @param key The key of the entry.
+     * @param entry The entry.
+     */
+    private void insert(long key, Entry entry)
+    {
+        probationEntries.put(key, entry);
+
+        if (size() > capacity)
+        {
+            LinkedHashMap<Long, Entry> segment = probationEntries.size() > 1 ? probationEntries : protectedEntries;
+            Iterator<Long> eldest = segment.keySet().iterator();
+
+            eldest.next();
+            eldest.remove();
+            ++evictionCount;
+        }
+    }
+
+    /**
+     * Finds the neighbourhood of a vertex by breadth-first search, and remembers the versions of the vertices
+     * whose paths were followed and of the vertices that were found.
+     *
+     * @param source The adjacency of the vertex.
+     * @param hops The largest number of paths to follow.
+     *
+     * @return The entry.
+     */
+    private Entry createNeighbourhood(Adjacency source, int hops)
+    {
+        ArrayList<Adjacency> expanded = new ArrayList<Adjacency>();
+        ArrayList<Vertex> members = new ArrayList<Vertex>();
+        HashSet<Integer> visitedIds = new HashSet<Integer>();
+        ArrayList<Adjacency> frontier = new ArrayList<Adjacency>();
+
+        visitedIds.add(source.getVertex().getId());
+        frontier.add(source);
+
+        for (int hop = 1; hop <= hops && !frontier.isEmpty(); ++hop)
+        {
+            ArrayList<Adjacency> nextFrontier = new ArrayList<Adjacency>();
+
+            for (Adjacency adjacency : frontier)
+            {
+                int id = adjacency.getVertex().getId();
+
+                expanded.add(adjacency);
+
+                for (Edge edge : adjacency.getPaths())
+                {
+                    // The paths of undirected edges may lead from either of their vertices.
+                    Vertex neighbour = edge.getFirstId() == id ? edge.getSecond() : edge.getFirst();
+
+                    if (visitedIds.add(neighbour.getId()))
+                    {
+                        members.add(neighbour);
+
+                        if (hop < hops)
+                        {
+                            nextFrontier.add(graph.getAdjacency(neighbour.getId()));
+                        }
+                    }
+                }
+            }
+
+            frontier = nextFrontier;
+        }
+
+        Vertex[] result = members.toArray(new Vertex[members.size()]);
+
+        members.add(source.getVertex());
+
+        return new Entry(result, graph.getGeneration(), expanded.toArray(new Adjacency[expanded.size()]),
+            members.toArray(new Vertex[members.size()]));
+    }
+
+    /**
+     * Packs a vertex id and a hop count into a key. Paths have a hop count of 0.
+     */
+    private static long getKey(int id, int hops)
+    {
+        return (long)id << 32 | hops;
+    }
+
+    /**
+     * Holds the result of a lookup and the versions it depends on.
+     */
+    private static class Entry
+    {
+        // The array that is returned.
+        final Object result;
+
+        // The generation of the graph the result was read from.
+        final int generation;
+
+        // The vertices whose paths were followed, and the versions of their paths.
+        final Adjacency[] adjacencies;
+        final int[] adjacencyVersions;
+
+        // The vertices the result holds or was read from, and the versions of their values.
+        final Vertex[] vertices;
+        final int[] vertexVersions;
+
+        Entry(Object result, int generation, Adjacency[] adjacencies, Vertex[] vertices)
+        {
+            this.result = result;
+            this.generation = generation;
+            this.adjacencies = adjacencies;
+            this.vertices = vertices;
+            adjacencyVersions = new int[adjacencies.length];
+            vertexVersions = new int[vertices.length];
+
+            for (int index = 0; index < adjacencies.length; ++index)
+            {
+                adjacencyVersions[index] = adjacencies[index].getVersion();
+            }
+
+            for (int index = 0; index < vertices.length; ++index)
+            {
+                vertexVersions[index] = vertices[index].getVersion();
+            }
+        }
+
+        /**
+         * Determines whether the graph has not changed in a way that affects the result.
+         *
+         * @param currentGeneration The current generation of the graph.
+         *
+         * @return True if the result is up to date.
+         */
+        boolean isValid(int currentGeneration)
+        {
+            if (generation != currentGeneration)
+            {
+                return false;
+            }
+
+            for (int index = 0; index < adjacencies.length; ++index)
+            {
+                if (adjacencies[index].getVersion() != adjacencyVersions[index])
+                {
+                    return false;
+                }
+            }
+
+            for (int index = 0; index < vertices.length; ++index)
+            {
+                if (vertices[index].getVersion() != vertexVersions[index])
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Represents a growable block of memory outside the heap, addressed by byte offset.
+ * The block is split into direct buffers of at most 1 GB, so it can grow past the 2 GB limit of a
+ * single buffer. Values never straddle two buffers as long as they are aligned to their own size.
+ * Small blocks use one buffer that is copied as it grows; large blocks grow a buffer at a time.
+ *
+ * @author Andrei Muntean
+ */
+class OffHeapArray
+{
+    // The number of bits in an offset within a buffer.
+    private static final int CHUNK_BITS = 30;
+
+    // The largest size of a buffer.
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    // The smallest size of a buffer.
+    private static final int MINIMUM_SIZE = 1024;
+
+    // sun.misc.Unsafe and its invokeCleaner method, which frees a direct buffer at once.
+    // Null if they are not available, in which case the buffers are freed by the garbage collector.
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static
+    {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+
+        try
+        {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        }
+        catch (ReflectiveOperationException | RuntimeException exception)
+        {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    // The buffers. Every buffer holds CHUNK_SIZE bytes, except when there is only one.
+    private ByteBuffer[] chunks;
+
+    // The number of bytes that can be addressed.
+    private long capacity;
+
+    /**
+     * Constructs a block of memory. Its bytes are zero.
+     *
+     * @param capacity The number of bytes the block should hold without growing.
+     */
+    public OffHeapArray(long capacity)
+    {
+        chunks = new ByteBuffer[0];
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Gets the number of bytes that can be addressed.
+     *
+     * @return The capacity of the block.
+     */
+    public long capacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Grows the block so that it holds at least the specified number of bytes. New bytes are zero.
+     *
+     * @param capacity The number of bytes.
+     */
+    public void ensureCapacity(long capacity)
+    {
+        if (capacity <= this.capacity)
+        {
+            return;
+        }
+
+        if (this.capacity < CHUNK_SIZE)
+        {
+            // Grows the only buffer by doubling it, up to the size of a full buffer.
+            int size = (int)Math.min(Math.max(Math.max(capacity, this.capacity * 2), MINIMUM_SIZE), CHUNK_SIZE);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+
+            if (chunks.length > 0)
+            {
+                ByteBuffer source = chunks[0].duplicate();
+
+                source.clear();
+                buffer.put(source);
+                buffer.clear();
+                free(chunks[0]);
+            }
+
+            chunks = new ByteBuffer[] { buffer };
+            this.capacity = size;
+        }
+
+        // Adds full buffers.
+        if (this.capacity < capacity)
+        {
+            int chunkCount = (int)((capacity + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+            int oldChunkCount = chunks.length;
+
+            chunks = Arrays.copyOf(chunks, chunkCount);
+
+            for (int chunk = oldChunkCount; chunk < chunkCount; ++chunk)
+            {
+                chunks[chunk] = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.nativeOrder());
+            }
+
+            this.capacity = (long)chunkCount << CHUNK_BITS;
+        }
+    }
+
+    /**
+     * Gets the integer at the specified offset.
+     *
+     * @param offset An offset that is a multiple of 4.
+     *
+     * @return The integer.
+     */
+    public int getInt(long offset)
+    {
+        return chunks[(int)(offset >>> CHUNK_BITS)].getInt((int)offset & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * Sets the integer at the specified offset.
+     *
+     * @param offset An offset that is a multiple of 4.
+     * @param value The integer.
+     */
+    public void putInt(long offset, int value)
+    {
+        chunks[(int)(offset >>> CHUNK_BITS)].putInt((int)offset & (CHUNK_SIZE - 1), value);
+    }
+
+    /**
+     * Gets the double at the specified offset.
+     *
+     * @param offset An offset that is a multiple of 8.
+     *
+     * @return The double.
+     */
+    public double getDouble(long offset)
+    {
+        return chunks[(int)(offset >>> CHUNK_BITS)].getDouble((int)offset & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * Sets the double at the specified offset.
+     *
+     * @param offset An offset that is a multiple of 8.
+     * @param value The double.
+     */
+    public void putDouble(long offset, double value)
+    {
+        chunks[(int)(offset >>> CHUNK_BITS)].putDouble((int)offset & (CHUNK_SIZE - 1), value);
+    }
+
+    /**
+     * Frees the memory of the block at once. The block must not be used afterwards.
+     */
+    public void free()
+    {
+        for (ByteBuffer chunk : chunks)
+        {
+            free(chunk);
+        }
+
+        chunks = new ByteBuffer[0];
+        capacity = 0;
+    }
+
+    /**
+     * Frees the memory of a direct buffer, if the runtime allows it.
+     *
+     * @param buffer A direct buffer that is no longer used.
+     */
+    private static void free(ByteBuffer buffer)
+    {
+        if (INVOKE_CLEANER == null)
+        {
+            return;
+        }
+
+        try
+        {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        }
+        catch (ReflectiveOperationException exception)
+        {
+            // Leaves the buffer to the garbage collector.
+        }
+    }
+}
@@ -0,0 +1,785 @@
+/**
+ * Represents a graph whose vertices and edges are stored outside the heap, so that graphs with billions
+ * of edges neither need a large heap nor lengthen garbage collection pauses.
+ *
+ * Every vertex is a 16 byte record (id, value, latest path, number of paths) and every edge is a 16 byte
+ * record (first vertex, second vertex with a directed bit, next path of each vertex). The paths of a vertex
+ * form a linked list through the edge records. Ids and edges are found through open-addressing hash tables
+ * that are also stored outside the heap, and weights are only stored once an edge with a weight other than 1
+ * is added.
+ *
+ * The vertices and edges that are returned are lightweight views of the records. They are created on
+ * demand and hold no data of their own, so setting the value of a vertex view changes the stored vertex.
+ * The graph only grows: vertices and edges cannot be removed. It holds fewer than 2^31 vertices and edges.
+ *
+ * Only part of the API of Graph is offered: adding, counting, access by index and by id, getPathsFrom,
+ * getType and freeze. The algorithms that take a FrozenGraph run on the snapshot that freeze returns.
+ * The degree statistics, the listener and the file operations are not available.
+ *
+ * Call close to free its memory at once; it must not be used afterwards. The memory counts towards
+ * the limit set by -XX:MaxDirectMemorySize, which defaults to the largest size of the heap.
+ *
+ * @author Andrei Muntean
+ */
+public class OffHeapGraph implements AutoCloseable
+{
+    // The size of a vertex record and the offsets of its fields.
+    private static final int VERTEX_SIZE = 16;
+    private static final int VERTEX_ID = 0;
+    private static final int VERTEX_VALUE = 4;
+    private static final int VERTEX_HEAD = 8;
+    private static final int VERTEX_PATH_COUNT = 12;
+
+    // The size of an edge record and the offsets of its fields.
+    private static final int EDGE_SIZE = 16;
+    private static final int EDGE_FIRST = 0;
+    private static final int EDGE_SECOND = 4;
+    private static final int EDGE_NEXT_FROM_FIRST = 8;
+    private static final int EDGE_NEXT_FROM_SECOND = 12;
+
+    // Marks the second vertex of a directed edge.
+    private static final int DIRECTED = 0x80000000;
+
+    // The smallest number of slots in a hash table.
+    private static final long MINIMUM_TABLE_CAPACITY = 16;
+
+    // The vertex records, in the order they were added.
+    private OffHeapArray vertices;
+
+    // The edge records, in the order they were added.
+    private OffHeapArray edges;
+
+    // The weights of the edges, or null while every edge has a weight of 1.
+    private OffHeapArray weights;
+
+    // The positions of the vertices plus one, indexed by hashed id. Zero marks a free slot.
+    private OffHeapArray vertexTable;
+    private long vertexTableCapacity;
+
+    // The indexes of the edges plus one, indexed by hashed key. Zero marks a free slot.
+    private OffHeapArray edgeTable;
+    private long edgeTableCapacity;
+
+    // The number of vertices and edges.
+    private int vertexCount;
+    private int edgeCount;
+
+    // The number of directed edges.
+    private int directedEdgeCount;
+
+    // Whether the memory was freed.
+    private boolean isClosed;
+
+    /**
+     * Constructs a graph.
+     */
+    public OffHeapGraph()
+    {
+        this(0, 0);
+    }
+
+    /**
+     * Constructs an empty graph with room for the specified number of vertices and edges.
+     *
+     * @param expectedVertexCount The number of vertices the graph should hold without growing.
+     * @param expectedEdgeCount The number of edges the graph should hold without growing.
+     */
+    public OffHeapGraph(int expectedVertexCount, int expectedEdgeCount)
+    {
+        vertices = new OffHeapArray((long)expectedVertexCount * VERTEX_SIZE);
+        edges = new OffHeapArray((long)expectedEdgeCount * EDGE_SIZE);
+        vertexTableCapacity = getTableCapacity(expectedVertexCount);
+        vertexTable = new OffHeapArray(vertexTableCapacity * 4);
+        edgeTableCapacity = getTableCapacity(expectedEdgeCount);
+        edgeTable = new OffHeapArray(edgeTableCapacity * 4);
+    }
+
+    /**
+     * Determines if the graph is undirected, mixed or directed.
+     *
+     * @return The type of the graph.
+     */
+    public GraphType getType()
+    {
+        if (directedEdgeCount > 0 && directedEdgeCount < edgeCount)
+        {
+            return GraphType.MIXED;
+        }
+        else if (directedEdgeCount > 0)
+        {
+            return GraphType.DIRECTED;
+        }
+        else if (edgeCount > 0)
+        {
+            return GraphType.UNDIRECTED;
+        }
+        else
+        {
+            return GraphType.UNKNOWN;
+        }
+    }
+
+    /**
+     * Gets the number of vertices in the graph.
+     *
+     * @return The number of vertices in the graph.
+     */
+    public int countVertices()
+    {
+        return vertexCount;
+    }
+
+    /**
+     * Gets the number of edges in the graph.
+     *
+     * @return The number of edges in the graph.
+     */
+    public int countEdges()
+    {
+        return edgeCount;
+    }
+
+    /**
+     * Gets the number of bytes the graph holds outside the heap.
+     *
+     * @return The number of bytes.
+     */
+    public long getMemoryUsage()
+    {
+        checkOpen();
+
+        long usage = vertices.capacity() + edges.capacity() + vertexTable.capacity() + edgeTable.capacity();
+
+        return weights == null ? usage : usage + weights.capacity();
+    }
+
+    /**
+     * Gets a view of the vertex with the specified index.
+     *
+     * @return The vertex with the specified index.
+     *
+     * @exception IndexOutOfBoundsException Specified index is out of bounds.
+     */
+    public Vertex getVertex(int index) throws IndexOutOfBoundsException
+    {
+        checkOpen();
+
+        if (index < 0 || index >= vertexCount)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + vertexCount);
+        }
+
+        return new VertexView(this, index);
+    }
+
+    /**
+     * Gets a view of the edge with the specified index.
+     *
+     * @return The edge with the specified index.
+     *
+     * @exception IndexOutOfBoundsException Specified index is out of bounds.
+     */
+    public Edge getEdge(int index) throws IndexOutOfBoundsException
+    {
+        checkOpen();
+
+        if (index < 0 || index >= edgeCount)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + edgeCount);
+        }
+
+        return new EdgeView(this, index);
+    }
+
+    /**
+     * Gets a view of the vertex with the specified id.
+     *
+     * @return The vertex with the specified id, or null if it is not stored.
+     */
+    public Vertex getVertexWithId(int id)
+    {
+        checkOpen();
+
+        int position = vertexTable.getInt(findVertex(id) * 4) - 1;
+
+        return position < 0 ? null : new VertexView(this, position);
+    }
+
+    /**
+     * Adds the specified edge and its vertices. Does not store duplicates.
+     *
+     * @param edge An edge.
+     */
+    public void add(Edge edge)
+    {
+        checkOpen();
+
+        int first = addVertex(edge.getFirst());
+        int second = addVertex(edge.getSecond());
+        boolean isDirected = edge.isDirected();
+        long slot = findEdge(first, second, isDirected);
+
+        if (edgeTable.getInt(slot * 4) != 0)
+        {
+            // This edge is already stored. Abort.
+            return;
+        }
+
+        if (edgeCount == Integer.MAX_VALUE - 1)
+        {
+            throw new IllegalStateException("The graph cannot hold more edges.");
+        }
+
+        // Stores the edge.
+        int index = edgeCount++;
+        long offset = (long)index * EDGE_SIZE;
+
+        edges.ensureCapacity(offset + EDGE_SIZE);
+        edges.putInt(offset + EDGE_FIRST, first);
+        edges.putInt(offset + EDGE_SECOND, isDirected ? second | DIRECTED : second);
+        edgeTable.putInt(slot * 4, index + 1);
+
+        if (isDirected)
+        {
+            ++directedEdgeCount;
+        }
+
+        storeWeight(index, edge.getWeight());
+
+        // Attaches the edge to the paths of its vertices. A loop is attached only once.
+        edges.putInt(offset + EDGE_NEXT_FROM_FIRST, pushPath(first, index));
+
+        if (!isDirected && second != first)
+        {
+            edges.putInt(offset + EDGE_NEXT_FROM_SECOND, pushPath(second, index));
+        }
+
+        if (edgeCount > edgeTableCapacity * 3 / 4)
+        {
+            edgeTableCapacity *= 2;
+            edgeTable.free();
+            edgeTable = new OffHeapArray(edgeTableCapacity * 4);
+
+            for (int edgeIndex = 0; edgeIndex < edgeCount; ++edgeIndex)
+            {
+                long edgeOffset = (long)edgeIndex * EDGE_SIZE;
+                int storedSecond = edges.getInt(edgeOffset + EDGE_SECOND);
+
+                slot = findEdge(edges.getInt(edgeOffset + EDGE_FIRST), storedSecond & ~DIRECTED, storedSecond < 0);
+                edgeTable.putInt(slot * 4, edgeIndex + 1);
+            }
+        }
+    }
+
+    /**
+     * Adds the specified vertex. Does not store duplicates.
+     *
+     * @param vertex A vertex.
+     */
+    public void add(Vertex vertex)
+    {
+        checkOpen();
+        addVertex(vertex);
+    }
+
+    /**
+     * Adds the specified edges. Does not store duplicates.
+     *
+     * @param edges The edges.
+     */
+    public void add(Edge[] edges)
+    {
+        for (Edge edge : edges)
+        {
+            add(edge);
+        }
+    }
+
+    /**
+     * Adds the specified vertices. Does not store duplicates.
+     *
+     * @param vertices The vertices.
+     */
+    public void add(Vertex[] vertices)
+    {
+        for (Vertex vertex : vertices)
+        {
+            add(vertex);
+        }
+    }
+
+    /**
+     * Gets views of all the edges that originate from a specified vertex, in the order they were added.
+     *
+     * @param vertex A vertex.
+     *
+     * @return An array of edges that originate from the specified vertex.
+     */
+    public Edge[] getPathsFrom(Vertex vertex)
+    {
+        checkOpen();
+
+        int position = vertexTable.getInt(findVertex(vertex.getId()) * 4) - 1;
+
+        if (position < 0)
+        {
+            // This vertex is not stored.
+            return new Edge[0];
+        }
+
+        long vertexOffset = (long)position * VERTEX_SIZE;
+        Edge[] paths = new Edge[vertices.getInt(vertexOffset + VERTEX_PATH_COUNT)];
+        int path = vertices.getInt(vertexOffset + VERTEX_HEAD);
+
+        // The list starts with the latest path, so the array is filled from its end.
+        for (int index = paths.length - 1; index >= 0; --index)
+        {
+            long offset = (long)(path - 1) * EDGE_SIZE;
+
+            paths[index] = new EdgeView(this, path - 1);
+            path = edges.getInt(offset + EDGE_FIRST) == position
+                ? edges.getInt(offset + EDGE_NEXT_FROM_FIRST)
+                : edges.getInt(offset + EDGE_NEXT_FROM_SECOND);
+        }
+
+        return paths;
+    }
+
+    /**
+     * Takes an immutable snapshot of the graph in compressed sparse row form, so that the algorithms can
+     * run on it. The snapshot is read straight from the records without creating views, and it is held on
+     * the heap, so it can still be used after the graph is closed.
+     * The position of a vertex in the snapshot is its index in the graph.
+     *
+     * @return A snapshot of the graph.
+     */
+    public FrozenGraph freeze()
+    {
+        checkOpen();
+
+        int[] vertexIds = new int[vertexCount];
+        int[] vertexValues = new int[vertexCount];
+        int[] offsets = new int[vertexCount + 1];
+
+        // Lays out the vertices and counts the arcs of each one.
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            long vertexOffset = (long)position * VERTEX_SIZE;
+
+            vertexIds[position] = vertices.getInt(vertexOffset + VERTEX_ID);
+            vertexValues[position] = vertices.getInt(vertexOffset + VERTEX_VALUE);
+            offsets[position + 1] = offsets[position] + vertices.getInt(vertexOffset + VERTEX_PATH_COUNT);
+        }
+
+        int[] targets = new int[offsets[vertexCount]];
+        long[] directedArcs = new long[(targets.length + 63) >>> 6];
+        double[] arcWeights = weights == null ? null : new double[targets.length];
+
+        // Stores the arcs. An arc points to the vertex at the other end of the edge.
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            int path = vertices.getInt((long)position * VERTEX_SIZE + VERTEX_HEAD);
+
+            // The list starts with the latest path, so the arcs are filled from the end.
+            for (int arc = offsets[position + 1] - 1; arc >= offsets[position]; --arc)
+            {
+                long offset = (long)(path - 1) * EDGE_SIZE;
+                int first = edges.getInt(offset + EDGE_FIRST);
+                int second = edges.getInt(offset + EDGE_SECOND);
+
+                targets[arc] = first == position ? second & ~DIRECTED : first;
+
+                if (second < 0)
+                {
+                    directedArcs[arc >>> 6] |= 1L << arc;
+                }
+
+                if (arcWeights != null)
+                {
+                    arcWeights[arc] = weights.getDouble((long)(path - 1) * 8);
+                }
+
+                path = first == position
+                    ? edges.getInt(offset + EDGE_NEXT_FROM_FIRST)
+                    : edges.getInt(offset + EDGE_NEXT_FROM_SECOND);
+            }
+        }
+
+        return new FrozenGraph(vertexIds, vertexValues, offsets, targets, directedArcs, arcWeights, edgeCount);
+    }
+
+    /**
+     * Frees the memory of the graph at once. The graph must not be used afterwards.
+     */
+    @Override
+    public void close()
+    {
+        if (isClosed)
+        {
+            return;
+        }
+
+        isClosed = true;
+        vertices.free();
+        edges.free();
+        vertexTable.free();
+        edgeTable.free();
+
+        if (weights != null)
+        {
+            weights.free();
+        }
+    }
+
+    /**
+     * Stores the specified vertex unless a vertex with the same id is stored.
+     *
+     * @param vertex A vertex.
+     *
+     * @return The position of the stored vertex.
+     */
+    private int addVertex(Vertex vertex)
+    {
+        int id = vertex.getId();
+        long slot = findVertex(id);
+        int position = vertexTable.getInt(slot * 4) - 1;
+
+        if (position >= 0)
+        {
+            // This vertex is already stored.
+            return position;
+        }
+
+        if (vertexCount == Integer.MAX_VALUE - 1)
+        {
+            throw new IllegalStateException("The graph cannot hold more vertices.");
+        }
+
+        position = vertexCount++;
+
+        long offset = (long)position * VERTEX_SIZE;
+
+        vertices.ensureCapacity(offset + VERTEX_SIZE);
+        vertices.putInt(offset + VERTEX_ID, id);
+        vertices.putInt(offset + VERTEX_VALUE, vertex.getValue());
+        vertexTable.putInt(slot * 4, position + 1);
+
+        if (vertexCount > vertexTableCapacity * 3 / 4)
+        {
+            vertexTableCapacity *= 2;
+            vertexTable.free();
+            vertexTable = new OffHeapArray(vertexTableCapacity * 4);
+
+            for (int index = 0; index < vertexCount; ++index)
+            {
+                vertexTable.putInt(findVertex(vertices.getInt((long)index * VERTEX_SIZE + VERTEX_ID)) * 4, index + 1);
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Makes an edge the latest path of a vertex.
+     *
+     * @param position The position of the vertex.
+     * @param index The index of the edge.
+     *
+     * @return The previous latest path of the vertex plus one, or zero if it had none.
+     */
+    private int pushPath(int position, int index)
+    {
+        long offset = (long)position * VERTEX_SIZE;
+        int head = vertices.getInt(offset + VERTEX_HEAD);
+
+        vertices.putInt(offset + VERTEX_HEAD, index + 1);
+        vertices.putInt(offset + VERTEX_PATH_COUNT, vertices.getInt(offset + VERTEX_PATH_COUNT) + 1);
+
+        return head;
+    }
+
+    /**
+     * Stores the weight of an edge. Starts storing weights at the first weight other than 1.
+     *
+     * @param index The index of the edge.
+     * @param weight The weight of the edge.
+     */
+    private void storeWeight(int index, double weight)
+    {
+        if (weights == null)
+        {
+            if (weight == 1)
+            {
+                return;
+            }
+
+            weights = new OffHeapArray((long)edgeCount * 8);
+
+            for (int edgeIndex = 0; edgeIndex < index; ++edgeIndex)
+            {
+                weights.putDouble((long)edgeIndex * 8, 1);
+            }
+        }
+
+        weights.ensureCapacity((long)(index + 1) * 8);
+        weights.putDouble((long)index * 8, weight);
+    }
+
+    /**
+     * Finds the slot of the vertex table that holds the specified id, or the free slot where it belongs.
+     *
+     * @param id The id of a vertex.
+     *
+     * @return The slot.
+     */
+    private long findVertex(int id)
+    {
+        long mask = vertexTableCapacity - 1;
+        long slot = hash(id) & mask;
+
+        while (true)
+        {
+            int position = vertexTable.getInt(slot * 4) - 1;
+
+            if (position < 0 || vertices.getInt((long)position * VERTEX_SIZE + VERTEX_ID) == id)
+            {
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Finds the slot of the edge table that holds the specified edge, or the free slot where it belongs.
+     *
+     * @param first The position of the first vertex.
+     * @param second The position of the second vertex.
+     * @param isDirected Whether the edge is directed.
+     *
+     * @return The slot.
+     */
+    private long findEdge(int first, int second, boolean isDirected)
+    {
+        // An undirected edge is the same in both directions.
+        int low = isDirected ? first : Math.min(first, second);
+        int high = isDirected ? second : Math.max(first, second);
+        long mask = edgeTableCapacity - 1;
+        long slot = hash((long)low << 32 | high | (isDirected ? 1L << 31 : 0)) & mask;
+
+        while (true)
+        {
+            int index = edgeTable.getInt(slot * 4) - 1;
+
+            if (index < 0)
+            {
+                return slot;
+            }
+
+            long offset = (long)index * EDGE_SIZE;
+            int storedFirst = edges.getInt(offset + EDGE_FIRST);
+            int storedSecond = edges.getInt(offset + EDGE_SECOND);
+
+            if (isDirected
+                ? storedSecond < 0 && storedFirst == first && (storedSecond & ~DIRECTED) == second
+                : storedSecond >= 0 && Math.min(storedFirst, storedSecond) == low && Math.max(storedFirst, storedSecond) == high)
+            {
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Ensures that the memory of the graph was not freed.
+     *
+     * @exception IllegalStateException The graph was closed.
+     */
+    private void checkOpen() throws IllegalStateException
+    {
+        if (isClosed)
+        {
+            throw new IllegalStateException("The graph is closed.");
+        }
+    }
+
+    /**
+     * Gets the number of slots of a hash table that holds the specified number of entries without growing.
+     */
+    private static long getTableCapacity(long expectedSize)
+    {
+        long capacity = MINIMUM_TABLE_CAPACITY;
+
+        while (capacity * 3 / 4 < expectedSize + 1)
+        {
+            capacity *= 2;
+        }
+
+        return capacity;
+    }
+
+    /**
+     * Spreads the bits of a key over a hash.
+     */
+    private static long hash(long key)
+    {
+        long hash = key * 0x9E3779B97F4A7C15L;
+
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * Represents a stored vertex. Reads and writes its record.
+     */
+    private static class VertexView extends Vertex
+    {
+        // The graph that stores the vertex.
+        private final OffHeapGraph graph;
+
+        // The offset of the record of the vertex.
+        private final long offset;
+
+        VertexView(OffHeapGraph graph, int position)
+        {
+            super(graph.vertices.getInt((long)position * VERTEX_SIZE + VERTEX_ID));
+
+            this.graph = graph;
+            offset = (long)position * VERTEX_SIZE;
+        }
+
+        @Override
+        public int getValue()
+        {
+            graph.checkOpen();
+
+            return graph.vertices.getInt(offset + VERTEX_VALUE);
+        }
+
+        @Override
+        public void setValue(int value)
+        {
+            graph.checkOpen();
+            graph.vertices.putInt(offset + VERTEX_VALUE, value);
+        }
+    }
+
+    /**
+     * Represents a stored edge. Reads its record.
+     */
+    private static class EdgeView implements Edge
+    {
+        // The graph that stores the edge.
+        private final OffHeapGraph graph;
+
+        // The index of the edge.
+        private final int index;
+
+        EdgeView(OffHeapGraph graph, int index)
+        {
+            this.graph = graph;
+            this.index = index;
+        }
+
+        public Vertex[] getVertices()
+        {
+            return new Vertex[] { getFirst(), getSecond() };
+        }
+
+        public Vertex getFirst()
+        {
+            return new VertexView(graph, getFirstPosition());
+        }
+
+        public Vertex getSecond()
+        {
+            return new VertexView(graph, getSecondPosition());
+        }
+
+        public int getFirstId()
+        {
+            return graph.vertices.getInt((long)getFirstPosition() * VERTEX_SIZE + VERTEX_ID);
+        }
+
+        public int getSecondId()
+        {
+            return graph.vertices.getInt((long)getSecondPosition() * VERTEX_SIZE + VERTEX_ID);
+        }
+
+        /**
+         * Stored edges already point at the stored vertices, so this only checks the ids.
+         */
+        public void setVertices(Vertex first, Vertex second) throws IllegalArgumentException
+        {
+            if (first.getId() != getFirstId() || second.getId() != getSecondId())
+            {
+                throw new IllegalArgumentException("The vertices must have the same ids as those of the edge.");
+            }
+        }
+
+        public boolean isDirected()
+        {
+            graph.checkOpen();
+
+            return graph.edges.getInt((long)index * EDGE_SIZE + EDGE_SECOND) < 0;
+        }
+
+        public double getWeight()
+        {
+            graph.checkOpen();
+
+            return graph.weights == null ? 1 : graph.weights.getDouble((long)index * 8);
+        }
+
+        public boolean contains(Vertex vertex)
+        {
+            return vertex.getId() == getFirstId() || vertex.getId() == getSecondId();
+        }
+
+        public long getKey()
+        {
+            int first = getFirstId();
+            int second = getSecondId();
+
+            if (!isDirected() && first > second)
+            {
+                return (long)second << 32 | first & 0xFFFFFFFFL;
+            }
+
+            return (long)first << 32 | second & 0xFFFFFFFFL;
+        }
+
+        public boolean equals(Edge edge)
+        {
+            return edge.isDirected() == isDirected() && edge.getKey() == getKey();
+        }
+
+        @Override
+        public String toString()
+        {
+            String vertices = getFirstId() + ", " + getSecondId();
+            double weight = getWeight();
+
+            if (weight != 1)
+            {
+                vertices += ", " + weight;
+            }
+
+            return isDirected() ? "(" + vertices + ")" : "[" + vertices + "]";
+        }
+
+        private int getFirstPosition()
+        {
+            graph.checkOpen();
+
+            return graph.edges.getInt((long)index * EDGE_SIZE + EDGE_FIRST);
+        }
+
+        private int getSecondPosition()
+        {
+            graph.checkOpen();
+
+            return graph.edges.getInt((long)index * EDGE_SIZE + EDGE_SECOND) & ~DIRECTED;
+        }
+    }
+}
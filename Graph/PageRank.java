@@ -0,0 +1,353 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Ranks the vertices of a snapshot with PageRank, optionally personalized.
+ * Every iteration is pull-based: each vertex sums the shares of the vertices that have an arc to it,
+ * read through the transpose of the snapshot, so no two tasks write to the same rank. Iterations run
+ * on a fork/join pool and stop once the ranks change by less than the tolerance.
+ * Arcs follow Graph.getPathsFrom, so an undirected edge passes rank both ways.
+ *
+ * @author Andrei Muntean
+ */
+public class PageRank
+{
+    // The number of vertices a task handles without splitting further.
+    private static final int GRAIN = 4096;
+
+    // The snapshot being ranked and its transpose.
+    private FrozenGraph graph;
+    private FrozenGraph transpose;
+
+    // The pool that runs the iterations.
+    private ForkJoinPool pool;
+
+    // The probability of following an arc rather than teleporting.
+    private double dampingFactor;
+
+    // The largest total change of the ranks at which the iterations stop.
+    private double tolerance;
+
+    // The largest number of iterations.
+    private int maximumIterations;
+
+    // The ranks, indexed by position.
+    private double[] ranks;
+
+    // The rank every vertex passes along each of its arcs, indexed by position.
+    private double[] shares;
+
+    // The probability of teleporting to every vertex, indexed by position.
+    private double[] teleport;
+
+    // The number of iterations of the last run.
+    private int iterationCount;
+
+    /**
+     * Constructs a ranking of the specified snapshot that runs on the common pool.
+     *
+     * @param graph A snapshot.
+     */
+    public PageRank(FrozenGraph graph)
+    {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a ranking of the specified snapshot. The damping factor is 0.85, the tolerance is 1e-9
+     * and at most 100 iterations are run.
+     *
+     * @param graph A snapshot.
+     * @param pool The pool that runs the iterations.
+     */
+    public PageRank(FrozenGraph graph, ForkJoinPool pool)
+    {
+        this.graph = graph;
+        this.pool = pool;
+        transpose = graph.transpose();
+        dampingFactor = 0.85;
+        tolerance = 1e-9;
+        maximumIterations = 100;
+        ranks = new double[graph.countVertices()];
+        shares = new double[graph.countVertices()];
+    }
+
+    /**
+     * Sets the probability of following an arc rather than teleporting.
+     *
+     * @param dampingFactor A probability between 0 and 1.
+     *
+     * @exception IllegalArgumentException The damping factor is not between 0 and 1.
+     */
+    public void setDampingFactor(double dampingFactor) throws IllegalArgumentException
+    {
+        if (!(dampingFactor >= 0 && dampingFactor <= 1))
+        {
+            throw new IllegalArgumentException("The damping factor must be between 0 and 1.");
+        }
+
+        this.dampingFactor = dampingFactor;
+    }
+
+    /**
+     * Sets the largest total change of the ranks, summed over all vertices, at which the iterations stop.
+     *
+     * @param tolerance The tolerance.
+     */
+    public void setTolerance(double tolerance)
+    {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Sets the largest number of iterations.
+     *
+     * @param maximumIterations The largest number of iterations.
+     */
+    public void setMaximumIterations(int maximumIterations)
+    {
+        this.maximumIterations = maximumIterations;
+    }
+
+    /**
+     * Ranks the vertices. Teleports lead to every vertex with the same probability.
+     */
+    public void run()
+    {
+        double[] personalization = new double[graph.countVertices()];
+
+        Arrays.fill(personalization, 1);
+        run(personalization);
+    }
+
+    /**
+     * Ranks the vertices with personalized PageRank. Teleports lead to every vertex in proportion
+     * to its weight in the personalization vector.
+     *
+     * @param personalization The teleport weight of every vertex, indexed by position.
+     *
+     * @exception IllegalArgumentException The vector has the wrong length, a negative weight, or no positive weight.
+     */
+    public void run(double[] personalization) throws IllegalArgumentException
+    {
+        int vertexCount = graph.countVertices();
+
+        if (personalization.length != vertexCount)
+        {
+            throw new IllegalArgumentException("The personalization vector must have one weight per vertex.");
+        }
+
+        // Normalizes the teleport probabilities.
+        double total = 0;
+
+        for (double weight : personalization)
+        {
+            if (!(weight >= 0))
+            {
+                throw new IllegalArgumentException("Personalization weights must not be negative.");
+            }
+
+            total += weight;
+        }
+
+        if (vertexCount > 0 && !(total > 0))
+        {
+            throw new IllegalArgumentException("At least one personalization weight must be positive.");
+        }
+
+        teleport = new double[vertexCount];
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            teleport[position] = personalization[position] / total;
+        }
+
+        TraversalEvent event = new TraversalEvent();
+
+        event.begin();
+
+        // Starts from the teleport distribution.
+        System.arraycopy(teleport, 0, ranks, 0, vertexCount);
+        iterationCount = 0;
+
+        while (iterationCount < maximumIterations)
+        {
+            // Spreads the rank of every vertex over its arcs. Vertices without arcs spread theirs through teleports.
+            double danglingRank = pool.invoke(new ShareStep(0, vertexCount));
+            double change = pool.invoke(new PullStep(0, vertexCount, danglingRank));
+
+            ++iterationCount;
+
+            if (change < tolerance)
+            {
+                break;
+            }
+        }
+
+        teleport = null;
+        event.finish("PageRank", graph, -1, iterationCount);
+    }
+
+    /**
+     * Gets the rank of the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The rank of the vertex.
+     */
+    public double getRank(int position)
+    {
+        return ranks[position];
+    }
+
+    /**
+     * Gets the ranks of all vertices, indexed by position. They add up to 1.
+     * The array is reused by the next run.
+     *
+     * @return The ranks.
+     */
+    public double[] getRanks()
+    {
+        return ranks;
+    }
+
+    /**
+     * Gets the number of iterations of the last run.
+     *
+     * @return The number of iterations.
+     */
+    public int countIterations()
+    {
+        return iterationCount;
+    }
+
+    /**
+     * Stores the ranks as the values of the vertices of the specified graph, as fixed-point integers.
+     * A rank r becomes the value round(r * scale). Vertices are matched by id.
+     *
+     * @param target The graph the snapshot was taken from.
+     * @param scale The value that stands for a rank of 1, such as 1000000000.
+     */
+    public void writeTo(Graph target, double scale)
+    {
+        for (int position = 0; position < ranks.length; ++position)
+        {
+            Vertex vertex = target.getVertexWithId(graph.getVertexId(position));
+
+            if (vertex != null)
+            {
+                long value = Math.round(ranks[position] * scale);
+
+                vertex.setValue((int)Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value)));
+            }
+        }
+    }
+
+    /**
+     * Computes the share of a range of vertices and returns the total rank of the vertices without arcs.
+     */
+    private class ShareStep extends RecursiveTask<Double>
+    {
+        private static final long serialVersionUID = 1L;
+
+        // The range of positions.
+        private int start;
+        private int end;
+
+        ShareStep(int start, int end)
+        {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Double compute()
+        {
+            if (end - start > GRAIN)
+            {
+                int middle = (start + end) >>> 1;
+                ShareStep second = new ShareStep(middle, end);
+
+                second.fork();
+
+                return new ShareStep(start, middle).compute() + second.join();
+            }
+
+            double danglingRank = 0;
+
+            for (int position = start; position < end; ++position)
+            {
+                int degree = graph.getDegree(position);
+
+                if (degree == 0)
+                {
+                    shares[position] = 0;
+                    danglingRank += ranks[position];
+                }
+                else
+                {
+                    shares[position] = ranks[position] / degree;
+                }
+            }
+
+            return danglingRank;
+        }
+    }
+
+    /**
+     * Computes the new rank of a range of vertices and returns the total change of their ranks.
+     */
+    private class PullStep extends RecursiveTask<Double>
+    {
+        private static final long serialVersionUID = 1L;
+
+        // The range of positions.
+        private int start;
+        private int end;
+
+        // The total rank of the vertices without arcs.
+        private double danglingRank;
+
+        PullStep(int start, int end, double danglingRank)
+        {
+            this.start = start;
+            this.end = end;
+            this.danglingRank = danglingRank;
+        }
+
+        @Override
+        protected Double compute()
+        {
+            if (end - start > GRAIN)
+            {
+                int middle = (start + end) >>> 1;
+                PullStep second = new PullStep(middle, end, danglingRank);
+
+                second.fork();
+
+                return new PullStep(start, middle, danglingRank).compute() + second.join();
+            }
+
+            double change = 0;
+
+            for (int position = start; position < end; ++position)
+            {
+                double incoming = 0;
+
+                for (int arc = transpose.getFirstArc(position); arc < transpose.getEndArc(position); ++arc)
+                {
+                    incoming += shares[transpose.getTarget(arc)];
+                }
+
+                double rank = (1 - dampingFactor) * teleport[position]
+                    + dampingFactor * (incoming + danglingRank * teleport[position]);
+
+                change += Math.abs(rank - ranks[position]);
+                ranks[position] = rank;
+            }
+
+            return change;
+        }
+    }
+}
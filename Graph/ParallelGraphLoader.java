@@ -0,0 +1,924 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads large graph files on several threads. The file is memory-mapped and split into chunks of bytes
+ * that are parsed in parallel into primitive buffers, which are then merged in file order through a GraphBuilder.
+ * The resulting graph is the same as the one Graph.readFromFile reads.
+ *
+ * Two formats are read. Graph files, as written by Graph.toString, have their vertex set read on the calling
+ * thread and their edge set split at edge boundaries. Edge lists hold one edge per line: two vertex ids and
+ * an optional weight, separated by spaces or tabs. Empty lines and lines that start with '#' or '%' are skipped.
+ *
+ * Errors are reported with the byte offset at which they were found, since chunks do not know their line.
+ * An element may not be longer than MAXIMUM_ELEMENT_LENGTH bytes, whitespace included.
+ *
+ * @author Andrei Muntean
+ */
+public class ParallelGraphLoader
+{
+    // The number of bytes in a chunk.
+    private static final int CHUNK_SIZE = 1 << 22;
+
+    // The number of bytes past its end that a chunk may read to finish its last element.
+    private static final int MAXIMUM_ELEMENT_LENGTH = 1 << 20;
+
+    // Marks the end of a chunk.
+    private static final int END = -1;
+
+    // The pool that parses the chunks.
+    private ForkJoinPool pool;
+
+    /**
+     * Constructs a loader that parses on the common pool.
+     */
+    public ParallelGraphLoader()
+    {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a loader.
+     *
+     * @param pool The pool that parses the chunks.
+     */
+    public ParallelGraphLoader(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Reads a graph file in the format written by Graph.toString.
+     *
+     * @param path A file path.
+     *
+     * @return The graph.
+     *
+     * @exception GraphFormatException The file is not a graph file.
+     * @exception IOException The file cannot be read.
+     */
+    public Graph read(String path) throws GraphFormatException, IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+
+        try
+        {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            IntList vertexIds = new IntList();
+
+            // Reads the vertex set and the start of the edge set on this thread.
+            Chunk header = new Chunk(channel, path, 0, size, size, false);
+
+            header.map();
+            header.expect('V');
+            header.expect('=');
+            header.expect('{');
+
+            if (!header.skipIf('}'))
+            {
+                do
+                {
+                    vertexIds.add(header.readInteger());
+                }
+                while (header.readSeparator());
+            }
+
+            header.expect('E');
+            header.expect('=');
+            header.expect('{');
+
+            long edgeSetStart = header.getOffset();
+            long edgeSetEnd = findEdgeSetEnd(channel, edgeSetStart, size);
+
+            // Without a closing brace, the edges are parsed up to the end of the file, so that misplaced
+            // characters are reported where they are.
+            Chunk[] chunks = parse(channel, path, edgeSetStart, edgeSetEnd < 0 ? size : edgeSetEnd, false);
+
+            if (edgeSetEnd < 0)
+            {
+                String expected = countEdges(chunks) == 0 ? "'(' or '['" : "',' or '}'";
+
+                throw new GraphFormatException("\"" + path + "\" is not a graph file. Expected " + expected
+                    + " but found the end of the file (byte " + size + ")");
+            }
+            GraphBuilder builder = new GraphBuilder(vertexIds.size(), countEdges(chunks));
+
+            for (int index = 0; index < vertexIds.size(); ++index)
+            {
+                builder.addVertex(vertexIds.get(index));
+            }
+
+            merge(chunks, builder);
+
+            return builder.build();
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    /**
+     * Reads an edge list, with one edge per line.
+     *
+     * @param path A file path.
+     * @param isDirected Whether the edges are directed.
+     *
+     * @return The graph.
+     *
+     * @exception GraphFormatException The file is not an edge list.
+     * @exception IOException The file cannot be read.
+     */
+    public Graph readEdgeList(String path, boolean isDirected) throws GraphFormatException, IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+
+        try
+        {
+            FileChannel channel = file.getChannel();
+            Chunk[] chunks = parse(channel, path, 0, channel.size(), true);
+            GraphBuilder builder = new GraphBuilder(0, countEdges(chunks));
+
+            for (Chunk chunk : chunks)
+            {
+                chunk.isDirected = isDirected;
+            }
+
+            merge(chunks, builder);
+
+            return builder.build();
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    /**
+     * Finds the brace that ends the edge set, which must be the last character of the file apart from whitespace.
+     *
+     * @return The offset of the brace, or -1 if the file does not end with one.
+     */
+    private static long findEdgeSetEnd(FileChannel channel, long start, long size) throws IOException
+    {
+        long offset = size;
+        MappedByteBuffer tail = null;
+        long tailStart = 0;
+
+        while (offset > start)
+        {
+            if (tail == null || offset - 1 < tailStart)
+            {
+                tailStart = Math.max(start, offset - CHUNK_SIZE);
+                tail = channel.map(FileChannel.MapMode.READ_ONLY, tailStart, offset - tailStart);
+            }
+
+            byte character = tail.get((int)(offset - 1 - tailStart));
+
+            if (character == '}')
+            {
+                return offset - 1;
+            }
+
+            if (!isWhitespace(character))
+            {
+                break;
+            }
+
+            --offset;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Parses the elements of a range of the file in parallel.
+     *
+     * @return The parsed chunks, in file order.
+     */
+    private Chunk[] parse(FileChannel channel, String path, long start, long end, boolean isEdgeList) throws GraphFormatException, IOException
+    {
+        int chunkCount = (int)Math.max((end - start + CHUNK_SIZE - 1) / CHUNK_SIZE, 1);
+        Chunk[] chunks = new Chunk[chunkCount];
+
+        for (int index = 0; index < chunkCount; ++index)
+        {
+            long chunkStart = start + (long)index * CHUNK_SIZE;
+            long chunkEnd = Math.min(chunkStart + CHUNK_SIZE, end);
+
+            chunks[index] = new Chunk(channel, path, chunkStart, chunkEnd, end, isEdgeList);
+            chunks[index].isFirst = index == 0;
+        }
+
+        ParsingStep step = new ParsingStep(chunks, 0, chunkCount);
+
+        pool.invoke(step);
+
+        // Rethrows the error of the earliest chunk that failed.
+        for (Chunk chunk : chunks)
+        {
+            if (chunk.exception != null)
+            {
+                throw chunk.exception;
+            }
+
+            if (chunk.ioException != null)
+            {
+                throw chunk.ioException;
+            }
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Counts the edges that were parsed.
+     *
+     * @return The number of edges, duplicates included.
+     */
+    private static int countEdges(Chunk[] chunks)
+    {
+        long edgeCount = 0;
+
+        for (Chunk chunk : chunks)
+        {
+            edgeCount += chunk.edgeCount;
+        }
+
+        return (int)Math.min(edgeCount, Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * Adds the edges of the chunks to a builder, in file order, so that the first occurrence of every edge is kept.
+     */
+    private static void merge(Chunk[] chunks, GraphBuilder builder)
+    {
+        for (Chunk chunk : chunks)
+        {
+            for (int index = 0; index < chunk.edgeCount; ++index)
+            {
+                if (chunk.weighted != null && chunk.weighted[index])
+                {
+                    builder.addEdge(chunk.firstIds[index], chunk.secondIds[index], chunk.isDirected(index), chunk.weights[index]);
+                }
+                else
+                {
+                    builder.addEdge(chunk.firstIds[index], chunk.secondIds[index], chunk.isDirected(index));
+                }
+            }
+        }
+    }
+
+    /**
+     * Determines whether a character is a space, a tab or a line separator.
+     */
+    private static boolean isWhitespace(int character)
+    {
+        return character == ' ' || character == '\t' || character == '\n' || character == '\r';
+    }
+
+    /**
+     * Parses a range of chunks.
+     */
+    private class ParsingStep extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        // The chunks.
+        private Chunk[] chunks;
+
+        // The range of chunk indexes.
+        private int start;
+        private int end;
+
+        ParsingStep(Chunk[] chunks, int start, int end)
+        {
+            this.chunks = chunks;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start > 1)
+            {
+                int middle = (start + end) >>> 1;
+
+                invokeAll(new ParsingStep(chunks, start, middle), new ParsingStep(chunks, middle, end));
+
+                return;
+            }
+
+            Chunk chunk = chunks[start];
+
+            try
+            {
+                chunk.map();
+
+                if (chunk.isEdgeList)
+                {
+                    chunk.parseLines();
+                }
+                else
+                {
+                    chunk.parseEdges();
+                }
+            }
+            catch (GraphFormatException exception)
+            {
+                chunk.exception = exception;
+            }
+            catch (IOException exception)
+            {
+                chunk.ioException = exception;
+            }
+            finally
+            {
+                chunk.buffer = null;
+            }
+        }
+    }
+
+    /**
+     * Parses the elements that start in a range of bytes into primitive buffers.
+     * Reads past the end of the range to finish its last element.
+     */
+    private static class Chunk
+    {
+        // The file and its name, used in error messages.
+        private FileChannel channel;
+        private String path;
+
+        // The range of bytes whose elements this chunk parses, and the end of the region it may read up to.
+        private long start;
+        private long end;
+        private long regionEnd;
+
+        // Whether the chunk holds lines of an edge list rather than part of an edge set.
+        private boolean isEdgeList;
+
+        // Whether the chunk starts the region, so it does not need to look for the start of its first element.
+        private boolean isFirst;
+
+        // The mapped bytes, the offset of the first of them in the file and the index of the current byte.
+        private MappedByteBuffer buffer;
+        private long base;
+        private int index;
+
+        // The edges that were read, in file order.
+        private int[] firstIds;
+        private int[] secondIds;
+        private boolean[] directed;
+        private double[] weights;
+        private boolean[] weighted;
+        private int edgeCount;
+
+        // The direction of every edge of an edge list.
+        private boolean isDirected;
+
+        // The error that stopped the chunk, if any.
+        private GraphFormatException exception;
+        private IOException ioException;
+
+        Chunk(FileChannel channel, String path, long start, long end, long regionEnd, boolean isEdgeList)
+        {
+            this.channel = channel;
+            this.path = path;
+            this.start = start;
+            this.end = end;
+            this.regionEnd = regionEnd;
+            this.isEdgeList = isEdgeList;
+        }
+
+        /**
+         * Maps the bytes of the chunk, followed by at most MAXIMUM_ELEMENT_LENGTH bytes of the next chunks.
+         * The lines of an edge list also need the byte before the chunk, to tell whether a line starts with it.
+         */
+        void map() throws IOException
+        {
+            base = isEdgeList && start > 0 ? start - 1 : start;
+
+            long mappedEnd = Math.min(Math.min(regionEnd, end + MAXIMUM_ELEMENT_LENGTH), base + Integer.MAX_VALUE);
+
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, mappedEnd - base);
+            index = 0;
+        }
+
+        /**
+         * Gets the offset of the current byte in the file.
+         *
+         * @return The offset.
+         */
+        long getOffset()
+        {
+            return base + index;
+        }
+
+        /**
+         * Parses the edges that start in the chunk. Checks the separators that follow each of them.
+         */
+        void parseEdges() throws GraphFormatException
+        {
+            if (!isFirst)
+            {
+                // Skips to the first edge that starts in the chunk. The previous chunk checks the bytes before it.
+                int character = peek();
+
+                while (character != '(' && character != '[' && getOffset() < end)
+                {
+                    next();
+                    character = peek();
+                }
+
+                if (getOffset() >= end)
+                {
+                    return;
+                }
+            }
+            else
+            {
+                skipWhitespace();
+
+                // The edge set may be empty.
+                if (getOffset() == regionEnd)
+                {
+                    return;
+                }
+            }
+
+            while (getOffset() < end)
+            {
+                readEdge();
+                skipWhitespace();
+
+                if (!skipIf(','))
+                {
+                    // Only the closing brace, which is excluded from the region, may follow the last edge.
+                    if (getOffset() != regionEnd)
+                    {
+                        // A brace before the last one ends the edge set early.
+                        if (skipIf('}'))
+                        {
+                            skipWhitespace();
+
+                            throw error("Expected the end of the graph");
+                        }
+
+                        throw error("Expected ',' or '}'");
+                    }
+
+                    return;
+                }
+
+                skipWhitespace();
+            }
+
+            // Checks that the next chunk starts with the edge that follows the last separator.
+            if (peek() != '(' && peek() != '[')
+            {
+                throw error("Expected '(' or '['");
+            }
+        }
+
+        /**
+         * Parses the lines of an edge list that start in the chunk.
+         */
+        void parseLines() throws GraphFormatException
+        {
+            if (!isFirst)
+            {
+                // Skips to the first line that starts in the chunk. The line before it is parsed by the previous chunk.
+                while (getOffset() < end && peek() != '\n')
+                {
+                    next();
+                }
+
+                skipIf('\n');
+            }
+
+            while (getOffset() < end && peek() != END)
+            {
+                skipBlanks();
+
+                int character = peek();
+
+                if (character == '#' || character == '%' || character == '\n' || character == '\r' || character == END)
+                {
+                    // Skips a comment or an empty line.
+                    while (peek() != '\n' && peek() != END)
+                    {
+                        next();
+                    }
+                }
+                else
+                {
+                    int firstId = readInteger();
+
+                    expectBlank();
+
+                    int secondId = readInteger();
+
+                    skipBlanks();
+
+                    character = peek();
+
+                    if (character != '\n' && character != '\r' && character != END)
+                    {
+                        append(firstId, secondId, isDirected, readWeight(), true);
+                        skipBlanks();
+                    }
+                    else
+                    {
+                        append(firstId, secondId, isDirected, 1, false);
+                    }
+
+                    skipIf('\r');
+
+                    if (peek() != '\n' && peek() != END)
+                    {
+                        throw error("Expected the end of the line");
+                    }
+                }
+
+                skipIf('\n');
+            }
+        }
+
+        /**
+         * Reads an edge. Pairs between round brackets are directed edges and pairs between square brackets
+         * are undirected edges. A third number makes the edge weighted.
+         */
+        private void readEdge() throws GraphFormatException
+        {
+            boolean isDirected;
+
+            if (skipIf('('))
+            {
+                isDirected = true;
+            }
+            else if (skipIf('['))
+            {
+                isDirected = false;
+            }
+            else
+            {
+                throw error("Expected '(' or '['");
+            }
+
+            int firstId = readInteger();
+
+            expect(',');
+
+            int secondId = readInteger();
+
+            skipWhitespace();
+
+            if (skipIf(','))
+            {
+                double weight = readWeight();
+
+                expect(isDirected ? ')' : ']');
+                append(firstId, secondId, isDirected, weight, true);
+            }
+            else
+            {
+                expect(isDirected ? ')' : ']');
+                append(firstId, secondId, isDirected, 1, false);
+            }
+        }
+
+        /**
+         * Adds an edge to the buffers.
+         */
+        private void append(int firstId, int secondId, boolean isDirected, double weight, boolean isWeighted)
+        {
+            if (firstIds == null)
+            {
+                // Expects about one edge every 16 bytes.
+                firstIds = new int[(int)Math.max((end - start) >>> 4, 16)];
+                secondIds = new int[firstIds.length];
+                directed = isEdgeList ? null : new boolean[firstIds.length];
+            }
+            else if (edgeCount == firstIds.length)
+            {
+                int length = (int)Math.min(edgeCount * 2L, Integer.MAX_VALUE - 8);
+
+                firstIds = Arrays.copyOf(firstIds, length);
+                secondIds = Arrays.copyOf(secondIds, length);
+
+                if (directed != null)
+                {
+                    directed = Arrays.copyOf(directed, length);
+                }
+
+                if (weights != null)
+                {
+                    weights = Arrays.copyOf(weights, length);
+                    weighted = Arrays.copyOf(weighted, length);
+                }
+            }
+
+            if (isWeighted && weights == null)
+            {
+                weights = new double[firstIds.length];
+                weighted = new boolean[firstIds.length];
+            }
+
+            firstIds[edgeCount] = firstId;
+            secondIds[edgeCount] = secondId;
+
+            if (directed != null)
+            {
+                directed[edgeCount] = isDirected;
+            }
+
+            if (isWeighted)
+            {
+                weights[edgeCount] = weight;
+                weighted[edgeCount] = true;
+            }
+
+            ++edgeCount;
+        }
+
+        /**
+         * Determines whether the edge at the specified index is directed.
+         */
+        boolean isDirected(int index)
+        {
+            return directed == null ? isDirected : directed[index];
+        }
+
+        /**
+         * Reads a signed integer.
+         *
+         * @return The integer.
+         */
+        int readInteger() throws GraphFormatException
+        {
+            skipWhitespace();
+
+            boolean isNegative = skipIf('-');
+            int character = peek();
+
+            if (character < '0' || character > '9')
+            {
+                throw error("Expected a number");
+            }
+
+            // Accumulates the negated value, which can hold Integer.MIN_VALUE.
+            long value = 0;
+
+            while (character >= '0' && character <= '9')
+            {
+                value = value * 10 - (character - '0');
+
+                if (value < Integer.MIN_VALUE)
+                {
+                    throw error("Number is too large");
+                }
+
+                next();
+                character = peek();
+            }
+
+            if (!isNegative)
+            {
+                value = -value;
+
+                if (value > Integer.MAX_VALUE)
+                {
+                    throw error("Number is too large");
+                }
+            }
+
+            return (int)value;
+        }
+
+        /**
+         * Reads a decimal number with Double.parseDouble.
+         *
+         * @return The number.
+         */
+        private double readWeight() throws GraphFormatException
+        {
+            skipWhitespace();
+
+            StringBuilder characters = new StringBuilder();
+            int character = peek();
+
+            while (character >= '0' && character <= '9' || character == '.' || character == '-' || character == '+'
+                || character == 'e' || character == 'E')
+            {
+                characters.append((char)character);
+                next();
+                character = peek();
+            }
+
+            boolean hasDigit = false;
+
+            for (int index = 0; index < characters.length() && !hasDigit; ++index)
+            {
+                hasDigit = Character.isDigit(characters.charAt(index));
+            }
+
+            if (!hasDigit)
+            {
+                throw error("Expected a weight");
+            }
+
+            double weight;
+
+            try
+            {
+                weight = Double.parseDouble(characters.toString());
+            }
+            catch (NumberFormatException exception)
+            {
+                throw error("Malformed weight");
+            }
+
+            if (Double.isInfinite(weight))
+            {
+                throw error("Weight is too large");
+            }
+
+            return weight;
+        }
+
+        /**
+         * Reads the comma between two elements of a set, or the end of the set.
+         *
+         * @return True if a comma was read, false if the set ended.
+         */
+        boolean readSeparator() throws GraphFormatException
+        {
+            skipWhitespace();
+
+            if (skipIf(','))
+            {
+                return true;
+            }
+
+            if (skipIf('}'))
+            {
+                return false;
+            }
+
+            throw error("Expected ',' or '}'");
+        }
+
+        /**
+         * Skips whitespace and reads the specified character.
+         */
+        void expect(char expected) throws GraphFormatException
+        {
+            skipWhitespace();
+
+            if (!skipIf(expected))
+            {
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        /**
+         * Reads at least one space or tab.
+         */
+        private void expectBlank() throws GraphFormatException
+        {
+            if (peek() != ' ' && peek() != '\t')
+            {
+                throw error("Expected a space");
+            }
+
+            skipBlanks();
+        }
+
+        /**
+         * Reads the current byte if it is the specified character.
+         *
+         * @return True if the byte was read.
+         */
+        boolean skipIf(char expected) throws GraphFormatException
+        {
+            if (peek() == expected)
+            {
+                next();
+
+                return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * Skips spaces, tabs and line separators.
+         */
+        private void skipWhitespace() throws GraphFormatException
+        {
+            while (isWhitespace(peek()))
+            {
+                next();
+            }
+        }
+
+        /**
+         * Skips spaces and tabs.
+         */
+        private void skipBlanks() throws GraphFormatException
+        {
+            while (peek() == ' ' || peek() == '\t')
+            {
+                next();
+            }
+        }
+
+        /**
+         * Gets the current byte without reading it.
+         *
+         * @return The current byte, or END if the region has ended.
+         *
+         * @exception GraphFormatException The element runs past the bytes that were mapped.
+         */
+        private int peek() throws GraphFormatException
+        {
+            if (index == buffer.limit())
+            {
+                if (getOffset() < regionEnd)
+                {
+                    throw error("Element is too long");
+                }
+
+                return END;
+            }
+
+            return buffer.get(index);
+        }
+
+        /**
+         * Moves past the current byte. Must only be called after peek.
+         */
+        private void next()
+        {
+            ++index;
+        }
+
+        /**
+         * Creates an exception that describes an error at the current byte, with the same messages as GraphReader.
+         * Messages that start with "Expected" also name the character that was found instead.
+         *
+         * @param message A description of the error.
+         *
+         * @return The exception.
+         */
+        private GraphFormatException error(String message)
+        {
+            if (message.startsWith("Expected"))
+            {
+                message += " but found " + describe(getOffset());
+            }
+
+            return new GraphFormatException("\"" + path + "\" is not a graph file. " + message + " (byte " + getOffset() + ")");
+        }
+
+        /**
+         * Describes the byte at the specified offset. Bytes past the mapped region, such as the closing brace
+         * of the edge set, are read from the file.
+         *
+         * @param offset The offset of a byte in the file.
+         *
+         * @return The character between quotes, or "the end of the file".
+         */
+        private String describe(long offset)
+        {
+            if (offset - base < buffer.limit())
+            {
+                return "'" + (char)buffer.get((int)(offset - base)) + "'";
+            }
+
+            ByteBuffer character = ByteBuffer.allocate(1);
+
+            try
+            {
+                if (channel.read(character, offset) == 1)
+                {
+                    return "'" + (char)character.get(0) + "'";
+                }
+            }
+            catch (IOException exception)
+            {
+                // The description is only used in a message.
+            }
+
+            return "the end of the file";
+        }
+    }
+}
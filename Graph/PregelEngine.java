@@ -0,0 +1,617 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Runs a vertex program over a graph in bulk-synchronous supersteps, as in Pregel.
+ * The vertices are split into partitions, by a hash of their ids or into ranges of positions, and every partition
+ * is computed by its own worker thread. Workers buffer the messages for every other partition and send them in batches
+ * through a message transport, which also separates the supersteps with a barrier.
+ *
+ * The arcs are read from a snapshot taken when the engine is constructed, while the state of every vertex is
+ * its value in the graph, so the graph must not be modified while the program runs.
+ *
+ * @author Andrei Muntean
+ */
+public class PregelEngine
+{
+    /**
+     * The ways the vertices can be split into partitions.
+     */
+    public enum Partitioning
+    {
+        // Spreads the vertices evenly whatever their order.
+        HASH,
+
+        // Splits the positions into ranges with about the same number of vertices and arcs,
+        // which keeps vertices that were added together in the same partition.
+        RANGE
+    }
+
+    // The number of messages in a batch.
+    private static final int BATCH_SIZE = 1024;
+
+    // The snapshot whose arcs carry the messages.
+    private FrozenGraph graph;
+
+    // The vertices of the graph, indexed by position.
+    private Vertex[] vertices;
+
+    // The program every worker runs a copy of.
+    private VertexProgram program;
+
+    // Carries the messages between the partitions.
+    private MessageTransport transport;
+
+    // The number of partitions.
+    private int partitionCount;
+
+    // The partition of every vertex and the index of the vertex in its partition, indexed by position.
+    private int[] partitions;
+    private int[] localIndices;
+
+    // The positions of the vertices of every partition.
+    private int[][] members;
+
+    // The largest number of supersteps.
+    private int maximumSupersteps;
+
+    // The number of supersteps and of messages of the last run.
+    private int superstepCount;
+    private long messageCount;
+
+    // The first exception thrown by a worker.
+    private Throwable failure;
+
+    /**
+     * Constructs an engine that runs the specified program over the graph with one partition per processor,
+     * hash partitioning and a local transport.
+     *
+     * @param graph A graph.
+     * @param program The program to run.
+     */
+    public PregelEngine(Graph graph, VertexProgram program)
+    {
+        this(graph, program, Runtime.getRuntime().availableProcessors(), Partitioning.HASH, new LocalTransport());
+    }
+
+    /**
+     * Constructs an engine that runs the specified program over the graph.
+     *
+     * @param graph A graph.
+     * @param program The program to run.
+     * @param partitionCount The number of partitions and of worker threads.
+     * @param partitioning The way the vertices are split into partitions.
+     * @param transport Carries the messages between the partitions.
+     *
+     * @exception IllegalArgumentException The number of partitions is not positive.
+     */
+    public PregelEngine(Graph graph, VertexProgram program, int partitionCount, Partitioning partitioning, MessageTransport transport)
+        throws IllegalArgumentException
+    {
+        if (partitionCount < 1)
+        {
+            throw new IllegalArgumentException("The number of partitions must be positive.");
+        }
+
+        this.graph = graph.freeze();
+        this.program = program;
+        this.partitionCount = partitionCount;
+        this.transport = transport;
+        maximumSupersteps = Integer.MAX_VALUE;
+
+        int vertexCount = this.graph.countVertices();
+
+        vertices = new Vertex[vertexCount];
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            vertices[position] = graph.getVertex(position);
+        }
+
+        partition(partitioning);
+    }
+
+    /**
+     * Sets the largest number of supersteps. A run that reaches it ends even if vertices are active.
+     *
+     * @param maximumSupersteps The largest number of supersteps.
+     */
+    public void setMaximumSupersteps(int maximumSupersteps)
+    {
+        this.maximumSupersteps = maximumSupersteps;
+    }
+
+    /**
+     * Runs the program until every vertex has halted and no messages were sent, or until the largest number
+     * of supersteps is reached.
+     *
+     * @exception IOException The transport failed.
+     * @exception InterruptedException The thread was interrupted while waiting for the workers.
+     */
+    public void run() throws IOException, InterruptedException
+    {
+        TraversalEvent event = new TraversalEvent();
+        Worker[] workers = new Worker[partitionCount];
+        Thread[] threads = new Thread[partitionCount];
+
+        event.begin();
+        failure = null;
+        transport.start(partitionCount);
+
+        try
+        {
+            for (int partition = 0; partition < partitionCount; ++partition)
+            {
+                workers[partition] = new Worker(partition);
+                threads[partition] = new Thread(workers[partition], "Pregel worker " + partition);
+                threads[partition].start();
+            }
+
+            for (Thread thread : threads)
+            {
+                thread.join();
+            }
+        }
+        catch (InterruptedException exception)
+        {
+            for (Thread thread : threads)
+            {
+                if (thread != null)
+                {
+                    thread.interrupt();
+                }
+            }
+
+            throw exception;
+        }
+        finally
+        {
+            transport.close();
+        }
+
+        if (failure instanceof IOException)
+        {
+            throw (IOException)failure;
+        }
+        else if (failure instanceof RuntimeException)
+        {
+            throw (RuntimeException)failure;
+        }
+        else if (failure instanceof Error)
+        {
+            throw (Error)failure;
+        }
+        else if (failure != null)
+        {
+            throw new IOException("A worker failed.", failure);
+        }
+
+        superstepCount = workers[0].superstep;
+        messageCount = 0;
+
+        for (Worker worker : workers)
+        {
+            messageCount += worker.sentCount;
+        }
+
+        event.finish("Pregel", graph, -1, superstepCount);
+    }
+
+    /**
+     * Gets the number of supersteps of the last run.
+     *
+     * @return The number of supersteps.
+     */
+    public int getSuperstepCount()
+    {
+        return superstepCount;
+    }
+
+    /**
+     * Gets the number of messages sent during the last run.
+     *
+     * @return The number of messages.
+     */
+    public long getMessageCount()
+    {
+        return messageCount;
+    }
+
+    /**
+     * Gets the number of partitions.
+     *
+     * @return The number of partitions.
+     */
+    public int getPartitionCount()
+    {
+        return partitionCount;
+    }
+
+    /**
+     * Gets the partition of the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The partition.
+     */
+    public int getPartition(int position)
+    {
+        return partitions[position];
+    }
+
+    /**
+     * Assigns every vertex to a partition and lists the vertices of every partition.
+     *
+     * @param partitioning The way the vertices are split into partitions.
+     */
+    private void partition(Partitioning partitioning)
+    {
+        int vertexCount = graph.countVertices();
+        int[] sizes = new int[partitionCount];
+
+        partitions = new int[vertexCount];
+        localIndices = new int[vertexCount];
+
+        if (partitioning == Partitioning.HASH)
+        {
+            for (int position = 0; position < vertexCount; ++position)
+            {
+                // Scrambles the id so that consecutive ids do not share a partition.
+                int hash = graph.getVertexId(position) * 0x9E3779B9;
+
+                partitions[position] = (int)(((hash ^ hash >>> 16) & 0xFFFFFFFFL) % partitionCount);
+            }
+        }
+        else
+        {
+            // Every vertex weighs one plus its number of arcs.
+            long totalWeight = (long)vertexCount + graph.countArcs();
+            long weight = 0;
+
+            for (int position = 0; position < vertexCount; ++position)
+            {
+                partitions[position] = (int)(weight * partitionCount / Math.max(totalWeight, 1));
+                weight += 1 + graph.getDegree(position);
+            }
+        }
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            localIndices[position] = sizes[partitions[position]]++;
+        }
+
+        members = new int[partitionCount][];
+
+        for (int partition = 0; partition < partitionCount; ++partition)
+        {
+            members[partition] = new int[sizes[partition]];
+        }
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            members[partitions[position]][localIndices[position]] = position;
+        }
+    }
+
+    /**
+     * Records the first exception thrown by a worker and makes the other workers stop.
+     *
+     * @param throwable The exception.
+     */
+    private synchronized void fail(Throwable throwable)
+    {
+        if (failure == null)
+        {
+            failure = throwable;
+        }
+
+        transport.close();
+    }
+
+    /**
+     * Computes the vertices of one partition, superstep after superstep.
+     */
+    class Worker implements Runnable
+    {
+        // The partition.
+        private final int partition;
+
+        // The positions of the vertices of the partition.
+        private final int[] positions;
+
+        // This worker's copy of the program.
+        private final VertexProgram program;
+
+        // Whether every vertex of the partition has halted, by local index.
+        private final boolean[] halted;
+
+        // The messages received in the last superstep: the first message of every vertex by local index
+        // and the messages themselves. Vertices that received a combined message have one.
+        private final int[] firstMessages;
+        private int[] receivedMessages;
+
+        // The batches being filled for every partition and their lengths.
+        private final int[][] batches;
+        private final int[] batchLengths;
+
+        // The messages of the vertex being computed.
+        private int[] messages;
+
+        // The current superstep and the position of the vertex being computed.
+        private int superstep;
+        private int position;
+
+        // The number of messages sent in the current superstep and in all of them.
+        private long superstepSentCount;
+        private long sentCount;
+
+        Worker(int partition)
+        {
+            this.partition = partition;
+            positions = members[partition];
+            program = PregelEngine.this.program.clone();
+            program.setWorker(this);
+            halted = new boolean[positions.length];
+            firstMessages = new int[positions.length + 1];
+            receivedMessages = new int[16];
+            batches = new int[partitionCount][2 * BATCH_SIZE];
+            batchLengths = new int[partitionCount];
+            messages = new int[16];
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                for (superstep = 0; superstep < maximumSupersteps; )
+                {
+                    if (superstep > 0)
+                    {
+                        receive();
+                    }
+
+                    long activeCount = computeVertices();
+
+                    flush();
+
+                    long total = transport.synchronize(superstep, partition, activeCount + superstepSentCount);
+
+                    sentCount += superstepSentCount;
+                    superstepSentCount = 0;
+                    ++superstep;
+
+                    if (total == 0)
+                    {
+                        break;
+                    }
+                }
+            }
+            catch (UncheckedIOException exception)
+            {
+                fail(exception.getCause());
+            }
+            catch (Throwable throwable)
+            {
+                fail(throwable);
+            }
+        }
+
+        /**
+         * Calls the program on every vertex that is active or received messages.
+         *
+         * @return The number of vertices that are still active.
+         */
+        private long computeVertices()
+        {
+            long activeCount = 0;
+            boolean hasCombiner = program.hasCombiner();
+
+            for (int index = 0; index < positions.length; ++index)
+            {
+                int start = superstep == 0 ? 0 : firstMessages[index];
+                int end = superstep == 0 ? 0 : firstMessages[index + 1];
+                int messageCount = end - start;
+
+                if (halted[index] && messageCount == 0)
+                {
+                    continue;
+                }
+
+                if (messageCount > messages.length)
+                {
+                    messages = new int[Math.max(messageCount, 2 * messages.length)];
+                }
+
+                if (hasCombiner && messageCount > 0)
+                {
+                    messages[0] = receivedMessages[index];
+                    messageCount = 1;
+                }
+                else
+                {
+                    System.arraycopy(receivedMessages, start, messages, 0, messageCount);
+                }
+
+                halted[index] = false;
+                position = positions[index];
+                program.compute(vertices[position], messages, messageCount);
+
+                if (!halted[index])
+                {
+                    ++activeCount;
+                }
+            }
+
+            return activeCount;
+        }
+
+        /**
+         * Takes the batches sent to the partition in the last superstep and groups their messages by vertex.
+         * Combined messages are stored at the local index of their vertex instead, and the counts only mark
+         * which vertices received one.
+         */
+        private void receive() throws IOException
+        {
+            ArrayList<int[]> received = new ArrayList<int[]>();
+            boolean hasCombiner = program.hasCombiner();
+            int totalCount = 0;
+
+            Arrays.fill(firstMessages, 0);
+
+            for (int[] batch = transport.receive(superstep - 1, partition); batch != null; batch = transport.receive(superstep - 1, partition))
+            {
+                received.add(batch);
+                totalCount += batch.length / 2;
+            }
+
+            if (hasCombiner)
+            {
+                if (receivedMessages.length < positions.length)
+                {
+                    receivedMessages = new int[positions.length];
+                }
+
+                // Marks a vertex with a message by giving it a count of 1 through the prefix sums below.
+                boolean[] hasMessage = new boolean[positions.length];
+
+                for (int[] batch : received)
+                {
+                    for (int index = 0; index < batch.length; index += 2)
+                    {
+                        int local = localIndices[batch[index]];
+
+                        receivedMessages[local] = hasMessage[local] ? program.combine(receivedMessages[local], batch[index + 1]) : batch[index + 1];
+                        hasMessage[local] = true;
+                    }
+                }
+
+                for (int local = 0; local < positions.length; ++local)
+                {
+                    firstMessages[local + 1] = firstMessages[local] + (hasMessage[local] ? 1 : 0);
+                }
+
+                return;
+            }
+
+            if (receivedMessages.length < totalCount)
+            {
+                receivedMessages = new int[Math.max(totalCount, 2 * receivedMessages.length)];
+            }
+
+            // Counts the messages of every vertex, then places them after the messages of the previous vertices.
+            for (int[] batch : received)
+            {
+                for (int index = 0; index < batch.length; index += 2)
+                {
+                    ++firstMessages[localIndices[batch[index]] + 1];
+                }
+            }
+
+            for (int local = 0; local < positions.length; ++local)
+            {
+                firstMessages[local + 1] += firstMessages[local];
+            }
+
+            int[] next = Arrays.copyOf(firstMessages, positions.length);
+
+            for (int[] batch : received)
+            {
+                for (int index = 0; index < batch.length; index += 2)
+                {
+                    receivedMessages[next[localIndices[batch[index]]]++] = batch[index + 1];
+                }
+            }
+        }
+
+        /**
+         * Sends the batches that hold messages and keeps the arrays for the next superstep.
+         */
+        private void flush() throws IOException
+        {
+            for (int target = 0; target < partitionCount; ++target)
+            {
+                if (batchLengths[target] > 0)
+                {
+                    transport.send(superstep, partition, target, Arrays.copyOf(batches[target], batchLengths[target]));
+                    batchLengths[target] = 0;
+                }
+            }
+        }
+
+        /**
+         * Adds a message to the batch of the partition of its target, and sends the batch once it is full.
+         *
+         * @param target The position of the target.
+         * @param message The message.
+         */
+        void send(int target, int message)
+        {
+            int targetPartition = partitions[target];
+            int[] batch = batches[targetPartition];
+            int length = batchLengths[targetPartition];
+
+            batch[length] = target;
+            batch[length + 1] = message;
+            length += 2;
+            ++superstepSentCount;
+
+            if (length == batch.length)
+            {
+                try
+                {
+                    transport.send(superstep, partition, targetPartition, batch);
+                }
+                catch (IOException exception)
+                {
+                    throw new UncheckedIOException(exception);
+                }
+
+                batches[targetPartition] = new int[2 * BATCH_SIZE];
+                length = 0;
+            }
+
+            batchLengths[targetPartition] = length;
+        }
+
+        /**
+         * Halts the vertex being computed.
+         */
+        void halt()
+        {
+            halted[localIndices[position]] = true;
+        }
+
+        /**
+         * Gets the current superstep.
+         *
+         * @return The superstep.
+         */
+        int getSuperstep()
+        {
+            return superstep;
+        }
+
+        /**
+         * Gets the position of the vertex being computed.
+         *
+         * @return The position.
+         */
+        int getPosition()
+        {
+            return position;
+        }
+
+        /**
+         * Gets the snapshot the program runs over.
+         *
+         * @return The snapshot.
+         */
+        FrozenGraph getGraph()
+        {
+            return graph;
+        }
+    }
+}
@@ -0,0 +1,530 @@
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Computes single-source shortest paths over the weights of a snapshot.
+ * Weights are read from the primitive arrays of the snapshot and must not be negative.
+ * run uses Dijkstra's algorithm with an indexed binary heap. runParallel uses delta-stepping:
+ * vertices are grouped in buckets of width delta, and the arcs of a bucket are relaxed in parallel
+ * on a fork/join pool, light arcs (up to delta) repeatedly and heavy arcs once the bucket is settled.
+ * Arcs follow Graph.getPathsFrom, so directed edges are followed from their origin and undirected edges
+ * from either vertex.
+ *
+ * @author Andrei Muntean
+ */
+public class ShortestPaths
+{
+    // The number of vertices a task handles without splitting further.
+    private static final int GRAIN = 1024;
+
+    // The snapshot being searched.
+    private FrozenGraph graph;
+
+    // The pool that runs delta-stepping.
+    private ForkJoinPool pool;
+
+    // The distance and the parent of every vertex, indexed by position.
+    private double[] distances;
+    private int[] parents;
+
+    // The tentative distances used by delta-stepping, as the bits of doubles.
+    private AtomicLongArray tentative;
+
+    // The width of the buckets used by delta-stepping.
+    private double delta;
+
+    /**
+     * Constructs a search over the specified snapshot that runs delta-stepping on the common pool.
+     *
+     * @param graph A snapshot.
+     *
+     * @exception IllegalArgumentException An edge has a negative weight.
+     */
+    public ShortestPaths(FrozenGraph graph) throws IllegalArgumentException
+    {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a search over the specified snapshot.
+     *
+     * @param graph A snapshot.
+     * @param pool The pool that runs delta-stepping.
+     *
+     * @exception IllegalArgumentException An edge has a negative weight.
+     */
+    public ShortestPaths(FrozenGraph graph, ForkJoinPool pool) throws IllegalArgumentException
+    {
+        this.graph = graph;
+        this.pool = pool;
+
+        for (int arc = 0; arc < graph.countArcs(); ++arc)
+        {
+            // Also rejects NaN.
+            if (!(graph.getWeight(arc) >= 0))
+            {
+                throw new IllegalArgumentException("Edge weights must not be negative.");
+            }
+        }
+
+        distances = new double[graph.countVertices()];
+        parents = new int[graph.countVertices()];
+    }
+
+    /**
+     * Computes the shortest paths from the vertex at the specified position with Dijkstra's algorithm.
+     * Replaces the results of the previous search.
+     *
+     * @param source The position of the source vertex.
+     */
+    public void run(int source)
+    {
+        TraversalEvent event = new TraversalEvent();
+
+        event.begin();
+
+        IndexedHeap heap = new IndexedHeap(graph.countVertices());
+        boolean[] isSettled = new boolean[graph.countVertices()];
+
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(parents, -1);
+        distances[source] = 0;
+        heap.push(source, 0);
+
+        while (!heap.isEmpty())
+        {
+            int vertex = heap.pop();
+
+            isSettled[vertex] = true;
+
+            for (int arc = graph.getFirstArc(vertex); arc < graph.getEndArc(vertex); ++arc)
+            {
+                int neighbour = graph.getTarget(arc);
+                double distance = distances[vertex] + graph.getWeight(arc);
+
+                if (!isSettled[neighbour] && distance < distances[neighbour])
+                {
+                    distances[neighbour] = distance;
+                    parents[neighbour] = vertex;
+                    heap.push(neighbour, distance);
+                }
+            }
+        }
+
+        event.finish("Dijkstra", graph, source, 0);
+    }
+
+    /**
+     * Computes the shortest paths from the vertex at the specified position with parallel delta-stepping.
+     * The width of the buckets is the largest weight divided by the average degree.
+     * Replaces the results of the previous search.
+     *
+     * @param source The position of the source vertex.
+     */
+    public void runParallel(int source)
+    {
+        double maximumWeight = 0;
+
+        for (int arc = 0; arc < graph.countArcs(); ++arc)
+        {
+            maximumWeight = Math.max(maximumWeight, graph.getWeight(arc));
+        }
+
+        double averageDegree = Math.max(1, (double)graph.countArcs() / Math.max(1, graph.countVertices()));
+        double delta = maximumWeight / averageDegree;
+
+        runParallel(source, delta > 0 ? delta : 1);
+    }
+
+    /**
+     * Computes the shortest paths from the vertex at the specified position with parallel delta-stepping.
+     * Replaces the results of the previous search.
+     *
+     * @param source The position of the source vertex.
+     * @param delta The width of the buckets. Smaller buckets do less redundant work but expose less parallelism.
+     *
+     * @exception IllegalArgumentException The width is not positive.
+     */
+    public void runParallel(int source, double delta) throws IllegalArgumentException
+    {
+        if (!(delta > 0))
+        {
+            throw new IllegalArgumentException("The width of the buckets must be positive.");
+        }
+
+        TraversalEvent event = new TraversalEvent();
+        int vertexCount = graph.countVertices();
+
+        event.begin();
+        this.delta = delta;
+        tentative = new AtomicLongArray(vertexCount);
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            tentative.set(position, Double.doubleToRawLongBits(Double.POSITIVE_INFINITY));
+        }
+
+        tentative.set(source, Double.doubleToRawLongBits(0));
+
+        // Only the buckets that hold vertices are stored.
+        TreeMap<Long, IntList> buckets = new TreeMap<Long, IntList>();
+        int[] frontierRounds = new int[vertexCount];
+        long[] settledBuckets = new long[vertexCount];
+        int round = 0;
+
+        Arrays.fill(settledBuckets, -1);
+        buckets.put(0L, new IntList());
+        buckets.get(0L).add(source);
+
+        while (!buckets.isEmpty())
+        {
+            long bucket = buckets.firstKey();
+            IntList settled = new IntList();
+
+            // Relaxes light arcs until the bucket stays empty.
+            IntList entries;
+
+            while ((entries = buckets.remove(bucket)) != null)
+            {
+                IntList frontier = new IntList();
+
+                ++round;
+
+                // Skips vertices that moved to a lower bucket and vertices listed twice.
+                for (int index = 0; index < entries.size(); ++index)
+                {
+                    int vertex = entries.get(index);
+
+                    if (getBucket(getTentative(vertex)) == bucket && frontierRounds[vertex] != round)
+                    {
+                        frontierRounds[vertex] = round;
+                        frontier.add(vertex);
+
+                        if (settledBuckets[vertex] != bucket)
+                        {
+                            settledBuckets[vertex] = bucket;
+                            settled.add(vertex);
+                        }
+                    }
+                }
+
+                distribute(pool.invoke(new Relaxation(frontier.toArray(), 0, frontier.size(), true)), buckets);
+            }
+
+            // Relaxes heavy arcs once. They always lead to a later bucket.
+            distribute(pool.invoke(new Relaxation(settled.toArray(), 0, settled.size(), false)), buckets);
+        }
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            distances[position] = getTentative(position);
+        }
+
+        findParents(source);
+        tentative = null;
+        event.finish("DeltaStepping", graph, source, round);
+    }
+
+    /**
+     * Gets the distance of the vertex at the specified position from the source.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The distance, or positive infinity if the vertex cannot be reached.
+     */
+    public double getDistance(int position)
+    {
+        return distances[position];
+    }
+
+    /**
+     * Gets the vertex that precedes the vertex at the specified position on its shortest path.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The position of the parent, or -1 for the source and for vertices that cannot be reached.
+     */
+    public int getParent(int position)
+    {
+        return parents[position];
+    }
+
+    /**
+     * Gets the distances of all vertices, indexed by position. The array is reused by the next search.
+     *
+     * @return The distances. Vertices that cannot be reached have a distance of positive infinity.
+     */
+    public double[] getDistances()
+    {
+        return distances;
+    }
+
+    /**
+     * Gets the parents of all vertices, indexed by position. The array is reused by the next search.
+     *
+     * @return The positions of the parents. The source and vertices that cannot be reached have a parent of -1.
+     */
+    public int[] getParents()
+    {
+        return parents;
+    }
+
+    /**
+     * Gets the tentative distance of the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The tentative distance.
+     */
+    private double getTentative(int position)
+    {
+        return Double.longBitsToDouble(tentative.get(position));
+    }
+
+    /**
+     * Lowers the tentative distance of the vertex at the specified position, unless it is already lower.
+     *
+     * @param position The position of a vertex.
+     * @param distance The new distance.
+     *
+     * @return True if the distance was lowered.
+     */
+    private boolean lowerTentative(int position, double distance)
+    {
+        long bits = tentative.get(position);
+
+        while (distance < Double.longBitsToDouble(bits))
+        {
+            if (tentative.compareAndSet(position, bits, Double.doubleToRawLongBits(distance)))
+            {
+                return true;
+            }
+
+            bits = tentative.get(position);
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the bucket that holds the specified distance.
+     *
+     * @param distance A distance.
+     *
+     * @return The index of the bucket.
+     */
+    private long getBucket(double distance)
+    {
+        return (long)(distance / delta);
+    }
+
+    /**
+     * Puts the specified vertices in the buckets of their tentative distances.
+     *
+     * @param vertices The positions of vertices whose distances were lowered.
+     * @param buckets The buckets.
+     */
+    private void distribute(IntList vertices, TreeMap<Long, IntList> buckets)
+    {
+        for (int index = 0; index < vertices.size(); ++index)
+        {
+            int vertex = vertices.get(index);
+            Long bucket = getBucket(getTentative(vertex));
+            IntList entries = buckets.get(bucket);
+
+            if (entries == null)
+            {
+                entries = new IntList();
+                buckets.put(bucket, entries);
+            }
+
+            entries.add(vertex);
+        }
+    }
+
+    /**
+     * Finds the parent of every vertex reached by delta-stepping. A parent is a vertex from which an arc
+     * leads to the vertex at exactly its distance. Vertices are first matched in parallel with parents
+     * that are strictly closer to the source; the few vertices only reached through edges of weight 0
+     * are then matched by a sequential traversal from the source, which cannot create cycles.
+     *
+     * @param source The position of the source vertex.
+     */
+    private void findParents(int source)
+    {
+        FrozenGraph transpose = graph.transpose();
+
+        Arrays.fill(parents, -1);
+        pool.invoke(new ParentSearch(transpose, source, 0, graph.countVertices()));
+
+        // Looks for reachable vertices that are still without a parent.
+        boolean isComplete = true;
+
+        for (int position = 0; position < distances.length && isComplete; ++position)
+        {
+            isComplete = position == source || parents[position] != -1 || distances[position] == Double.POSITIVE_INFINITY;
+        }
+
+        if (isComplete)
+        {
+            return;
+        }
+
+        boolean[] isDiscovered = new boolean[distances.length];
+        IntList queue = new IntList();
+
+        isDiscovered[source] = true;
+        queue.add(source);
+
+        for (int index = 0; index < queue.size(); ++index)
+        {
+            int vertex = queue.get(index);
+
+            for (int arc = graph.getFirstArc(vertex); arc < graph.getEndArc(vertex); ++arc)
+            {
+                int neighbour = graph.getTarget(arc);
+
+                if (!isDiscovered[neighbour] && distances[vertex] + graph.getWeight(arc) == distances[neighbour])
+                {
+                    isDiscovered[neighbour] = true;
+                    queue.add(neighbour);
+
+                    if (parents[neighbour] == -1)
+                    {
+                        parents[neighbour] = vertex;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Relaxes the light or the heavy arcs of a range of vertices.
+     * Returns the vertices whose tentative distances were lowered.
+     */
+    private class Relaxation extends RecursiveTask<IntList>
+    {
+        private static final long serialVersionUID = 1L;
+
+        // The vertices and the range of them to relax.
+        private int[] vertices;
+        private int start;
+        private int end;
+
+        // Whether to relax the arcs that are not heavier than delta, or the others.
+        private boolean isLight;
+
+        Relaxation(int[] vertices, int start, int end, boolean isLight)
+        {
+            this.vertices = vertices;
+            this.start = start;
+            this.end = end;
+            this.isLight = isLight;
+        }
+
+        @Override
+        protected IntList compute()
+        {
+            if (end - start > GRAIN)
+            {
+                int middle = (start + end) >>> 1;
+                Relaxation second = new Relaxation(vertices, middle, end, isLight);
+
+                second.fork();
+
+                IntList lowered = new Relaxation(vertices, start, middle, isLight).compute();
+                IntList secondLowered = second.join();
+
+                for (int index = 0; index < secondLowered.size(); ++index)
+                {
+                    lowered.add(secondLowered.get(index));
+                }
+
+                return lowered;
+            }
+
+            IntList lowered = new IntList();
+
+            for (int index = start; index < end; ++index)
+            {
+                int vertex = vertices[index];
+                double distance = getTentative(vertex);
+
+                for (int arc = graph.getFirstArc(vertex); arc < graph.getEndArc(vertex); ++arc)
+                {
+                    double weight = graph.getWeight(arc);
+
+                    if ((weight <= delta) == isLight && lowerTentative(graph.getTarget(arc), distance + weight))
+                    {
+                        lowered.add(graph.getTarget(arc));
+                    }
+                }
+            }
+
+            return lowered;
+        }
+    }
+
+    /**
+     * Matches a range of vertices with a parent that is strictly closer to the source.
+     */
+    private class ParentSearch extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        // The transpose of the snapshot, whose arcs lead to the vertices that have an arc to a vertex.
+        private FrozenGraph transpose;
+
+        // The position of the source vertex.
+        private int source;
+
+        // The range of positions.
+        private int start;
+        private int end;
+
+        ParentSearch(FrozenGraph transpose, int source, int start, int end)
+        {
+            this.transpose = transpose;
+            this.source = source;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start > GRAIN)
+            {
+                int middle = (start + end) >>> 1;
+
+                invokeAll(new ParentSearch(transpose, source, start, middle), new ParentSearch(transpose, source, middle, end));
+
+                return;
+            }
+
+            for (int vertex = start; vertex < end; ++vertex)
+            {
+                if (vertex == source || distances[vertex] == Double.POSITIVE_INFINITY)
+                {
+                    continue;
+                }
+
+                for (int arc = transpose.getFirstArc(vertex); arc < transpose.getEndArc(vertex); ++arc)
+                {
+                    int candidate = transpose.getTarget(arc);
+
+                    if (distances[candidate] < distances[vertex] && distances[candidate] + transpose.getWeight(arc) == distances[vertex])
+                    {
+                        parents[vertex] = candidate;
+
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Maps indexes to slots in a list that contains tombstones (null slots).
+ * The index of an element is the number of elements that are not tombstones before it.
+ * A Fenwick tree counts the elements, so both lookups and updates take logarithmic time.
+ *
+ * @author Andrei Muntean
+ */
+class SlotIndex
+{
+    // The Fenwick tree, starting from 1. tree[i] counts the elements in slots i - lowbit(i) to i - 1.
+    private int[] tree;
+
+    // The number of slots.
+    private int size;
+
+    /**
+     * Constructs an index of the specified list.
+     *
+     * @param list A list whose null slots are tombstones.
+     */
+    public SlotIndex(ArrayList<?> list)
+    {
+        size = list.size();
+        tree = new int[Math.max(size + 1, 16)];
+
+        for (int slot = 0; slot < size; ++slot)
+        {
+            if (list.get(slot) != null)
+            {
+                tree[slot + 1] = 1;
+            }
+        }
+
+        // Builds the tree in linear time by adding every node to its parent.
+        for (int node = 1; node <= size; ++node)
+        {
+            int parent = node + (node & -node);
+
+            if (parent <= size)
+            {
+                tree[parent] += tree[node];
+            }
+        }
+    }
+
+    /**
+     * Records an element appended to the end of the list.
+     */
+    public void append()
+    {
+        if (size + 1 == tree.length)
+        {
+            tree = Arrays.copyOf(tree, tree.length * 2);
+        }
+
+        int node = ++size;
+
+        tree[node] = 1 + count(node - 1) - count(node - (node & -node));
+    }
+
+    /**
+     * Records that the specified slot became a tombstone.
+     *
+     * @param slot A slot that held an element.
+     */
+    public void remove(int slot)
+    {
+        for (int node = slot + 1; node <= size; node += node & -node)
+        {
+            --tree[node];
+        }
+    }
+
+    /**
+     * Gets the slot of the element with the specified index.
+     *
+     * @param index The index of an element. It must be less than the number of elements.
+     *
+     * @return The slot of the element.
+     */
+    public int getSlot(int index)
+    {
+        int node = 0;
+        int remaining = index + 1;
+
+        // Descends the tree, skipping every range that ends before the element.
+        for (int step = Integer.highestOneBit(Math.max(size, 1)); step > 0; step >>= 1)
+        {
+            if (node + step <= size && tree[node + step] < remaining)
+            {
+                node += step;
+                remaining -= tree[node];
+            }
+        }
+
+        // The element is in node + 1, which is slot node.
+        return node;
+    }
+
+    /**
+     * Counts the elements in the first slots.
+     *
+     * @param slotCount The number of slots to count in.
+     *
+     * @return The number of elements.
+     */
+    private int count(int slotCount)
+    {
+        int count = 0;
+
+        for (int node = slotCount; node > 0; node -= node & -node)
+        {
+            count += tree[node];
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,59 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for a run of an algorithm over a snapshot. By default only runs that take
+ * longer than 20 ms are recorded. Costs nothing unless a recording enables it.
+ *
+ * @author Andrei Muntean
+ */
+@Name("graph.Traversal")
+@Label("Graph Traversal")
+@Category("Graph")
+@Description("An algorithm ran over a snapshot of a graph")
+@Threshold("20 ms")
+class TraversalEvent extends jdk.jfr.Event
+{
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Source")
+    @Description("The position of the source vertex, or -1 if there is none")
+    int source;
+
+    @Label("Vertices")
+    int vertexCount;
+
+    @Label("Arcs")
+    int arcCount;
+
+    @Label("Iterations")
+    @Description("The number of levels, rounds or iterations")
+    int iterationCount;
+
+    /**
+     * Ends the event and commits it if a recording enabled it and it took long enough.
+     *
+     * @param algorithm The name of the algorithm.
+     * @param graph The snapshot the algorithm ran over.
+     * @param source The position of the source vertex, or -1 if there is none.
+     * @param iterationCount The number of levels, rounds or iterations.
+     */
+    void finish(String algorithm, FrozenGraph graph, int source, int iterationCount)
+    {
+        end();
+
+        if (shouldCommit())
+        {
+            this.algorithm = algorithm;
+            this.source = source;
+            vertexCount = graph.countVertices();
+            arcCount = graph.countArcs();
+            this.iterationCount = iterationCount;
+            commit();
+        }
+    }
+}
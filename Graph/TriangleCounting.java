@@ -0,0 +1,565 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the triangles of a snapshot in parallel and derives its clustering coefficients.
+ * Triangles are counted on the undirected projection of the snapshot: every edge joins its two vertices
+ * regardless of its direction, opposite arcs are merged, and loops are ignored.
+ *
+ * Every edge of the projection is oriented from the vertex of lower degree to the vertex of higher degree,
+ * so every triangle is found once, from its lowest vertex, and no vertex has more than about sqrt(2E) arcs.
+ * The triangles through an oriented arc are found by merging the sorted arcs of its two vertices, or,
+ * when the lower vertex is a hub, by probing a bitset of its arcs. Vertices are counted on a fork/join pool.
+ *
+ * @author Andrei Muntean
+ */
+public class TriangleCounting
+{
+    // The number of vertices a task handles without splitting further. Small, since hubs make the work uneven.
+    private static final int GRAIN = 256;
+
+    // The number of oriented arcs above which a vertex intersects through a bitset instead of merging.
+    private static final int HUB_DEGREE = 128;
+
+    // The snapshot being counted.
+    private FrozenGraph graph;
+
+    // The pool that runs the tasks.
+    private ForkJoinPool pool;
+
+    // The sorted neighbours of every vertex in the projection, in compressed sparse row form.
+    private int[] offsets;
+    private int[] neighbours;
+
+    // The arcs of every vertex towards vertices of higher degree, sorted, in compressed sparse row form.
+    private int[] orientedOffsets;
+    private int[] orientedTargets;
+
+    // The number of triangles through every vertex while they are counted.
+    private AtomicLongArray pendingTriangleCounts;
+
+    // The bitset of every thread that intersects through hubs.
+    private ThreadLocal<long[]> bitsets;
+
+    // The number of triangles through every vertex, indexed by position.
+    private long[] triangleCounts;
+
+    // The number of triangles.
+    private long triangleCount;
+
+    /**
+     * Constructs a count of the specified snapshot that runs on the common pool.
+     *
+     * @param graph A snapshot.
+     */
+    public TriangleCounting(FrozenGraph graph)
+    {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a count of the specified snapshot.
+     *
+     * @param graph A snapshot.
+     * @param pool The pool that runs the tasks.
+     */
+    public TriangleCounting(FrozenGraph graph, ForkJoinPool pool)
+    {
+        this.graph = graph;
+        this.pool = pool;
+        triangleCounts = new long[graph.countVertices()];
+    }
+
+    /**
+     * Counts the triangles. Replaces the results of the previous count.
+     */
+    public void run()
+    {
+        TraversalEvent event = new TraversalEvent();
+        final int vertexCount = graph.countVertices();
+
+        event.begin();
+        project();
+        orient();
+
+        pendingTriangleCounts = new AtomicLongArray(vertexCount);
+        bitsets = new ThreadLocal<long[]>()
+        {
+            @Override
+            protected long[] initialValue()
+            {
+                return new long[(vertexCount + 63) >>> 6];
+            }
+        };
+
+        triangleCount = pool.invoke(new CountingStep(0, vertexCount));
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            triangleCounts[position] = pendingTriangleCounts.get(position);
+        }
+
+        pendingTriangleCounts = null;
+        bitsets = null;
+        orientedOffsets = null;
+        orientedTargets = null;
+        event.finish("TriangleCounting", graph, -1, 0);
+    }
+
+    /**
+     * Gets the number of triangles.
+     *
+     * @return The number of triangles.
+     */
+    public long countTriangles()
+    {
+        return triangleCount;
+    }
+
+    /**
+     * Gets the number of triangles through the vertex at the specified position.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The number of triangles.
+     */
+    public long getTriangleCount(int position)
+    {
+        return triangleCounts[position];
+    }
+
+    /**
+     * Gets the number of triangles through every vertex, indexed by position.
+     *
+     * @return The numbers of triangles.
+     */
+    public long[] getTriangleCounts()
+    {
+        return triangleCounts;
+    }
+
+    /**
+     * Gets the number of neighbours of the vertex at the specified position in the undirected projection.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The number of neighbours.
+     */
+    public int getDegree(int position)
+    {
+        return offsets[position + 1] - offsets[position];
+    }
+
+    /**
+     * Gets the local clustering coefficient of the vertex at the specified position: the fraction of
+     * the pairs of its neighbours that are neighbours themselves.
+     *
+     * @param position The position of a vertex.
+     *
+     * @return The coefficient, or 0 if the vertex has fewer than two neighbours.
+     */
+    public double getClusteringCoefficient(int position)
+    {
+        long degree = getDegree(position);
+
+        return degree < 2 ? 0 : 2.0 * triangleCounts[position] / (degree * (degree - 1));
+    }
+
+    /**
+     * Gets the mean of the local clustering coefficients of all vertices.
+     *
+     * @return The average clustering coefficient, or 0 if there are no vertices.
+     */
+    public double getAverageClusteringCoefficient()
+    {
+        double sum = 0;
+
+        for (int position = 0; position < triangleCounts.length; ++position)
+        {
+            sum += getClusteringCoefficient(position);
+        }
+
+        return triangleCounts.length == 0 ? 0 : sum / triangleCounts.length;
+    }
+
+    /**
+     * Gets the global clustering coefficient: three times the number of triangles divided by
+     * the number of paths of two edges.
+     *
+     * @return The transitivity, or 0 if there are no paths of two edges.
+     */
+    public double getTransitivity()
+    {
+        double pathCount = 0;
+
+        for (int position = 0; position < triangleCounts.length; ++position)
+        {
+            long degree = getDegree(position);
+
+            pathCount += degree * (degree - 1) / 2;
+        }
+
+        return pathCount == 0 ? 0 : 3.0 * triangleCount / pathCount;
+    }
+
+    /**
+     * Builds the sorted neighbours of every vertex in the undirected projection.
+     */
+    private void project()
+    {
+        int vertexCount = graph.countVertices();
+        FrozenGraph transpose = graph.transpose();
+        int[] boundOffsets = new int[vertexCount + 1];
+
+        // Every neighbour is the target of an arc of the snapshot or of its transpose.
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            boundOffsets[position + 1] = boundOffsets[position] + graph.getDegree(position) + transpose.getDegree(position);
+        }
+
+        int[] candidates = new int[boundOffsets[vertexCount]];
+        int[] degrees = new int[vertexCount];
+
+        pool.invoke(new ProjectionStep(0, vertexCount, transpose, boundOffsets, candidates, degrees));
+
+        offsets = new int[vertexCount + 1];
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            offsets[position + 1] = offsets[position] + degrees[position];
+        }
+
+        neighbours = new int[offsets[vertexCount]];
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            System.arraycopy(candidates, boundOffsets[position], neighbours, offsets[position], degrees[position]);
+        }
+    }
+
+    /**
+     * Keeps the arcs of the projection that lead to vertices of higher degree.
+     */
+    private void orient()
+    {
+        int vertexCount = graph.countVertices();
+        int[] degrees = new int[vertexCount];
+
+        pool.invoke(new OrientationStep(0, vertexCount, degrees, false));
+        orientedOffsets = new int[vertexCount + 1];
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            orientedOffsets[position + 1] = orientedOffsets[position] + degrees[position];
+        }
+
+        orientedTargets = new int[orientedOffsets[vertexCount]];
+        pool.invoke(new OrientationStep(0, vertexCount, degrees, true));
+    }
+
+    /**
+     * Determines whether an arc of the projection is oriented from one vertex to another.
+     * Ties between degrees are broken by position.
+     */
+    private boolean isOriented(int origin, int destination)
+    {
+        int originDegree = getDegree(origin);
+        int destinationDegree = getDegree(destination);
+
+        return originDegree < destinationDegree || originDegree == destinationDegree && origin < destination;
+    }
+
+    /**
+     * Gathers, sorts and deduplicates the neighbours of a range of vertices.
+     */
+    private class ProjectionStep extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        // The range of positions.
+        private int start;
+        private int end;
+
+        // The transpose of the snapshot.
+        private FrozenGraph transpose;
+
+        // Where the neighbours of every vertex are gathered, and how many remain.
+        private int[] boundOffsets;
+        private int[] candidates;
+        private int[] degrees;
+
+        ProjectionStep(int start, int end, FrozenGraph transpose, int[] boundOffsets, int[] candidates, int[] degrees)
+        {
+            this.start = start;
+            this.end = end;
+            this.transpose = transpose;
+            this.boundOffsets = boundOffsets;
+            this.candidates = candidates;
+            this.degrees = degrees;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start > GRAIN)
+            {
+                int middle = (start + end) >>> 1;
+
+                invokeAll(new ProjectionStep(start, middle, transpose, boundOffsets, candidates, degrees),
+                    new ProjectionStep(middle, end, transpose, boundOffsets, candidates, degrees));
+
+                return;
+            }
+
+            for (int position = start; position < end; ++position)
+            {
+                int first = boundOffsets[position];
+                int last = first;
+
+                for (int arc = graph.getFirstArc(position); arc < graph.getEndArc(position); ++arc)
+                {
+                    candidates[last++] = graph.getTarget(arc);
+                }
+
+                for (int arc = transpose.getFirstArc(position); arc < transpose.getEndArc(position); ++arc)
+                {
+                    candidates[last++] = transpose.getTarget(arc);
+                }
+
+                Arrays.sort(candidates, first, last);
+
+                // Drops repeated neighbours and loops.
+                int degree = 0;
+
+                for (int index = first; index < last; ++index)
+                {
+                    int neighbour = candidates[index];
+
+                    if (neighbour != position && (degree == 0 || candidates[first + degree - 1] != neighbour))
+                    {
+                        candidates[first + degree++] = neighbour;
+                    }
+                }
+
+                degrees[position] = degree;
+            }
+        }
+    }
+
+    /**
+     * Counts or stores the oriented arcs of a range of vertices.
+     */
+    private class OrientationStep extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        // The range of positions.
+        private int start;
+        private int end;
+
+        // The number of oriented arcs of every vertex.
+        private int[] degrees;
+
+        // Whether the arcs are stored rather than counted.
+        private boolean isFilling;
+
+        OrientationStep(int start, int end, int[] degrees, boolean isFilling)
+        {
+            this.start = start;
+            this.end = end;
+            this.degrees = degrees;
+            this.isFilling = isFilling;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start > GRAIN)
+            {
+                int middle = (start + end) >>> 1;
+
+                invokeAll(new OrientationStep(start, middle, degrees, isFilling), new OrientationStep(middle, end, degrees, isFilling));
+
+                return;
+            }
+
+            for (int position = start; position < end; ++position)
+            {
+                int arc = isFilling ? orientedOffsets[position] : 0;
+
+                for (int index = offsets[position]; index < offsets[position + 1]; ++index)
+                {
+                    int neighbour = neighbours[index];
+
+                    if (isOriented(position, neighbour))
+                    {
+                        if (isFilling)
+                        {
+                            orientedTargets[arc] = neighbour;
+                        }
+
+                        ++arc;
+                    }
+                }
+
+                if (!isFilling)
+                {
+                    degrees[position] = arc;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the triangles whose lowest vertex is in a range of vertices.
+     */
+    private class CountingStep extends RecursiveTask<Long>
+    {
+        private static final long serialVersionUID = 1L;
+
+        // The range of positions.
+        private int start;
+        private int end;
+
+        CountingStep(int start, int end)
+        {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Long compute()
+        {
+            if (end - start > GRAIN)
+            {
+                int middle = (start + end) >>> 1;
+                CountingStep second = new CountingStep(middle, end);
+
+                second.fork();
+
+                return new CountingStep(start, middle).compute() + second.join();
+            }
+
+            long count = 0;
+
+            for (int position = start; position < end; ++position)
+            {
+                count += orientedOffsets[position + 1] - orientedOffsets[position] > HUB_DEGREE
+                    ? countWithBitset(position)
+                    : countWithMerge(position);
+            }
+
+            return count;
+        }
+
+        /**
+         * Counts the triangles whose lowest vertex is the specified vertex by merging sorted arcs.
+         *
+         * @return The number of triangles.
+         */
+        private long countWithMerge(int vertex)
+        {
+            long vertexCount = 0;
+
+            for (int arc = orientedOffsets[vertex]; arc < orientedOffsets[vertex + 1]; ++arc)
+            {
+                int middle = orientedTargets[arc];
+                int first = orientedOffsets[vertex];
+                int second = orientedOffsets[middle];
+                long middleCount = 0;
+
+                while (first < orientedOffsets[vertex + 1] && second < orientedOffsets[middle + 1])
+                {
+                    int firstTarget = orientedTargets[first];
+                    int secondTarget = orientedTargets[second];
+
+                    if (firstTarget < secondTarget)
+                    {
+                        ++first;
+                    }
+                    else if (firstTarget > secondTarget)
+                    {
+                        ++second;
+                    }
+                    else
+                    {
+                        pendingTriangleCounts.incrementAndGet(firstTarget);
+                        ++middleCount;
+                        ++first;
+                        ++second;
+                    }
+                }
+
+                if (middleCount > 0)
+                {
+                    pendingTriangleCounts.addAndGet(middle, middleCount);
+                    vertexCount += middleCount;
+                }
+            }
+
+            if (vertexCount > 0)
+            {
+                pendingTriangleCounts.addAndGet(vertex, vertexCount);
+            }
+
+            return vertexCount;
+        }
+
+        /**
+         * Counts the triangles whose lowest vertex is the specified hub by probing a bitset of its arcs.
+         *
+         * @return The number of triangles.
+         */
+        private long countWithBitset(int vertex)
+        {
+            long[] bits = bitsets.get();
+            long vertexCount = 0;
+
+            for (int arc = orientedOffsets[vertex]; arc < orientedOffsets[vertex + 1]; ++arc)
+            {
+                int target = orientedTargets[arc];
+
+                bits[target >>> 6] |= 1L << target;
+            }
+
+            for (int arc = orientedOffsets[vertex]; arc < orientedOffsets[vertex + 1]; ++arc)
+            {
+                int middle = orientedTargets[arc];
+                long middleCount = 0;
+
+                for (int middleArc = orientedOffsets[middle]; middleArc < orientedOffsets[middle + 1]; ++middleArc)
+                {
+                    int target = orientedTargets[middleArc];
+
+                    if ((bits[target >>> 6] & 1L << target) != 0)
+                    {
+                        pendingTriangleCounts.incrementAndGet(target);
+                        ++middleCount;
+                    }
+                }
+
+                if (middleCount > 0)
+                {
+                    pendingTriangleCounts.addAndGet(middle, middleCount);
+                    vertexCount += middleCount;
+                }
+            }
+
+            // Clears only the bits that were set, so the bitset can be reused.
+            for (int arc = orientedOffsets[vertex]; arc < orientedOffsets[vertex + 1]; ++arc)
+            {
+                bits[orientedTargets[arc] >>> 6] = 0;
+            }
+
+            if (vertexCount > 0)
+            {
+                pendingTriangleCounts.addAndGet(vertex, vertexCount);
+            }
+
+            return vertexCount;
+        }
+    }
+}
@@ -53,6 +53,65 @@ public class UndirectedEdge implements Edge
         return new Vertex[] { vertexA, vertexB };
     }
 
+    /**
+     * Gets the first vertex of the edge, which is vertex A.
+     *
+     * @return The first vertex.
+     */
+    public Vertex getFirst()
+    {
+        return vertexA;
+    }
+
+    /**
+     * Gets the second vertex of the edge, which is vertex B.
+     *
+     * @return The second vertex.
+     */
+    public Vertex getSecond()
+    {
+        return vertexB;
+    }
+
+    /**
+     * Gets the id of the first vertex of the edge.
+     *
+     * @return The id of the first vertex.
+     */
+    public int getFirstId()
+    {
+        return vertexA.getId();
+    }
+
+    /**
+     * Gets the id of the second vertex of the edge.
+     *
+     * @return The id of the second vertex.
+     */
+    public int getSecondId()
+    {
+        return vertexB.getId();
+    }
+
+    /**
+     * Replaces the vertices of the edge with vertices that have the same ids.
+     *
+     * @param first A vertex with the id of the first vertex.
+     * @param second A vertex with the id of the second vertex.
+     *
+     * @exception IllegalArgumentException The ids of the specified vertices differ from those of the edge.
+     */
+    public void setVertices(Vertex first, Vertex second) throws IllegalArgumentException
+    {
+        if (!first.equals(vertexA) || !second.equals(vertexB))
+        {
+            throw new IllegalArgumentException("The vertices must have the same ids as those of the edge.");
+        }
+
+        vertexA = first;
+        vertexB = second;
+    }
+
     /**
      * Determines whether the edge is directed.
      */
@@ -61,6 +120,16 @@ public class UndirectedEdge implements Edge
         return false;
     }
 
+    /**
+     * Gets the weight of the edge. Unweighted edges have a weight of 1.
+     *
+     * @return The weight of the edge.
+     */
+    public double getWeight()
+    {
+        return 1;
+    }
+
     /**
      * Determines whether the specified vertex is contained by the edge. 
      *
@@ -73,6 +142,20 @@ public class UndirectedEdge implements Edge
         return vertex.equals(vertexA) || vertex.equals(vertexB);
     }
 
+    /**
+     * Gets a key built from the ids of the two vertices. The smaller id comes first,
+     * so [a, b] and [b, a] have the same key.
+     *
+     * @return The key of the edge.
+     */
+    public long getKey()
+    {
+        int firstId = Math.min(vertexA.getId(), vertexB.getId());
+        int secondId = Math.max(vertexA.getId(), vertexB.getId());
+
+        return (long)firstId << 32 | secondId & 0xFFFFFFFFL;
+    }
+
     /**
      * Determines whether this edge is equal to a specified edge.
      *
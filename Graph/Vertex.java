@@ -11,6 +11,12 @@ public class Vertex
     // The value of the vertex.
     private int value;
 
+    // Changes whenever the value is set.
+    private int version;
+
+    // The graph that stored the vertex last, which is told when the value is set, or null.
+    private Graph graph;
+
     /**
      * Constructs a vertex
      *
@@ -54,13 +60,40 @@ public class Vertex
     }
 
     /**
-     * Sets the value of the vertex to the specified value.
+     * Sets the value of the vertex to the specified value. If the vertex is stored in a graph,
+     * the listener of the graph is told. A vertex stored in several graphs only tells the last one that stored it.
      *
      * @param value The new value.
      */
     public void setValue(int value)
     {
         this.value = value;
+        ++version;
+
+        if (graph != null)
+        {
+            graph.valueSet(this);
+        }
+    }
+
+    /**
+     * Gets the version of the value, which changes whenever the value is set.
+     *
+     * @return The version.
+     */
+    int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Sets the graph that is told when the value is set.
+     *
+     * @param graph The graph that stores the vertex.
+     */
+    void setGraph(Graph graph)
+    {
+        this.graph = graph;
     }
 
     /**
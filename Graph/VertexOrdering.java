@@ -0,0 +1,678 @@
+import java.util.Arrays;
+
+/**
+ * Reorders the vertices of a graph so that vertices that are traversed together are stored together,
+ * and builds a snapshot in the new order. Traversals of the snapshot then touch fewer cache lines and pages
+ * than traversals of a graph whose vertices are in the order they were added.
+ *
+ * Every vertex keeps its id and its value in the new snapshot, so vertices of the graph are found in it
+ * with getPosition and the other way around with getVertexId. The permutation maps positions both ways.
+ * The orderings treat every arc as undirected:
+ *
+ * DEGREE puts the vertices with the most arcs first, so the vertices most traversals reach share a few cache lines.
+ *
+ * REVERSE_CUTHILL_MCKEE numbers the vertices in breadth-first order from a peripheral vertex of every component,
+ * visiting the neighbours with fewer arcs first, and reverses the order. It keeps the neighbours of every vertex
+ * close to it, which suits meshes, grids and road networks.
+ *
+ * COMMUNITY merges every vertex, from the fewest arcs to the most, into the neighbouring community that improves
+ * the modularity the most, like Rabbit Order, and numbers the vertices of every community and of their nested
+ * communities consecutively. It suits social and web graphs.
+ *
+ * @author Andrei Muntean
+ */
+public class VertexOrdering
+{
+    /**
+     * The ways the vertices can be ordered.
+     */
+    public enum Method
+    {
+        DEGREE, REVERSE_CUTHILL_MCKEE, COMMUNITY
+    }
+
+    // The largest number of searches made to find a peripheral vertex of a component.
+    private static final int MAXIMUM_PERIPHERAL_SEARCHES = 4;
+
+    // The snapshot in the original order and in the new one.
+    private FrozenGraph graph;
+    private FrozenGraph orderedGraph;
+
+    // The new position of every original position, and the original position of every new position.
+    private int[] newPositions;
+    private int[] originalPositions;
+
+    // The neighbours of every vertex along arcs in either direction, in compressed sparse row form.
+    // Self-loops are left out. Only kept while the order is computed.
+    private int[] offsets;
+    private int[] neighbours;
+
+    /**
+     * Orders the vertices of a graph with the specified method.
+     *
+     * @param graph A graph.
+     * @param method The ordering method.
+     */
+    public VertexOrdering(Graph graph, Method method)
+    {
+        this(graph.freeze(), method);
+    }
+
+    /**
+     * Orders the vertices of a snapshot with the specified method.
+     *
+     * @param graph A snapshot.
+     * @param method The ordering method.
+     */
+    public VertexOrdering(FrozenGraph graph, Method method)
+    {
+        TraversalEvent event = new TraversalEvent();
+        int vertexCount = graph.countVertices();
+
+        event.begin();
+        this.graph = graph;
+        findNeighbours();
+
+        if (method == Method.DEGREE)
+        {
+            originalPositions = orderByDegree();
+        }
+        else if (method == Method.REVERSE_CUTHILL_MCKEE)
+        {
+            originalPositions = orderByReverseCuthillMcKee();
+        }
+        else
+        {
+            originalPositions = orderByCommunity();
+        }
+
+        offsets = null;
+        neighbours = null;
+        newPositions = new int[vertexCount];
+
+        for (int newPosition = 0; newPosition < vertexCount; ++newPosition)
+        {
+            newPositions[originalPositions[newPosition]] = newPosition;
+        }
+
+        orderedGraph = graph.relabel(newPositions);
+        event.finish("VertexOrdering", graph, -1, 0);
+    }
+
+    /**
+     * Gets the snapshot with the vertices in the new order.
+     *
+     * @return The snapshot.
+     */
+    public FrozenGraph getGraph()
+    {
+        return orderedGraph;
+    }
+
+    /**
+     * Gets the snapshot with the vertices in their original order.
+     *
+     * @return The snapshot.
+     */
+    public FrozenGraph getOriginalGraph()
+    {
+        return graph;
+    }
+
+    /**
+     * Gets the new position of a vertex.
+     *
+     * @param originalPosition The position of the vertex in the original snapshot, which is its index in the graph.
+     *
+     * @return The position of the vertex in the new snapshot.
+     */
+    public int getNewPosition(int originalPosition)
+    {
+        return newPositions[originalPosition];
+    }
+
+    /**
+     * Gets the original position of a vertex.
+     *
+     * @param newPosition The position of the vertex in the new snapshot.
+     *
+     * @return The position of the vertex in the original snapshot, which is its index in the graph.
+     */
+    public int getOriginalPosition(int newPosition)
+    {
+        return originalPositions[newPosition];
+    }
+
+    /**
+     * Gets the new position of every vertex, indexed by original position.
+     *
+     * @return A new array of positions.
+     */
+    public int[] getPermutation()
+    {
+        return newPositions.clone();
+    }
+
+    /**
+     * Gets the new position of the vertex with the specified id.
+     *
+     * @param id The id of a vertex.
+     *
+     * @return The position of the vertex in the new snapshot, or -1 if there is no vertex with the specified id.
+     */
+    public int getPosition(int id)
+    {
+        return orderedGraph.getPosition(id);
+    }
+
+    /**
+     * Gets the id of the vertex at the specified position of the new snapshot.
+     *
+     * @param newPosition The position of the vertex in the new snapshot.
+     *
+     * @return The id of the vertex.
+     */
+    public int getVertexId(int newPosition)
+    {
+        return orderedGraph.getVertexId(newPosition);
+    }
+
+    /**
+     * Lists the neighbours of every vertex along arcs in either direction. Arcs of undirected edges are already
+     * stored both ways, so only the arcs of directed edges are also read from the transpose.
+     */
+    private void findNeighbours()
+    {
+        int vertexCount = graph.countVertices();
+        GraphType type = graph.getType();
+        FrozenGraph transpose = type == GraphType.UNDIRECTED || type == GraphType.UNKNOWN ? null : graph.transpose();
+
+        offsets = new int[vertexCount + 1];
+
+        // Counts the neighbours of every vertex.
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            int count = countNeighbours(graph, position, false);
+
+            if (transpose != null)
+            {
+                count += countNeighbours(transpose, position, true);
+            }
+
+            offsets[position + 1] = offsets[position] + count;
+        }
+
+        neighbours = new int[offsets[vertexCount]];
+
+        // Lists them.
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            int index = addNeighbours(graph, position, false, offsets[position]);
+
+            if (transpose != null)
+            {
+                addNeighbours(transpose, position, true, index);
+            }
+        }
+    }
+
+    /**
+     * Counts the arcs of a vertex that lead to other vertices.
+     *
+     * @param snapshot The snapshot or its transpose.
+     * @param position The position of the vertex.
+     * @param isDirectedOnly Whether only the arcs of directed edges are counted.
+     *
+     * @return The number of arcs.
+     */
+    private static int countNeighbours(FrozenGraph snapshot, int position, boolean isDirectedOnly)
+    {
+        int count = 0;
+
+        for (int arc = snapshot.getFirstArc(position), endArc = snapshot.getEndArc(position); arc < endArc; ++arc)
+        {
+            if (snapshot.getTarget(arc) != position && (!isDirectedOnly || snapshot.isDirected(arc)))
+            {
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Lists the targets of the arcs of a vertex that lead to other vertices.
+     *
+     * @param snapshot The snapshot or its transpose.
+     * @param position The position of the vertex.
+     * @param isDirectedOnly Whether only the arcs of directed edges are listed.
+     * @param index The index in the neighbours where the list starts.
+     *
+     * @return The index that follows the list.
+     */
+    private int addNeighbours(FrozenGraph snapshot, int position, boolean isDirectedOnly, int index)
+    {
+        for (int arc = snapshot.getFirstArc(position), endArc = snapshot.getEndArc(position); arc < endArc; ++arc)
+        {
+            int target = snapshot.getTarget(arc);
+
+            if (target != position && (!isDirectedOnly || snapshot.isDirected(arc)))
+            {
+                neighbours[index++] = target;
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Gets the number of neighbours of a vertex.
+     */
+    private int getDegree(int position)
+    {
+        return offsets[position + 1] - offsets[position];
+    }
+
+    /**
+     * Sorts the positions by degree with a counting sort. Vertices with the same degree keep their order.
+     *
+     * @param isDescending Whether the vertices with the most neighbours come first.
+     *
+     * @return The positions in order.
+     */
+    private int[] sortByDegree(boolean isDescending)
+    {
+        int vertexCount = graph.countVertices();
+        int maximumDegree = 0;
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            maximumDegree = Math.max(maximumDegree, getDegree(position));
+        }
+
+        int[] starts = new int[maximumDegree + 2];
+        int[] order = new int[vertexCount];
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            int degree = getDegree(position);
+
+            ++starts[(isDescending ? maximumDegree - degree : degree) + 1];
+        }
+
+        for (int degree = 0; degree <= maximumDegree; ++degree)
+        {
+            starts[degree + 1] += starts[degree];
+        }
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            int degree = getDegree(position);
+
+            order[starts[isDescending ? maximumDegree - degree : degree]++] = position;
+        }
+
+        return order;
+    }
+
+    /**
+     * Orders the vertices from the most neighbours to the fewest.
+     *
+     * @return The original positions in the new order.
+     */
+    private int[] orderByDegree()
+    {
+        return sortByDegree(true);
+    }
+
+    /**
+     * Orders the vertices with the reverse Cuthill-McKee algorithm. Components are started from their vertex
+     * with the fewest neighbours, which is then replaced by a peripheral vertex.
+     *
+     * @return The original positions in the new order.
+     */
+    private int[] orderByReverseCuthillMcKee()
+    {
+        int vertexCount = graph.countVertices();
+        int[] order = new int[vertexCount];
+        boolean[] isOrdered = new boolean[vertexCount];
+        int[] levels = new int[vertexCount];
+        int[] queue = new int[vertexCount];
+        long[] keys = new long[16];
+        int orderedCount = 0;
+
+        Arrays.fill(levels, -1);
+
+        for (int start : sortByDegree(false))
+        {
+            if (isOrdered[start])
+            {
+                continue;
+            }
+
+            int root = findPeripheralVertex(start, levels, queue);
+
+            // Searches breadth-first from the root, visiting the neighbours with fewer neighbours first.
+            int head = orderedCount;
+
+            order[orderedCount++] = root;
+            isOrdered[root] = true;
+
+            while (head < orderedCount)
+            {
+                int position = order[head++];
+                int keyCount = 0;
+
+                if (keys.length < getDegree(position))
+                {
+                    keys = new long[Math.max(getDegree(position), 2 * keys.length)];
+                }
+
+                for (int index = offsets[position]; index < offsets[position + 1]; ++index)
+                {
+                    int neighbour = neighbours[index];
+
+                    if (!isOrdered[neighbour])
+                    {
+                        isOrdered[neighbour] = true;
+                        keys[keyCount++] = (long)getDegree(neighbour) << 32 | neighbour;
+                    }
+                }
+
+                Arrays.sort(keys, 0, keyCount);
+
+                for (int index = 0; index < keyCount; ++index)
+                {
+                    order[orderedCount++] = (int)keys[index];
+                }
+            }
+        }
+
+        // Reverses the order.
+        for (int left = 0, right = vertexCount - 1; left < right; ++left, --right)
+        {
+            int position = order[left];
+
+            order[left] = order[right];
+            order[right] = position;
+        }
+
+        return order;
+    }
+
+    /**
+     * Finds a vertex far from the others in its component, with the method of George and Liu: searches
+     * breadth-first and moves to the vertex with the fewest neighbours in the last level for as long as
+     * the number of levels grows.
+     *
+     * @param start A vertex of the component.
+     * @param levels The level of every vertex in the last search, or -1. Left filled.
+     * @param queue Room for the vertices of the component.
+     *
+     * @return A peripheral vertex.
+     */
+    private int findPeripheralVertex(int start, int[] levels, int[] queue)
+    {
+        int root = start;
+        int eccentricity = -1;
+
+        for (int search = 0; search < MAXIMUM_PERIPHERAL_SEARCHES; ++search)
+        {
+            int size = 0;
+
+            queue[size++] = root;
+            levels[root] = 0;
+
+            for (int head = 0; head < size; ++head)
+            {
+                int position = queue[head];
+
+                for (int index = offsets[position]; index < offsets[position + 1]; ++index)
+                {
+                    int neighbour = neighbours[index];
+
+                    if (levels[neighbour] < 0)
+                    {
+                        levels[neighbour] = levels[position] + 1;
+                        queue[size++] = neighbour;
+                    }
+                }
+            }
+
+            // The vertices of the last level are at the end of the queue.
+            int lastLevel = levels[queue[size - 1]];
+            int candidate = queue[size - 1];
+
+            for (int index = size - 1; index >= 0 && levels[queue[index]] == lastLevel; --index)
+            {
+                if (getDegree(queue[index]) < getDegree(candidate))
+                {
+                    candidate = queue[index];
+                }
+            }
+
+            for (int index = 0; index < size; ++index)
+            {
+                levels[queue[index]] = -1;
+            }
+
+            if (lastLevel <= eccentricity)
+            {
+                break;
+            }
+
+            eccentricity = lastLevel;
+            root = candidate;
+        }
+
+        return root;
+    }
+
+    /**
+     * Orders the vertices by community. Visits the vertices from the fewest neighbours to the most and merges
+     * every one into the neighbouring community with the largest gain in modularity, if there is a gain.
+     * The gain of merging community u into community v is proportional to w(u, v) - d(u) d(v) / 2m, where w counts
+     * the arcs between them, d sums the degrees of their vertices and m counts the edges.
+     *
+     * The arcs of a community are gathered when its first vertex is visited, from the vertex and from the communities
+     * merged into it, whose arcs were kept for that purpose. The vertices are then numbered in depth-first order
+     * of the merges, so every community and every community merged into it is numbered consecutively.
+     *
+     * @return The original positions in the new order.
+     */
+    private int[] orderByCommunity()
+    {
+        int vertexCount = graph.countVertices();
+        double totalDegree = Math.max(neighbours.length, 1);
+
+        // The communities as a union-find forest and the merges as a tree of first children and next siblings.
+        int[] parents = new int[vertexCount];
+        int[] mergedInto = new int[vertexCount];
+        int[] firstChildren = new int[vertexCount];
+        int[] lastChildren = new int[vertexCount];
+        int[] nextSiblings = new int[vertexCount];
+        long[] degrees = new long[vertexCount];
+
+        // The arcs of the communities that were merged into a community that was not visited yet.
+        int[][] keptTargets = new int[vertexCount][];
+        int[][] keptWeights = new int[vertexCount][];
+
+        // The arcs from the visited community to every neighbouring community, and the communities with arcs.
+        int[] weights = new int[vertexCount];
+        int[] touched = new int[vertexCount];
+        boolean[] isVisited = new boolean[vertexCount];
+
+        Arrays.fill(mergedInto, -1);
+        Arrays.fill(firstChildren, -1);
+        Arrays.fill(nextSiblings, -1);
+
+        for (int position = 0; position < vertexCount; ++position)
+        {
+            parents[position] = position;
+            degrees[position] = getDegree(position);
+        }
+
+        for (int community : sortByDegree(false))
+        {
+            int touchedCount = 0;
+
+            // Gathers the arcs of the vertex and of the communities merged into it.
+            for (int index = offsets[community]; index < offsets[community + 1]; ++index)
+            {
+                int target = find(parents, neighbours[index]);
+
+                if (target != community)
+                {
+                    if (weights[target] == 0)
+                    {
+                        touched[touchedCount++] = target;
+                    }
+
+                    ++weights[target];
+                }
+            }
+
+            for (int child = firstChildren[community]; child >= 0; child = nextSiblings[child])
+            {
+                int[] targets = keptTargets[child];
+
+                if (targets == null)
+                {
+                    continue;
+                }
+
+                for (int index = 0; index < targets.length; ++index)
+                {
+                    int target = find(parents, targets[index]);
+
+                    if (target != community)
+                    {
+                        if (weights[target] == 0)
+                        {
+                            touched[touchedCount++] = target;
+                        }
+
+                        weights[target] += keptWeights[child][index];
+                    }
+                }
+
+                keptTargets[child] = null;
+                keptWeights[child] = null;
+            }
+
+            // Finds the neighbouring community with the largest gain.
+            int best = -1;
+            double bestGain = 0;
+
+            for (int index = 0; index < touchedCount; ++index)
+            {
+                int target = touched[index];
+                double gain = weights[target] - degrees[community] * (double)degrees[target] / totalDegree;
+
+                if (gain > bestGain)
+                {
+                    best = target;
+                    bestGain = gain;
+                }
+            }
+
+            if (best >= 0)
+            {
+                parents[community] = best;
+                mergedInto[community] = best;
+                degrees[best] += degrees[community];
+
+                if (firstChildren[best] < 0)
+                {
+                    firstChildren[best] = community;
+                }
+                else
+                {
+                    nextSiblings[lastChildren[best]] = community;
+                }
+
+                lastChildren[best] = community;
+
+                // Keeps the arcs for when the community it was merged into is visited.
+                if (!isVisited[best])
+                {
+                    keptTargets[community] = new int[touchedCount];
+                    keptWeights[community] = new int[touchedCount];
+
+                    for (int index = 0; index < touchedCount; ++index)
+                    {
+                        keptTargets[community][index] = touched[index];
+                        keptWeights[community][index] = weights[touched[index]];
+                    }
+                }
+            }
+
+            for (int index = 0; index < touchedCount; ++index)
+            {
+                weights[touched[index]] = 0;
+            }
+
+            isVisited[community] = true;
+        }
+
+        // Numbers the vertices of every top community in depth-first order of the merges.
+        int[] order = new int[vertexCount];
+        int orderedCount = 0;
+
+        for (int root = 0; root < vertexCount; ++root)
+        {
+            if (mergedInto[root] >= 0)
+            {
+                continue;
+            }
+
+            int position = root;
+
+            while (true)
+            {
+                order[orderedCount++] = position;
+
+                if (firstChildren[position] >= 0)
+                {
+                    position = firstChildren[position];
+
+                    continue;
+                }
+
+                // Climbs to the first ancestor with a next sibling.
+                while (position != root && nextSiblings[position] < 0)
+                {
+                    position = mergedInto[position];
+                }
+
+                if (position == root)
+                {
+                    break;
+                }
+
+                position = nextSiblings[position];
+            }
+        }
+
+        return order;
+    }
+
+    /**
+     * Finds the community of a vertex, halving the path to it.
+     *
+     * @param parents The parent of every vertex in the union-find forest.
+     * @param position The position of the vertex.
+     *
+     * @return The vertex that represents the community.
+     */
+    private static int find(int[] parents, int position)
+    {
+        while (parents[position] != position)
+        {
+            parents[position] = parents[parents[position]];
+            position = parents[position];
+        }
+
+        return position;
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * A vertex-centric program that PregelEngine runs in bulk-synchronous supersteps.
+ * In every superstep, compute is called on every vertex that is active or was sent messages in the previous superstep.
+ * It reads the messages, updates the value of the vertex and sends messages that arrive in the next superstep.
+ * Every vertex starts active. A vertex that votes to halt is not computed again until it is sent a message.
+ * The run ends when every vertex has halted and no messages were sent.
+ *
+ * The state of a vertex is its value. compute may only change the value of the vertex it was called on,
+ * and may only learn about other vertices through messages, since the other vertices may be computed at the same time.
+ *
+ * Every worker of the engine runs its own copy of the program, made with clone. Override clone to give
+ * every copy its own mutable fields.
+ *
+ * @author Andrei Muntean
+ */
+public abstract class VertexProgram implements Cloneable
+{
+    // The worker that runs this copy of the program, or null if the copy does not run.
+    private PregelEngine.Worker worker;
+
+    /**
+     * Computes a vertex in the current superstep.
+     *
+     * @param vertex The vertex.
+     * @param messages The messages sent to the vertex in the previous superstep, in no particular order.
+     * The array is reused after the call returns.
+     * @param messageCount The number of messages, which are the first elements of the array.
+     */
+    public abstract void compute(Vertex vertex, int[] messages, int messageCount);
+
+    /**
+     * Determines whether the messages sent to a vertex can be combined into one with combine.
+     *
+     * @return True if the program combines messages. False by default.
+     */
+    public boolean hasCombiner()
+    {
+        return false;
+    }
+
+    /**
+     * Combines two messages sent to the same vertex into one, for instance by taking the smaller one.
+     * Must be commutative and associative. Called only if hasCombiner returns true.
+     *
+     * @param first A message.
+     * @param second Another message.
+     *
+     * @return The combined message.
+     *
+     * @exception UnsupportedOperationException The program does not combine messages.
+     */
+    public int combine(int first, int second) throws UnsupportedOperationException
+    {
+        throw new UnsupportedOperationException("The program does not combine messages.");
+    }
+
+    /**
+     * Gets the number of the current superstep. The first superstep is 0.
+     *
+     * @return The superstep.
+     */
+    protected final int getSuperstep()
+    {
+        return worker.getSuperstep();
+    }
+
+    /**
+     * Gets the number of vertices of the graph.
+     *
+     * @return The number of vertices.
+     */
+    protected final int countVertices()
+    {
+        return worker.getGraph().countVertices();
+    }
+
+    /**
+     * Gets the number of arcs that originate from the vertex being computed.
+     * Undirected edges lead both ways.
+     *
+     * @return The number of arcs.
+     */
+    protected final int getOutDegree()
+    {
+        return worker.getGraph().getDegree(worker.getPosition());
+    }
+
+    /**
+     * Gets the id of the vertex an arc of the vertex being computed leads to.
+     *
+     * @param index The index of the arc, from 0 to getOutDegree() - 1.
+     *
+     * @return The id of the target.
+     */
+    protected final int getTargetId(int index)
+    {
+        FrozenGraph graph = worker.getGraph();
+
+        return graph.getVertexId(graph.getNeighbour(worker.getPosition(), index));
+    }
+
+    /**
+     * Gets the weight of an arc of the vertex being computed.
+     *
+     * @param index The index of the arc, from 0 to getOutDegree() - 1.
+     *
+     * @return The weight of the arc, which is 1 unless its edge is weighted.
+     */
+    protected final double getWeight(int index)
+    {
+        FrozenGraph graph = worker.getGraph();
+
+        return graph.getWeight(graph.getFirstArc(worker.getPosition()) + index);
+    }
+
+    /**
+     * Sends a message to the vertex with the specified id. It arrives in the next superstep.
+     *
+     * @param id The id of the target.
+     * @param message The message.
+     *
+     * @exception IllegalArgumentException There is no vertex with the specified id.
+     */
+    protected final void sendMessage(int id, int message) throws IllegalArgumentException
+    {
+        int position = worker.getGraph().getPosition(id);
+
+        if (position < 0)
+        {
+            throw new IllegalArgumentException("There is no vertex with id " + id + ".");
+        }
+
+        worker.send(position, message);
+    }
+
+    /**
+     * Sends a message along every arc of the vertex being computed. It arrives in the next superstep.
+     *
+     * @param message The message.
+     */
+    protected final void sendMessageToNeighbours(int message)
+    {
+        FrozenGraph graph = worker.getGraph();
+        int position = worker.getPosition();
+
+        for (int arc = graph.getFirstArc(position), endArc = graph.getEndArc(position); arc < endArc; ++arc)
+        {
+            worker.send(graph.getTarget(arc), message);
+        }
+    }
+
+    /**
+     * Halts the vertex being computed. It is computed again only if it is sent a message.
+     */
+    protected final void voteToHalt()
+    {
+        worker.halt();
+    }
+
+    /**
+     * Copies the program for a worker. The copy shares the fields of the program.
+     *
+     * @return The copy.
+     */
+    @Override
+    protected VertexProgram clone()
+    {
+        try
+        {
+            return (VertexProgram)super.clone();
+        }
+        catch (CloneNotSupportedException exception)
+        {
+            throw new AssertionError(exception);
+        }
+    }
+
+    /**
+     * Binds a copy of the program to the worker that runs it.
+     *
+     * @param worker The worker.
+     */
+    void setWorker(PregelEngine.Worker worker)
+    {
+        this.worker = worker;
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Represents a graph edge that is directed and has a weight.
+ *
+ * @author Andrei Muntean
+ */
+public class WeightedDirectedEdge extends DirectedEdge
+{
+    // The weight of the edge.
+    private double weight;
+
+    /**
+     * Constructs an edge from two vertices and a weight.
+     *
+     * @param origin The origin vertex.
+     * @param destination The destination vertex.
+     * @param weight The weight of the edge.
+     *
+     * @exception IllegalArgumentException The weight is infinite or NaN, which graph files cannot hold.
+     */
+    public WeightedDirectedEdge(Vertex origin, Vertex destination, double weight) throws IllegalArgumentException
+    {
+        super(origin, destination);
+
+        if (Double.isNaN(weight) || Double.isInfinite(weight))
+        {
+            throw new IllegalArgumentException("The weight must be finite.");
+        }
+
+        this.weight = weight;
+    }
+
+    /**
+     * Gets the weight of the edge.
+     *
+     * @return The weight of the edge.
+     */
+    @Override
+    public double getWeight()
+    {
+        return weight;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "(" + getOrigin() + ", " + getDestination() + ", " + weight + ")";
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Represents a graph edge that is undirected and has a weight.
+ *
+ * @author Andrei Muntean
+ */
+public class WeightedUndirectedEdge extends UndirectedEdge
+{
+    // The weight of the edge.
+    private double weight;
+
+    /**
+     * Constructs an edge from two vertices and a weight.
+     *
+     * @param vertexA Vertex A. One of the two vertices that form the edge.
+     * @param vertexB Vertex B. One of the two vertices that form the edge.
+     * @param weight The weight of the edge.
+     *
+     * @exception IllegalArgumentException The weight is infinite or NaN, which graph files cannot hold.
+     */
+    public WeightedUndirectedEdge(Vertex vertexA, Vertex vertexB, double weight) throws IllegalArgumentException
+    {
+        super(vertexA, vertexB);
+
+        if (Double.isNaN(weight) || Double.isInfinite(weight))
+        {
+            throw new IllegalArgumentException("The weight must be finite.");
+        }
+
+        this.weight = weight;
+    }
+
+    /**
+     * Gets the weight of the edge.
+     *
+     * @return The weight of the edge.
+     */
+    @Override
+    public double getWeight()
+    {
+        return weight;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[" + getVertexA() + ", " + getVertexB() + ", " + weight + "]";
+    }
+}
@@ -0,0 +1,286 @@
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests that ConcurrentGraph stores every edge and vertex once when many threads add and remove them at once,
+ * and that its snapshots are independent copies.
+ *
+ * Usage: java ConcurrentGraphTest
+ *
+ * @author Andrei Muntean
+ */
+public class ConcurrentGraphTest
+{
+    // The number of threads that write at once.
+    private static final int THREAD_COUNT = 8;
+
+    // The number of vertices the edges are drawn from. Small, so that threads often add the same edge.
+    private static final int VERTEX_COUNT = 200;
+
+    // The number of edges every thread tries to add.
+    private static final int EDGES_PER_THREAD = 20000;
+
+    /**
+     * Runs the tests.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        testConcurrentAddsStoreEdgesOnce();
+        testConcurrentRemovesDetachEdges();
+        testSnapshotIsIndependent();
+        System.out.println("ConcurrentGraphTest passed.");
+    }
+
+    /**
+     * Checks that threads adding overlapping edges store each of them once, and that add reports one winner.
+     */
+    private static void testConcurrentAddsStoreEdgesOnce() throws Exception
+    {
+        final ConcurrentGraph graph = new ConcurrentGraph(THREAD_COUNT);
+        final int[] addedCounts = new int[THREAD_COUNT];
+
+        runConcurrently(new Task()
+        {
+            @Override
+            public void run(int thread)
+            {
+                // Every thread draws from the same sequence, so they race to add the same edges.
+                Random random = new Random(1);
+
+                for (int index = 0; index < EDGES_PER_THREAD; ++index)
+                {
+                    if (graph.add(createEdge(random)))
+                    {
+                        ++addedCounts[thread];
+                    }
+                }
+            }
+        });
+
+        HashSet<Long> directedKeys = new HashSet<Long>();
+        HashSet<Long> undirectedKeys = new HashSet<Long>();
+        Random random = new Random(1);
+
+        for (int index = 0; index < EDGES_PER_THREAD; ++index)
+        {
+            Edge edge = createEdge(random);
+
+            (edge.isDirected() ? directedKeys : undirectedKeys).add(edge.getKey());
+        }
+
+        int addedCount = 0;
+
+        for (int count : addedCounts)
+        {
+            addedCount += count;
+        }
+
+        int expectedCount = directedKeys.size() + undirectedKeys.size();
+
+        check(addedCount == expectedCount, "add returned true " + addedCount + " times for " + expectedCount + " edges.");
+        check(graph.countEdges() == expectedCount, "The graph stores " + graph.countEdges() + " edges.");
+        checkAttachedOnce(graph);
+    }
+
+    /**
+     * Checks that threads removing vertices while others add edges leave no edge attached to a removed vertex.
+     */
+    private static void testConcurrentRemovesDetachEdges() throws Exception
+    {
+        final ConcurrentGraph graph = new ConcurrentGraph(THREAD_COUNT);
+
+        runConcurrently(new Task()
+        {
+            @Override
+            public void run(int thread)
+            {
+                Random random = new Random(thread);
+
+                for (int index = 0; index < EDGES_PER_THREAD; ++index)
+                {
+                    if (thread % 2 == 0)
+                    {
+                        graph.add(createEdge(random));
+                    }
+                    else if (index % 8 == 0)
+                    {
+                        graph.removeVertex(new Vertex(random.nextInt(VERTEX_COUNT)));
+                    }
+                    else
+                    {
+                        graph.removeEdge(createEdge(random));
+                    }
+                }
+            }
+        });
+
+        checkAttachedOnce(graph);
+    }
+
+    /**
+     * Checks that a snapshot does not share vertices or edges with the graph it was taken from.
+     */
+    private static void testSnapshotIsIndependent()
+    {
+        ConcurrentGraph graph = new ConcurrentGraph();
+
+        graph.add(new Vertex(1, 10));
+        graph.add(new WeightedDirectedEdge(new Vertex(1), new Vertex(2), 2.5));
+        graph.add(new UndirectedEdge(new Vertex(2), new Vertex(3)));
+
+        Graph snapshot = graph.snapshot();
+
+        graph.getVertexWithId(1).setValue(20);
+        snapshot.getVertexWithId(2).setValue(30);
+
+        check(snapshot.getVertexWithId(1).getValue() == 10, "The snapshot shares its vertices with the graph.");
+        check(graph.getVertexWithId(2).getValue() == 0, "The graph shares its vertices with the snapshot.");
+
+        for (Edge edge : graph.getPathsFrom(new Vertex(1)))
+        {
+            check(edge.getFirst() == graph.getVertexWithId(1), "The snapshot changed the vertices of an edge.");
+        }
+
+        Edge[] paths = snapshot.getPathsFrom(snapshot.getVertexWithId(1));
+
+        check(paths.length == 1 && paths[0] instanceof WeightedDirectedEdge && paths[0].getWeight() == 2.5,
+            "The snapshot lost the kind of an edge.");
+        check(snapshot.countVertices() == 3 && snapshot.countEdges() == 2, "The snapshot is incomplete.");
+    }
+
+    /**
+     * Checks that the snapshot of a graph has every edge once, between stored vertices, and attached once
+     * to each of its vertices.
+     *
+     * @param graph The graph.
+     */
+    private static void checkAttachedOnce(ConcurrentGraph graph)
+    {
+        Graph snapshot = graph.snapshot();
+        int pathCount = 0;
+
+        check(snapshot.countEdges() == graph.countEdges(), "The snapshot has a different number of edges.");
+        check(snapshot.countVertices() == graph.countVertices(), "The snapshot has a different number of vertices.");
+
+        for (int id = 0; id < VERTEX_COUNT; ++id)
+        {
+            Vertex vertex = graph.getVertexWithId(id);
+
+            if (vertex == null)
+            {
+                check(graph.getPathsFrom(new Vertex(id)).length == 0, "Vertex " + id + " was removed but has paths.");
+                continue;
+            }
+
+            HashSet<Edge> paths = new HashSet<Edge>();
+
+            for (Edge edge : graph.getPathsFrom(vertex))
+            {
+                check(paths.add(edge), "An edge is attached twice to vertex " + id + ".");
+                check(graph.contains(edge), "An edge that is not stored is attached to vertex " + id + ".");
+                check(graph.getVertexWithId(edge.getFirstId()) != null && graph.getVertexWithId(edge.getSecondId()) != null,
+                    "An edge is attached to a vertex that is not stored.");
+                ++pathCount;
+            }
+        }
+
+        // Every directed edge and loop is a path once, and every other undirected edge twice.
+        int expectedPathCount = 0;
+
+        for (int index = 0; index < snapshot.countEdges(); ++index)
+        {
+            Edge edge = snapshot.getEdge(index);
+
+            expectedPathCount += edge.isDirected() || edge.getFirstId() == edge.getSecondId() ? 1 : 2;
+        }
+
+        check(pathCount == expectedPathCount, "There are " + pathCount + " paths for " + expectedPathCount + " arcs.");
+    }
+
+    /**
+     * Creates a random edge between the first VERTEX_COUNT ids.
+     *
+     * @param random The source of randomness.
+     *
+     * @return The edge.
+     */
+    private static Edge createEdge(Random random)
+    {
+        Vertex first = new Vertex(random.nextInt(VERTEX_COUNT));
+        Vertex second = new Vertex(random.nextInt(VERTEX_COUNT));
+
+        return random.nextBoolean() ? new DirectedEdge(first, second) : new UndirectedEdge(first, second);
+    }
+
+    /**
+     * Work done by one of several threads that start at once.
+     */
+    private interface Task
+    {
+        void run(int thread);
+    }
+
+    /**
+     * Runs a task on THREAD_COUNT threads that start at the same time and waits for them to finish.
+     *
+     * @param task The task.
+     */
+    private static void runConcurrently(final Task task) throws Exception
+    {
+        final CountDownLatch start = new CountDownLatch(1);
+        final Throwable[] failures = new Throwable[THREAD_COUNT];
+        Thread[] threads = new Thread[THREAD_COUNT];
+
+        for (int index = 0; index < THREAD_COUNT; ++index)
+        {
+            final int thread = index;
+
+            threads[index] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        task.run(thread);
+                    }
+                    catch (Throwable throwable)
+                    {
+                        failures[thread] = throwable;
+                    }
+                }
+            });
+            threads[index].start();
+        }
+
+        start.countDown();
+
+        for (int index = 0; index < THREAD_COUNT; ++index)
+        {
+            threads[index].join();
+
+            if (failures[index] != null)
+            {
+                throw new AssertionError("Thread " + index + " failed.", failures[index]);
+            }
+        }
+    }
+
+    /**
+     * Fails the test if a condition does not hold.
+     *
+     * @param condition The condition.
+     * @param message The message of the failure.
+     */
+    private static void check(boolean condition, String message)
+    {
+        if (!condition)
+        {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Tests that binary graph files restore graphs exactly: a graph read from a text file, written to a binary file
+ * and read back prints the same text. Also checks that a file whose edge kinds do not match its edges is rejected.
+ *
+ * Usage: java MappedGraphTest
+ *
+ * @author Andrei Muntean
+ */
+public class MappedGraphTest
+{
+    /**
+     * Runs the tests.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        File textFile = File.createTempFile("graph", ".txt");
+        File binaryFile = File.createTempFile("graph", ".bin");
+
+        try
+        {
+            testRoundTrip(textFile, binaryFile, "V = {}\nE = {}");
+            testRoundTrip(textFile, binaryFile, "V = {1, 2, 3}\nE = {[1, 2], (2, 3), [3, 1, 2.5]}");
+            testRoundTrip(textFile, binaryFile, "V = {7}\nE = {(1, 2, 1), [2, 3, 1.0], (3, 3), [4, 4, 0.5], (2, 1)}");
+
+            Random random = new Random(1);
+
+            for (int round = 0; round < 20; ++round)
+            {
+                testRoundTrip(textFile, binaryFile, createRandomGraph(random).toString());
+            }
+
+            testRejectsWrongEdgeKinds(binaryFile);
+        }
+        finally
+        {
+            textFile.delete();
+            binaryFile.delete();
+        }
+
+        System.out.println("MappedGraphTest passed.");
+    }
+
+    /**
+     * Checks that text, read and written through a binary file, comes back unchanged.
+     *
+     * @param textFile A file for the text.
+     * @param binaryFile A file for the binary graph.
+     * @param text The text of a graph, as Graph.toString prints it.
+     */
+    private static void testRoundTrip(File textFile, File binaryFile, String text) throws Exception
+    {
+        Files.write(textFile.toPath(), text.getBytes("UTF-8"));
+
+        Graph graph = new Graph(textFile.getPath());
+        Graph copy = new Graph();
+
+        graph.writeToBinaryFile(binaryFile.getPath());
+        copy.readFromBinaryFile(binaryFile.getPath());
+
+        check(copy.toString().equals(graph.toString()), "The binary file changed\n" + graph + "\ninto\n" + copy);
+
+        for (int index = 0; index < graph.countEdges(); ++index)
+        {
+            check(copy.getEdge(index).getClass() == graph.getEdge(index).getClass(), "Edge " + index + " changed its class.");
+        }
+    }
+
+    /**
+     * Checks that a file that names the wrong edge as directed is rejected when it is opened.
+     *
+     * @param binaryFile A file for the binary graph.
+     */
+    private static void testRejectsWrongEdgeKinds(File binaryFile) throws Exception
+    {
+        Graph graph = new Graph();
+
+        graph.add(new DirectedEdge(new Vertex(1), new Vertex(2)));
+        graph.add(new UndirectedEdge(new Vertex(2), new Vertex(3)));
+        graph.writeToBinaryFile(binaryFile.getPath());
+
+        // Without weights, the edge kinds are the last integer of the file. Marks the undirected edge as directed.
+        RandomAccessFile file = new RandomAccessFile(binaryFile, "rw");
+
+        try
+        {
+            file.seek(file.length() - 4);
+
+            int kinds = file.readInt();
+
+            file.seek(file.length() - 4);
+            file.writeInt(kinds | 1 << 2);
+        }
+        finally
+        {
+            file.close();
+        }
+
+        try
+        {
+            new MappedGraph(binaryFile.getPath());
+            check(false, "The wrong edge kinds were accepted.");
+        }
+        catch (GraphFormatException exception)
+        {
+            // Expected.
+        }
+    }
+
+    /**
+     * Creates a graph with edges of every kind, some of them removed.
+     *
+     * @param random The source of randomness.
+     *
+     * @return The graph.
+     */
+    private static Graph createRandomGraph(Random random)
+    {
+        Graph graph = new Graph();
+        int vertexCount = 1 + random.nextInt(50);
+
+        for (int index = random.nextInt(300); index > 0; --index)
+        {
+            Vertex first = new Vertex(random.nextInt(vertexCount));
+            Vertex second = new Vertex(random.nextInt(vertexCount));
+            double weight = random.nextInt(3) == 0 ? 1 : random.nextInt(40) / 8.0;
+
+            switch (random.nextInt(5))
+            {
+                case 0:
+                    graph.add(new DirectedEdge(first, second));
+                    break;
+
+                case 1:
+                    graph.add(new UndirectedEdge(first, second));
+                    break;
+
+                case 2:
+                    graph.add(new WeightedDirectedEdge(first, second, weight));
+                    break;
+
+                case 3:
+                    graph.add(new WeightedUndirectedEdge(first, second, weight));
+                    break;
+
+                default:
+                    if (graph.countEdges() > 0)
+                    {
+                        graph.removeEdge(random.nextInt(graph.countEdges()));
+                    }
+            }
+        }
+
+        return graph;
+    }
+
+    /**
+     * Fails the test if a condition does not hold.
+     *
+     * @param condition The condition.
+     * @param message The message of the failure.
+     */
+    private static void check(boolean condition, String message)
+    {
+        if (!condition)
+        {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,428 @@
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Tests that MutationLog recovers the committed state of its graph after a crash. A crash is simulated by
+ * abandoning a log without closing it, so whatever it has not committed is lost, and opening the directory again.
+ *
+ * Usage: java MutationLogTest
+ *
+ * @author Andrei Muntean
+ */
+public class MutationLogTest
+{
+    // The number of vertices the random changes are drawn from.
+    private static final int VERTEX_COUNT = 60;
+
+    /**
+     * Runs the tests.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        File directory = Files.createTempDirectory("wal").toFile();
+
+        try
+        {
+            testReplaysCommittedChanges(directory);
+            testDiscardsUncommittedChanges(directory);
+            testDiscardsTornFrame(directory);
+            testRecoversReadGraph(directory);
+            testRecoversChangesAfterRead(directory);
+            testRecoversPreviousGraphAfterFailedRead(directory);
+            testRecoversValues(directory);
+        }
+        finally
+        {
+            clear(directory);
+            directory.delete();
+        }
+
+        System.out.println("MutationLogTest passed.");
+    }
+
+    /**
+     * Checks that random changes, committed across checkpoints, are recovered after a crash.
+     */
+    private static void testReplaysCommittedChanges(File directory) throws Exception
+    {
+        for (int round = 0; round < 20; ++round)
+        {
+            Random random = new Random(round);
+
+            clear(directory);
+
+            MutationLog log = new MutationLog(directory.getPath(), 1 + random.nextInt(20), random.nextInt(3));
+
+            change(log.getGraph(), random, 300);
+
+            if (round % 3 == 0)
+            {
+                log.checkpoint();
+            }
+
+            change(log.getGraph(), random, 300);
+            log.commit();
+            checkRecovered(directory, describe(log.getGraph()), "round " + round);
+        }
+    }
+
+    /**
+     * Checks that changes that were never committed are not recovered.
+     */
+    private static void testDiscardsUncommittedChanges(File directory) throws Exception
+    {
+        clear(directory);
+
+        MutationLog log = new MutationLog(directory.getPath(), 1000, 1);
+
+        log.getGraph().add(new UndirectedEdge(new Vertex(1), new Vertex(2)));
+        log.commit();
+
+        String committed = describe(log.getGraph());
+
+        log.getGraph().add(new UndirectedEdge(new Vertex(2), new Vertex(3)));
+        checkRecovered(directory, committed, "uncommitted changes");
+    }
+
+    /**
+     * Checks that a frame that was cut short by a crash is discarded and the frames before it are kept.
+     */
+    private static void testDiscardsTornFrame(File directory) throws Exception
+    {
+        clear(directory);
+
+        MutationLog log = new MutationLog(directory.getPath(), 1000, 1);
+
+        log.getGraph().add(new DirectedEdge(new Vertex(1), new Vertex(2)));
+        log.commit();
+
+        String committed = describe(log.getGraph());
+        long committedSize = log.getLogSize();
+
+        log.getGraph().add(new DirectedEdge(new Vertex(2), new Vertex(3)));
+        log.commit();
+
+        // Cuts the last frame in half.
+        RandomAccessFile file = new RandomAccessFile(new File(directory, "log-0.wal"), "rw");
+
+        try
+        {
+            file.setLength((committedSize + file.length()) / 2);
+        }
+        finally
+        {
+            file.close();
+        }
+
+        checkRecovered(directory, committed, "torn frame");
+    }
+
+    /**
+     * Checks that a graph read from a file replaces the logged graph, even if the process crashes before
+     * the next commit.
+     */
+    private static void testRecoversReadGraph(File directory) throws Exception
+    {
+        clear(directory);
+
+        Random random = new Random(1);
+        Graph other = new Graph();
+        File file = File.createTempFile("graph", ".txt");
+
+        change(other, random, 200);
+        other.writeToFile(file.getPath());
+
+        for (boolean isBinary : new boolean[] { false, true })
+        {
+            MutationLog log = new MutationLog(directory.getPath(), 8, 1);
+
+            change(log.getGraph(), random, 200);
+            log.commit();
+
+            if (isBinary)
+            {
+                other.writeToBinaryFile(file.getPath());
+                log.getGraph().readFromBinaryFile(file.getPath());
+            }
+            else
+            {
+                log.getGraph().readFromFile(file.getPath());
+            }
+
+            // Text files do not hold values, so the graph is compared with the file rather than with other.
+            checkRecovered(directory, describe(log.getGraph()), isBinary ? "binary read" : "text read");
+        }
+
+        file.delete();
+    }
+
+    /**
+     * Checks that changes made after a graph was read from a file are logged on top of it.
+     */
+    private static void testRecoversChangesAfterRead(File directory) throws Exception
+    {
+        clear(directory);
+
+        Random random = new Random(2);
+        Graph other = new Graph();
+        File file = File.createTempFile("graph", ".txt");
+
+        change(other, random, 200);
+        other.writeToFile(file.getPath());
+
+        MutationLog log = new MutationLog(directory.getPath(), 8, 1);
+
+        change(log.getGraph(), random, 200);
+        log.getGraph().readFromFile(file.getPath());
+        change(log.getGraph(), random, 200);
+        log.commit();
+        checkRecovered(directory, describe(log.getGraph()), "changes after a read");
+        file.delete();
+    }
+
+    /**
+     * Checks that a read that fails leaves the previous graph in the log until the next commit, which records
+     * the graph as it was left by the read.
+     */
+    private static void testRecoversPreviousGraphAfterFailedRead(File directory) throws Exception
+    {
+        clear(directory);
+
+        File file = File.createTempFile("graph", ".txt");
+
+        Files.write(file.toPath(), "V = {1, 2}\nE = {[1, 2], [2, \n".getBytes("UTF-8"));
+
+        MutationLog log = new MutationLog(directory.getPath(), 8, 1);
+
+        log.getGraph().add(new DirectedEdge(new Vertex(5), new Vertex(6)));
+        log.commit();
+
+        String committed = describe(log.getGraph());
+
+        try
+        {
+            log.getGraph().readFromFile(file.getPath());
+            check(false, "The malformed file was read.");
+        }
+        catch (GraphFormatException exception)
+        {
+            // Expected.
+        }
+
+        checkRecovered(directory, committed, "failed read");
+
+        log = new MutationLog(directory.getPath(), 8, 1);
+
+        try
+        {
+            log.getGraph().readFromFile(file.getPath());
+        }
+        catch (GraphFormatException exception)
+        {
+            // Expected.
+        }
+
+        log.getGraph().add(new DirectedEdge(new Vertex(7), new Vertex(8)));
+        log.commit();
+        checkRecovered(directory, describe(log.getGraph()), "commit after a failed read");
+        file.delete();
+    }
+
+    /**
+     * Checks that values set directly on the vertices, by PageRank and by a Pregel program are recovered,
+     * and that setting the value of a removed vertex is not logged.
+     */
+    private static void testRecoversValues(File directory) throws Exception
+    {
+        clear(directory);
+
+        MutationLog log = new MutationLog(directory.getPath(), 8, 1);
+        Graph graph = log.getGraph();
+        Random random = new Random(3);
+
+        change(graph, random, 300);
+
+        for (int index = 0; index < graph.countVertices(); index += 2)
+        {
+            graph.getVertex(index).setValue(random.nextInt(1000));
+        }
+
+        log.commit();
+        checkRecovered(directory, describe(graph), "direct values");
+
+        log = new MutationLog(directory.getPath(), 8, 1);
+        graph = log.getGraph();
+
+        PageRank pageRank = new PageRank(graph.freeze());
+
+        pageRank.run();
+        pageRank.writeTo(graph, 1000000);
+        log.commit();
+        checkRecovered(directory, describe(graph), "PageRank values");
+
+        log = new MutationLog(directory.getPath(), 8, 1);
+        graph = log.getGraph();
+        new PregelEngine(graph, new VertexProgram()
+        {
+            @Override
+            public void compute(Vertex vertex, int[] messages, int messageCount)
+            {
+                vertex.setValue(vertex.getId() * 3 + getSuperstep());
+
+                if (getSuperstep() == 2)
+                {
+                    voteToHalt();
+                }
+            }
+        }).run();
+        log.commit();
+        checkRecovered(directory, describe(graph), "Pregel values");
+
+        log = new MutationLog(directory.getPath(), 8, 1);
+        graph = log.getGraph();
+
+        Vertex removed = graph.getVertex(0);
+        String committed;
+
+        // A vertex with the same id is stored again, so that a logged value would be replayed on it.
+        graph.removeVertex(removed);
+        graph.add(new Vertex(removed.getId(), 5));
+        log.commit();
+        committed = describe(graph);
+        removed.setValue(-1);
+        log.commit();
+        checkRecovered(directory, committed, "value of a removed vertex");
+    }
+
+    /**
+     * Opens the directory again, as after a crash, and checks that the recovered graph is as expected.
+     *
+     * @param directory The directory of the log.
+     * @param expected The description of the expected graph.
+     * @param name The name of the case.
+     */
+    private static void checkRecovered(File directory, String expected, String name) throws Exception
+    {
+        MutationLog log = new MutationLog(directory.getPath());
+
+        try
+        {
+            String recovered = describe(log.getGraph());
+
+            check(recovered.equals(expected), "Recovered the wrong graph after " + name + ":\n" + recovered + "\ninstead of\n" + expected);
+        }
+        finally
+        {
+            log.close();
+        }
+    }
+
+    /**
+     * Makes random changes to a graph.
+     *
+     * @param graph The graph.
+     * @param random The source of randomness.
+     * @param changeCount The number of changes.
+     */
+    private static void change(Graph graph, Random random, int changeCount)
+    {
+        for (int index = 0; index < changeCount; ++index)
+        {
+            int operation = random.nextInt(10);
+            Vertex first = new Vertex(random.nextInt(VERTEX_COUNT));
+            Vertex second = new Vertex(random.nextInt(VERTEX_COUNT));
+            boolean isDirected = random.nextBoolean();
+
+            if (operation < 3)
+            {
+                graph.add(isDirected ? new DirectedEdge(first, second) : new UndirectedEdge(first, second));
+            }
+            else if (operation < 5)
+            {
+                double weight = random.nextInt(100) / 4.0;
+
+                graph.add(isDirected ? new WeightedDirectedEdge(first, second, weight) : new WeightedUndirectedEdge(first, second, weight));
+            }
+            else if (operation == 5)
+            {
+                graph.add(new Vertex(first.getId(), random.nextInt(100)));
+            }
+            else if (operation == 6 && graph.countEdges() > 0)
+            {
+                graph.removeEdge(random.nextInt(graph.countEdges()));
+            }
+            else if (operation == 7 && graph.countVertices() > 0 && random.nextInt(4) == 0)
+            {
+                graph.removeVertex(random.nextInt(graph.countVertices()));
+            }
+        }
+    }
+
+    /**
+     * Describes the vertices, values and edges of a graph regardless of their order.
+     *
+     * @param graph The graph.
+     *
+     * @return The description.
+     */
+    private static String describe(Graph graph)
+    {
+        TreeSet<String> elements = new TreeSet<String>();
+
+        for (int index = 0; index < graph.countVertices(); ++index)
+        {
+            Vertex vertex = graph.getVertex(index);
+
+            elements.add("vertex " + vertex.getId() + " = " + vertex.getValue());
+        }
+
+        for (int index = 0; index < graph.countEdges(); ++index)
+        {
+            Edge edge = graph.getEdge(index);
+            int first = edge.getFirstId();
+            int second = edge.getSecondId();
+
+            if (!edge.isDirected() && first > second)
+            {
+                first = edge.getSecondId();
+                second = edge.getFirstId();
+            }
+
+            elements.add((edge.isDirected() ? "directed " : "undirected ") + first + " " + second + " " + edge.getWeight());
+        }
+
+        return elements.toString();
+    }
+
+    /**
+     * Deletes the files of a directory.
+     *
+     * @param directory The directory.
+     */
+    private static void clear(File directory)
+    {
+        for (File file : directory.listFiles())
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Fails the test if a condition does not hold.
+     *
+     * @param condition The condition.
+     * @param message The message of the failure.
+     */
+    private static void check(boolean condition, String message)
+    {
+        if (!condition)
+        {
+            throw new AssertionError(message);
+        }
+    }
+}
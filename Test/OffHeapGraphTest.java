@@ -0,0 +1,351 @@
+import java.util.Random;
+
+/**
+ * Tests that OffHeapGraph stores every edge and vertex once, returns paths in the order they were added,
+ * writes values through its views, freezes into the same snapshot as Graph and cannot be used once closed.
+ *
+ * Usage: java OffHeapGraphTest
+ *
+ * @author Andrei Muntean
+ */
+public class OffHeapGraphTest
+{
+    /**
+     * Runs the tests.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args)
+    {
+        testAddStoresOnce();
+        testPathsKeepOrder();
+        testViewsWriteThrough();
+
+        Random random = new Random(1);
+
+        for (int round = 0; round < 20; ++round)
+        {
+            testFreezeMatchesGraph(random, round % 2 == 0);
+        }
+
+        testUseAfterClose();
+        System.out.println("OffHeapGraphTest passed.");
+    }
+
+    /**
+     * Checks that duplicate edges and vertices are not stored, and that an undirected edge is the same
+     * in both directions while a directed one is not.
+     */
+    private static void testAddStoresOnce()
+    {
+        OffHeapGraph graph = new OffHeapGraph();
+
+        try
+        {
+            graph.add(new UndirectedEdge(new Vertex(1), new Vertex(2)));
+            graph.add(new UndirectedEdge(new Vertex(2), new Vertex(1)));
+            graph.add(new DirectedEdge(new Vertex(1), new Vertex(2)));
+            graph.add(new DirectedEdge(new Vertex(1), new Vertex(2)));
+            graph.add(new DirectedEdge(new Vertex(2), new Vertex(1)));
+            graph.add(new UndirectedEdge(new Vertex(3), new Vertex(3)));
+            graph.add(new UndirectedEdge(new Vertex(3), new Vertex(3)));
+            graph.add(new Vertex(1));
+            graph.add(new Vertex[] { new Vertex(4), new Vertex(4) });
+
+            check(graph.countEdges() == 4, "Expected 4 edges but found " + graph.countEdges() + ".");
+            check(graph.countVertices() == 4, "Expected 4 vertices but found " + graph.countVertices() + ".");
+            check(graph.getType() == GraphType.MIXED, "Expected a mixed graph but found " + graph.getType() + ".");
+            check(graph.getVertexWithId(5) == null, "Found a vertex that was not added.");
+
+            // Adding many edges grows the records and the hash tables.
+            for (int id = 0; id < 10000; ++id)
+            {
+                graph.add(new DirectedEdge(new Vertex(id), new Vertex(id + 1)));
+                graph.add(new DirectedEdge(new Vertex(id), new Vertex(id + 1)));
+            }
+
+            check(graph.countEdges() == 9999 + 4, "Duplicates were stored after the tables grew.");
+            check(graph.countVertices() == 10001, "Duplicate vertices were stored after the tables grew.");
+        }
+        finally
+        {
+            graph.close();
+        }
+    }
+
+    /**
+     * Checks that getPathsFrom returns the paths of a vertex in the order they were added,
+     * including undirected edges added through their other vertex.
+     */
+    private static void testPathsKeepOrder()
+    {
+        OffHeapGraph graph = new OffHeapGraph();
+
+        try
+        {
+            graph.add(new UndirectedEdge(new Vertex(1), new Vertex(2)));
+            graph.add(new DirectedEdge(new Vertex(3), new Vertex(1)));
+            graph.add(new WeightedDirectedEdge(new Vertex(1), new Vertex(3), 0.5));
+            graph.add(new UndirectedEdge(new Vertex(4), new Vertex(1)));
+            graph.add(new DirectedEdge(new Vertex(1), new Vertex(1)));
+
+            check(toString(graph.getPathsFrom(new Vertex(1))).equals("[1, 2] (1, 3, 0.5) [4, 1] (1, 1)"),
+                "Wrong paths from 1: " + toString(graph.getPathsFrom(new Vertex(1))));
+            check(toString(graph.getPathsFrom(new Vertex(2))).equals("[1, 2]"),
+                "Wrong paths from 2: " + toString(graph.getPathsFrom(new Vertex(2))));
+            check(toString(graph.getPathsFrom(new Vertex(3))).equals("(3, 1)"),
+                "Wrong paths from 3: " + toString(graph.getPathsFrom(new Vertex(3))));
+            check(graph.getPathsFrom(new Vertex(5)).length == 0, "Found paths from a vertex that was not added.");
+        }
+        finally
+        {
+            graph.close();
+        }
+    }
+
+    /**
+     * Checks that setting the value of a view changes the stored vertex, whichever view reads it.
+     */
+    private static void testViewsWriteThrough()
+    {
+        OffHeapGraph graph = new OffHeapGraph();
+
+        try
+        {
+            Vertex first = new Vertex(1);
+
+            first.setValue(7);
+            graph.add(new UndirectedEdge(first, new Vertex(2)));
+            check(graph.getVertexWithId(1).getValue() == 7, "The value of an added vertex was not stored.");
+
+            graph.getVertexWithId(1).setValue(5);
+            graph.getPathsFrom(new Vertex(1))[0].getSecond().setValue(9);
+
+            check(graph.getVertex(0).getValue() == 5, "A value set through a view was not stored.");
+            check(graph.getEdge(0).getFirst().getValue() == 5, "An edge view reads a stale value.");
+            check(graph.getVertexWithId(2).getValue() == 9, "A value set through an edge view was not stored.");
+            check(first.getValue() == 7, "The added vertex was changed.");
+
+            FrozenGraph snapshot = graph.freeze();
+
+            check(snapshot.getVertexValue(0) == 5 && snapshot.getVertexValue(1) == 9, "The snapshot has stale values.");
+        }
+        finally
+        {
+            graph.close();
+        }
+    }
+
+    /**
+     * Checks that freezing a graph gives the same snapshot as freezing a Graph with the same edges,
+     * and that the algorithms give the same results on both.
+     *
+     * @param random The source of the graph.
+     * @param isWeighted Whether some edges have weights other than 1.
+     */
+    private static void testFreezeMatchesGraph(Random random, boolean isWeighted)
+    {
+        int vertexCount = 1 + random.nextInt(100);
+        int edgeCount = random.nextInt(400);
+        Graph graph = new Graph();
+        OffHeapGraph offHeapGraph = new OffHeapGraph();
+
+        try
+        {
+            for (int index = 0; index < edgeCount; ++index)
+            {
+                Vertex first = new Vertex(random.nextInt(vertexCount));
+                Vertex second = new Vertex(random.nextInt(vertexCount));
+                double weight = isWeighted && random.nextBoolean() ? random.nextInt(10) / 4.0 : 1;
+                Edge edge;
+
+                if (random.nextBoolean())
+                {
+                    edge = weight == 1 ? new DirectedEdge(first, second) : new WeightedDirectedEdge(first, second, weight);
+                }
+                else
+                {
+                    edge = weight == 1 ? new UndirectedEdge(first, second) : new WeightedUndirectedEdge(first, second, weight);
+                }
+
+                graph.add(edge);
+                offHeapGraph.add(edge);
+            }
+
+            FrozenGraph expected = graph.freeze();
+            FrozenGraph actual = offHeapGraph.freeze();
+
+            check(actual.countVertices() == expected.countVertices(), "The snapshots have different vertex counts.");
+            check(actual.countEdges() == expected.countEdges(), "The snapshots have different edge counts.");
+            check(actual.countArcs() == expected.countArcs(), "The snapshots have different arc counts.");
+            check(actual.getType() == expected.getType(), "The snapshots have different types.");
+            check(actual.isWeighted() == expected.isWeighted(), "Only one snapshot is weighted.");
+
+            for (int position = 0; position < expected.countVertices(); ++position)
+            {
+                check(actual.getVertexId(position) == expected.getVertexId(position),
+                    "The snapshots have different vertices at " + position + ".");
+                check(actual.getFirstArc(position) == expected.getFirstArc(position)
+                    && actual.getEndArc(position) == expected.getEndArc(position),
+                    "The snapshots have different arcs from " + position + ".");
+            }
+
+            for (int arc = 0; arc < expected.countArcs(); ++arc)
+            {
+                check(actual.getTarget(arc) == expected.getTarget(arc)
+                    && actual.isDirected(arc) == expected.isDirected(arc)
+                    && actual.getWeight(arc) == expected.getWeight(arc),
+                    "The snapshots have different arcs at " + arc + ".");
+            }
+
+            checkSameResults(expected, actual);
+        }
+        finally
+        {
+            offHeapGraph.close();
+        }
+    }
+
+    /**
+     * Checks that the algorithms give the same results on two snapshots.
+     *
+     * @param expected A snapshot of a Graph.
+     * @param actual A snapshot of an OffHeapGraph.
+     */
+    private static void checkSameResults(FrozenGraph expected, FrozenGraph actual)
+    {
+        BreadthFirstSearch expectedSearch = new BreadthFirstSearch(expected);
+        BreadthFirstSearch actualSearch = new BreadthFirstSearch(actual);
+        ShortestPaths expectedPaths = new ShortestPaths(expected);
+        ShortestPaths actualPaths = new ShortestPaths(actual);
+
+        expectedSearch.run(0);
+        actualSearch.run(0);
+        expectedPaths.run(0);
+        actualPaths.run(0);
+
+        for (int position = 0; position < expected.countVertices(); ++position)
+        {
+            check(actualSearch.getDistance(position) == expectedSearch.getDistance(position),
+                "The searches found different distances to " + position + ".");
+            check(actualPaths.getDistance(position) == expectedPaths.getDistance(position),
+                "The shortest paths have different lengths to " + position + ".");
+        }
+
+        PageRank expectedRanking = new PageRank(expected);
+        PageRank actualRanking = new PageRank(actual);
+
+        expectedRanking.run();
+        actualRanking.run();
+
+        for (int position = 0; position < expected.countVertices(); ++position)
+        {
+            check(Math.abs(actualRanking.getRank(position) - expectedRanking.getRank(position)) < 1e-9,
+                "The ranks of " + position + " are different.");
+        }
+
+        ConnectedComponents expectedComponents = new ConnectedComponents(expected);
+        ConnectedComponents actualComponents = new ConnectedComponents(actual);
+
+        expectedComponents.run();
+        actualComponents.run();
+        check(actualComponents.countComponents() == expectedComponents.countComponents(),
+            "The snapshots have different numbers of components.");
+
+        TriangleCounting expectedTriangles = new TriangleCounting(expected);
+        TriangleCounting actualTriangles = new TriangleCounting(actual);
+
+        expectedTriangles.run();
+        actualTriangles.run();
+        check(actualTriangles.countTriangles() == expectedTriangles.countTriangles(),
+            "The snapshots have different numbers of triangles.");
+    }
+
+    /**
+     * Checks that a closed graph and its views cannot be used, that closing it again does nothing,
+     * and that a snapshot taken before it was closed can still be used.
+     */
+    private static void testUseAfterClose()
+    {
+        final OffHeapGraph graph = new OffHeapGraph();
+
+        graph.add(new WeightedUndirectedEdge(new Vertex(1), new Vertex(2), 2));
+
+        final Vertex vertex = graph.getVertex(0);
+        final Edge edge = graph.getEdge(0);
+        FrozenGraph snapshot = graph.freeze();
+
+        graph.close();
+        graph.close();
+
+        checkClosed(new Runnable() { public void run() { graph.add(new Vertex(3)); } }, "add");
+        checkClosed(new Runnable() { public void run() { graph.getVertex(0); } }, "getVertex");
+        checkClosed(new Runnable() { public void run() { graph.getEdge(0); } }, "getEdge");
+        checkClosed(new Runnable() { public void run() { graph.getVertexWithId(1); } }, "getVertexWithId");
+        checkClosed(new Runnable() { public void run() { graph.getPathsFrom(new Vertex(1)); } }, "getPathsFrom");
+        checkClosed(new Runnable() { public void run() { graph.getMemoryUsage(); } }, "getMemoryUsage");
+        checkClosed(new Runnable() { public void run() { graph.freeze(); } }, "freeze");
+        checkClosed(new Runnable() { public void run() { vertex.getValue(); } }, "a vertex view");
+        checkClosed(new Runnable() { public void run() { edge.getWeight(); } }, "an edge view");
+
+        check(snapshot.countArcs() == 2 && snapshot.getWeight(0) == 2, "The snapshot changed when the graph was closed.");
+    }
+
+    /**
+     * Checks that an action on a closed graph fails.
+     *
+     * @param action The action.
+     * @param name The name of the action, used in the message of the failure.
+     */
+    private static void checkClosed(Runnable action, String name)
+    {
+        try
+        {
+            action.run();
+        }
+        catch (IllegalStateException exception)
+        {
+            return;
+        }
+
+        throw new AssertionError("Used " + name + " of a closed graph.");
+    }
+
+    /**
+     * Joins the text of the specified edges with spaces.
+     *
+     * @param edges The edges.
+     *
+     * @return The text.
+     */
+    private static String toString(Edge[] edges)
+    {
+        StringBuilder text = new StringBuilder();
+
+        for (Edge edge : edges)
+        {
+            if (text.length() > 0)
+            {
+                text.append(' ');
+            }
+
+            text.append(edge);
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Fails the test if a condition does not hold.
+     *
+     * @param condition The condition.
+     * @param message The message of the failure.
+     */
+    private static void check(boolean condition, String message)
+    {
+        if (!condition)
+        {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Tests that ParallelGraphLoader reads the same graphs as GraphReader and rejects the same malformed files
+ * with the same messages. Only the positions differ: GraphReader reports lines and columns, the loader bytes.
+ *
+ * Usage: java ParallelGraphLoaderTest
+ *
+ * @author Andrei Muntean
+ */
+public class ParallelGraphLoaderTest
+{
+    // Graph files, valid and malformed.
+    private static final String[] SOURCES =
+    {
+        "V = {}\nE = {}",
+        "V = {1, 2, 3}\nE = {[1, 2], (2, 3), [3, 1, 2.5]}\n",
+        "V = {1}\nE = {(1, 2, -0.5), [2, 2]}  \n",
+        "V = {1}\nE = {(1, 2)}}",
+        "V = {1}\nE = {(1, 2)} x",
+        "V = {1}\nE = {(1, 2)",
+        "V = {1}\nE = {(1, 2),",
+        "V = {1}\nE = {",
+        "V = {1}\nE = {(1, 2) (2, 3)}",
+        "V = {1}\nE = {(1, 2], (2, 3)}",
+        "V = {1}\nE = {(1, x)}",
+        "V = {1}\nE = {(1, 2, )}",
+        "V = {1}\nE = {(1, 2, 1e400)}",
+        "V = {1}\nE = {{(1, 2)}",
+        "V = {1, }\nE = {}",
+        "V = {1\nE = {}",
+    };
+
+    /**
+     * Runs the tests.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        File file = File.createTempFile("graph", ".txt");
+
+        try
+        {
+            for (String source : SOURCES)
+            {
+                Files.write(file.toPath(), source.getBytes("UTF-8"));
+
+                String expected = read(file, false);
+                String actual = read(file, true);
+
+                check(actual.equals(expected), "For " + source + "\nthe loader reports\n" + actual + "\ninstead of\n" + expected);
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+
+        System.out.println("ParallelGraphLoaderTest passed.");
+    }
+
+    /**
+     * Reads a graph file with GraphReader or with ParallelGraphLoader.
+     *
+     * @param file The file.
+     * @param isParallel Whether to use ParallelGraphLoader.
+     *
+     * @return The graph, or the error message without its position.
+     */
+    private static String read(File file, boolean isParallel) throws Exception
+    {
+        try
+        {
+            Graph graph = isParallel ? new ParallelGraphLoader().read(file.getPath()) : new Graph(file.getPath());
+
+            return graph.toString();
+        }
+        catch (GraphFormatException exception)
+        {
+            String message = exception.getMessage();
+
+            return message.substring(0, message.lastIndexOf(" ("));
+        }
+    }
+
+    /**
+     * Fails the test if a condition does not hold.
+     *
+     * @param condition The condition.
+     * @param message The message of the failure.
+     */
+    private static void check(boolean condition, String message)
+    {
+        if (!condition)
+        {
+            throw new AssertionError(message);
+        }
+    }
+}
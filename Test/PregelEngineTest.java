@@ -0,0 +1,244 @@
+import java.io.IOException;
+
+/**
+ * Tests that PregelEngine terminates, both when the program finishes and when a worker fails.
+ *
+ * Usage: java PregelEngineTest
+ *
+ * @author Andrei Muntean
+ */
+public class PregelEngineTest
+{
+    // The longest a run may take before it is considered hung.
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Labels every vertex with the smallest id of its component.
+     */
+    private static class MinimumLabel extends VertexProgram
+    {
+        @Override
+        public void compute(Vertex vertex, int[] messages, int messageCount)
+        {
+            int label = getSuperstep() == 0 ? vertex.getId() : vertex.getValue();
+
+            for (int index = 0; index < messageCount; ++index)
+            {
+                label = Math.min(label, messages[index]);
+            }
+
+            if (getSuperstep() == 0 || label < vertex.getValue())
+            {
+                vertex.setValue(label);
+                sendMessageToNeighbours(label);
+            }
+
+            voteToHalt();
+        }
+    }
+
+    /**
+     * Fails on the first vertex of the graph in the specified superstep and keeps every other vertex busy.
+     */
+    private static class FailingProgram extends VertexProgram
+    {
+        // The superstep in which the program fails.
+        private final int failingSuperstep;
+
+        FailingProgram(int failingSuperstep)
+        {
+            this.failingSuperstep = failingSuperstep;
+        }
+
+        @Override
+        public void compute(Vertex vertex, int[] messages, int messageCount)
+        {
+            if (getSuperstep() == failingSuperstep && vertex.getId() == 0)
+            {
+                throw new IllegalStateException("Failed on purpose.");
+            }
+
+            sendMessageToNeighbours(1);
+        }
+    }
+
+    /**
+     * Runs the tests.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        testLabelsComponents();
+        testFailureInFirstSuperstep();
+        testFailureInLaterSuperstep();
+        testClosedTransportRejectsLateArrivals();
+        System.out.println("PregelEngineTest passed.");
+    }
+
+    /**
+     * Checks that a run that finishes labels every vertex and stops once no messages are sent.
+     */
+    private static void testLabelsComponents() throws Exception
+    {
+        Graph graph = createCycles(2, 50);
+        PregelEngine engine = new PregelEngine(graph, new MinimumLabel(), 3, PregelEngine.Partitioning.HASH,
+            new LocalTransport());
+
+        runWithTimeout(engine);
+
+        for (int id = 0; id < 100; ++id)
+        {
+            check(graph.getVertexWithId(id).getValue() == id / 50 * 50, "Vertex " + id + " has the wrong label.");
+        }
+
+        check(engine.getSuperstepCount() <= 27, "The run took " + engine.getSuperstepCount() + " supersteps.");
+    }
+
+    /**
+     * Checks that a worker that fails before the first barrier releases the worker that is waiting there.
+     */
+    private static void testFailureInFirstSuperstep() throws Exception
+    {
+        expectFailure(new PregelEngine(createCycles(1, 1000), new FailingProgram(0), 2, PregelEngine.Partitioning.RANGE,
+            new LocalTransport()));
+    }
+
+    /**
+     * Checks that a worker that fails after a few supersteps stops the other workers.
+     */
+    private static void testFailureInLaterSuperstep() throws Exception
+    {
+        for (int partitionCount = 2; partitionCount <= 8; partitionCount *= 2)
+        {
+            expectFailure(new PregelEngine(createCycles(1, 1000), new FailingProgram(3), partitionCount,
+                PregelEngine.Partitioning.HASH, new LocalTransport()));
+        }
+    }
+
+    /**
+     * Checks that a partition that reaches the barrier after the transport was closed fails instead of waiting.
+     */
+    private static void testClosedTransportRejectsLateArrivals() throws Exception
+    {
+        LocalTransport transport = new LocalTransport();
+
+        transport.start(2);
+        transport.close();
+
+        try
+        {
+            transport.synchronize(0, 1, 0);
+            check(false, "The closed transport let a partition wait.");
+        }
+        catch (IOException exception)
+        {
+            // Expected.
+        }
+
+        // Starting again reopens the transport.
+        transport.start(1);
+        check(transport.synchronize(0, 0, 5) == 5, "The reopened transport returned the wrong total.");
+    }
+
+    /**
+     * Runs an engine that is expected to fail with the exception of FailingProgram.
+     *
+     * @param engine The engine.
+     */
+    private static void expectFailure(PregelEngine engine) throws Exception
+    {
+        try
+        {
+            runWithTimeout(engine);
+            check(false, "The failure was not reported.");
+        }
+        catch (IllegalStateException exception)
+        {
+            check(exception.getMessage().equals("Failed on purpose."), "The wrong failure was reported.");
+        }
+    }
+
+    /**
+     * Runs an engine on another thread and fails if it does not finish in time.
+     *
+     * @param engine The engine.
+     */
+    private static void runWithTimeout(final PregelEngine engine) throws Exception
+    {
+        final Exception[] exception = new Exception[1];
+        final RuntimeException[] runtimeException = new RuntimeException[1];
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    engine.run();
+                }
+                catch (RuntimeException caught)
+                {
+                    runtimeException[0] = caught;
+                }
+                catch (Exception caught)
+                {
+                    exception[0] = caught;
+                }
+            }
+        });
+
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(TIMEOUT_MILLIS);
+        check(!thread.isAlive(), "The run did not finish.");
+
+        if (runtimeException[0] != null)
+        {
+            throw runtimeException[0];
+        }
+        else if (exception[0] != null)
+        {
+            throw exception[0];
+        }
+    }
+
+    /**
+     * Creates a graph made of undirected cycles of consecutive ids, starting from 0.
+     *
+     * @param cycleCount The number of cycles.
+     * @param cycleLength The number of vertices of every cycle.
+     *
+     * @return The graph.
+     */
+    private static Graph createCycles(int cycleCount, int cycleLength)
+    {
+        Graph graph = new Graph();
+
+        for (int cycle = 0; cycle < cycleCount; ++cycle)
+        {
+            int first = cycle * cycleLength;
+
+            for (int index = 0; index < cycleLength; ++index)
+            {
+                graph.add(new UndirectedEdge(new Vertex(first + index), new Vertex(first + (index + 1) % cycleLength)));
+            }
+        }
+
+        return graph;
+    }
+
+    /**
+     * Fails the test if a condition does not hold.
+     *
+     * @param condition The condition.
+     * @param message The message of the failure.
+     */
+    private static void check(boolean condition, String message)
+    {
+        if (!condition)
+        {
+            throw new AssertionError(message);
+        }
+    }
+}